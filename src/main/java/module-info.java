@@ -33,6 +33,8 @@ open module com.intellij.regexp
     exports consulo.regexp.localize;
 
     exports org.intellij.lang.regexp;
+    exports org.intellij.lang.regexp.automaton;
+    exports org.intellij.lang.regexp.inspection;
     exports org.intellij.lang.regexp.intention;
     exports org.intellij.lang.regexp.psi;
     exports org.intellij.lang.regexp.psi.impl;
@@ -0,0 +1,361 @@
+/*
+ * Copyright 2013-2026 consulo.io
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.intellij.lang.regexp;
+
+import jakarta.annotation.Nonnull;
+
+import java.util.Arrays;
+
+/**
+ * Immutable set of code points, stored as sorted, disjoint and non-adjacent ranges.
+ * <p>
+ * Range {@code i} is {@code [getRangeStart(i), getRangeEnd(i)]}, both ends inclusive. Set operations merge the range
+ * arrays in linear time, so large Unicode classes cost a few hundred ranges rather than a check per character.
+ */
+public final class CodePointSet {
+    public static final CodePointSet EMPTY = new CodePointSet(new int[0]);
+    public static final CodePointSet ALL = new CodePointSet(new int[]{0, Character.MAX_CODE_POINT});
+
+    /**
+     * start and inclusive end of each range
+     */
+    private final int[] myRanges;
+
+    private CodePointSet(int[] ranges) {
+        myRanges = ranges;
+    }
+
+    @Nonnull
+    public static CodePointSet of(int codePoint) {
+        return range(codePoint, codePoint);
+    }
+
+    @Nonnull
+    public static CodePointSet range(int from, int to) {
+        if (from < 0 || to > Character.MAX_CODE_POINT || from > to) {
+            throw new IllegalArgumentException("invalid range " + from + ".." + to);
+        }
+        return new CodePointSet(new int[]{from, to});
+    }
+
+    /**
+     * Creates a set of the specified code points.
+     */
+    @Nonnull
+    public static CodePointSet of(int... codePoints) {
+        final Builder builder = new Builder();
+        for (int codePoint : codePoints) {
+            builder.add(codePoint);
+        }
+        return builder.build();
+    }
+
+    /**
+     * Creates a set from a sorted array of disjoint and non-adjacent ranges, in the format of {@link #toRangeArray()}.
+     */
+    @Nonnull
+    public static CodePointSet fromRangeArray(@Nonnull int[] ranges) {
+        if (ranges.length == 0) {
+            return EMPTY;
+        }
+        return new CodePointSet(ranges.clone());
+    }
+
+    /**
+     * @return the ranges of this set as {@code [start0, end0, start1, end1, ...]}, with inclusive ends
+     */
+    @Nonnull
+    public int[] toRangeArray() {
+        return myRanges.clone();
+    }
+
+    public int getRangeCount() {
+        return myRanges.length >> 1;
+    }
+
+    public int getRangeStart(int index) {
+        return myRanges[index << 1];
+    }
+
+    public int getRangeEnd(int index) {
+        return myRanges[(index << 1) + 1];
+    }
+
+    public boolean isEmpty() {
+        return myRanges.length == 0;
+    }
+
+    /**
+     * @return the number of code points in this set
+     */
+    public int size() {
+        int size = 0;
+        for (int i = 0; i < myRanges.length; i += 2) {
+            size += myRanges[i + 1] - myRanges[i] + 1;
+        }
+        return size;
+    }
+
+    /**
+     * @return the smallest code point in this set, or -1 if the set is empty
+     */
+    public int getFirst() {
+        return myRanges.length == 0 ? -1 : myRanges[0];
+    }
+
+    public boolean contains(int codePoint) {
+        int low = 0;
+        int high = getRangeCount() - 1;
+        while (low <= high) {
+            final int mid = (low + high) >>> 1;
+            if (codePoint < myRanges[mid << 1]) {
+                high = mid - 1;
+            }
+            else if (codePoint > myRanges[(mid << 1) + 1]) {
+                low = mid + 1;
+            }
+            else {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * @return true, if every code point of the specified set is in this set
+     */
+    public boolean containsAll(@Nonnull CodePointSet other) {
+        return other.difference(this).isEmpty();
+    }
+
+    /**
+     * @return true, if this set and the specified set have a code point in common
+     */
+    public boolean intersects(@Nonnull CodePointSet other) {
+        int i = 0;
+        int j = 0;
+        while (i < myRanges.length && j < other.myRanges.length) {
+            if (myRanges[i + 1] < other.myRanges[j]) {
+                i += 2;
+            }
+            else if (other.myRanges[j + 1] < myRanges[i]) {
+                j += 2;
+            }
+            else {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    @Nonnull
+    public CodePointSet union(@Nonnull CodePointSet other) {
+        if (other.isEmpty() || this == other) {
+            return this;
+        }
+        if (isEmpty()) {
+            return other;
+        }
+        final int[] result = new int[myRanges.length + other.myRanges.length];
+        int size = 0;
+        int i = 0;
+        int j = 0;
+        while (i < myRanges.length || j < other.myRanges.length) {
+            final int start;
+            final int end;
+            if (j >= other.myRanges.length || i < myRanges.length && myRanges[i] <= other.myRanges[j]) {
+                start = myRanges[i];
+                end = myRanges[i + 1];
+                i += 2;
+            }
+            else {
+                start = other.myRanges[j];
+                end = other.myRanges[j + 1];
+                j += 2;
+            }
+            if (size > 0 && start <= result[size - 1] + 1) {
+                result[size - 1] = Math.max(result[size - 1], end);
+            }
+            else {
+                result[size++] = start;
+                result[size++] = end;
+            }
+        }
+        return new CodePointSet(Arrays.copyOf(result, size));
+    }
+
+    @Nonnull
+    public CodePointSet intersection(@Nonnull CodePointSet other) {
+        if (this == other) {
+            return this;
+        }
+        final int[] result = new int[myRanges.length + other.myRanges.length];
+        int size = 0;
+        int i = 0;
+        int j = 0;
+        while (i < myRanges.length && j < other.myRanges.length) {
+            final int start = Math.max(myRanges[i], other.myRanges[j]);
+            final int end = Math.min(myRanges[i + 1], other.myRanges[j + 1]);
+            if (start <= end) {
+                result[size++] = start;
+                result[size++] = end;
+            }
+            if (myRanges[i + 1] < other.myRanges[j + 1]) {
+                i += 2;
+            }
+            else {
+                j += 2;
+            }
+        }
+        return size == 0 ? EMPTY : new CodePointSet(Arrays.copyOf(result, size));
+    }
+
+    /**
+     * @return all code points not in this set
+     */
+    @Nonnull
+    public CodePointSet complement() {
+        if (isEmpty()) {
+            return ALL;
+        }
+        final int[] result = new int[myRanges.length + 2];
+        int size = 0;
+        int next = 0;
+        for (int i = 0; i < myRanges.length; i += 2) {
+            if (myRanges[i] > next) {
+                result[size++] = next;
+                result[size++] = myRanges[i] - 1;
+            }
+            next = myRanges[i + 1] + 1;
+        }
+        if (next <= Character.MAX_CODE_POINT) {
+            result[size++] = next;
+            result[size++] = Character.MAX_CODE_POINT;
+        }
+        return size == 0 ? EMPTY : new CodePointSet(Arrays.copyOf(result, size));
+    }
+
+    /**
+     * @return the code points of this set which are not in the specified set
+     */
+    @Nonnull
+    public CodePointSet difference(@Nonnull CodePointSet other) {
+        if (other.isEmpty() || isEmpty()) {
+            return this;
+        }
+        return intersection(other.complement());
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        return this == o || o instanceof CodePointSet set && Arrays.equals(myRanges, set.myRanges);
+    }
+
+    @Override
+    public int hashCode() {
+        return Arrays.hashCode(myRanges);
+    }
+
+    @Override
+    public String toString() {
+        final StringBuilder result = new StringBuilder("[");
+        for (int i = 0; i < myRanges.length; i += 2) {
+            if (i > 0) {
+                result.append(", ");
+            }
+            result.append(Integer.toHexString(myRanges[i]));
+            if (myRanges[i + 1] != myRanges[i]) {
+                result.append('-').append(Integer.toHexString(myRanges[i + 1]));
+            }
+        }
+        return result.append(']').toString();
+    }
+
+    /**
+     * Collects code points and ranges in any order, and sorts and merges them on {@link #build()}.
+     */
+    public static final class Builder {
+        private int[] myRanges = new int[16];
+        private int mySize = 0;
+        private boolean mySorted = true;
+
+        @Nonnull
+        public Builder add(int codePoint) {
+            return add(codePoint, codePoint);
+        }
+
+        @Nonnull
+        public Builder add(int from, int to) {
+            if (from < 0 || to > Character.MAX_CODE_POINT || from > to) {
+                throw new IllegalArgumentException("invalid range " + from + ".." + to);
+            }
+            if (mySize > 0) {
+                final int last = myRanges[mySize - 1];
+                if (from >= myRanges[mySize - 2] && from <= last + 1) {
+                    // extends the previous range, the common case when adding code points in order
+                    myRanges[mySize - 1] = Math.max(last, to);
+                    return this;
+                }
+                if (from < myRanges[mySize - 2]) {
+                    mySorted = false;
+                }
+            }
+            if (mySize == myRanges.length) {
+                myRanges = Arrays.copyOf(myRanges, mySize << 1);
+            }
+            myRanges[mySize++] = from;
+            myRanges[mySize++] = to;
+            return this;
+        }
+
+        @Nonnull
+        public Builder addAll(@Nonnull CodePointSet set) {
+            for (int i = 0; i < set.myRanges.length; i += 2) {
+                add(set.myRanges[i], set.myRanges[i + 1]);
+            }
+            return this;
+        }
+
+        @Nonnull
+        public CodePointSet build() {
+            if (mySize == 0) {
+                return EMPTY;
+            }
+            if (mySorted) {
+                return new CodePointSet(Arrays.copyOf(myRanges, mySize));
+            }
+            final long[] ranges = new long[mySize >> 1];
+            for (int i = 0; i < ranges.length; i++) {
+                ranges[i] = ((long) myRanges[i << 1] << 32) | myRanges[(i << 1) + 1];
+            }
+            Arrays.sort(ranges);
+            final int[] result = new int[mySize];
+            int size = 0;
+            for (long range : ranges) {
+                final int start = (int) (range >>> 32);
+                final int end = (int) range;
+                if (size > 0 && start <= result[size - 1] + 1) {
+                    result[size - 1] = Math.max(result[size - 1], end);
+                }
+                else {
+                    result[size++] = start;
+                    result[size++] = end;
+                }
+            }
+            return new CodePointSet(Arrays.copyOf(result, size));
+        }
+    }
+}
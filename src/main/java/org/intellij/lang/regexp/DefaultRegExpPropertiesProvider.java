@@ -20,6 +20,8 @@ import consulo.util.lang.StringUtil;
 import jakarta.annotation.Nonnull;
 import jakarta.annotation.Nullable;
 
+import java.util.Locale;
+
 public final class DefaultRegExpPropertiesProvider {
     private static final DefaultRegExpPropertiesProvider INSTANCE = new DefaultRegExpPropertiesProvider();
 
@@ -152,6 +154,101 @@ public final class DefaultRegExpPropertiesProvider {
         return false;
     }
 
+    /**
+     * Returns the code points matched by a property, like the {@code Lu} of {@code \p{Lu}}, with Java semantics:
+     * general categories, binary properties ({@code IsAlphabetic}, {@code IsDigit}), scripts ({@code IsLatin},
+     * {@code sc=Latin}), blocks ({@code InGreek}, {@code blk=Greek}) and the ASCII-only POSIX-like classes such as
+     * {@code Alpha}. Like java.util.regex, names with the {@code Is} prefix are looked up as binary properties first,
+     * so {@code IsDigit} and {@code IsAlpha} match all Unicode digits and letters while {@code Digit} and {@code Alpha}
+     * only match ASCII ones.
+     *
+     * @param property the category name, or {@code key=value} for a property with a value
+     * @return the matched code points, or null if the property is not known
+     */
+    @Nullable
+    public CodePointSet getCodePoints(@Nonnull String property) {
+        final int eq = property.indexOf('=');
+        if (eq >= 0) {
+            final String value = property.substring(eq + 1);
+            return switch (property.substring(0, eq)) {
+                case "script", "sc" -> getScriptCodePoints(value);
+                case "block", "blk" -> getBlockCodePoints(value);
+                case "general_category", "gc" -> getCategoryCodePoints(value);
+                default -> null;
+            };
+        }
+        if (property.startsWith("In")) {
+            return getBlockCodePoints(property.substring(2));
+        }
+        if (property.startsWith("Is")) {
+            final String name = property.substring(2);
+            CodePointSet set = getBinaryPropertyCodePoints(name);
+            if (set == null) {
+                set = getCategoryCodePoints(name);
+            }
+            return set != null ? set : getScriptCodePoints(name);
+        }
+        return getCategoryCodePoints(property);
+    }
+
+    @Nullable
+    private static CodePointSet getCategoryCodePoints(@Nonnull String category) {
+        return UnicodePropertyTables.get("gc:" + category);
+    }
+
+    @Nullable
+    private static CodePointSet getBinaryPropertyCodePoints(@Nonnull String name) {
+        final String key = name.toUpperCase(Locale.ROOT);
+        return UnicodePropertyTables.get("prop:" + switch (key) {
+            case "HEXDIGIT", "XDIGIT" -> "HEX_DIGIT";
+            case "JOINCONTROL" -> "JOIN_CONTROL";
+            case "NONCHARACTERCODEPOINT" -> "NONCHARACTER_CODE_POINT";
+            case "WHITESPACE", "SPACE" -> "WHITE_SPACE";
+            // the POSIX-like names are Unicode properties too when prefixed with Is
+            case "ALPHA" -> "ALPHABETIC";
+            case "CNTRL" -> "CONTROL";
+            case "LOWER" -> "LOWERCASE";
+            case "PUNCT" -> "PUNCTUATION";
+            case "UPPER" -> "UPPERCASE";
+            default -> key;
+        });
+    }
+
+    @Nullable
+    private static CodePointSet getScriptCodePoints(@Nonnull String name) {
+        final Character.UnicodeScript script;
+        try {
+            script = Character.UnicodeScript.forName(name);
+        }
+        catch (IllegalArgumentException e) {
+            return null;
+        }
+        final CodePointSet set = UnicodePropertyTables.get("sc:" + script.name());
+        return set == null ? CodePointSet.EMPTY : set;
+    }
+
+    @Nullable
+    private static CodePointSet getBlockCodePoints(@Nonnull String name) {
+        final Character.UnicodeBlock block;
+        try {
+            block = Character.UnicodeBlock.forName(name);
+        }
+        catch (IllegalArgumentException e) {
+            return null;
+        }
+        final CodePointSet set = UnicodePropertyTables.get("blk:" + block);
+        return set == null ? CodePointSet.EMPTY : set;
+    }
+
+    /**
+     * @param className the name of a POSIX bracket expression, like the {@code alpha} of {@code [:alpha:]}
+     * @return the code points of the class in the ASCII range, or null if the class is not known
+     */
+    @Nullable
+    public CodePointSet getPosixCodePoints(@Nonnull String className) {
+        return UnicodePropertyTables.get("posix:" + className);
+    }
+
     @Nullable
     public String getPropertyDescription(@Nullable final String name) {
         if (StringUtil.isEmptyOrSpaces(name)) {
@@ -20,7 +20,6 @@ import consulo.annotation.component.ExtensionImpl;
 import consulo.application.AllIcons;
 import consulo.application.progress.ProgressManager;
 import consulo.codeEditor.Editor;
-import consulo.component.util.UnicodeCharacterRegistry;
 import consulo.document.Document;
 import consulo.document.util.TextRange;
 import consulo.language.Language;
@@ -35,6 +34,12 @@ import org.jetbrains.annotations.NonNls;
 
 import jakarta.annotation.Nonnull;
 
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+
 import static consulo.language.pattern.PlatformPatterns.psiElement;
 import static consulo.language.pattern.StandardPatterns.or;
 
@@ -214,6 +219,9 @@ public final class RegExpCompletionContributor extends CompletionContributor {
     }
 
     private static class NamedCharacterCompletionProvider implements CompletionProvider {
+        private static final int BATCH_SIZE = 64;
+        private static final int VARIANT_LIMIT = 500;
+
         private final boolean myEmbrace;
 
         public NamedCharacterCompletionProvider(boolean embrace) {
@@ -227,22 +235,108 @@ public final class RegExpCompletionContributor extends CompletionContributor {
             ProcessingContext context,
             @Nonnull CompletionResultSet result
         ) {
-            UnicodeCharacterRegistry.listCharacters().forEach(character -> {
-                String name = character.getName();
-                if (result.getPrefixMatcher().prefixMatches(name)) {
-                    final String type = new String(new int[]{character.getCodePoint()}, 0, 1);
-                    if (myEmbrace) {
-                        result.addElement(createLookupElement("{" + character + "}", type, emptyIcon));
-                    }
-                    else {
-                        result.addElement(TailTypeDecorator.withTail(
-                            createLookupElement(name, type, emptyIcon),
-                            TailType.createSimpleTailType('}')
-                        ));
+            final UnicodeCharacterNames names = UnicodeCharacterNames.getInstance();
+            final PrefixMatcher matcher = result.getPrefixMatcher();
+            String prefix = matcher.getPrefix();
+            if (myEmbrace && prefix.startsWith("{")) {
+                prefix = prefix.substring(1);
+            }
+            prefix = prefix.toUpperCase(Locale.ROOT);
+
+            final List<LookupElement> batch = new ArrayList<>(BATCH_SIZE);
+            final BitSet added = new BitSet();
+            // names starting with the first typed character cover plain prefix and camel hump matches
+            final String first = prefix.isEmpty() ? "" : prefix.substring(0, 1);
+            for (int i = names.getPrefixStart(first), end = names.getPrefixEnd(first); i < end; i++) {
+                final String name = names.getName(i);
+                if (matcher.prefixMatches(toLookupString(name))) {
+                    added.set(i);
+                    batch.add(createNamedCharacterElement(name, names.getCodePoint(i), null));
+                    if (!flush(result, batch, added)) {
+                        return;
                     }
                 }
                 ProgressManager.checkCanceled();
-            });
+            }
+            if (!prefix.isEmpty()) {
+                // names containing a word that starts with the first typed word
+                final int space = prefix.indexOf(' ');
+                final String word = space < 0 ? prefix : prefix.substring(0, space);
+                names.processWordStarts(word, (index, offset) -> {
+                    ProgressManager.checkCanceled();
+                    if (added.get(index)) {
+                        return true;
+                    }
+                    final String name = names.getName(index);
+                    final String wordStart = name.substring(offset);
+                    if (!matcher.prefixMatches(toLookupString(wordStart))) {
+                        return true;
+                    }
+                    added.set(index);
+                    batch.add(createNamedCharacterElement(name, names.getCodePoint(index), wordStart));
+                    return flush(result, batch, added);
+                });
+            }
+            result.addAllElements(batch);
+        }
+
+        /**
+         * @return false, if no more elements should be added
+         */
+        private static boolean flush(CompletionResultSet result, List<LookupElement> batch, BitSet added) {
+            if (batch.size() < BATCH_SIZE) {
+                return true;
+            }
+            result.addAllElements(batch);
+            batch.clear();
+            if (added.cardinality() >= VARIANT_LIMIT) {
+                result.restartCompletionOnAnyPrefixChange();
+                return false;
+            }
+            return !result.isStopped();
+        }
+
+        private String toLookupString(String name) {
+            return myEmbrace ? "{" + name + "}" : name;
+        }
+
+        private LookupElement createNamedCharacterElement(String name, int codePoint, String wordStart) {
+            final LookupElement element =
+                new NamedCharacterLookupElement(toLookupString(name), wordStart == null ? null : toLookupString(wordStart), codePoint);
+            return myEmbrace ? element : TailTypeDecorator.withTail(element, TailType.createSimpleTailType('}'));
+        }
+    }
+
+    /**
+     * Named character variant, the character itself is only computed as type text when the item is rendered.
+     */
+    private static class NamedCharacterLookupElement extends LookupElement {
+        private final String myLookupString;
+        private final String myWordStart;
+        private final int myCodePoint;
+
+        NamedCharacterLookupElement(@Nonnull String lookupString, String wordStart, int codePoint) {
+            myLookupString = lookupString;
+            myWordStart = wordStart;
+            myCodePoint = codePoint;
+        }
+
+        @Nonnull
+        @Override
+        public String getLookupString() {
+            return myLookupString;
+        }
+
+        @Override
+        public Set<String> getAllLookupStrings() {
+            return myWordStart == null ? Set.of(myLookupString) : Set.of(myLookupString, myWordStart);
+        }
+
+        @Override
+        public void renderElement(LookupElementPresentation presentation) {
+            presentation.setItemText(myLookupString);
+            presentation.setTypeText(Character.toString(myCodePoint));
+            presentation.setIcon(emptyIcon);
         }
     }
 
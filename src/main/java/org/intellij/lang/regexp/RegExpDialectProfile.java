@@ -0,0 +1,289 @@
+/*
+ * Copyright 2013-2026 consulo.io
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.intellij.lang.regexp;
+
+import consulo.util.lang.ThreeState;
+import jakarta.annotation.Nonnull;
+import jakarta.annotation.Nullable;
+import org.intellij.lang.regexp.psi.RegExpBoundary;
+import org.intellij.lang.regexp.psi.RegExpGroup;
+import org.intellij.lang.regexp.psi.RegExpSimpleClass;
+
+/**
+ * Immutable description of what a regexp dialect supports, computed once per {@link RegExpLanguageHost}
+ * (see {@link RegExpLanguageHost#getDialectProfile()}) so that validation can answer capability questions with
+ * a bit test instead of calling the host for every element.
+ * <p>
+ * A profile may leave questions open: queries then return {@link ThreeState#UNSURE} (or null), and the host method
+ * is called as before. The profile of a host which doesn't provide one, see {@link #forLegacyHost(RegExpLanguageHost)},
+ * answers only the questions that don't depend on an element.
+ */
+public final class RegExpDialectProfile {
+    public enum Feature {
+        /**
+         * {@code (?#comment)}
+         */
+        PERL5_EMBEDDED_COMMENTS,
+        POSSESSIVE_QUANTIFIERS,
+        /**
+         * {@code (?(1)yes|no)}
+         */
+        CONDITIONALS,
+        /**
+         * {@code \x{h..h}}
+         */
+        EXTENDED_HEX_CHARACTER,
+        /**
+         * {@code [\b]}
+         */
+        LITERAL_BACKSPACE,
+        /**
+         * {@code \N{NAME}}
+         */
+        NAMED_CHARACTERS,
+        DUPLICATE_GROUP_NAMES,
+        /**
+         * {@code \p{Property}}
+         */
+        PROPERTY_SYNTAX,
+        /**
+         * {@code \k<name>}
+         */
+        NAMED_GROUP_REFS,
+        /**
+         * {@code (?P=name)}
+         */
+        PYTHON_NAMED_GROUP_REFS,
+        /**
+         * {@code \g<name>}
+         */
+        RUBY_NAMED_GROUP_REFS
+    }
+
+    private static final int ASCII_LIMIT = 128;
+    private static final String DEFAULT_ESCAPED_CHARACTERS = "\\^$.|?*+()[{";
+
+    private static final int BOUNDARIES = 1;
+    private static final int SIMPLE_CLASSES = 1 << 1;
+    private static final int NAMED_GROUPS = 1 << 2;
+    private static final int ESCAPED_CHARACTERS = 1 << 3;
+
+    private final long myFeatures;
+    private final long myKnownFeatures;
+    private final int myKnownTables;
+    private final int myBoundaries;
+    private final int mySimpleClasses;
+    private final int myNamedGroups;
+    private final long myEscapedLow;
+    private final long myEscapedHigh;
+    @Nullable
+    private final RegExpLanguageHost.Lookbehind myLookbehind;
+
+    private RegExpDialectProfile(Builder builder) {
+        myFeatures = builder.myFeatures;
+        myKnownFeatures = builder.myKnownFeatures;
+        myKnownTables = builder.myKnownTables;
+        myBoundaries = builder.myBoundaries;
+        mySimpleClasses = builder.mySimpleClasses;
+        myNamedGroups = builder.myNamedGroups;
+        myEscapedLow = builder.myEscapedLow;
+        myEscapedHigh = builder.myEscapedHigh;
+        myLookbehind = builder.myLookbehind;
+    }
+
+    /**
+     * Creates a builder for a profile which answers every question. Unless specified otherwise, the profile supports
+     * no optional features, every boundary except {@code \b{g}}, every simple class, no named groups, full lookbehind,
+     * and requires escaping of the characters <code>\^$.|?*+()[&#123;</code>.
+     */
+    @Nonnull
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    /**
+     * @return the profile the host provides, or else an adapter which calls the element independent methods of the host
+     * once and leaves all other questions to the host
+     */
+    @Nonnull
+    public static RegExpDialectProfile forHost(@Nonnull RegExpLanguageHost host) {
+        final RegExpDialectProfile profile = host.getDialectProfile();
+        return profile != null ? profile : forLegacyHost(host);
+    }
+
+    @Nonnull
+    public static RegExpDialectProfile forLegacyHost(@Nonnull RegExpLanguageHost host) {
+        final Builder builder = new Builder();
+        builder.myKnownFeatures = 0;
+        builder.myKnownTables = ESCAPED_CHARACTERS;
+        builder.myLookbehind = null;
+        builder.feature(Feature.PERL5_EMBEDDED_COMMENTS, host.supportsPerl5EmbeddedComments());
+        builder.feature(Feature.POSSESSIVE_QUANTIFIERS, host.supportsPossessiveQuantifiers());
+        builder.feature(Feature.CONDITIONALS, host.supportsPythonConditionalRefs());
+        builder.myEscapedLow = builder.myEscapedHigh = 0;
+        for (char c = 0; c < ASCII_LIMIT; c++) {
+            if (host.characterNeedsEscaping(c)) {
+                builder.escaped(c);
+            }
+        }
+        return builder.build();
+    }
+
+    @Nonnull
+    public ThreeState supports(@Nonnull Feature feature) {
+        return test(myFeatures, myKnownFeatures, 1L << feature.ordinal());
+    }
+
+    @Nonnull
+    public ThreeState supportsBoundary(@Nonnull RegExpBoundary.Type type) {
+        return testTable(myBoundaries, BOUNDARIES, 1 << type.ordinal());
+    }
+
+    @Nonnull
+    public ThreeState supportsSimpleClass(@Nonnull RegExpSimpleClass.Kind kind) {
+        return testTable(mySimpleClasses, SIMPLE_CLASSES, 1 << kind.ordinal());
+    }
+
+    /**
+     * @param type the type of a named group, e.g. {@link RegExpGroup.Type#PYTHON_NAMED_GROUP}
+     */
+    @Nonnull
+    public ThreeState supportsNamedGroupSyntax(@Nonnull RegExpGroup.Type type) {
+        return testTable(myNamedGroups, NAMED_GROUPS, 1 << type.ordinal());
+    }
+
+    @Nonnull
+    public ThreeState characterNeedsEscaping(char c) {
+        if (c >= ASCII_LIMIT || (myKnownTables & ESCAPED_CHARACTERS) == 0) {
+            return ThreeState.UNSURE;
+        }
+        final long bits = c < 64 ? myEscapedLow : myEscapedHigh;
+        return ThreeState.fromBoolean((bits & (1L << (c & 63))) != 0);
+    }
+
+    /**
+     * @return the lookbehind support of the dialect, or null if it depends on the group
+     */
+    @Nullable
+    public RegExpLanguageHost.Lookbehind getLookbehind() {
+        return myLookbehind;
+    }
+
+    private ThreeState testTable(int bits, int table, int mask) {
+        if ((myKnownTables & table) == 0) {
+            return ThreeState.UNSURE;
+        }
+        return ThreeState.fromBoolean((bits & mask) != 0);
+    }
+
+    private static ThreeState test(long bits, long known, long mask) {
+        if ((known & mask) == 0) {
+            return ThreeState.UNSURE;
+        }
+        return ThreeState.fromBoolean((bits & mask) != 0);
+    }
+
+    public static final class Builder {
+        private long myFeatures = 0;
+        private long myKnownFeatures = -1L;
+        private int myKnownTables = BOUNDARIES | SIMPLE_CLASSES | NAMED_GROUPS | ESCAPED_CHARACTERS;
+        private int myBoundaries = ~(1 << RegExpBoundary.Type.UNICODE_EXTENDED_GRAPHEME.ordinal());
+        private int mySimpleClasses = -1;
+        private int myNamedGroups = 0;
+        private long myEscapedLow;
+        private long myEscapedHigh;
+        private RegExpLanguageHost.Lookbehind myLookbehind = RegExpLanguageHost.Lookbehind.FULL;
+
+        private Builder() {
+            for (int i = 0; i < DEFAULT_ESCAPED_CHARACTERS.length(); i++) {
+                escaped(DEFAULT_ESCAPED_CHARACTERS.charAt(i));
+            }
+        }
+
+        @Nonnull
+        public Builder feature(@Nonnull Feature feature, boolean supported) {
+            final long mask = 1L << feature.ordinal();
+            myFeatures = supported ? myFeatures | mask : myFeatures & ~mask;
+            myKnownFeatures |= mask;
+            return this;
+        }
+
+        @Nonnull
+        public Builder boundaries(@Nonnull RegExpBoundary.Type... types) {
+            myBoundaries = 0;
+            for (RegExpBoundary.Type type : types) {
+                myBoundaries |= 1 << type.ordinal();
+            }
+            return this;
+        }
+
+        @Nonnull
+        public Builder simpleClasses(@Nonnull RegExpSimpleClass.Kind... kinds) {
+            mySimpleClasses = 0;
+            for (RegExpSimpleClass.Kind kind : kinds) {
+                mySimpleClasses |= 1 << kind.ordinal();
+            }
+            return this;
+        }
+
+        /**
+         * @param types the named group types the dialect supports, e.g. {@link RegExpGroup.Type#NAMED_GROUP}
+         */
+        @Nonnull
+        public Builder namedGroups(@Nonnull RegExpGroup.Type... types) {
+            myNamedGroups = 0;
+            for (RegExpGroup.Type type : types) {
+                myNamedGroups |= 1 << type.ordinal();
+            }
+            return this;
+        }
+
+        /**
+         * @param characters the ASCII characters which need to be escaped to match literally outside a class
+         */
+        @Nonnull
+        public Builder escapedCharacters(@Nonnull String characters) {
+            myEscapedLow = myEscapedHigh = 0;
+            for (int i = 0; i < characters.length(); i++) {
+                escaped(characters.charAt(i));
+            }
+            return this;
+        }
+
+        @Nonnull
+        public Builder lookbehind(@Nonnull RegExpLanguageHost.Lookbehind lookbehind) {
+            myLookbehind = lookbehind;
+            return this;
+        }
+
+        private void escaped(char c) {
+            if (c >= ASCII_LIMIT) {
+                throw new IllegalArgumentException("not an ASCII character: " + c);
+            }
+            if (c < 64) {
+                myEscapedLow |= 1L << c;
+            }
+            else {
+                myEscapedHigh |= 1L << (c & 63);
+            }
+        }
+
+        @Nonnull
+        public RegExpDialectProfile build() {
+            return new RegExpDialectProfile(this);
+        }
+    }
+}
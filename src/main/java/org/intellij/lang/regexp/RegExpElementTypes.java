@@ -24,11 +24,11 @@ public interface RegExpElementTypes {
     IElementType CLOSURE = new RegExpElementType("COUNTED_CLOSURE");
     IElementType QUANTIFIER = new RegExpElementType("QUANTIFIER");
     IElementType SIMPLE_CLASS = new RegExpElementType("SIMPLE_CLASS");
-    IElementType CLASS = new RegExpElementType("CLASS");
+    IElementType CLASS = new RegExpReparseableElementType("CLASS");
     IElementType CHAR_RANGE = new RegExpElementType("CHAR_RANGE");
     IElementType INTERSECTION = new RegExpElementType("INTERSECTION");
     IElementType CHAR = new RegExpElementType("CHAR");
-    IElementType GROUP = new RegExpElementType("GROUP");
+    IElementType GROUP = new RegExpReparseableElementType("GROUP");
     IElementType PROPERTY = new RegExpElementType("PROPERTY");
     IElementType NAMED_CHARACTER = new RegExpElementType("NAMED_CHARACTER");
     IElementType OPTIONS = new RegExpElementType("OPTIONS");
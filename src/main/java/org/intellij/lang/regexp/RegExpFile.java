@@ -18,11 +18,23 @@ package org.intellij.lang.regexp;
 import consulo.language.Language;
 import consulo.language.file.FileViewProvider;
 import consulo.language.impl.psi.PsiFileBase;
+import consulo.language.psi.PsiElement;
 import consulo.virtualFileSystem.fileType.FileType;
 
 import jakarta.annotation.Nonnull;
+import jakarta.annotation.Nullable;
+
+import java.util.EnumSet;
 
 public class RegExpFile extends PsiFileBase {
+    /**
+     * The host resolved for an injection context, and its dialect profile. A null host records that the context has none.
+     */
+    record ResolvedHost(@Nullable PsiElement context, @Nullable RegExpLanguageHost host, @Nullable RegExpDialectProfile profile) {
+    }
+
+    private volatile ResolvedHost myResolvedHost;
+
     public RegExpFile(FileViewProvider viewProvider, final Language language) {
         super(viewProvider, language);
     }
@@ -32,4 +44,45 @@ public class RegExpFile extends PsiFileBase {
     public FileType getFileType() {
         return RegExpFileType.INSTANCE;
     }
+
+    /**
+     * Returns the host of this regexp, resolved once per injection context instead of once per element:
+     * the extension lookup is repeated only when the file is injected into a different context.
+     *
+     * @return the host the regexp is injected into, or null if the file is not injected or the host is not known
+     */
+    @Nullable
+    public RegExpLanguageHost getRegExpHost() {
+        return getResolvedHost().host();
+    }
+
+    /**
+     * @return the dialect profile of {@link #getRegExpHost()}, or null if there is no host
+     */
+    @Nullable
+    public RegExpDialectProfile getDialectProfile() {
+        return getResolvedHost().profile();
+    }
+
+    /**
+     * @return the syntax of the dialect the file is parsed with, see {@link RegExpLanguageVersion}
+     */
+    @Nonnull
+    public EnumSet<RegExpCapability> getCapabilities() {
+        return RegExpParserDefinition.getCapabilities(getLanguageVersion());
+    }
+
+    /**
+     * @return the host and its profile, read together so the injection context is looked up once
+     */
+    @Nonnull
+    ResolvedHost getResolvedHost() {
+        final PsiElement context = getContext();
+        ResolvedHost resolved = myResolvedHost;
+        if (resolved == null || resolved.context() != context) {
+            final RegExpLanguageHost host = RegExpLanguageHost.findRegExpHostForContext(context);
+            myResolvedHost = resolved = new ResolvedHost(context, host, host == null ? null : RegExpDialectProfile.forHost(host));
+        }
+        return resolved;
+    }
 }
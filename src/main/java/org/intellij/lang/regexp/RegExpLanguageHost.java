@@ -22,6 +22,7 @@ import consulo.component.extension.ByClassGrouper;
 import consulo.component.extension.ExtensionPointCacheKey;
 import consulo.language.psi.PsiElement;
 import consulo.language.psi.PsiFile;
+import consulo.util.lang.ThreeState;
 import jakarta.annotation.Nonnull;
 import jakarta.annotation.Nullable;
 import org.intellij.lang.regexp.psi.*;
@@ -37,14 +38,25 @@ public interface RegExpLanguageHost {
         ExtensionPointCacheKey.create("RegExpLanguageHost", ByClassGrouper.build(RegExpLanguageHost::getHostClass));
 
     @Nullable
-    @SuppressWarnings("unchecked")
     public static RegExpLanguageHost findRegExpHost(@Nullable PsiElement element) {
         if (element == null) {
             return null;
         }
 
         final PsiFile file = element.getContainingFile();
-        final PsiElement context = file.getContext();
+        if (file instanceof RegExpFile regExpFile) {
+            return regExpFile.getRegExpHost();
+        }
+        return file == null ? null : findRegExpHostForContext(file.getContext());
+    }
+
+    /**
+     * @param context the injection context of a regexp file
+     * @return the host of regexps injected into the context, or null
+     */
+    @Nullable
+    @SuppressWarnings("unchecked")
+    static RegExpLanguageHost findRegExpHostForContext(@Nullable PsiElement context) {
         if (context instanceof RegExpLanguageHost) {
             return (RegExpLanguageHost)context;
         }
@@ -87,6 +99,17 @@ public interface RegExpLanguageHost {
     @Nonnull
     Class getHostClass();
 
+    /**
+     * Returns the capabilities of this host's dialect, which validation consults instead of the per-element methods
+     * wherever the profile gives an answer. The profile should be created once and reused.
+     *
+     * @return the profile of the dialect, or null to answer every question through the methods of this interface
+     */
+    @Nullable
+    default RegExpDialectProfile getDialectProfile() {
+        return null;
+    }
+
     boolean characterNeedsEscaping(char c);
 
     boolean supportsPerl5EmbeddedComments();
@@ -140,7 +163,7 @@ public interface RegExpLanguageHost {
     }
 
     default boolean isValidNamedCharacter(RegExpNamedCharacter namedCharacter) {
-        return supportsNamedCharacters(namedCharacter);
+        return supportsNamedCharacters(namedCharacter) && UnicodeCharacterNames.getInstance().getCodePoint(namedCharacter.getName()) != -1;
     }
 
     default boolean supportsBoundary(RegExpBoundary boundary) {
@@ -192,6 +215,17 @@ public interface RegExpLanguageHost {
         return Double.parseDouble(number.getUnescapedText());
     }
 
+    /**
+     * Tells whether the code around the regexp reads what a capturing group matched, e.g. with {@code Matcher.group(1)}.
+     *
+     * @return {@link ThreeState#YES} if the group is used, {@link ThreeState#NO} if it's known not to be used,
+     * or {@link ThreeState#UNSURE} if the host can't tell
+     */
+    @Nonnull
+    default ThreeState isGroupUsedByHost(@Nonnull RegExpGroup group) {
+        return ThreeState.UNSURE;
+    }
+
     default Lookbehind supportsLookbehind(@Nonnull RegExpGroup lookbehindGroup) {
         return Lookbehind.FULL; // to not break existing implementations, although rarely actually supported.
     }
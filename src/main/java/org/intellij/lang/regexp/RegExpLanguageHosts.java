@@ -18,8 +18,11 @@ package org.intellij.lang.regexp;
 import consulo.annotation.access.RequiredReadAction;
 import consulo.language.psi.PsiComment;
 import consulo.language.psi.PsiElement;
+import consulo.language.psi.PsiFile;
+import consulo.util.lang.ThreeState;
 import jakarta.annotation.Nonnull;
 import jakarta.annotation.Nullable;
+import org.intellij.lang.regexp.RegExpDialectProfile.Feature;
 import org.intellij.lang.regexp.psi.*;
 import org.jetbrains.annotations.Contract;
 
@@ -29,6 +32,8 @@ import org.jetbrains.annotations.Contract;
 public final class RegExpLanguageHosts {
     public static final RegExpLanguageHosts INSTANCE = new RegExpLanguageHosts();
 
+    private static final String META_CHARACTERS = "\\^$.|?*+()[{";
+
     private final DefaultRegExpPropertiesProvider myDefaultProvider = DefaultRegExpPropertiesProvider.getInstance();
 
     @Contract("null -> null")
@@ -37,29 +42,80 @@ public final class RegExpLanguageHosts {
         return RegExpLanguageHost.findRegExpHost(element);
     }
 
+    /**
+     * Resolves the host of an element together with its cached dialect profile, so a query looks up the injection
+     * context once.
+     *
+     * @return the host, or null if there is none; the profile is null if the element is not in a {@link RegExpFile},
+     * in which case the host is asked directly
+     */
+    @Nullable
+    private static RegExpFile.ResolvedHost findHost(@Nullable final PsiElement element) {
+        final PsiFile file = element == null ? null : element.getContainingFile();
+        if (file instanceof RegExpFile regExpFile) {
+            final RegExpFile.ResolvedHost resolved = regExpFile.getResolvedHost();
+            return resolved.host() == null ? null : resolved;
+        }
+        final PsiElement context = file == null ? null : file.getContext();
+        final RegExpLanguageHost host = RegExpLanguageHost.findRegExpHostForContext(context);
+        return host == null ? null : new RegExpFile.ResolvedHost(context, host, null);
+    }
+
+    @Nonnull
+    private static ThreeState supports(@Nonnull RegExpFile.ResolvedHost resolved, @Nonnull Feature feature) {
+        final RegExpDialectProfile profile = resolved.profile();
+        return profile == null ? ThreeState.UNSURE : profile.supports(feature);
+    }
+
     public boolean isRedundantEscape(@Nonnull final RegExpChar ch, @Nonnull final String text) {
         if (text.length() <= 1) {
             return false;
         }
-        final RegExpLanguageHost host = findRegExpHost(ch);
-        if (host != null) {
+        final RegExpFile.ResolvedHost resolved = findHost(ch);
+        if (resolved != null) {
             final char c = text.charAt(1);
-            return !host.characterNeedsEscaping(c);
+            final RegExpDialectProfile profile = resolved.profile();
+            final ThreeState needsEscaping = profile == null ? ThreeState.UNSURE : profile.characterNeedsEscaping(c);
+            return needsEscaping != ThreeState.UNSURE ? !needsEscaping.toBoolean() : !resolved.host().characterNeedsEscaping(c);
         }
         else {
             return !("\\]".equals(text) || "\\}".equals(text));
         }
     }
 
+    /**
+     * @return true if the character has to be escaped to match literally outside a character class, because it's
+     * a meta character or the host requires it
+     */
+    public boolean characterNeedsEscaping(char c, @Nullable final PsiElement context) {
+        if (META_CHARACTERS.indexOf(c) >= 0) {
+            return true;
+        }
+        final RegExpFile.ResolvedHost resolved = findHost(context);
+        if (resolved == null) {
+            return false;
+        }
+        final RegExpDialectProfile profile = resolved.profile();
+        final ThreeState needsEscaping = profile == null ? ThreeState.UNSURE : profile.characterNeedsEscaping(c);
+        return needsEscaping != ThreeState.UNSURE ? needsEscaping.toBoolean() : resolved.host().characterNeedsEscaping(c);
+    }
+
     public boolean supportsInlineOptionFlag(char flag, PsiElement context) {
         final RegExpLanguageHost host = findRegExpHost(context);
         return host == null || host.supportsInlineOptionFlag(flag, context);
     }
 
     public boolean supportsExtendedHexCharacter(@Nullable RegExpChar regExpChar) {
-        final RegExpLanguageHost host = findRegExpHost(regExpChar);
+        final RegExpFile.ResolvedHost resolved = findHost(regExpChar);
+        if (resolved == null) {
+            return false;
+        }
+        final ThreeState supported = supports(resolved, Feature.EXTENDED_HEX_CHARACTER);
+        if (supported != ThreeState.UNSURE) {
+            return supported.toBoolean();
+        }
         try {
-            return host != null && host.supportsExtendedHexCharacter(regExpChar);
+            return resolved.host().supportsExtendedHexCharacter(regExpChar);
         }
         catch (AbstractMethodError e) {
             // supportsExtendedHexCharacter not present
@@ -68,19 +124,37 @@ public final class RegExpLanguageHosts {
     }
 
     public boolean supportsLiteralBackspace(@Nullable RegExpChar regExpChar) {
-        final RegExpLanguageHost host = findRegExpHost(regExpChar);
-        return host != null && host.supportsLiteralBackspace(regExpChar);
+        final RegExpFile.ResolvedHost resolved = findHost(regExpChar);
+        if (resolved == null) {
+            return false;
+        }
+        final ThreeState supported = supports(resolved, Feature.LITERAL_BACKSPACE);
+        return supported != ThreeState.UNSURE ? supported.toBoolean() : resolved.host().supportsLiteralBackspace(regExpChar);
     }
 
     public boolean supportsNamedGroupSyntax(@Nullable final RegExpGroup group) {
-        final RegExpLanguageHost host = findRegExpHost(group);
-        return host != null && host.supportsNamedGroupSyntax(group);
+        final RegExpFile.ResolvedHost resolved = findHost(group);
+        if (resolved == null) {
+            return false;
+        }
+        final RegExpDialectProfile profile = resolved.profile();
+        final ThreeState supported = profile == null ? ThreeState.UNSURE : profile.supportsNamedGroupSyntax(group.getType());
+        return supported != ThreeState.UNSURE ? supported.toBoolean() : resolved.host().supportsNamedGroupSyntax(group);
     }
 
     public boolean supportsNamedGroupRefSyntax(@Nullable final RegExpNamedGroupRef ref) {
-        final RegExpLanguageHost host = findRegExpHost(ref);
+        final RegExpFile.ResolvedHost resolved = findHost(ref);
+        if (resolved == null) {
+            return false;
+        }
+        final Feature feature = ref.isPythonNamedGroupRef() ? Feature.PYTHON_NAMED_GROUP_REFS
+            : ref.isRubyNamedGroupRef() ? Feature.RUBY_NAMED_GROUP_REFS : Feature.NAMED_GROUP_REFS;
+        final ThreeState supported = supports(resolved, feature);
+        if (supported != ThreeState.UNSURE) {
+            return supported.toBoolean();
+        }
         try {
-            return host != null && host.supportsNamedGroupRefSyntax(ref);
+            return resolved.host().supportsNamedGroupRefSyntax(ref);
         }
         catch (AbstractMethodError e) {
             // supportsNamedGroupRefSyntax() not present
@@ -94,28 +168,50 @@ public final class RegExpLanguageHosts {
     }
 
     public boolean supportsPerl5EmbeddedComments(@Nullable final PsiComment comment) {
-        final RegExpLanguageHost host = findRegExpHost(comment);
-        return host != null && host.supportsPerl5EmbeddedComments();
+        final RegExpFile.ResolvedHost resolved = findHost(comment);
+        if (resolved == null) {
+            return false;
+        }
+        final ThreeState supported = supports(resolved, Feature.PERL5_EMBEDDED_COMMENTS);
+        return supported != ThreeState.UNSURE ? supported.toBoolean() : resolved.host().supportsPerl5EmbeddedComments();
     }
 
     public boolean supportsConditionals(@Nullable final RegExpConditional condRef) {
-        final RegExpLanguageHost host = findRegExpHost(condRef);
-        return host != null && host.supportsPythonConditionalRefs();
+        final RegExpFile.ResolvedHost resolved = findHost(condRef);
+        if (resolved == null) {
+            return false;
+        }
+        final ThreeState supported = supports(resolved, Feature.CONDITIONALS);
+        return supported != ThreeState.UNSURE ? supported.toBoolean() : resolved.host().supportsPythonConditionalRefs();
     }
 
     public boolean supportsPossessiveQuantifiers(final @Nullable RegExpElement context) {
-        final RegExpLanguageHost host = findRegExpHost(context);
-        return host == null || host.supportsPossessiveQuantifiers();
+        final RegExpFile.ResolvedHost resolved = findHost(context);
+        if (resolved == null) {
+            return true;
+        }
+        final ThreeState supported = supports(resolved, Feature.POSSESSIVE_QUANTIFIERS);
+        return supported != ThreeState.UNSURE ? supported.toBoolean() : resolved.host().supportsPossessiveQuantifiers();
     }
 
     public boolean supportsBoundary(@Nullable final RegExpBoundary boundary) {
-        final RegExpLanguageHost host = findRegExpHost(boundary);
-        return host == null || host.supportsBoundary(boundary);
+        final RegExpFile.ResolvedHost resolved = findHost(boundary);
+        if (resolved == null) {
+            return true;
+        }
+        final RegExpDialectProfile profile = resolved.profile();
+        final ThreeState supported = profile == null ? ThreeState.UNSURE : profile.supportsBoundary(boundary.getType());
+        return supported != ThreeState.UNSURE ? supported.toBoolean() : resolved.host().supportsBoundary(boundary);
     }
 
     public boolean supportsSimpleClass(@Nullable final RegExpSimpleClass simpleClass) {
-        final RegExpLanguageHost host = findRegExpHost(simpleClass);
-        return host == null || host.supportsSimpleClass(simpleClass);
+        final RegExpFile.ResolvedHost resolved = findHost(simpleClass);
+        if (resolved == null) {
+            return true;
+        }
+        final RegExpDialectProfile profile = resolved.profile();
+        final ThreeState supported = profile == null ? ThreeState.UNSURE : profile.supportsSimpleClass(simpleClass.getKind());
+        return supported != ThreeState.UNSURE ? supported.toBoolean() : resolved.host().supportsSimpleClass(simpleClass);
     }
 
     public boolean isValidCategory(@Nonnull final PsiElement element, @Nonnull String category) {
@@ -124,8 +220,12 @@ public final class RegExpLanguageHosts {
     }
 
     public boolean supportsNamedCharacters(@Nonnull final RegExpNamedCharacter namedCharacter) {
-        final RegExpLanguageHost host = findRegExpHost(namedCharacter);
-        return host != null && host.supportsNamedCharacters(namedCharacter);
+        final RegExpFile.ResolvedHost resolved = findHost(namedCharacter);
+        if (resolved == null) {
+            return false;
+        }
+        final ThreeState supported = supports(resolved, Feature.NAMED_CHARACTERS);
+        return supported != ThreeState.UNSURE ? supported.toBoolean() : resolved.host().supportsNamedCharacters(namedCharacter);
     }
 
     public boolean isValidNamedCharacter(@Nonnull final RegExpNamedCharacter namedCharacter) {
@@ -156,16 +256,32 @@ public final class RegExpLanguageHosts {
     }
 
     public RegExpLanguageHost.Lookbehind supportsLookbehind(RegExpGroup group) {
-        final RegExpLanguageHost host = findRegExpHost(group);
-        if (host == null) {
+        final RegExpFile.ResolvedHost resolved = findHost(group);
+        if (resolved == null) {
             return RegExpLanguageHost.Lookbehind.FULL;
         }
-        return host.supportsLookbehind(group);
+        final RegExpDialectProfile profile = resolved.profile();
+        final RegExpLanguageHost.Lookbehind lookbehind = profile == null ? null : profile.getLookbehind();
+        return lookbehind != null ? lookbehind : resolved.host().supportsLookbehind(group);
     }
 
     public boolean isDuplicateGroupNamesAllowed(final @Nonnull RegExpGroup group) {
+        final RegExpFile.ResolvedHost resolved = findHost(group);
+        if (resolved == null) {
+            return true;
+        }
+        final ThreeState supported = supports(resolved, Feature.DUPLICATE_GROUP_NAMES);
+        return supported != ThreeState.UNSURE ? supported.toBoolean() : resolved.host().isDuplicateGroupNamesAllowed(group);
+    }
+
+    /**
+     * @return whether the code around the regexp reads what the capturing group matched; {@link ThreeState#NO}
+     * for a regexp without host
+     */
+    @Nonnull
+    public ThreeState isGroupUsedByHost(@Nonnull final RegExpGroup group) {
         final RegExpLanguageHost host = findRegExpHost(group);
-        return host == null || host.isDuplicateGroupNamesAllowed(group);
+        return host == null ? ThreeState.NO : host.isGroupUsedByHost(group);
     }
 
     public boolean supportConditionalCondition(RegExpAtom condition) {
@@ -179,8 +295,12 @@ public final class RegExpLanguageHosts {
     }
 
     public boolean supportsPropertySyntax(@Nonnull PsiElement context) {
-        RegExpLanguageHost host = findRegExpHost(context);
-        return host == null || host.supportsPropertySyntax(context);
+        final RegExpFile.ResolvedHost resolved = findHost(context);
+        if (resolved == null) {
+            return true;
+        }
+        final ThreeState supported = supports(resolved, Feature.PROPERTY_SYNTAX);
+        return supported != ThreeState.UNSURE ? supported.toBoolean() : resolved.host().supportsPropertySyntax(context);
     }
 
     public boolean isValidPropertyValue(@Nonnull PsiElement element, @Nonnull String propertyName, @Nonnull String propertyValue) {
@@ -19,18 +19,49 @@ import consulo.language.ast.IElementType;
 import consulo.language.lexer.FlexAdapter;
 import consulo.language.lexer.Lexer;
 import consulo.language.lexer.LookAheadLexer;
+import consulo.language.lexer.RestartableLexer;
+import consulo.language.lexer.TokenIterator;
 import jakarta.annotation.Nonnull;
 
 import java.util.EnumSet;
 
-public class RegExpLexer extends LookAheadLexer {
+/**
+ * Lexing can be restarted at the first token of every look-ahead, from the state of that token, as long as the state
+ * holds the nested lexical states and the capturing group count exactly, see {@link FlexRegExpLexer}.
+ */
+public class RegExpLexer extends LookAheadLexer implements RestartableLexer {
+    private int myLookAheadStart;
+    private int myLookAheadState;
 
     public RegExpLexer(EnumSet<RegExpCapability> capabilities) {
         super(new FlexRegExpLexer(capabilities));
     }
 
+    @Override
+    public void start(@Nonnull CharSequence buffer, int startOffset, int endOffset, int initialState, TokenIterator tokenIterator) {
+        start(buffer, startOffset, endOffset, initialState);
+    }
+
+    @Override
+    public int getStartState() {
+        return 0;
+    }
+
+    @Override
+    public boolean isRestartableState(int state) {
+        return (state & FlexRegExpLexer.NOT_RESTARTABLE) == 0;
+    }
+
+    @Override
+    public int getState() {
+        // tokens after the first of a look-ahead can't be lexed on their own
+        return getTokenStart() == myLookAheadStart ? myLookAheadState : myLookAheadState | FlexRegExpLexer.NOT_RESTARTABLE;
+    }
+
     @Override
     protected void lookAhead(@Nonnull Lexer baseLexer) {
+        myLookAheadStart = baseLexer.getTokenStart();
+        myLookAheadState = baseLexer.getState();
         final IElementType tokenType = baseLexer.getTokenType();
         if (!RegExpTT.CHARACTERS.contains(tokenType) && tokenType != RegExpTT.RBRACE) {
             advanceLexer(baseLexer);
@@ -44,11 +75,22 @@ public class RegExpLexer extends LookAheadLexer {
     }
 
     static class FlexRegExpLexer extends FlexAdapter {
+        // Layout of the state int, from the least significant bit: the lexical state, comment mode, the nesting depth,
+        // the innermost nested states, the number of capturing groups seen so far and whether the state is exact.
+        // Lexical states are even numbers, so they are stored halved. Deeper nesting is restored as YYINITIAL and the
+        // group count saturates; such states are marked as NOT_RESTARTABLE, as lexing from them could differ.
+        private static final int STATE_BITS = 5;
+        private static final int STATE_MASK = (1 << STATE_BITS) - 1;
+        private static final int COMMENT_MODE = 1 << STATE_BITS;
+        private static final int DEPTH_SHIFT = STATE_BITS + 1;
+        private static final int MAX_DEPTH = 3;
+        private static final int STACK_SHIFT = DEPTH_SHIFT + 2;
+        private static final int CAPTURING_GROUPS_SHIFT = STACK_SHIFT + MAX_DEPTH * STATE_BITS;
+        private static final int MAX_CAPTURING_GROUPS = 0x7F;
+        static final int NOT_RESTARTABLE = 1 << (CAPTURING_GROUPS_SHIFT + 7);
 
-        private static final int COMMENT_MODE = 1 << 14;
-        private static final int NESTED_STATES = 1 << 15;
-        private static final int CAPTURING_GROUPS = 1 << 16;
         private final EnumSet<RegExpCapability> myCapabilities;
+        private int myNestedState;
 
         FlexRegExpLexer(EnumSet<RegExpCapability> capabilities) {
             super(new _RegExLexer(capabilities));
@@ -57,8 +99,23 @@ public class RegExpLexer extends LookAheadLexer {
 
         @Override
         public void start(@Nonnull CharSequence buffer, int startOffset, int endOffset, int initialState) {
-            getFlex().commentMode = (initialState & COMMENT_MODE) != 0 || myCapabilities.contains(RegExpCapability.COMMENT_MODE);
-            super.start(buffer, startOffset, endOffset, initialState & ~COMMENT_MODE);
+            super.start(buffer, startOffset, endOffset, (initialState & STATE_MASK) << 1);
+            final _RegExLexer flex = getFlex();
+            flex.commentMode = (initialState & COMMENT_MODE) != 0 || myCapabilities.contains(RegExpCapability.COMMENT_MODE);
+            final int depth = (initialState >>> DEPTH_SHIFT) & MAX_DEPTH;
+            for (int i = 0; i < depth; i++) {
+                flex.states[i] = ((initialState >>> (STACK_SHIFT + i * STATE_BITS)) & STATE_MASK) << 1;
+            }
+            flex.stateDepth = depth;
+            flex.capturingGroupCount = (initialState >>> CAPTURING_GROUPS_SHIFT) & MAX_CAPTURING_GROUPS;
+            myNestedState = encodeNestedState(flex);
+        }
+
+        @Override
+        public void advance() {
+            super.advance();
+            // the next token is not located yet, so the flex lexer is still in the state the token starts in
+            myNestedState = encodeNestedState(getFlex());
         }
 
         @Override
@@ -68,16 +125,23 @@ public class RegExpLexer extends LookAheadLexer {
 
         @Override
         public int getState() {
-            final _RegExLexer flex = getFlex();
-            int state = super.getState();
+            return (super.getState() >> 1) | myNestedState;
+        }
+
+        private static int encodeNestedState(_RegExLexer flex) {
+            int state = 0;
             if (flex.commentMode) {
                 state |= COMMENT_MODE;
             }
-            if (!flex.states.isEmpty()) {
-                state |= NESTED_STATES;
+            final int depth = Math.min(flex.stateDepth, MAX_DEPTH);
+            state |= depth << DEPTH_SHIFT;
+            for (int i = 0; i < depth; i++) {
+                final int nested = flex.states[flex.stateDepth - depth + i];
+                state |= (nested >> 1) << (STACK_SHIFT + i * STATE_BITS);
             }
-            if (flex.capturingGroupCount != 0) {
-                state |= CAPTURING_GROUPS;
+            state |= Math.min(flex.capturingGroupCount, MAX_CAPTURING_GROUPS) << CAPTURING_GROUPS_SHIFT;
+            if (flex.stateDepth > MAX_DEPTH || flex.capturingGroupCount > MAX_CAPTURING_GROUPS) {
+                state |= NOT_RESTARTABLE;
             }
             return state;
         }
@@ -15,6 +15,7 @@
  */
 package org.intellij.lang.regexp;
 
+import consulo.annotation.access.RequiredReadAction;
 import consulo.annotation.component.ComponentScope;
 import consulo.annotation.component.ExtensionAPI;
 import consulo.application.Application;
@@ -23,8 +24,10 @@ import consulo.language.Language;
 import consulo.language.extension.ByLanguageValue;
 import consulo.language.extension.LanguageExtension;
 import consulo.language.extension.LanguageOneToMany;
+import consulo.language.inject.InjectedLanguageManagerUtil;
 import consulo.language.psi.PsiElement;
 import consulo.language.psi.PsiFile;
+import consulo.language.psi.PsiLanguageInjectionHost;
 import org.intellij.lang.annotations.MagicConstant;
 
 import jakarta.annotation.Nonnull;
@@ -48,6 +51,23 @@ public interface RegExpModifierProvider extends LanguageExtension {
         return value.requiredGet(language);
     }
 
+    /**
+     * @return the {@link Pattern} flags the host of an injected regexp compiles it with, or 0
+     */
+    @RequiredReadAction
+    static int resolveFlags(@Nonnull PsiFile regexpFile) {
+        final PsiLanguageInjectionHost host = InjectedLanguageManagerUtil.findInjectionHost(regexpFile);
+        if (host != null) {
+            for (RegExpModifierProvider provider : forLanguage(host.getLanguage())) {
+                final int flags = provider.getFlags(host, regexpFile);
+                if (flags > 0) {
+                    return flags;
+                }
+            }
+        }
+        return 0;
+    }
+
     @MagicConstant(flagsFromClass = Pattern.class)
     int getFlags(PsiElement elementInHost, PsiFile regexp);
 }
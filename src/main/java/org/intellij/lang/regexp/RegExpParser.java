@@ -27,6 +27,8 @@ import jakarta.annotation.Nonnull;
 import jakarta.annotation.Nullable;
 import org.intellij.lang.regexp.psi.impl.RegExpCharImpl;
 
+import java.util.ArrayDeque;
+import java.util.Deque;
 import java.util.EnumSet;
 
 public class RegExpParser implements PsiParser {
@@ -50,6 +52,25 @@ public class RegExpParser implements PsiParser {
         rootMarker.done(root);
     }
 
+    /**
+     * Parses the text of a single character class or group that is reparsed on its own,
+     * see {@link RegExpReparseableElementType}.
+     */
+    void parseReparseable(IElementType root, PsiBuilder builder) {
+        final PsiBuilder.Marker rootMarker = builder.mark();
+        if (root == RegExpElementTypes.CLASS) {
+            parseClass(builder, null);
+        }
+        else {
+            parseGroupStart(builder, builder.getTokenType());
+            parsePattern(builder, new PatternFrame(FrameKind.GROUP, null));
+        }
+        while (!builder.eof()) {
+            patternExpected(builder);
+        }
+        rootMarker.done(root);
+    }
+
     @Override
     public @Nonnull ASTNode parse(@Nonnull IElementType root, @Nonnull PsiBuilder builder, @Nonnull LanguageVersion languageVersion) {
         parseLight(root, builder);
@@ -59,63 +80,167 @@ public class RegExpParser implements PsiParser {
 
     /**
      * PATTERN ::= BRANCH "|" PATTERN | BRANCH
+     * BRANCH  ::= ATOM BRANCH | ""
+     * ATOM    ::= CLOSURE | GROUP
+     * CLOSURE ::= GROUP QUANTIFIER
+     * <p>
+     * Groups nest patterns inside patterns. Instead of recursing into each nested pattern, the patterns that are still
+     * open are kept on an explicit stack, so arbitrarily deep nesting can't overflow the thread stack.
      */
     protected void parsePattern(PsiBuilder builder) {
-        final PsiBuilder.Marker marker = builder.mark();
+        parsePattern(builder, new PatternFrame(FrameKind.ROOT, null));
+    }
 
-        parseBranch(builder);
+    private void parsePattern(PsiBuilder builder, PatternFrame bottom) {
+        final Deque<PatternFrame> stack = new ArrayDeque<>();
+        PatternFrame frame = bottom;
+        frame.startPattern(builder);
+        while (true) {
+            final PatternFrame nested = openGroup(builder, frame, stack);
+            if (nested != null) {
+                frame = nested;
+                continue;
+            }
+            final PsiBuilder.Marker term = parseTerm(builder);
+            if (term != null) {
+                parseClosure(builder, term);
+                frame.myHasAtom = true;
+                continue;
+            }
+            if (!frame.myHasAtom) {
+                final IElementType token = builder.getTokenType();
+                if (token != RegExpTT.GROUP_END && token != RegExpTT.UNION && token != null) {
+                    patternExpected(builder);
+                    continue;
+                }
+                // empty branches are allowed
+            }
+            frame.myBranchMarker.done(RegExpElementTypes.BRANCH);
 
-        while (builder.getTokenType() == RegExpTT.UNION) {
-            builder.advanceLexer();
-            parseBranch(builder);
-        }
+            if (frame.myKind == FrameKind.CONDITIONAL) {
+                if (++frame.myBranchCount == 1 && builder.getTokenType() == RegExpTT.UNION) {
+                    builder.advanceLexer();
+                    frame.startBranch(builder);
+                    continue;
+                }
+                if (!checkMatches(builder, RegExpTT.GROUP_END, RegExpLocalize.parseErrorUnclosedGroup())) {
+                    frame.myKind = FrameKind.CONDITIONAL_TAIL;
+                    frame.startPattern(builder);
+                    continue;
+                }
+                frame.myMarker.done(RegExpElementTypes.CONDITIONAL);
+            }
+            else {
+                if (builder.getTokenType() == RegExpTT.UNION) {
+                    builder.advanceLexer();
+                    frame.startBranch(builder);
+                    continue;
+                }
+                frame.myPatternMarker.done(RegExpElementTypes.PATTERN);
+                closeFrame(builder, frame);
+            }
 
-        marker.done(RegExpElementTypes.PATTERN);
+            if (stack.isEmpty()) {
+                return;
+            }
+            final PatternFrame closed = frame;
+            frame = stack.pop();
+            if (closed.myKind == FrameKind.CONDITION_GROUP || closed.myKind == FrameKind.CONDITION_REFERENCE) {
+                frame.startBranch(builder);
+            }
+            else {
+                parseClosure(builder, closed.myMarker);
+                frame.myHasAtom = true;
+            }
+        }
     }
 
-    /**
-     * BRANCH  ::= ATOM BRANCH | ""
-     */
-    private void parseBranch(PsiBuilder builder) {
-        final PsiBuilder.Marker marker = builder.mark();
-
-        while (!parseAtom(builder)) {
-            final IElementType token = builder.getTokenType();
-            if (token == RegExpTT.GROUP_END || token == RegExpTT.UNION || token == null) {
-                // empty branches are allowed
-                marker.done(RegExpElementTypes.BRANCH);
-                return;
+    private static void closeFrame(PsiBuilder builder, PatternFrame frame) {
+        switch (frame.myKind) {
+            case GROUP, CONDITION_GROUP -> {
+                checkMatches(builder, RegExpTT.GROUP_END, RegExpLocalize.parseErrorUnclosedGroup());
+                if (frame.myMarker != null) {
+                    frame.myMarker.done(RegExpElementTypes.GROUP);
+                }
+            }
+            case CONDITIONAL_TAIL -> {
+                checkMatches(builder, RegExpTT.GROUP_END, RegExpLocalize.parseErrorUnclosedGroup());
+                frame.myMarker.done(RegExpElementTypes.CONDITIONAL);
+            }
+            case CONDITION_REFERENCE -> {
+                checkMatches(builder, frame.myEndToken, RegExpLocalize.parseErrorUnclosedGroupReference());
+                frame.myMarker.drop();
+            }
+            default -> {
             }
-            patternExpected(builder);
         }
+    }
+
+    private void parseClosure(PsiBuilder builder, PsiBuilder.Marker marker) {
+        final PsiBuilder.Marker closure = marker.precede();
 
-        //noinspection StatementWithEmptyBody
-        while (parseAtom(builder)) {
+        if (parseQuantifier(builder)) {
+            closure.done(RegExpElementTypes.CLOSURE);
         }
+        else {
+            closure.drop();
+        }
+    }
 
-        marker.done(RegExpElementTypes.BRANCH);
+    private enum FrameKind {
+        /**
+         * the outermost pattern
+         */
+        ROOT,
+        /**
+         * pattern of a group
+         */
+        GROUP,
+        /**
+         * branches of a conditional, "(?(" CONDITION ")" BRANCH "|" BRANCH ")"
+         */
+        CONDITIONAL,
+        /**
+         * rest of a conditional with more than two branches, parsed as a pattern for error recovery
+         */
+        CONDITIONAL_TAIL,
+        /**
+         * lookaround group used as the condition of a conditional
+         */
+        CONDITION_GROUP,
+        /**
+         * invalid group reference used as the condition of a conditional, parsed as a pattern for error recovery
+         */
+        CONDITION_REFERENCE
     }
 
     /**
-     * ATOM        ::= CLOSURE | GROUP
-     * CLOSURE     ::= GROUP QUANTIFIER
+     * A pattern, or the branches of a conditional, which is being parsed.
      */
-    private boolean parseAtom(PsiBuilder builder) {
-        final PsiBuilder.Marker marker = parseGroup(builder);
+    private static final class PatternFrame {
+        private FrameKind myKind;
+        private final PsiBuilder.Marker myMarker;
+        private IElementType myEndToken;
+        private PsiBuilder.Marker myPatternMarker;
+        private PsiBuilder.Marker myBranchMarker;
+        private boolean myHasAtom;
+        private int myBranchCount;
 
-        if (marker == null) {
-            return false;
+        private PatternFrame(FrameKind kind, @Nullable PsiBuilder.Marker marker) {
+            myKind = kind;
+            myMarker = marker;
         }
-        final PsiBuilder.Marker marker2 = marker.precede();
 
-        if (parseQuantifier(builder)) {
-            marker2.done(RegExpElementTypes.CLOSURE);
-        }
-        else {
-            marker2.drop();
+        private PatternFrame startPattern(PsiBuilder builder) {
+            myPatternMarker = builder.mark();
+            startBranch(builder);
+            return this;
         }
 
-        return true;
+        private void startBranch(PsiBuilder builder) {
+            myBranchMarker = builder.mark();
+            myHasAtom = false;
+        }
     }
 
     /**
@@ -204,74 +329,109 @@ public class RegExpParser implements PsiParser {
      * INTERSECTION     ::= INTERSECTION "&&" CLASSDEF | CLASSDEF
      * CLASSDEF         ::= CLASS | SIMPLE_CLASSDEF | ""
      * SIMPLE_CLASSDEF  ::= CHARACTER | CHARACTER "-" CLASSDEF
+     * <p>
+     * Nested classes are kept on an explicit stack, like nested groups.
      */
     private PsiBuilder.Marker parseClass(PsiBuilder builder) {
-        final PsiBuilder.Marker marker = builder.mark();
-        builder.advanceLexer();
-
-        if (builder.getTokenType() == RegExpTT.CARET) {
-            builder.advanceLexer();
-        }
-        parseClassIntersection(builder);
-
-        checkMatches(builder, RegExpTT.CLASS_END, RegExpLocalize.parseErrorUnclosedCharacterClass());
-        marker.done(RegExpElementTypes.CLASS);
-        return marker;
+        return parseClass(builder, builder.mark());
     }
 
-    private void parseClassIntersection(PsiBuilder builder) {
-        final PsiBuilder.Marker marker = builder.mark();
+    private PsiBuilder.Marker parseClass(PsiBuilder builder, @Nullable PsiBuilder.Marker marker) {
+        final Deque<ClassFrame> stack = new ArrayDeque<>();
+        ClassFrame frame = new ClassFrame(builder, marker);
+        while (true) {
+            if (builder.getTokenType() == RegExpTT.CLASS_BEGIN) {
+                stack.push(frame);
+                frame = new ClassFrame(builder, builder.mark());
+                continue;
+            }
+            if (parseClassdefItem(builder)) {
+                frame.myCount++;
+                continue;
+            }
 
-        boolean left = parseClassdef(builder);
-        if (RegExpTT.ANDAND != builder.getTokenType()) {
-            marker.drop();
-            return;
-        }
-        while (RegExpTT.ANDAND == builder.getTokenType()) {
-            builder.advanceLexer();
-            final boolean right = parseClassdef(builder);
-            if (!left && !right) {
+            // end of CLASSDEF
+            final boolean defined = frame.myCount > 0;
+            frame.myCount = 0;
+            if (frame.myIntersection && !frame.myLeft && !defined) {
                 builder.error(RegExpLocalize.parseErrorCharacterClassExpected());
             }
-            left = right;
-        }
-        marker.done(RegExpElementTypes.INTERSECTION);
-    }
-
-    private boolean parseClassdef(PsiBuilder builder) {
-        int count = 0;
-        while (true) {
-            final IElementType token = builder.getTokenType();
-            if (token == RegExpTT.CLASS_BEGIN) {
-                parseClass(builder);
+            frame.myLeft = defined;
+            if (builder.getTokenType() == RegExpTT.ANDAND) {
+                frame.myIntersection = true;
+                builder.advanceLexer();
+                continue;
             }
-            else if (token == RegExpTT.BRACKET_EXPRESSION_BEGIN) {
-                parseBracketExpression(builder);
+
+            if (frame.myIntersection) {
+                frame.myIntersectionMarker.done(RegExpElementTypes.INTERSECTION);
             }
-            else if (token == RegExpTT.MYSQL_CHAR_BEGIN) {
-                parseMysqlCharExpression(builder);
+            else {
+                frame.myIntersectionMarker.drop();
             }
-            else if (token == RegExpTT.MYSQL_CHAR_EQ_BEGIN) {
-                parseMysqlCharEqExpression(builder);
+            checkMatches(builder, RegExpTT.CLASS_END, RegExpLocalize.parseErrorUnclosedCharacterClass());
+            if (frame.myMarker != null) {
+                frame.myMarker.done(RegExpElementTypes.CLASS);
             }
-            else if (RegExpTT.CHARACTERS.contains(token) || token == RegExpTT.NAMED_CHARACTER) {
-                parseCharacterRange(builder);
+            if (stack.isEmpty()) {
+                return frame.myMarker;
             }
-            else if (token == RegExpTT.CHAR_CLASS) {
-                final PsiBuilder.Marker m = builder.mark();
+            frame = stack.pop();
+            frame.myCount++;
+        }
+    }
+
+    /**
+     * A character class which is being parsed.
+     */
+    private static final class ClassFrame {
+        private final PsiBuilder.Marker myMarker;
+        private final PsiBuilder.Marker myIntersectionMarker;
+        private boolean myIntersection;
+        private boolean myLeft;
+        private int myCount;
+
+        private ClassFrame(PsiBuilder builder, @Nullable PsiBuilder.Marker marker) {
+            myMarker = marker;
+            builder.advanceLexer();
+            if (builder.getTokenType() == RegExpTT.CARET) {
                 builder.advanceLexer();
-                m.done(RegExpElementTypes.SIMPLE_CLASS);
-            }
-            else if (token == RegExpTT.PROPERTY) {
-                parseProperty(builder);
             }
-            else {
-                return count > 0;
-            }
-            count++;
+            myIntersectionMarker = builder.mark();
         }
     }
 
+    /**
+     * Parses a CLASSDEF item other than a nested class.
+     */
+    private boolean parseClassdefItem(PsiBuilder builder) {
+        final IElementType token = builder.getTokenType();
+        if (token == RegExpTT.BRACKET_EXPRESSION_BEGIN) {
+            parseBracketExpression(builder);
+        }
+        else if (token == RegExpTT.MYSQL_CHAR_BEGIN) {
+            parseMysqlCharExpression(builder);
+        }
+        else if (token == RegExpTT.MYSQL_CHAR_EQ_BEGIN) {
+            parseMysqlCharEqExpression(builder);
+        }
+        else if (RegExpTT.CHARACTERS.contains(token) || token == RegExpTT.NAMED_CHARACTER) {
+            parseCharacterRange(builder);
+        }
+        else if (token == RegExpTT.CHAR_CLASS) {
+            final PsiBuilder.Marker m = builder.mark();
+            builder.advanceLexer();
+            m.done(RegExpElementTypes.SIMPLE_CLASS);
+        }
+        else if (token == RegExpTT.PROPERTY) {
+            parseProperty(builder);
+        }
+        else {
+            return false;
+        }
+        return true;
+    }
+
     private static void parseBracketExpression(PsiBuilder builder) {
         final PsiBuilder.Marker marker = builder.mark();
         builder.advanceLexer();
@@ -324,9 +484,9 @@ public class RegExpParser implements PsiParser {
                     minusMarker.done(RegExpElementTypes.CHAR);
                 }
                 else if (t == RegExpTT.CLASS_BEGIN) { // [a-[b]]\
+                    // the nested class is parsed as the next item of the enclosing class
                     rangeMarker.drop();
                     minusMarker.done(RegExpElementTypes.CHAR);
-                    parseClassdef(builder);
                 }
                 else {
                     minusMarker.drop();
@@ -341,46 +501,151 @@ public class RegExpParser implements PsiParser {
     }
 
     /**
-     * GROUP  ::= "(" PATTERN ")" | TERM
-     * TERM   ::= "." | "$" | "^" | CHAR | CLASS | BACKREF
+     * Starts parsing a group, conditional, or lookaround condition at the current token, pushing the enclosing frame.
+     *
+     * @return the frame for the pattern inside the group, or null if the current token doesn't start a group
      */
-    private @Nullable PsiBuilder.Marker parseGroup(PsiBuilder builder) {
+    private @Nullable PatternFrame openGroup(PsiBuilder builder, PatternFrame frame, Deque<PatternFrame> stack) {
         final IElementType type = builder.getTokenType();
 
-        final PsiBuilder.Marker marker = builder.mark();
+        if (RegExpTT.GROUPS.contains(type) || type == RegExpTT.PYTHON_NAMED_GROUP || type == RegExpTT.RUBY_NAMED_GROUP ||
+            type == RegExpTT.RUBY_QUOTED_NAMED_GROUP) {
+            final PsiBuilder.Marker marker = builder.mark();
+            parseGroupStart(builder, type);
+            stack.push(frame);
+            return new PatternFrame(FrameKind.GROUP, marker).startPattern(builder);
+        }
+        else if (type == RegExpTT.SET_OPTIONS && isOptionsGroup(builder)) {
+            final PsiBuilder.Marker marker = builder.mark();
+            builder.advanceLexer();
+            parseOptions(builder);
+            builder.advanceLexer(); // colon
+            stack.push(frame);
+            return new PatternFrame(FrameKind.GROUP, marker).startPattern(builder);
+        }
+        else if (type == RegExpTT.CONDITIONAL) {
+            final PsiBuilder.Marker marker = builder.mark();
+            builder.advanceLexer();
+            stack.push(frame);
+            final PatternFrame conditional = new PatternFrame(FrameKind.CONDITIONAL, marker);
+            final PatternFrame condition = openCondition(builder);
+            if (condition != null) {
+                stack.push(conditional);
+                return condition.startPattern(builder);
+            }
+            conditional.startBranch(builder);
+            return conditional;
+        }
+        return null;
+    }
+
+    /**
+     * Parses the opening token of a group starting with one of {@link RegExpTT#GROUPS} or a named group token,
+     * including the group name.
+     */
+    private static void parseGroupStart(PsiBuilder builder, IElementType type) {
+        builder.advanceLexer();
+        if (type == RegExpTT.PYTHON_NAMED_GROUP || type == RegExpTT.RUBY_NAMED_GROUP || type == RegExpTT.RUBY_QUOTED_NAMED_GROUP) {
+            checkMatches(builder, RegExpTT.NAME, RegExpLocalize.parseErrorGroupNameExpected());
+            checkMatches(builder, type == RegExpTT.RUBY_QUOTED_NAMED_GROUP ? RegExpTT.QUOTE : RegExpTT.GT,
+                RegExpLocalize.parseErrorUnclosedGroupName());
+        }
+    }
+
+    /**
+     * @return true, if the {@link RegExpTT#SET_OPTIONS} token at the current position starts a group like {@code (?i:...)}
+     * rather than just setting options
+     */
+    private static boolean isOptionsGroup(PsiBuilder builder) {
+        int steps = 1;
+        if (builder.lookAhead(steps) == RegExpTT.OPTIONS_ON) {
+            steps++;
+        }
+        if (builder.lookAhead(steps) == RegExpTT.OPTIONS_OFF) {
+            steps++;
+        }
+        return builder.lookAhead(steps) == RegExpTT.COLON;
+    }
 
-        if (RegExpTT.GROUPS.contains(type)) {
+    private static void parseOptions(PsiBuilder builder) {
+        if (builder.getTokenType() == RegExpTT.OPTIONS_ON) {
+            final PsiBuilder.Marker o = builder.mark();
             builder.advanceLexer();
-            parseGroupEnd(builder);
-            marker.done(RegExpElementTypes.GROUP);
+            o.done(RegExpElementTypes.OPTIONS);
         }
-        else if (type == RegExpTT.SET_OPTIONS) {
+        if (builder.getTokenType() == RegExpTT.OPTIONS_OFF) {
+            final PsiBuilder.Marker o = builder.mark();
             builder.advanceLexer();
+            o.done(RegExpElementTypes.OPTIONS);
+        }
+    }
 
-            if (builder.getTokenType() == RegExpTT.OPTIONS_ON) {
-                final PsiBuilder.Marker o = builder.mark();
-                builder.advanceLexer();
-                o.done(RegExpElementTypes.OPTIONS);
-            }
-            if (builder.getTokenType() == RegExpTT.OPTIONS_OFF) {
-                final PsiBuilder.Marker o = builder.mark();
-                builder.advanceLexer();
-                o.done(RegExpElementTypes.OPTIONS);
+    /**
+     * Parses the condition of a conditional.
+     *
+     * @return the frame for a pattern that still has to be parsed as part of the condition, or null if the condition is complete
+     */
+    private static @Nullable PatternFrame openCondition(PsiBuilder builder) {
+        final IElementType type = builder.getTokenType();
+        if (RegExpTT.LOOKAROUND_GROUPS.contains(type)) {
+            final PsiBuilder.Marker marker = builder.mark();
+            builder.advanceLexer();
+            return new PatternFrame(FrameKind.CONDITION_GROUP, marker);
+        }
+        if (RegExpTT.GROUP_BEGIN == type) {
+            IElementType lookAhead = builder.lookAhead(1);
+            if (RegExpTT.PCRE_CONDITIONS.contains(lookAhead)) {
+                parsePcreConditionalGroup(builder);
+                return null;
             }
+            return parseGroupReferenceCondition(builder, RegExpTT.GROUP_END);
+        }
+        else if (RegExpTT.QUOTED_CONDITION_BEGIN == type) {
+            return parseGroupReferenceCondition(builder, RegExpTT.QUOTED_CONDITION_END);
+        }
+        else if (RegExpTT.ANGLE_BRACKET_CONDITION_BEGIN == type) {
+            return parseGroupReferenceCondition(builder, RegExpTT.ANGLE_BRACKET_CONDITION_END);
+        }
+        return null;
+    }
 
-            if (builder.getTokenType() == RegExpTT.COLON) {
-                builder.advanceLexer();
-                parseGroupEnd(builder);
-                marker.done(RegExpElementTypes.GROUP);
-            }
-            else {
-                checkMatches(builder, RegExpTT.GROUP_END, RegExpLocalize.parseErrorUnclosedOptionsGroup());
-                marker.done(RegExpElementTypes.SET_OPTIONS);
-            }
+    private static @Nullable PatternFrame parseGroupReferenceCondition(PsiBuilder builder, IElementType endToken) {
+        final PsiBuilder.Marker marker = builder.mark();
+        builder.advanceLexer();
+        final IElementType next = builder.getTokenType();
+        if (next == RegExpTT.NAME || next == RegExpTT.NUMBER) {
+            builder.advanceLexer();
+            checkMatches(builder, endToken, RegExpLocalize.parseErrorUnclosedGroupReference());
+            marker.done(next == RegExpTT.NAME ? RegExpElementTypes.NAMED_GROUP_REF : RegExpElementTypes.BACKREF);
+            return null;
+        }
+        builder.error(RegExpLocalize.parseErrorGroupNameOrNumberExpected());
+        final PatternFrame frame = new PatternFrame(FrameKind.CONDITION_REFERENCE, marker);
+        frame.myEndToken = endToken;
+        return frame;
+    }
+
+    /**
+     * TERM   ::= "." | "$" | "^" | CHAR | CLASS | BACKREF
+     * <p>
+     * Parses an atom which doesn't contain a nested pattern.
+     *
+     * @return the marker of the term, or null if the current token doesn't start a term
+     */
+    private @Nullable PsiBuilder.Marker parseTerm(PsiBuilder builder) {
+        final IElementType type = builder.getTokenType();
+
+        final PsiBuilder.Marker marker = builder.mark();
+
+        if (type == RegExpTT.SET_OPTIONS) {
+            builder.advanceLexer();
+            parseOptions(builder);
+            checkMatches(builder, RegExpTT.GROUP_END, RegExpLocalize.parseErrorUnclosedOptionsGroup());
+            marker.done(RegExpElementTypes.SET_OPTIONS);
         }
         else if (RegExpTT.CHARACTERS.contains(type) || type == RegExpTT.NAMED_CHARACTER) {
             marker.drop();
-            parseCharacter(builder);
+            return parseCharacter(builder);
         }
         else if (type == RegExpTT.NUMBER || type == RegExpTT.COMMA) {
             // don't show these as errors
@@ -396,14 +661,6 @@ public class RegExpParser implements PsiParser {
             builder.advanceLexer();
             marker.done(RegExpElementTypes.BACKREF);
         }
-        else if (type == RegExpTT.PYTHON_NAMED_GROUP || type == RegExpTT.RUBY_NAMED_GROUP || type == RegExpTT.RUBY_QUOTED_NAMED_GROUP) {
-            builder.advanceLexer();
-            checkMatches(builder, RegExpTT.NAME, RegExpLocalize.parseErrorGroupNameExpected());
-            checkMatches(builder, type == RegExpTT.RUBY_QUOTED_NAMED_GROUP ? RegExpTT.QUOTE : RegExpTT.GT,
-                RegExpLocalize.parseErrorUnclosedGroupName());
-            parseGroupEnd(builder);
-            marker.done(RegExpElementTypes.GROUP);
-        }
         else if (type == RegExpTT.PYTHON_NAMED_GROUP_REF || type == RegExpTT.PCRE_RECURSIVE_NAMED_GROUP_REF) {
             parseNamedGroupRef(builder, marker, RegExpTT.GROUP_END);
         }
@@ -417,22 +674,9 @@ public class RegExpParser implements PsiParser {
         else if (type == RegExpTT.RUBY_QUOTED_NAMED_GROUP_REF || type == RegExpTT.RUBY_QUOTED_NAMED_GROUP_CALL) {
             parseNamedGroupRef(builder, marker, RegExpTT.QUOTE);
         }
-        else if (type == RegExpTT.CONDITIONAL) {
-            builder.advanceLexer();
-            parseCondition(builder);
-            parseBranch(builder);
-            if (builder.getTokenType() == RegExpTT.UNION) {
-                builder.advanceLexer();
-                parseBranch(builder);
-            }
-            if (!checkMatches(builder, RegExpTT.GROUP_END, RegExpLocalize.parseErrorUnclosedGroup())) {
-                parseGroupEnd(builder);
-            }
-            marker.done(RegExpElementTypes.CONDITIONAL);
-        }
         else if (type == RegExpTT.PROPERTY) {
             marker.drop();
-            parseProperty(builder);
+            return parseProperty(builder);
         }
         else if (type == RegExpTT.DOT || type == RegExpTT.CHAR_CLASS) {
             builder.advanceLexer();
@@ -449,68 +693,6 @@ public class RegExpParser implements PsiParser {
         return marker;
     }
 
-    private void parseCondition(PsiBuilder builder) {
-        final IElementType type = builder.getTokenType();
-        if (RegExpTT.LOOKAROUND_GROUPS.contains(type)) {
-            final PsiBuilder.Marker marker = builder.mark();
-            builder.advanceLexer();
-            parseGroupEnd(builder);
-            marker.done(RegExpElementTypes.GROUP);
-        }
-        else {
-            if (RegExpTT.GROUP_BEGIN == type) {
-                IElementType lookAhead = builder.lookAhead(1);
-                if (RegExpTT.PCRE_CONDITIONS.contains(lookAhead)) {
-                    parsePcreConditionalGroup(builder);
-                }
-                else {
-                    parseGroupReferenceCondition(builder, RegExpTT.GROUP_END);
-                }
-            }
-            else if (RegExpTT.QUOTED_CONDITION_BEGIN == type) {
-                parseGroupReferenceCondition(builder, RegExpTT.QUOTED_CONDITION_END);
-            }
-            else if (RegExpTT.ANGLE_BRACKET_CONDITION_BEGIN == type) {
-                parseGroupReferenceCondition(builder, RegExpTT.ANGLE_BRACKET_CONDITION_END);
-            }
-        }
-    }
-
-    private void parseGroupReferenceCondition(PsiBuilder builder, IElementType endToken) {
-        final PsiBuilder.Marker marker = builder.mark();
-        builder.advanceLexer();
-        final IElementType next = builder.getTokenType();
-        final Boolean named;
-        if (next == RegExpTT.NAME) {
-            builder.advanceLexer();
-            named = true;
-        }
-        else if (next == RegExpTT.NUMBER) {
-            builder.advanceLexer();
-            named = false;
-        }
-        else {
-            named = null;
-            builder.error(RegExpLocalize.parseErrorGroupNameOrNumberExpected());
-            parsePattern(builder);
-        }
-        checkMatches(builder, endToken, RegExpLocalize.parseErrorUnclosedGroupReference());
-        if (named == Boolean.TRUE) {
-            marker.done(RegExpElementTypes.NAMED_GROUP_REF);
-        }
-        else if (named == Boolean.FALSE) {
-            marker.done(RegExpElementTypes.BACKREF);
-        }
-        else {
-            marker.drop();
-        }
-    }
-
-    private void parseGroupEnd(PsiBuilder builder) {
-        parsePattern(builder);
-        checkMatches(builder, RegExpTT.GROUP_END, RegExpLocalize.parseErrorUnclosedGroup());
-    }
-
     private static void parsePcreConditionalGroup(PsiBuilder builder) {
         final PsiBuilder.Marker marker = builder.mark();
         builder.advanceLexer();
@@ -533,7 +715,7 @@ public class RegExpParser implements PsiParser {
         return AsciiUtil.isLetter(c);
     }
 
-    private void parseProperty(PsiBuilder builder) {
+    private PsiBuilder.Marker parseProperty(PsiBuilder builder) {
         final PsiBuilder.Marker marker = builder.mark();
         builder.advanceLexer();
         if (builder.getTokenType() == RegExpTT.CATEGORY_SHORT_HAND) {
@@ -581,9 +763,10 @@ public class RegExpParser implements PsiParser {
             }
         }
         marker.done(RegExpElementTypes.PROPERTY);
+        return marker;
     }
 
-    private static void parseCharacter(PsiBuilder builder) {
+    private static PsiBuilder.Marker parseCharacter(PsiBuilder builder) {
         final PsiBuilder.Marker marker = builder.mark();
         if (builder.getTokenType() == RegExpTT.NAMED_CHARACTER) {
             builder.advanceLexer();
@@ -613,6 +796,7 @@ public class RegExpParser implements PsiParser {
             builder.advanceLexer();
             marker.done(RegExpElementTypes.CHAR);
         }
+        return marker;
     }
 
     private static void patternExpected(PsiBuilder builder) {
@@ -46,21 +46,21 @@ public class RegExpParserDefinition implements ParserDefinition {
     @Nonnull
     @Override
     public Lexer createLexer(@Nonnull LanguageVersion languageVersion) {
-        EnumSet<RegExpCapability> capabilities = RegExpCapability.DEFAULT_CAPABILITIES;
-        if (languageVersion instanceof RegExpLanguageVersion regExpLanguageVersion) {
-            capabilities = regExpLanguageVersion.getCapabilities();
-        }
-        return new RegExpLexer(capabilities);
+        return new RegExpLexer(getCapabilities(languageVersion));
     }
 
     @Nonnull
     @Override
     public PsiParser createParser(@Nonnull LanguageVersion languageVersion) {
-        EnumSet<RegExpCapability> capabilities = RegExpCapability.DEFAULT_CAPABILITIES;
+        return new RegExpParser(getCapabilities(languageVersion));
+    }
+
+    @Nonnull
+    static EnumSet<RegExpCapability> getCapabilities(@Nonnull LanguageVersion languageVersion) {
         if (languageVersion instanceof RegExpLanguageVersion regExpLanguageVersion) {
-            capabilities = regExpLanguageVersion.getCapabilities();
+            return regExpLanguageVersion.getCapabilities();
         }
-        return new RegExpParser(capabilities);
+        return RegExpCapability.DEFAULT_CAPABILITIES;
     }
 
     @Nonnull
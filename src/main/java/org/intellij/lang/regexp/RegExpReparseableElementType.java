@@ -0,0 +1,155 @@
+/*
+ * Copyright 2013-2026 consulo.io
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.intellij.lang.regexp;
+
+import consulo.language.Language;
+import consulo.language.ast.ASTNode;
+import consulo.language.ast.IElementType;
+import consulo.language.ast.IReparseableElementType;
+import consulo.language.ast.TokenSet;
+import consulo.language.lexer.Lexer;
+import consulo.language.parser.PsiBuilder;
+import consulo.language.parser.PsiBuilderFactory;
+import consulo.language.psi.PsiElement;
+import consulo.language.psi.PsiFile;
+import consulo.language.version.LanguageVersion;
+import consulo.project.Project;
+import jakarta.annotation.Nonnull;
+import jakarta.annotation.Nullable;
+import org.intellij.lang.regexp.psi.impl.RegExpModel;
+
+import java.util.EnumSet;
+
+/**
+ * Element type of character classes and groups, which allows an edit inside a class or group to reparse only that
+ * subtree instead of the whole pattern.
+ * <p>
+ * The new text is accepted only if it lexes, under the capabilities of the file's dialect, to a single class or group
+ * whose brackets close exactly at the end of the text. The lexer tracks state that is not local to the subtree:
+ * the capturing group count decides whether {@code \1} is a back reference or an octal escape, and {@code (?x)}
+ * switches comment mode for the rest of the pattern. Edits in files where this state matters fall back to
+ * reparsing the whole file. Whether it matters is looked up in the file's cached {@link RegExpModel}, which was built
+ * from the tree before the edit, so the file isn't scanned again on every keystroke.
+ * <p>
+ * The condition of a conditional, e.g. {@code (DEFINE)} in {@code (?(DEFINE)...)} or {@code (?=x)} in
+ * {@code (?(?=x)a|b)}, is lexed in the lexer's condition states and is never reparsed on its own: relexed from the
+ * initial state it would pass as a plain group and become a capturing group.
+ */
+public class RegExpReparseableElementType extends IReparseableElementType {
+    private static final TokenSet LITERAL_TOKENS = TokenSet.orSet(RegExpTT.CHARACTERS,
+        TokenSet.create(RegExpTT.NAME, RegExpTT.COMMENT, RegExpTT.BAD_CHARACTER));
+    private static final TokenSet GROUP_START_TOKENS = TokenSet.orSet(RegExpTT.GROUPS,
+        TokenSet.create(RegExpTT.PYTHON_NAMED_GROUP, RegExpTT.RUBY_NAMED_GROUP, RegExpTT.RUBY_QUOTED_NAMED_GROUP));
+
+    RegExpReparseableElementType(String debugName) {
+        super(debugName, RegExpLanguage.INSTANCE);
+    }
+
+    @Override
+    public boolean isParsable(@Nullable ASTNode parent, @Nonnull CharSequence buffer, @Nonnull Language fileLanguage, @Nonnull Project project) {
+        if (parent == null || parent.getElementType() == RegExpElementTypes.CONDITIONAL || containsContextDependentSyntax(buffer)) {
+            return false;
+        }
+        final PsiFile file = parent.getPsi().getContainingFile();
+        if (file == null || RegExpModel.getInstance(file).hasContextDependentSyntax()) {
+            return false;
+        }
+        final Lexer lexer = new RegExpLexer(RegExpParserDefinition.getCapabilities(parent.getPsi().getLanguageVersion()));
+        lexer.start(buffer);
+        return this == RegExpElementTypes.CLASS ? isSingleClass(lexer) : isSingleGroup(lexer);
+    }
+
+    @Override
+    protected ASTNode doParseContents(@Nonnull ASTNode chameleon, @Nonnull PsiElement psi) {
+        final LanguageVersion languageVersion = psi.getLanguageVersion();
+        final EnumSet<RegExpCapability> capabilities = RegExpParserDefinition.getCapabilities(languageVersion);
+        final PsiBuilder builder = PsiBuilderFactory.getInstance().createBuilder(psi.getProject(), chameleon,
+            new RegExpLexer(capabilities), RegExpLanguage.INSTANCE, languageVersion, chameleon.getChars());
+        new RegExpParser(capabilities).parseReparseable(this, builder);
+        return builder.getTreeBuilt().getFirstChildNode();
+    }
+
+    private static boolean isSingleClass(Lexer lexer) {
+        if (lexer.getTokenType() != RegExpTT.CLASS_BEGIN) {
+            return false;
+        }
+        int depth = 0;
+        for (IElementType type = lexer.getTokenType(); type != null; type = lexer.getTokenType()) {
+            if (type == RegExpTT.CLASS_BEGIN) {
+                depth++;
+            }
+            else if (type == RegExpTT.CLASS_END && --depth == 0) {
+                lexer.advance();
+                return lexer.getTokenType() == null;
+            }
+            lexer.advance();
+        }
+        return false;
+    }
+
+    private static boolean isSingleGroup(Lexer lexer) {
+        if (!GROUP_START_TOKENS.contains(lexer.getTokenType())) {
+            return false;
+        }
+        int depth = 0;
+        for (IElementType type = lexer.getTokenType(); type != null; type = lexer.getTokenType()) {
+            if (!LITERAL_TOKENS.contains(type)) {
+                // conditions and group references open and close parentheses inside a single token, e.g. (?1)
+                final CharSequence text = lexer.getBufferSequence().subSequence(lexer.getTokenStart(), lexer.getTokenEnd());
+                for (int i = 0; i < text.length(); i++) {
+                    final char c = text.charAt(i);
+                    if (c == '(') {
+                        depth++;
+                    }
+                    else if (c == ')') {
+                        depth--;
+                    }
+                }
+                if (depth == 0) {
+                    lexer.advance();
+                    return lexer.getTokenType() == null;
+                }
+            }
+            lexer.advance();
+        }
+        return false;
+    }
+
+    /**
+     * @return true, if the text contains a possible back reference or an inline option which may switch on comment mode.
+     * How these lex depends on the text before them, so they can't be relexed on their own.
+     */
+    public static boolean containsContextDependentSyntax(@Nonnull CharSequence text) {
+        for (int i = 0, length = text.length() - 1; i < length; i++) {
+            final char c = text.charAt(i);
+            if (c == '\\' && Character.isDigit(text.charAt(i + 1))) {
+                return true;
+            }
+            if (c == '(' && text.charAt(i + 1) == '?') {
+                for (int j = i + 2; j < text.length(); j++) {
+                    final char option = text.charAt(j);
+                    if (option == 'x') {
+                        return true;
+                    }
+                    if (!AsciiUtil.isLetter(option) && option != '-' && option != '^') {
+                        break;
+                    }
+                }
+            }
+        }
+        return false;
+    }
+}
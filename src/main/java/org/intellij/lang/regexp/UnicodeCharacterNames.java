@@ -0,0 +1,226 @@
+/*
+ * Copyright 2013-2026 consulo.io
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.intellij.lang.regexp;
+
+import consulo.component.util.UnicodeCharacterRegistry;
+import jakarta.annotation.Nonnull;
+import jakarta.annotation.Nullable;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Comparator;
+
+/**
+ * Unicode character names sorted for binary search, used to decode {@code \N{NAME}} escapes
+ * and to complete character names.
+ * <p>
+ * The index is two parallel arrays built lazily from {@link UnicodeCharacterRegistry} on first access,
+ * sharing the name strings with the registry. For completion, a second sorted table of the word starts inside
+ * names (e.g. {@code SMALL LETTER A} in {@code LATIN SMALL LETTER A}) is built on first use, so that names can be
+ * found by any of their words without scanning the registry.
+ */
+public final class UnicodeCharacterNames {
+    private static class Holder {
+        private static final UnicodeCharacterNames INSTANCE = new UnicodeCharacterNames(UnicodeCharacterRegistry.listCharacters());
+    }
+
+    private static final int OFFSET_BITS = 8;
+    private static final int OFFSET_MASK = (1 << OFFSET_BITS) - 1;
+
+    private final String[] myNames;
+    private final int[] myCodePoints;
+    private volatile int[] myWordStarts;
+
+    private UnicodeCharacterNames(Collection<? extends UnicodeCharacterRegistry.UnicodeCharacter> characters) {
+        final UnicodeCharacterRegistry.UnicodeCharacter[] sorted = characters.stream()
+            .filter(character -> character.getName() != null)
+            .sorted(Comparator.comparing(UnicodeCharacterRegistry.UnicodeCharacter::getName))
+            .toArray(UnicodeCharacterRegistry.UnicodeCharacter[]::new);
+        myNames = new String[sorted.length];
+        myCodePoints = new int[sorted.length];
+        for (int i = 0; i < sorted.length; i++) {
+            myNames[i] = sorted[i].getName();
+            myCodePoints[i] = sorted[i].getCodePoint();
+        }
+    }
+
+    @Nonnull
+    public static UnicodeCharacterNames getInstance() {
+        return Holder.INSTANCE;
+    }
+
+    /**
+     * @return the code point of the character with the specified name, or -1 if no such character exists
+     */
+    public int getCodePoint(@Nullable String name) {
+        if (name == null) {
+            return -1;
+        }
+        final int index = lowerBound(name);
+        return index < myNames.length && myNames[index].equals(name) ? myCodePoints[index] : -1;
+    }
+
+    public int size() {
+        return myNames.length;
+    }
+
+    @Nonnull
+    public String getName(int index) {
+        return myNames[index];
+    }
+
+    public int getCodePoint(int index) {
+        return myCodePoints[index];
+    }
+
+    /**
+     * @return index of the first name starting with the specified prefix, or where such a name would be inserted
+     */
+    public int getPrefixStart(@Nonnull String prefix) {
+        return lowerBound(prefix);
+    }
+
+    /**
+     * @return index after the last name starting with the specified prefix
+     */
+    public int getPrefixEnd(@Nonnull String prefix) {
+        int low = lowerBound(prefix);
+        int high = myNames.length;
+        while (low < high) {
+            final int mid = (low + high) >>> 1;
+            if (myNames[mid].startsWith(prefix)) {
+                low = mid + 1;
+            }
+            else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+
+    /**
+     * Processes all names which contain a word, other than the first one, starting with the specified prefix.
+     * The processor receives the name index and the offset of the word inside the name, and returns false to stop.
+     */
+    public void processWordStarts(@Nonnull String prefix, @Nonnull WordStartProcessor processor) {
+        final int[] wordStarts = getWordStarts();
+        int low = 0;
+        int high = wordStarts.length;
+        while (low < high) {
+            final int mid = (low + high) >>> 1;
+            if (compareSuffix(wordStarts[mid], prefix) < 0) {
+                low = mid + 1;
+            }
+            else {
+                high = mid;
+            }
+        }
+        for (int i = low; i < wordStarts.length; i++) {
+            final int entry = wordStarts[i];
+            final int offset = entry & OFFSET_MASK;
+            final String name = myNames[entry >>> OFFSET_BITS];
+            if (!name.startsWith(prefix, offset) || !processor.process(entry >>> OFFSET_BITS, offset)) {
+                return;
+            }
+        }
+    }
+
+    @FunctionalInterface
+    public interface WordStartProcessor {
+        boolean process(int nameIndex, int offset);
+    }
+
+    private int[] getWordStarts() {
+        int[] wordStarts = myWordStarts;
+        if (wordStarts == null) {
+            myWordStarts = wordStarts = buildWordStarts();
+        }
+        return wordStarts;
+    }
+
+    private int[] buildWordStarts() {
+        int count = 0;
+        for (String name : myNames) {
+            count += countWordStarts(name);
+        }
+        final Integer[] entries = new Integer[count];
+        int n = 0;
+        for (int i = 0; i < myNames.length; i++) {
+            final String name = myNames[i];
+            for (int offset = 1, length = Math.min(name.length(), OFFSET_MASK + 1); offset < length; offset++) {
+                if (isWordStart(name, offset)) {
+                    entries[n++] = (i << OFFSET_BITS) | offset;
+                }
+            }
+        }
+        Arrays.sort(entries, 0, n, (a, b) -> {
+            final String nameA = myNames[a >>> OFFSET_BITS];
+            final String nameB = myNames[b >>> OFFSET_BITS];
+            return CharSequence.compare(
+                nameA.subSequence(a & OFFSET_MASK, nameA.length()),
+                nameB.subSequence(b & OFFSET_MASK, nameB.length())
+            );
+        });
+        final int[] result = new int[n];
+        for (int i = 0; i < n; i++) {
+            result[i] = entries[i];
+        }
+        return result;
+    }
+
+    private static int countWordStarts(String name) {
+        int count = 0;
+        for (int offset = 1, length = Math.min(name.length(), OFFSET_MASK + 1); offset < length; offset++) {
+            if (isWordStart(name, offset)) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    private static boolean isWordStart(String name, int offset) {
+        final char previous = name.charAt(offset - 1);
+        return (previous == ' ' || previous == '-') && name.charAt(offset) != ' ';
+    }
+
+    private int compareSuffix(int entry, String prefix) {
+        final String name = myNames[entry >>> OFFSET_BITS];
+        final int offset = entry & OFFSET_MASK;
+        final int length = Math.min(name.length() - offset, prefix.length());
+        for (int i = 0; i < length; i++) {
+            final int diff = name.charAt(offset + i) - prefix.charAt(i);
+            if (diff != 0) {
+                return diff;
+            }
+        }
+        return name.length() - offset < prefix.length() ? -1 : 0;
+    }
+
+    /**
+     * @return index of the first name that is not less than the specified string
+     */
+    int lowerBound(@Nonnull String s) {
+        final int index = Arrays.binarySearch(myNames, s);
+        if (index < 0) {
+            return -index - 1;
+        }
+        int result = index;
+        while (result > 0 && myNames[result - 1].equals(s)) {
+            result--;
+        }
+        return result;
+    }
+}
@@ -0,0 +1,287 @@
+/*
+ * Copyright 2013-2026 consulo.io
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.intellij.lang.regexp;
+
+import jakarta.annotation.Nonnull;
+
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.EnumMap;
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Computes the code point tables of the properties known to {@link DefaultRegExpPropertiesProvider} and writes them
+ * in the format read by {@link UnicodePropertyTables}. Runs during the build, see {@code pom.xml}.
+ * <p>
+ * Table keys are {@code gc:} followed by a property name like {@code Lu} or {@code Alpha}, {@code posix:} followed by
+ * a POSIX class name, {@code prop:} followed by one of the {@link #BINARY_PROPERTIES}, {@code sc:} followed by a
+ * {@link Character.UnicodeScript} constant and {@code blk:} followed by a {@link Character.UnicodeBlock} name.
+ * <p>
+ * The file starts with a header of four ints: {@link UnicodePropertyTables#MAGIC}, {@link UnicodePropertyTables#VERSION},
+ * the {@link UnicodePropertyTables#getUnicodeDataVersion() Unicode version} of the character data used, and the total
+ * file size. Then follow the number of tables, an index entry per table (key length as short, ASCII key, absolute
+ * offset of the ranges, number of ranges), and finally the ranges of all tables as pairs of ints, with inclusive ends.
+ */
+public final class UnicodePropertyTableGenerator {
+    /**
+     * The binary properties matched by {@code \p{IsName}} in java.util.regex, by their canonical names
+     */
+    static final String[] BINARY_PROPERTIES = {
+        "ALPHABETIC", "ASSIGNED", "CONTROL", "DIGIT", "HEX_DIGIT", "IDEOGRAPHIC", "JOIN_CONTROL", "LETTER", "LOWERCASE",
+        "NONCHARACTER_CODE_POINT", "TITLECASE", "PUNCTUATION", "UPPERCASE", "WHITE_SPACE", "WORD", "ALNUM", "BLANK",
+        "GRAPH", "PRINT",
+    };
+
+    private UnicodePropertyTableGenerator() {
+    }
+
+    public static void main(String[] args) throws IOException {
+        if (args.length != 1) {
+            throw new IllegalArgumentException("Usage: UnicodePropertyTableGenerator <output file>");
+        }
+        final Path output = Path.of(args[0]);
+        Files.createDirectories(output.toAbsolutePath().getParent());
+        try (OutputStream stream = Files.newOutputStream(output)) {
+            write(computeTables(), stream);
+        }
+    }
+
+    static void write(@Nonnull Map<String, CodePointSet> tables, @Nonnull OutputStream stream) throws IOException {
+        int indexSize = 4;
+        int rangeCount = 0;
+        for (Map.Entry<String, CodePointSet> entry : tables.entrySet()) {
+            indexSize += 2 + entry.getKey().length() + 8;
+            rangeCount += entry.getValue().getRangeCount();
+        }
+        final int headerSize = 16;
+        final int size = headerSize + indexSize + rangeCount * 8;
+
+        final DataOutputStream out = new DataOutputStream(stream);
+        out.writeInt(UnicodePropertyTables.MAGIC);
+        out.writeInt(UnicodePropertyTables.VERSION);
+        out.writeInt(UnicodePropertyTables.getUnicodeDataVersion());
+        out.writeInt(size);
+        out.writeInt(tables.size());
+        int offset = headerSize + indexSize;
+        for (Map.Entry<String, CodePointSet> entry : tables.entrySet()) {
+            final byte[] key = entry.getKey().getBytes(StandardCharsets.US_ASCII);
+            out.writeShort(key.length);
+            out.write(key);
+            out.writeInt(offset);
+            out.writeInt(entry.getValue().getRangeCount());
+            offset += entry.getValue().getRangeCount() * 8;
+        }
+        for (CodePointSet set : tables.values()) {
+            for (int i = 0; i < set.getRangeCount(); i++) {
+                out.writeInt(set.getRangeStart(i));
+                out.writeInt(set.getRangeEnd(i));
+            }
+        }
+        out.flush();
+    }
+
+    /**
+     * Computes all tables from the character data of the running JDK, in a single pass over all code points.
+     */
+    @Nonnull
+    static Map<String, CodePointSet> computeTables() {
+        final CodePointSet.Builder[] categoryBuilders = new CodePointSet.Builder[Character.FINAL_QUOTE_PUNCTUATION + 1];
+        final Map<Character.UnicodeScript, CodePointSet.Builder> scriptBuilders = new EnumMap<>(Character.UnicodeScript.class);
+        final Map<Character.UnicodeBlock, CodePointSet.Builder> blockBuilders = new LinkedHashMap<>();
+        final CodePointSet.Builder[] binaryBuilders = new CodePointSet.Builder[BINARY_PROPERTIES.length];
+        for (int i = 0; i < binaryBuilders.length; i++) {
+            binaryBuilders[i] = new CodePointSet.Builder();
+        }
+        for (int codePoint = 0; codePoint <= Character.MAX_CODE_POINT; codePoint++) {
+            final int type = Character.getType(codePoint);
+            if (categoryBuilders[type] == null) {
+                categoryBuilders[type] = new CodePointSet.Builder();
+            }
+            categoryBuilders[type].add(codePoint);
+            for (int i = 0; i < binaryBuilders.length; i++) {
+                if (hasBinaryProperty(BINARY_PROPERTIES[i], codePoint, type)) {
+                    binaryBuilders[i].add(codePoint);
+                }
+            }
+            scriptBuilders.computeIfAbsent(Character.UnicodeScript.of(codePoint), script -> new CodePointSet.Builder()).add(codePoint);
+            final Character.UnicodeBlock block = Character.UnicodeBlock.of(codePoint);
+            if (block != null) {
+                blockBuilders.computeIfAbsent(block, b -> new CodePointSet.Builder()).add(codePoint);
+            }
+        }
+        final CodePointSet[] categories = new CodePointSet[categoryBuilders.length];
+        for (int type = 0; type < categoryBuilders.length; type++) {
+            categories[type] = categoryBuilders[type] == null ? CodePointSet.EMPTY : categoryBuilders[type].build();
+        }
+
+        final Map<String, CodePointSet> tables = new LinkedHashMap<>();
+        final DefaultRegExpPropertiesProvider provider = DefaultRegExpPropertiesProvider.getInstance();
+        for (String[] property : provider.getAllKnownProperties()) {
+            tables.put("gc:" + property[0], computeProperty(property[0], categories));
+        }
+        for (String[] posixClass : provider.getPosixCharacterClasses()) {
+            tables.put("posix:" + posixClass[0], computePosixClass(posixClass[0]));
+        }
+        for (int i = 0; i < binaryBuilders.length; i++) {
+            tables.put("prop:" + BINARY_PROPERTIES[i], binaryBuilders[i].build());
+        }
+        scriptBuilders.forEach((script, builder) -> tables.put("sc:" + script.name(), builder.build()));
+        blockBuilders.forEach((block, builder) -> tables.put("blk:" + block, builder.build()));
+        return tables;
+    }
+
+    private static CodePointSet computeProperty(String name, CodePointSet[] categories) {
+        return switch (name) {
+            case "Cn" -> categories[Character.UNASSIGNED];
+            case "Lu" -> categories[Character.UPPERCASE_LETTER];
+            case "Ll" -> categories[Character.LOWERCASE_LETTER];
+            case "Lt" -> categories[Character.TITLECASE_LETTER];
+            case "Lm" -> categories[Character.MODIFIER_LETTER];
+            case "Lo" -> categories[Character.OTHER_LETTER];
+            case "Mn" -> categories[Character.NON_SPACING_MARK];
+            case "Me" -> categories[Character.ENCLOSING_MARK];
+            case "Mc" -> categories[Character.COMBINING_SPACING_MARK];
+            case "Nd" -> categories[Character.DECIMAL_DIGIT_NUMBER];
+            case "Nl" -> categories[Character.LETTER_NUMBER];
+            case "No" -> categories[Character.OTHER_NUMBER];
+            case "Zs" -> categories[Character.SPACE_SEPARATOR];
+            case "Zl" -> categories[Character.LINE_SEPARATOR];
+            case "Zp" -> categories[Character.PARAGRAPH_SEPARATOR];
+            case "Cc" -> categories[Character.CONTROL];
+            case "Cf" -> categories[Character.FORMAT];
+            case "Co" -> categories[Character.PRIVATE_USE];
+            case "Cs" -> categories[Character.SURROGATE];
+            case "Pd" -> categories[Character.DASH_PUNCTUATION];
+            case "Ps" -> categories[Character.START_PUNCTUATION];
+            case "Pe" -> categories[Character.END_PUNCTUATION];
+            case "Pc" -> categories[Character.CONNECTOR_PUNCTUATION];
+            case "Po" -> categories[Character.OTHER_PUNCTUATION];
+            case "Sm" -> categories[Character.MATH_SYMBOL];
+            case "Sc" -> categories[Character.CURRENCY_SYMBOL];
+            case "Sk" -> categories[Character.MODIFIER_SYMBOL];
+            case "So" -> categories[Character.OTHER_SYMBOL];
+            case "Pi" -> categories[Character.INITIAL_QUOTE_PUNCTUATION];
+            case "Pf" -> categories[Character.FINAL_QUOTE_PUNCTUATION];
+            case "L" -> computeUnion(categories, "Lu", "Ll", "Lt", "Lm", "Lo");
+            case "M" -> computeUnion(categories, "Mn", "Me", "Mc");
+            case "N" -> computeUnion(categories, "Nd", "Nl", "No");
+            case "Z" -> computeUnion(categories, "Zs", "Zl", "Zp");
+            case "C" -> computeUnion(categories, "Cc", "Cf", "Co", "Cs", "Cn");
+            case "P" -> computeUnion(categories, "Pd", "Ps", "Pe", "Pc", "Po", "Pi", "Pf");
+            case "S" -> computeUnion(categories, "Sm", "Sc", "Sk", "So");
+            case "LC" -> computeUnion(categories, "Lu", "Ll", "Lt");
+            case "LD" -> computeUnion(categories, "L", "Nd");
+            case "L1" -> CodePointSet.range(0, 0xFF);
+            case "all" -> CodePointSet.ALL;
+            case "ASCII" -> CodePointSet.range(0, 0x7F);
+            // without UNICODE_CHARACTER_CLASS, java.util.regex matches these POSIX-like properties in the ASCII range only
+            case "Alnum", "Alpha", "Blank", "Cntrl", "Digit", "Graph", "Lower", "Print", "Punct", "Space", "Upper" ->
+                computePosixClass(name.toLowerCase(Locale.ROOT));
+            case "XDigit" -> computePosixClass("xdigit");
+            default -> throw new IllegalStateException("No table definition for property " + name);
+        };
+    }
+
+    /**
+     * Same definitions as the predicates of java.util.regex, without {@code CASE_INSENSITIVE}.
+     */
+    private static boolean hasBinaryProperty(String name, int codePoint, int type) {
+        return switch (name) {
+            case "ALPHABETIC" -> Character.isAlphabetic(codePoint);
+            case "ASSIGNED" -> type != Character.UNASSIGNED;
+            case "CONTROL" -> type == Character.CONTROL;
+            case "DIGIT" -> Character.isDigit(codePoint);
+            case "HEX_DIGIT" -> Character.isDigit(codePoint) ||
+                                codePoint >= '0' && codePoint <= '9' ||
+                                codePoint >= 'A' && codePoint <= 'F' ||
+                                codePoint >= 'a' && codePoint <= 'f' ||
+                                codePoint >= 0xFF10 && codePoint <= 0xFF19 ||
+                                codePoint >= 0xFF21 && codePoint <= 0xFF26 ||
+                                codePoint >= 0xFF41 && codePoint <= 0xFF46;
+            case "IDEOGRAPHIC" -> Character.isIdeographic(codePoint);
+            case "JOIN_CONTROL" -> codePoint == 0x200C || codePoint == 0x200D;
+            case "LETTER" -> Character.isLetter(codePoint);
+            case "LOWERCASE" -> Character.isLowerCase(codePoint);
+            case "NONCHARACTER_CODE_POINT" -> (codePoint & 0xFFFE) == 0xFFFE || codePoint >= 0xFDD0 && codePoint <= 0xFDEF;
+            case "TITLECASE" -> Character.isTitleCase(codePoint);
+            case "PUNCTUATION" -> type == Character.CONNECTOR_PUNCTUATION ||
+                                  type == Character.DASH_PUNCTUATION ||
+                                  type == Character.START_PUNCTUATION ||
+                                  type == Character.END_PUNCTUATION ||
+                                  type == Character.OTHER_PUNCTUATION ||
+                                  type == Character.INITIAL_QUOTE_PUNCTUATION ||
+                                  type == Character.FINAL_QUOTE_PUNCTUATION;
+            case "UPPERCASE" -> Character.isUpperCase(codePoint);
+            case "WHITE_SPACE" -> type == Character.SPACE_SEPARATOR ||
+                                  type == Character.LINE_SEPARATOR ||
+                                  type == Character.PARAGRAPH_SEPARATOR ||
+                                  codePoint >= 0x09 && codePoint <= 0x0D ||
+                                  codePoint == 0x85;
+            case "WORD" -> Character.isAlphabetic(codePoint) ||
+                           type == Character.NON_SPACING_MARK ||
+                           type == Character.ENCLOSING_MARK ||
+                           type == Character.COMBINING_SPACING_MARK ||
+                           type == Character.DECIMAL_DIGIT_NUMBER ||
+                           type == Character.CONNECTOR_PUNCTUATION ||
+                           codePoint == 0x200C || codePoint == 0x200D;
+            case "ALNUM" -> Character.isAlphabetic(codePoint) || Character.isDigit(codePoint);
+            case "BLANK" -> type == Character.SPACE_SEPARATOR || codePoint == '\t';
+            case "GRAPH" -> type != Character.SPACE_SEPARATOR &&
+                            type != Character.LINE_SEPARATOR &&
+                            type != Character.PARAGRAPH_SEPARATOR &&
+                            type != Character.CONTROL &&
+                            type != Character.SURROGATE &&
+                            type != Character.UNASSIGNED;
+            case "PRINT" -> type != Character.CONTROL &&
+                            (hasBinaryProperty("GRAPH", codePoint, type) || hasBinaryProperty("BLANK", codePoint, type));
+            default -> throw new IllegalStateException("No definition for binary property " + name);
+        };
+    }
+
+    private static CodePointSet computeUnion(CodePointSet[] categories, String... names) {
+        CodePointSet result = CodePointSet.EMPTY;
+        for (String name : names) {
+            result = result.union(computeProperty(name, categories));
+        }
+        return result;
+    }
+
+    private static CodePointSet computePosixClass(String name) {
+        return switch (name) {
+            case "alnum" -> new CodePointSet.Builder().add('0', '9').add('A', 'Z').add('a', 'z').build();
+            case "alpha" -> new CodePointSet.Builder().add('A', 'Z').add('a', 'z').build();
+            case "ascii" -> CodePointSet.range(0, 0x7F);
+            case "blank" -> CodePointSet.of(' ', '\t');
+            case "cntrl" -> new CodePointSet.Builder().add(0, 0x1F).add(0x7F).build();
+            case "digit" -> CodePointSet.range('0', '9');
+            case "graph" -> CodePointSet.range(0x21, 0x7E);
+            case "lower" -> CodePointSet.range('a', 'z');
+            case "print" -> CodePointSet.range(0x20, 0x7E);
+            case "punct" -> new CodePointSet.Builder().add(0x21, 0x2F).add(0x3A, 0x40).add(0x5B, 0x60).add(0x7B, 0x7E).build();
+            case "space" -> CodePointSet.range(0x09, 0x0D).union(CodePointSet.of(' '));
+            case "upper" -> CodePointSet.range('A', 'Z');
+            case "word" -> new CodePointSet.Builder().add('0', '9').add('A', 'Z').add('_').add('a', 'z').build();
+            case "xdigit" -> new CodePointSet.Builder().add('0', '9').add('A', 'F').add('a', 'f').build();
+            default -> throw new IllegalStateException("No table definition for POSIX class " + name);
+        };
+    }
+}
@@ -0,0 +1,184 @@
+/*
+ * Copyright 2013-2026 consulo.io
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.intellij.lang.regexp;
+
+import jakarta.annotation.Nonnull;
+import jakarta.annotation.Nullable;
+
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Code point tables of the Unicode properties, scripts and blocks, generated during the build by
+ * {@link UnicodePropertyTableGenerator}.
+ * <p>
+ * The resource is read on first access into a read-only direct buffer, so the tables don't occupy the heap; only
+ * the index is decoded up front, and a table becomes a {@link CodePointSet} when it's first requested. Tables
+ * generated from the character data of another Unicode version are ignored, as are missing or damaged resources
+ * (e.g. when running from sources). The tables are then computed in memory instead, which is logged as it takes
+ * a scan of all code points.
+ */
+final class UnicodePropertyTables {
+    static final String RESOURCE = "unicode-properties.bin";
+    static final int MAGIC = 0x52455850; // "REXP"
+    static final int VERSION = 2;
+    private static final System.Logger LOG = System.getLogger(UnicodePropertyTables.class.getName());
+    /**
+     * pairs of a Unicode version, as {@code major * 100 + minor}, and a code point first assigned in that version
+     */
+    private static final int[] UNICODE_VERSION_PROBES = {
+        1300, 0x08BE, // ARABIC LETTER PEH WITH SMALL V
+        1400, 0x0870, // ARABIC LETTER ALEF WITH ATTACHED FATHA
+        1500, 0x11F00, // KAWI SIGN CANDRABINDU
+        1510, 0x2EBF0, // the first ideograph of CJK Unified Ideographs Extension I
+        1600, 0x10D40, // GARAY VOWEL SIGN A
+    };
+
+    private static class Holder {
+        private static final UnicodePropertyTables INSTANCE = load();
+    }
+
+    @Nullable
+    private final ByteBuffer myBuffer;
+    /**
+     * offset of the ranges in the buffer and number of ranges of each table, as {@code offset << 32 | count}
+     */
+    private final Map<String, Long> myIndex;
+    private final Map<String, CodePointSet> mySets;
+
+    private UnicodePropertyTables(@Nonnull ByteBuffer buffer, @Nonnull Map<String, Long> index) {
+        myBuffer = buffer;
+        myIndex = index;
+        mySets = new ConcurrentHashMap<>();
+    }
+
+    private UnicodePropertyTables(@Nonnull Map<String, CodePointSet> sets) {
+        myBuffer = null;
+        myIndex = Map.of();
+        mySets = sets;
+    }
+
+    /**
+     * @param key a table key as described in {@link UnicodePropertyTableGenerator}, e.g. {@code gc:Lu}
+     * @return the code points of the table, or null if there is no such table
+     */
+    @Nullable
+    static CodePointSet get(@Nonnull String key) {
+        return Holder.INSTANCE.getTable(key);
+    }
+
+    /**
+     * Identifies the Unicode version of the character data of the running JDK, independently of the JDK version: the
+     * newest version of {@link #UNICODE_VERSION_PROBES} whose code point is assigned, and the number of scripts, which
+     * tells versions newer than the probes apart.
+     */
+    static int getUnicodeDataVersion() {
+        int version = 0;
+        for (int i = 0; i < UNICODE_VERSION_PROBES.length; i += 2) {
+            if (Character.isDefined(UNICODE_VERSION_PROBES[i + 1])) {
+                version = UNICODE_VERSION_PROBES[i];
+            }
+        }
+        return version << 16 | Character.UnicodeScript.values().length;
+    }
+
+    @Nullable
+    CodePointSet getTable(@Nonnull String key) {
+        final CodePointSet set = mySets.get(key);
+        if (set != null || myBuffer == null) {
+            return set;
+        }
+        final Long entry = myIndex.get(key);
+        if (entry == null) {
+            return null;
+        }
+        final int offset = (int) (entry >>> 32);
+        final int rangeCount = (int) entry.longValue();
+        final int[] ranges = new int[rangeCount << 1];
+        for (int i = 0; i < ranges.length; i++) {
+            ranges[i] = myBuffer.getInt(offset + i * 4);
+        }
+        return mySets.computeIfAbsent(key, k -> CodePointSet.fromRangeArray(ranges));
+    }
+
+    private static UnicodePropertyTables load() {
+        try (InputStream stream = UnicodePropertyTables.class.getResourceAsStream(RESOURCE)) {
+            return load(stream);
+        }
+        catch (IOException e) {
+            return load(null);
+        }
+    }
+
+    /**
+     * @param stream the content of the resource, or null if it's missing
+     */
+    @Nonnull
+    static UnicodePropertyTables load(@Nullable InputStream stream) {
+        String reason = "it is missing";
+        if (stream != null) {
+            try {
+                final UnicodePropertyTables tables = read(stream);
+                if (tables != null) {
+                    return tables;
+                }
+                reason = "it has another format or Unicode version";
+            }
+            catch (IOException | RuntimeException e) {
+                reason = "it is damaged: " + e;
+            }
+        }
+        LOG.log(System.Logger.Level.WARNING, "Computing Unicode property tables, as " + RESOURCE + " can't be used: " + reason);
+        return new UnicodePropertyTables(UnicodePropertyTableGenerator.computeTables());
+    }
+
+    @Nullable
+    private static UnicodePropertyTables read(InputStream stream) throws IOException {
+        final DataInputStream header = new DataInputStream(stream);
+        if (header.readInt() != MAGIC || header.readInt() != VERSION || header.readInt() != getUnicodeDataVersion()) {
+            return null;
+        }
+        final int size = header.readInt();
+        final ByteBuffer buffer = ByteBuffer.allocateDirect(size);
+        buffer.position(16);
+        final ReadableByteChannel channel = Channels.newChannel(stream);
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer) < 0) {
+                throw new IOException("Unexpected end of " + RESOURCE);
+            }
+        }
+        final ByteBuffer tables = buffer.asReadOnlyBuffer();
+        tables.position(16);
+        final int count = tables.getInt();
+        final Map<String, Long> index = new HashMap<>(count * 2);
+        for (int i = 0; i < count; i++) {
+            final byte[] key = new byte[tables.getShort()];
+            tables.get(key);
+            final long offset = tables.getInt();
+            final int rangeCount = tables.getInt();
+            index.put(new String(key, StandardCharsets.US_ASCII), offset << 32 | rangeCount);
+        }
+        return new UnicodePropertyTables(tables, index);
+    }
+}
@@ -0,0 +1,177 @@
+/*
+ * Copyright 2013-2026 consulo.io
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.intellij.lang.regexp.automaton;
+
+import jakarta.annotation.Nonnull;
+import org.intellij.lang.regexp.CodePointSet;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Compresses the code points into classes which no state of an automaton can tell apart: two code points are in
+ * the same class if every {@link RegExpNfa.StateKind#CHARACTERS} state, or every position of a
+ * {@link RegExpGlushkovAutomaton}, accepts either both or neither. A pattern like
+ * {@code [a-z]+\d} has three classes, however many code points it mentions.
+ * <p>
+ * ASCII code points are classified by table lookup, others by binary search over the range boundaries.
+ */
+final class RegExpAlphabet {
+    /**
+     * Above this number of ranges times states, ranges are not merged into classes, every range is a class of its own.
+     */
+    private static final long MAX_MERGE_WORK = 4_000_000;
+
+    /**
+     * the first code point of each range, ranges extend to the next start
+     */
+    private final int[] myRangeStarts;
+    private final int[] myRangeClasses;
+    private final int[] myAsciiClasses = new int[128];
+    private final int[] myRepresentatives;
+
+    private RegExpAlphabet(int[] rangeStarts, int[] rangeClasses, int classCount) {
+        myRangeStarts = rangeStarts;
+        myRangeClasses = rangeClasses;
+        myRepresentatives = new int[classCount];
+        Arrays.fill(myRepresentatives, -1);
+        for (int i = 0; i < rangeStarts.length; i++) {
+            if (myRepresentatives[rangeClasses[i]] < 0) {
+                myRepresentatives[rangeClasses[i]] = rangeStarts[i];
+            }
+        }
+        for (int codePoint = 0; codePoint < myAsciiClasses.length; codePoint++) {
+            myAsciiClasses[codePoint] = findClass(codePoint);
+        }
+    }
+
+    @Nonnull
+    static RegExpAlphabet of(@Nonnull RegExpNfa nfa) {
+        final List<CodePointSet> sets = new ArrayList<>();
+        for (int state = 0; state < nfa.getStateCount(); state++) {
+            final CodePointSet set = nfa.getCharacters(state);
+            if (set != null) {
+                sets.add(set);
+            }
+        }
+        return of(sets);
+    }
+
+    /**
+     * @return the classes of code points which none of the sets tell apart
+     */
+    @Nonnull
+    static RegExpAlphabet of(@Nonnull List<CodePointSet> sets) {
+        final CodePointSet.Builder boundaries = new CodePointSet.Builder().add(0);
+        for (CodePointSet set : sets) {
+            for (int i = 0; i < set.getRangeCount(); i++) {
+                boundaries.add(set.getRangeStart(i));
+                if (set.getRangeEnd(i) < Character.MAX_CODE_POINT) {
+                    boundaries.add(set.getRangeEnd(i) + 1);
+                }
+            }
+        }
+        final int[] starts = toArray(boundaries.build());
+        final int[] classes = new int[starts.length];
+        if ((long) starts.length * sets.size() > MAX_MERGE_WORK) {
+            for (int i = 0; i < classes.length; i++) {
+                classes[i] = i;
+            }
+            return new RegExpAlphabet(starts, classes, starts.length);
+        }
+        // the signature of a range is the set of sets containing it
+        final BitSet[] signatures = new BitSet[starts.length];
+        for (int i = 0; i < starts.length; i++) {
+            signatures[i] = new BitSet();
+        }
+        for (int index = 0; index < sets.size(); index++) {
+            final CodePointSet set = sets.get(index);
+            for (int i = 0; i < set.getRangeCount(); i++) {
+                final int end = set.getRangeEnd(i);
+                for (int range = Arrays.binarySearch(starts, set.getRangeStart(i)); range < starts.length && starts[range] <= end; range++) {
+                    signatures[range].set(index);
+                }
+            }
+        }
+        final Map<BitSet, Integer> classIds = new HashMap<>();
+        for (int i = 0; i < starts.length; i++) {
+            classes[i] = classIds.computeIfAbsent(signatures[i], k -> classIds.size());
+        }
+        return new RegExpAlphabet(starts, classes, classIds.size());
+    }
+
+    private static int[] toArray(CodePointSet set) {
+        final int[] result = new int[set.size()];
+        int index = 0;
+        for (int i = 0; i < set.getRangeCount(); i++) {
+            for (int codePoint = set.getRangeStart(i); codePoint <= set.getRangeEnd(i); codePoint++) {
+                result[index++] = codePoint;
+            }
+        }
+        return result;
+    }
+
+    int getClassCount() {
+        return myRepresentatives.length;
+    }
+
+    int getClass(int codePoint) {
+        return codePoint < myAsciiClasses.length ? myAsciiClasses[codePoint] : findClass(codePoint);
+    }
+
+    /**
+     * @return a code point of the class, which every state treats like all others of the class
+     */
+    int getRepresentative(int characterClass) {
+        return myRepresentatives[characterClass];
+    }
+
+    /**
+     * @return the first code point of every range of code points in the same class, in ascending order
+     */
+    @Nonnull
+    int[] getRangeStarts() {
+        return myRangeStarts.clone();
+    }
+
+    /**
+     * @return the class of each range of {@link #getRangeStarts()}
+     */
+    @Nonnull
+    int[] getRangeClasses() {
+        return myRangeClasses.clone();
+    }
+
+    private int findClass(int codePoint) {
+        int low = 0;
+        int high = myRangeStarts.length - 1;
+        // the last range starting at or before the code point
+        while (low < high) {
+            final int mid = (low + high + 1) >>> 1;
+            if (myRangeStarts[mid] <= codePoint) {
+                low = mid;
+            }
+            else {
+                high = mid - 1;
+            }
+        }
+        return myRangeClasses[low];
+    }
+}
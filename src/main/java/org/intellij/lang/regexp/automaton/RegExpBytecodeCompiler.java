@@ -0,0 +1,437 @@
+/*
+ * Copyright 2013-2026 consulo.io
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.intellij.lang.regexp.automaton;
+
+import jakarta.annotation.Nonnull;
+import jakarta.annotation.Nullable;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.lang.invoke.MethodHandles;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Translates a pair of {@link RegExpDfa}s into a {@link RegExpCompiledMatcher.Program} class, defined as a hidden class
+ * in this package so that it can be unloaded with the last matcher using it.
+ * <p>
+ * Every DFA state becomes a block of straight-line code which reads a code point, looks up its class in the
+ * {@link RegExpAlphabet}, and selects the next state with a {@code tableswitch} on the class, so matching needs no
+ * transition table. The blocks are entered from a single {@code tableswitch} on the current state, as the JIT compilers
+ * only optimize loops with one entry.
+ * <p>
+ * The class file is written directly, the shape of the code is fixed: the same locals are live and the operand stack
+ * is empty at every jump target, so every target gets the same stack map frame.
+ */
+final class RegExpBytecodeCompiler {
+    private static final String CLASS_NAME = "org/intellij/lang/regexp/automaton/RegExpCompiledProgram";
+    private static final String PROGRAM = "org/intellij/lang/regexp/automaton/RegExpCompiledMatcher$Program";
+    private static final String ALPHABET = "org/intellij/lang/regexp/automaton/RegExpAlphabet";
+    private static final String CHAR_SEQUENCE = "java/lang/CharSequence";
+    private static final int CLASS_FILE_VERSION = 61;
+    /**
+     * the range of the 16 bit offsets of jumps
+     */
+    private static final int MAX_CODE_SIZE = Short.MAX_VALUE;
+
+    private static final int ACC_PUBLIC = 0x0001;
+    private static final int ACC_FINAL = 0x0010;
+    private static final int ACC_SUPER = 0x0020;
+
+    private static final int ICONST_0 = 0x03;
+    private static final int ICONST_1 = 0x04;
+    private static final int SIPUSH = 0x11;
+    private static final int ILOAD = 0x15;
+    private static final int ALOAD_0 = 0x2a;
+    private static final int ALOAD_1 = 0x2b;
+    private static final int ALOAD_2 = 0x2c;
+    private static final int ISTORE = 0x36;
+    private static final int IADD = 0x60;
+    private static final int IF_ICMPLT = 0xa1;
+    private static final int GOTO = 0xa7;
+    private static final int TABLESWITCH = 0xaa;
+    private static final int IRETURN = 0xac;
+    private static final int RETURN = 0xb1;
+    private static final int INVOKEVIRTUAL = 0xb6;
+    private static final int INVOKESPECIAL = 0xb7;
+    private static final int INVOKESTATIC = 0xb8;
+    private static final int INVOKEINTERFACE = 0xb9;
+
+    private static final int ITEM_INTEGER = 1;
+    private static final int ITEM_OBJECT = 7;
+    private static final int FULL_FRAME = 255;
+
+    private RegExpBytecodeCompiler() {
+    }
+
+    /**
+     * @param anchored   the DFA for whole matches, see {@link RegExpCompiledMatcher.Program#matches}
+     * @param unanchored the DFA for partial matches, see {@link RegExpCompiledMatcher.Program#find}
+     * @return the program, or null if its code would exceed the size limit of a method
+     */
+    @Nullable
+    static RegExpCompiledMatcher.Program compile(@Nonnull RegExpDfa anchored, @Nonnull RegExpDfa unanchored) {
+        final ConstantPool pool = new ConstantPool();
+        final int thisClass = pool.classRef(CLASS_NAME);
+        final int superClass = pool.classRef("java/lang/Object");
+        final int programClass = pool.classRef(PROGRAM);
+        final MethodWriter constructor = new MethodWriter(pool, "<init>", "()V", 1, 1);
+        constructor.op(ALOAD_0);
+        constructor.op(INVOKESPECIAL).u2(pool.methodRef("java/lang/Object", "<init>", "()V", false));
+        constructor.op(RETURN);
+        final MethodWriter matches = writeMatcher(pool, thisClass, anchored, false);
+        final MethodWriter find = writeMatcher(pool, thisClass, unanchored, true);
+        if (matches == null || find == null) {
+            return null;
+        }
+        final byte[] bytes;
+        try {
+            final ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+            final DataOutputStream out = new DataOutputStream(buffer);
+            out.writeInt(0xCAFEBABE);
+            out.writeShort(0);
+            out.writeShort(CLASS_FILE_VERSION);
+            // the attribute names must be in the pool before it is written
+            final int code = pool.utf8("Code");
+            final int stackMapTable = pool.utf8("StackMapTable");
+            pool.write(out);
+            out.writeShort(ACC_PUBLIC | ACC_FINAL | ACC_SUPER);
+            out.writeShort(thisClass);
+            out.writeShort(superClass);
+            out.writeShort(1);
+            out.writeShort(programClass);
+            out.writeShort(0);
+            out.writeShort(3);
+            for (MethodWriter method : List.of(constructor, matches, find)) {
+                method.write(out, code, stackMapTable);
+            }
+            out.writeShort(0);
+            bytes = buffer.toByteArray();
+        }
+        catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        try {
+            final MethodHandles.Lookup lookup = MethodHandles.lookup().defineHiddenClass(bytes, true);
+            return (RegExpCompiledMatcher.Program) lookup.lookupClass().getDeclaredConstructor().newInstance();
+        }
+        catch (ReflectiveOperationException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * Writes {@code boolean matches(CharSequence text, RegExpAlphabet alphabet, int from)}, or {@code find} with the
+     * same signature, which returns as soon as an accepting state is reached.
+     */
+    @Nullable
+    private static MethodWriter writeMatcher(ConstantPool pool, int thisClass, RegExpDfa dfa, boolean find) {
+        // locals 0 to 2 are this, the text and the alphabet
+        final int from = 3;
+        final int length = 4;
+        final int offset = 5;
+        final int codePoint = 6;
+        final int state = 7;
+        final MethodWriter method = new MethodWriter(pool, find ? "find" : "matches",
+                                                     "(L" + CHAR_SEQUENCE + ";L" + ALPHABET + ";I)Z", 4, 8);
+        method.setFrame(thisClass, pool.classRef(CHAR_SEQUENCE), pool.classRef(ALPHABET));
+        final int lengthMethod = pool.methodRef(CHAR_SEQUENCE, "length", "()I", true);
+        final int codePointAt = pool.methodRef("java/lang/Character", "codePointAt", "(L" + CHAR_SEQUENCE + ";I)I", false);
+        final int charCount = pool.methodRef("java/lang/Character", "charCount", "(I)I", false);
+        final int getClass = pool.methodRef(ALPHABET, "getClass", "(I)I", false);
+
+        method.op(ALOAD_1).op(INVOKEINTERFACE).u2(lengthMethod).u1(1).u1(0).op(ISTORE).u1(length);
+        method.op(ILOAD).u1(from).op(ISTORE).u1(offset);
+        method.op(ICONST_0).op(ISTORE).u1(codePoint);
+        method.op(ICONST_0).op(ISTORE).u1(state);
+
+        final int stateCount = dfa.getStateCount();
+        final int classCount = dfa.getClassCount();
+        final Label fail = new Label();
+        final Label[] states = new Label[stateCount];
+        final Label[] enter = new Label[stateCount];
+        for (int i = 0; i < stateCount; i++) {
+            states[i] = new Label();
+            enter[i] = new Label();
+        }
+        // the only loop
+        final Label loop = new Label();
+        method.bind(loop);
+        method.op(ILOAD).u1(state);
+        method.tableSwitch(fail, states);
+        for (int i = 0; i < stateCount; i++) {
+            method.bind(states[i]);
+            final boolean accepting = dfa.isAccepting(i);
+            if (find && accepting) {
+                method.op(ICONST_1).op(IRETURN);
+                continue;
+            }
+            final Label read = new Label();
+            method.op(ILOAD).u1(offset).op(ILOAD).u1(length).jump(IF_ICMPLT, read);
+            method.op(accepting ? ICONST_1 : ICONST_0).op(IRETURN);
+            method.bind(read);
+            method.op(ALOAD_1).op(ILOAD).u1(offset).op(INVOKESTATIC).u2(codePointAt).op(ISTORE).u1(codePoint);
+            method.op(ILOAD).u1(offset).op(ILOAD).u1(codePoint).op(INVOKESTATIC).u2(charCount).op(IADD).op(ISTORE).u1(offset);
+            method.op(ALOAD_2).op(ILOAD).u1(codePoint).op(INVOKEVIRTUAL).u2(getClass);
+            final Label[] targets = new Label[classCount];
+            for (int characterClass = 0; characterClass < classCount; characterClass++) {
+                final int next = dfa.getNext(i, characterClass);
+                targets[characterClass] = next < 0 ? fail : enter[next];
+            }
+            method.tableSwitch(fail, targets);
+            if (method.size() > MAX_CODE_SIZE) {
+                return null;
+            }
+        }
+        for (int i = 0; i < stateCount; i++) {
+            method.bind(enter[i]);
+            method.op(SIPUSH).u2(i).op(ISTORE).u1(state).jump(GOTO, loop);
+        }
+        method.bind(fail);
+        method.op(ICONST_0).op(IRETURN);
+        return method.size() > MAX_CODE_SIZE ? null : method;
+    }
+
+    private static final class Label {
+        private int myOffset = -1;
+    }
+
+    /**
+     * The constant pool, with each constant added once.
+     */
+    private static final class ConstantPool {
+        private static final int CONSTANT_UTF8 = 1;
+        private static final int CONSTANT_CLASS = 7;
+        private static final int CONSTANT_METHODREF = 10;
+        private static final int CONSTANT_INTERFACE_METHODREF = 11;
+        private static final int CONSTANT_NAME_AND_TYPE = 12;
+
+        private final ByteArrayOutputStream myBytes = new ByteArrayOutputStream();
+        private final DataOutputStream myOut = new DataOutputStream(myBytes);
+        private final Map<String, Integer> myIndices = new HashMap<>();
+        private int myCount = 1;
+
+        private int utf8(String value) {
+            return add("U" + value, () -> {
+                myOut.writeByte(CONSTANT_UTF8);
+                myOut.writeUTF(value);
+            });
+        }
+
+        private int classRef(String name) {
+            final int nameIndex = utf8(name);
+            return add("C" + name, () -> {
+                myOut.writeByte(CONSTANT_CLASS);
+                myOut.writeShort(nameIndex);
+            });
+        }
+
+        private int methodRef(String owner, String name, String descriptor, boolean isInterface) {
+            final int ownerIndex = classRef(owner);
+            final int nameIndex = utf8(name);
+            final int descriptorIndex = utf8(descriptor);
+            final int nameAndType = add("N" + name + ' ' + descriptor, () -> {
+                myOut.writeByte(CONSTANT_NAME_AND_TYPE);
+                myOut.writeShort(nameIndex);
+                myOut.writeShort(descriptorIndex);
+            });
+            return add("M" + owner + '.' + name + descriptor, () -> {
+                myOut.writeByte(isInterface ? CONSTANT_INTERFACE_METHODREF : CONSTANT_METHODREF);
+                myOut.writeShort(ownerIndex);
+                myOut.writeShort(nameAndType);
+            });
+        }
+
+        private int add(String key, Entry entry) {
+            final Integer index = myIndices.get(key);
+            if (index != null) {
+                return index;
+            }
+            try {
+                entry.write();
+            }
+            catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+            myIndices.put(key, myCount);
+            return myCount++;
+        }
+
+        private void write(DataOutputStream out) throws IOException {
+            out.writeShort(myCount);
+            myBytes.writeTo(out);
+        }
+
+        @FunctionalInterface
+        private interface Entry {
+            void write() throws IOException;
+        }
+    }
+
+    /**
+     * The code of a method, with forward jumps patched once their labels are bound, and a stack map frame at every
+     * label.
+     */
+    private static final class MethodWriter {
+        private final int myName;
+        private final int myDescriptor;
+        private final int myMaxStack;
+        private final int myMaxLocals;
+        private byte[] myCode = new byte[256];
+        private int mySize;
+        private final List<Label> myLabels = new ArrayList<>();
+        /**
+         * the offset of a jump instruction, the offset of its operand and the size of the operand, 2 or 4 bytes,
+         * for each of {@link #myJumpTargets}
+         */
+        private final List<int[]> myJumps = new ArrayList<>();
+        private final List<Label> myJumpTargets = new ArrayList<>();
+        private int[] myFrameObjects;
+
+        private MethodWriter(ConstantPool pool, String name, String descriptor, int maxStack, int maxLocals) {
+            myName = pool.utf8(name);
+            myDescriptor = pool.utf8(descriptor);
+            myMaxStack = maxStack;
+            myMaxLocals = maxLocals;
+        }
+
+        /**
+         * Sets the types of the frame at every label: the given classes, followed by ints up to the last local.
+         */
+        private void setFrame(int... classes) {
+            myFrameObjects = classes;
+        }
+
+        private int size() {
+            return mySize;
+        }
+
+        private MethodWriter op(int opcode) {
+            return u1(opcode);
+        }
+
+        private MethodWriter u1(int value) {
+            if (mySize == myCode.length) {
+                myCode = Arrays.copyOf(myCode, myCode.length * 2);
+            }
+            myCode[mySize++] = (byte) value;
+            return this;
+        }
+
+        private MethodWriter u2(int value) {
+            return u1(value >>> 8).u1(value);
+        }
+
+        private MethodWriter u4(int value) {
+            return u2(value >>> 16).u2(value);
+        }
+
+        private MethodWriter jump(int opcode, Label label) {
+            final int instruction = mySize;
+            op(opcode);
+            myJumps.add(new int[]{instruction, mySize, 2});
+            myJumpTargets.add(label);
+            return u2(0);
+        }
+
+        private void tableSwitch(Label defaultLabel, Label[] labels) {
+            final int instruction = mySize;
+            op(TABLESWITCH);
+            while (mySize % 4 != 0) {
+                u1(0);
+            }
+            myJumps.add(new int[]{instruction, mySize, 4});
+            myJumpTargets.add(defaultLabel);
+            u4(0);
+            u4(0).u4(labels.length - 1);
+            for (Label label : labels) {
+                myJumps.add(new int[]{instruction, mySize, 4});
+                myJumpTargets.add(label);
+                u4(0);
+            }
+        }
+
+        private void bind(Label label) {
+            label.myOffset = mySize;
+            myLabels.add(label);
+        }
+
+        private void write(DataOutputStream out, int codeAttribute, int stackMapTableAttribute) throws IOException {
+            for (int i = 0; i < myJumps.size(); i++) {
+                final int[] jump = myJumps.get(i);
+                final int delta = myJumpTargets.get(i).myOffset - jump[0];
+                for (int b = 0; b < jump[2]; b++) {
+                    myCode[jump[1] + b] = (byte) (delta >>> 8 * (jump[2] - 1 - b));
+                }
+            }
+            final byte[] frames = writeFrames();
+            out.writeShort(ACC_PUBLIC);
+            out.writeShort(myName);
+            out.writeShort(myDescriptor);
+            out.writeShort(1);
+            out.writeShort(codeAttribute);
+            final int stackMapTableSize = frames == null ? 0 : 6 + frames.length;
+            out.writeInt(12 + mySize + stackMapTableSize);
+            out.writeShort(myMaxStack);
+            out.writeShort(myMaxLocals);
+            out.writeInt(mySize);
+            out.write(myCode, 0, mySize);
+            out.writeShort(0);
+            if (frames == null) {
+                out.writeShort(0);
+                return;
+            }
+            out.writeShort(1);
+            out.writeShort(stackMapTableAttribute);
+            out.writeInt(frames.length);
+            out.write(frames);
+        }
+
+        @Nullable
+        private byte[] writeFrames() throws IOException {
+            if (myLabels.isEmpty()) {
+                return null;
+            }
+            final ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+            final DataOutputStream out = new DataOutputStream(buffer);
+            final int[] offsets = myLabels.stream().mapToInt(label -> label.myOffset).sorted().distinct().toArray();
+            out.writeShort(offsets.length);
+            int previous = -1;
+            for (int offset : offsets) {
+                out.writeByte(FULL_FRAME);
+                out.writeShort(offset - previous - 1);
+                out.writeShort(myMaxLocals);
+                for (int local = 0; local < myMaxLocals; local++) {
+                    if (local < myFrameObjects.length) {
+                        out.writeByte(ITEM_OBJECT);
+                        out.writeShort(myFrameObjects[local]);
+                    }
+                    else {
+                        out.writeByte(ITEM_INTEGER);
+                    }
+                }
+                out.writeShort(0);
+                previous = offset;
+            }
+            return buffer.toByteArray();
+        }
+    }
+}
@@ -0,0 +1,87 @@
+/*
+ * Copyright 2013-2026 consulo.io
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.intellij.lang.regexp.automaton;
+
+import jakarta.annotation.Nonnull;
+import jakarta.annotation.Nullable;
+
+/**
+ * Matches with JVM bytecode generated for the DFA of a pattern, see {@link RegExpBytecodeCompiler}, for patterns
+ * which are evaluated so often that the interpretation overhead of the other matchers matters. Only patterns without
+ * assertions whose DFA is small enough can be compiled.
+ * <p>
+ * Like the other automaton matchers, {@link #find(CharSequence, int)} only decides whether there is a match, and lets
+ * the {@link RegExpPikeVm} find its leftmost-first bounds.
+ * <p>
+ * Instances are thread-safe: the generated code keeps its state in local variables.
+ */
+public final class RegExpCompiledMatcher implements RegExpMatcher {
+    public static final int MAX_DFA_STATES = 512;
+
+    /**
+     * Implemented by the generated class.
+     */
+    interface Program {
+        /**
+         * @return whether the text from the offset to its end matches
+         */
+        boolean matches(@Nonnull CharSequence text, @Nonnull RegExpAlphabet alphabet, int from);
+
+        /**
+         * @return whether a match starts at or after the offset
+         */
+        boolean find(@Nonnull CharSequence text, @Nonnull RegExpAlphabet alphabet, int from);
+    }
+
+    private final RegExpNfa myNfa;
+    private final RegExpAlphabet myAlphabet;
+    private final Program myProgram;
+
+    private RegExpCompiledMatcher(RegExpNfa nfa, RegExpAlphabet alphabet, Program program) {
+        myNfa = nfa;
+        myAlphabet = alphabet;
+        myProgram = program;
+    }
+
+    /**
+     * Generates and loads the code of a matcher, which takes time: matchers are meant to be cached, see
+     * {@link RegExpMatchers#createCompiled}.
+     *
+     * @return the matcher, or null if the automaton has assertions or its DFA is too large
+     */
+    @Nullable
+    public static RegExpCompiledMatcher compile(@Nonnull RegExpNfa nfa) {
+        final RegExpAlphabet alphabet = RegExpAlphabet.of(nfa);
+        final RegExpDfa anchored = RegExpDfa.build(nfa, alphabet, false, MAX_DFA_STATES);
+        final RegExpDfa unanchored = anchored == null ? null : RegExpDfa.build(nfa, alphabet, true, MAX_DFA_STATES);
+        if (unanchored == null) {
+            return null;
+        }
+        final Program program = RegExpBytecodeCompiler.compile(anchored, unanchored);
+        return program == null ? null : new RegExpCompiledMatcher(nfa, alphabet, program);
+    }
+
+    @Override
+    public boolean matches(@Nonnull CharSequence text) {
+        return myProgram.matches(text, myAlphabet, 0);
+    }
+
+    @Nullable
+    @Override
+    public int[] find(@Nonnull CharSequence text, int from) {
+        return myProgram.find(text, myAlphabet, from) ? new RegExpPikeVm(myNfa).find(text, from) : null;
+    }
+}
@@ -0,0 +1,156 @@
+/*
+ * Copyright 2013-2026 consulo.io
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.intellij.lang.regexp.automaton;
+
+import jakarta.annotation.Nullable;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Immutable DFA built from a {@link RegExpNfa} by complete subset construction, with transitions per character class of
+ * a {@link RegExpAlphabet}. Only automata without assertions are supported, so that whether a state accepts doesn't
+ * depend on the text around it. State 0 is the start state.
+ *
+ * @see RegExpLazyDfa
+ */
+final class RegExpDfa {
+    private final int myClassCount;
+    private final int[] myTransitions;
+    private final boolean[] myAccepting;
+
+    private RegExpDfa(int classCount, int[] transitions, boolean[] accepting) {
+        myClassCount = classCount;
+        myTransitions = transitions;
+        myAccepting = accepting;
+    }
+
+    /**
+     * @param unanchored whether a match may start at every offset, rather than at the start only
+     * @return the DFA, or null if the NFA has assertions or the DFA would have more than {@code maxStates} states
+     */
+    @Nullable
+    static RegExpDfa build(RegExpNfa nfa, RegExpAlphabet alphabet, boolean unanchored, int maxStates) {
+        for (int state = 0; state < nfa.getStateCount(); state++) {
+            if (nfa.getKind(state) == RegExpNfa.StateKind.ASSERTION) {
+                return null;
+            }
+        }
+        final int classCount = alphabet.getClassCount();
+        final Map<BitSet, Integer> ids = new HashMap<>();
+        final List<BitSet> closures = new ArrayList<>();
+        int[] transitions = new int[classCount * 16];
+        final BitSet start = new BitSet();
+        start.set(nfa.getStart());
+        ids.put(start, 0);
+        closures.add(closure(nfa, start));
+        for (int state = 0; state < closures.size(); state++) {
+            final BitSet closure = closures.get(state);
+            for (int characterClass = 0; characterClass < classCount; characterClass++) {
+                final int codePoint = alphabet.getRepresentative(characterClass);
+                final BitSet next = new BitSet();
+                for (int s = closure.nextSetBit(0); s >= 0; s = closure.nextSetBit(s + 1)) {
+                    if (nfa.accepts(s, codePoint)) {
+                        next.set(nfa.getNext(s));
+                    }
+                }
+                if (unanchored) {
+                    next.set(nfa.getStart());
+                }
+                int target = -1;
+                if (!next.isEmpty()) {
+                    final Integer id = ids.get(next);
+                    if (id != null) {
+                        target = id;
+                    }
+                    else if (closures.size() == maxStates) {
+                        return null;
+                    }
+                    else {
+                        target = closures.size();
+                        ids.put(next, target);
+                        closures.add(closure(nfa, next));
+                    }
+                }
+                final int index = state * classCount + characterClass;
+                if (index == transitions.length) {
+                    transitions = Arrays.copyOf(transitions, transitions.length * 2);
+                }
+                transitions[index] = target;
+            }
+        }
+        final boolean[] accepting = new boolean[closures.size()];
+        for (int state = 0; state < accepting.length; state++) {
+            final BitSet closure = closures.get(state);
+            for (int s = closure.nextSetBit(0); s >= 0; s = closure.nextSetBit(s + 1)) {
+                accepting[state] |= nfa.getKind(s) == RegExpNfa.StateKind.MATCH;
+            }
+        }
+        return new RegExpDfa(classCount, Arrays.copyOf(transitions, closures.size() * classCount), accepting);
+    }
+
+    /**
+     * @return the {@link RegExpNfa.StateKind#CHARACTERS} and {@link RegExpNfa.StateKind#MATCH} states reachable from
+     * the states without consuming input
+     */
+    private static BitSet closure(RegExpNfa nfa, BitSet states) {
+        final BitSet visited = new BitSet();
+        final BitSet result = new BitSet();
+        final List<Integer> stack = new ArrayList<>();
+        for (int state = states.nextSetBit(0); state >= 0; state = states.nextSetBit(state + 1)) {
+            stack.add(state);
+        }
+        while (!stack.isEmpty()) {
+            final int state = stack.remove(stack.size() - 1);
+            if (state < 0 || visited.get(state)) {
+                continue;
+            }
+            visited.set(state);
+            switch (nfa.getKind(state)) {
+                case CHARACTERS, MATCH -> result.set(state);
+                case SPLIT -> {
+                    stack.add(nfa.getNext(state));
+                    stack.add(nfa.getAlternative(state));
+                }
+                default -> stack.add(nfa.getNext(state));
+            }
+        }
+        return result;
+    }
+
+    int getStateCount() {
+        return myAccepting.length;
+    }
+
+    int getClassCount() {
+        return myClassCount;
+    }
+
+    /**
+     * @return the state after consuming a code point of the class, or -1 if no match can follow
+     */
+    int getNext(int state, int characterClass) {
+        return myTransitions[state * myClassCount + characterClass];
+    }
+
+    boolean isAccepting(int state) {
+        return myAccepting[state];
+    }
+}
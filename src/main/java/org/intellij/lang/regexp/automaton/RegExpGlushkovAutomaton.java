@@ -0,0 +1,340 @@
+/*
+ * Copyright 2013-2026 consulo.io
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.intellij.lang.regexp.automaton;
+
+import consulo.annotation.access.RequiredReadAction;
+import consulo.language.psi.PsiErrorElement;
+import consulo.language.psi.util.PsiTreeUtil;
+import jakarta.annotation.Nonnull;
+import jakarta.annotation.Nullable;
+import org.intellij.lang.regexp.CodePointSet;
+import org.intellij.lang.regexp.psi.RegExpPattern;
+import org.intellij.lang.regexp.psi.impl.RegExpModel;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.List;
+
+/**
+ * Immutable Glushkov position automaton of a regular expression, with at most {@link #MAX_POSITIONS} positions so
+ * that a set of positions fits in a {@code long}.
+ * <p>
+ * Every occurrence of a character, class or property in the pattern is a position, and counted repetitions are
+ * expanded into copies of their operand. The automaton has a state for each position, entered by consuming a code point
+ * of the position's set, plus the initial state. The first set holds the positions a match can begin with, the last
+ * set those it can end with, and the follow set of a position those which can come right after it. There are no
+ * epsilon transitions, which is what makes the automaton suitable for {@link RegExpShiftAndMatcher}.
+ * <p>
+ * The automaton describes the language of the pattern only: it doesn't keep track of groups or of the priorities of
+ * quantifiers and branches. Patterns with assertions like {@code ^} or {@code \b} are not supported, nor are the
+ * constructs {@link RegExpNfaCompiler} doesn't support.
+ */
+public final class RegExpGlushkovAutomaton {
+    public static final int MAX_POSITIONS = Long.SIZE;
+
+    private final CodePointSet[] mySets;
+    private final long[] myFollow;
+    private final long myFirst;
+    private final long myLast;
+    private final boolean myNullable;
+
+    private RegExpGlushkovAutomaton(CodePointSet[] sets, long[] follow, long first, long last, boolean nullable) {
+        mySets = sets;
+        myFollow = follow;
+        myFirst = first;
+        myLast = last;
+        myNullable = nullable;
+    }
+
+    /**
+     * @param flags the {@link java.util.regex.Pattern} flags the regexp is compiled with
+     * @return the automaton, or null if the pattern has errors, is not supported, or has too many positions
+     */
+    @Nullable
+    @RequiredReadAction
+    public static RegExpGlushkovAutomaton build(@Nonnull RegExpPattern pattern, int flags) {
+        final RegExpModel model = RegExpModel.getInstance(pattern.getContainingFile());
+        final int node = model.getNode(pattern);
+        if (node < 0 || PsiTreeUtil.findChildOfType(pattern, PsiErrorElement.class) != null) {
+            return null;
+        }
+        return build(model, node, flags);
+    }
+
+    /**
+     * Builds the automaton of the subtree of a node of the model. Reading inline options requires a read action.
+     *
+     * @param flags the {@link java.util.regex.Pattern} flags the regexp is compiled with
+     * @return the automaton, or null if the pattern is not supported or has too many positions
+     */
+    @Nullable
+    @RequiredReadAction
+    public static RegExpGlushkovAutomaton build(@Nonnull RegExpModel model, int node, int flags) {
+        final RegExpNfaCompiler analysis = RegExpNfaCompiler.analyze(model, node, flags);
+        if (!analysis.getUnsupported().isEmpty()) {
+            return null;
+        }
+        final Builder builder = new Builder(model, analysis);
+        final Fragment fragment = builder.visit(node);
+        if (fragment == null) {
+            return null;
+        }
+        final int count = builder.mySets.size();
+        return new RegExpGlushkovAutomaton(builder.mySets.toArray(new CodePointSet[0]), Arrays.copyOf(builder.myFollow, count),
+                                           fragment.first(), fragment.last(), fragment.nullable());
+    }
+
+    public int getPositionCount() {
+        return mySets.length;
+    }
+
+    /**
+     * @return the code points consumed on entering a position
+     */
+    @Nonnull
+    public CodePointSet getCharacters(int position) {
+        return mySets[position];
+    }
+
+    /**
+     * @return the positions a match can begin with, bit {@code p} standing for position {@code p}
+     */
+    public long getFirst() {
+        return myFirst;
+    }
+
+    /**
+     * @return the positions a match can end with
+     */
+    public long getLast() {
+        return myLast;
+    }
+
+    /**
+     * @return the positions which can follow a position
+     */
+    public long getFollow(int position) {
+        return myFollow[position];
+    }
+
+    /**
+     * @return whether the pattern matches the empty string
+     */
+    public boolean isNullable() {
+        return myNullable;
+    }
+
+    /**
+     * @param first    the positions the subexpression can begin with
+     * @param last     the positions it can end with
+     * @param nullable whether it matches the empty string
+     */
+    private record Fragment(long first, long last, boolean nullable) {
+        private static final Fragment EMPTY = new Fragment(0, 0, true);
+        /**
+         * the fragment matching nothing, which branches are united with
+         */
+        private static final Fragment NONE = new Fragment(0, 0, false);
+    }
+
+    private static final class Builder {
+        private final RegExpModel myModel;
+        private final RegExpNfaCompiler myAnalysis;
+        private final List<CodePointSet> mySets = new ArrayList<>();
+        private final long[] myFollow = new long[MAX_POSITIONS];
+
+        private Builder(RegExpModel model, RegExpNfaCompiler analysis) {
+            myModel = model;
+            myAnalysis = analysis;
+        }
+
+        /**
+         * A step of the walk. Steps work on a stack of fragments: visiting a node pushes its fragment, the other steps
+         * combine the fragment of the node they visited with the one below.
+         *
+         * @param node      the model node the step visits
+         * @param copy      the copy of the operand of a closure
+         * @param positions the number of positions before the node was visited
+         */
+        private record Task(Step step, int node, int copy, int positions) {
+        }
+
+        private enum Step {
+            /**
+             * pushes the fragment of the node
+             */
+            VISIT,
+            /**
+             * unites the fragment of the branch node with the one below, then visits the next branch
+             */
+            UNITE,
+            /**
+             * appends the fragment of the node to the one of the preceding siblings, then visits the next sibling
+             */
+            CONCATENATE,
+            /**
+             * appends the fragment of a copy of the operand of the closure node to the preceding copies, then visits
+             * the next copy
+             */
+            APPEND_COPY
+        }
+
+        /**
+         * Walks the subtree with an explicit stack of tasks, as nesting is only limited by the length of the pattern.
+         *
+         * @return the fragment of the node, with the follow sets within it added, or null if the automaton can't be built
+         */
+        @Nullable
+        private Fragment visit(int root) {
+            final Deque<Task> tasks = new ArrayDeque<>();
+            final Deque<Fragment> fragments = new ArrayDeque<>();
+            tasks.push(new Task(Step.VISIT, root, 0, 0));
+            while (!tasks.isEmpty()) {
+                final Task task = tasks.pop();
+                final int node = task.node();
+                switch (task.step()) {
+                    case VISIT -> {
+                        if (!expand(node, tasks, fragments)) {
+                            return null;
+                        }
+                    }
+                    case UNITE -> {
+                        final Fragment fragment = fragments.pop();
+                        final Fragment result = fragments.pop();
+                        fragments.push(new Fragment(result.first() | fragment.first(), result.last() | fragment.last(),
+                                                    result.nullable() || fragment.nullable()));
+                        pushNextSibling(Step.UNITE, node, tasks);
+                    }
+                    case CONCATENATE -> {
+                        final Fragment fragment = fragments.pop();
+                        fragments.push(concatenate(fragments.pop(), fragment));
+                        pushNextSibling(Step.CONCATENATE, node, tasks);
+                    }
+                    case APPEND_COPY -> appendCopy(node, task.copy(), task.positions(), tasks, fragments);
+                }
+            }
+            return fragments.pop();
+        }
+
+        /**
+         * Pushes the fragment of a leaf node, or the tasks visiting a composite node. Tasks run in the reverse order
+         * they are pushed in.
+         *
+         * @return false if the automaton can't be built
+         */
+        private boolean expand(int node, Deque<Task> tasks, Deque<Fragment> fragments) {
+            switch (myModel.getKind(node)) {
+                case PATTERN -> {
+                    final int branch = myModel.getFirstChild(node);
+                    fragments.push(branch < 0 ? Fragment.EMPTY : Fragment.NONE);
+                    if (branch >= 0) {
+                        pushVisit(Step.UNITE, branch, tasks);
+                    }
+                }
+                case BRANCH -> {
+                    final int child = myModel.getFirstChild(node);
+                    fragments.push(Fragment.EMPTY);
+                    if (child >= 0) {
+                        pushVisit(Step.CONCATENATE, child, tasks);
+                    }
+                }
+                case GROUP -> {
+                    final int pattern = myModel.getFirstChild(node);
+                    if (pattern < 0) {
+                        fragments.push(Fragment.EMPTY);
+                    }
+                    else {
+                        tasks.push(new Task(Step.VISIT, pattern, 0, 0));
+                    }
+                }
+                case CLOSURE -> {
+                    final int atom = myModel.getFirstChild(node);
+                    fragments.push(Fragment.EMPTY);
+                    if (atom >= 0 && myModel.getMax(node) != 0) {
+                        tasks.push(new Task(Step.APPEND_COPY, node, 0, mySets.size()));
+                        tasks.push(new Task(Step.VISIT, atom, 0, 0));
+                    }
+                }
+                case SET_OPTIONS -> fragments.push(Fragment.EMPTY);
+                case BOUNDARY -> {
+                    return false;
+                }
+                default -> {
+                    if (mySets.size() == MAX_POSITIONS) {
+                        return false;
+                    }
+                    final long position = 1L << mySets.size();
+                    mySets.add(myAnalysis.getCharacters(node));
+                    fragments.push(new Fragment(position, position, false));
+                }
+            }
+            return true;
+        }
+
+        private static void pushVisit(Step step, int node, Deque<Task> tasks) {
+            tasks.push(new Task(step, node, 0, 0));
+            tasks.push(new Task(Step.VISIT, node, 0, 0));
+        }
+
+        private void pushNextSibling(Step step, int node, Deque<Task> tasks) {
+            final int sibling = myModel.getNextSibling(node);
+            if (sibling != -1) {
+                pushVisit(step, sibling, tasks);
+            }
+        }
+
+        /**
+         * Expands {@code x{n,m}} to n copies of x followed by m - n optional copies, and {@code x{n,}} to n copies
+         * of which the last may repeat, or an optional repeating copy for n = 0. Reluctance doesn't change the language.
+         * <p>
+         * The copies are bounded by the positions they add rather than by the repeat count: every copy adds the same
+         * number of positions, so a large count runs out of positions after a few copies, and further copies of an
+         * operand without positions, like {@code (?:)}, wouldn't change the fragment.
+         */
+        private void appendCopy(int node, int copy, int positions, Deque<Task> tasks, Deque<Fragment> fragments) {
+            final int min = myModel.getMin(node);
+            final int max = myModel.getMax(node);
+            final int copies = max == RegExpModel.UNBOUNDED ? Math.max(min, 1) : max;
+            Fragment fragment = fragments.pop();
+            if (copy >= min) {
+                fragment = new Fragment(fragment.first(), fragment.last(), true);
+            }
+            if (max == RegExpModel.UNBOUNDED && copy == copies - 1) {
+                addFollow(fragment.last(), fragment.first());
+            }
+            fragments.push(concatenate(fragments.pop(), fragment));
+            if (copy + 1 < copies && mySets.size() > positions) {
+                tasks.push(new Task(Step.APPEND_COPY, node, copy + 1, mySets.size()));
+                tasks.push(new Task(Step.VISIT, myModel.getFirstChild(node), 0, 0));
+            }
+        }
+
+        private Fragment concatenate(Fragment left, Fragment right) {
+            addFollow(left.last(), right.first());
+            return new Fragment(left.nullable() ? left.first() | right.first() : left.first(),
+                                right.nullable() ? left.last() | right.last() : right.last(),
+                                left.nullable() && right.nullable());
+        }
+
+        private void addFollow(long positions, long follow) {
+            for (long rest = positions; rest != 0; rest &= rest - 1) {
+                myFollow[Long.numberOfTrailingZeros(rest)] |= follow;
+            }
+        }
+    }
+}
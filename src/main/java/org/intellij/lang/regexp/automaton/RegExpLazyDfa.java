@@ -0,0 +1,366 @@
+/*
+ * Copyright 2013-2026 consulo.io
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.intellij.lang.regexp.automaton;
+
+import jakarta.annotation.Nonnull;
+import jakarta.annotation.Nullable;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.EnumSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Matches with a DFA built from a {@link RegExpNfa} by subset construction on demand: a DFA state is created the first
+ * time the input reaches it, and every transition the first time it is taken. Transitions are per character class of
+ * a {@link RegExpAlphabet}, not per code point.
+ * <p>
+ * A DFA state is the set of NFA states entered by consuming a code point. Its epsilon closure depends on which
+ * assertions hold at the current offset, so transitions are cached per combination of assertion results seen.
+ * <p>
+ * The states are kept in a cache of bounded size, which is flushed when it is full. If the cache is flushed again
+ * before the matcher has made progress of a few characters per state built, the DFA is thrashing, and the search is
+ * finished by the {@link RegExpPikeVm} instead. Either way, matching takes time linear in the input.
+ * <p>
+ * The DFA answers whether and where a match ends without tracking priorities, so {@link #find(CharSequence, int)} uses
+ * it only to rule out texts without a match, and lets the Pike VM find the exact bounds otherwise.
+ * <p>
+ * Instances are not thread-safe.
+ */
+public final class RegExpLazyDfa implements RegExpMatcher {
+    public static final int DEFAULT_CACHE_SIZE = 1 << 20;
+
+    /**
+     * characters to process per state built between two flushes, below which the DFA gives up
+     */
+    private static final int MIN_PROGRESS_PER_STATE = 10;
+
+    private final RegExpNfa myNfa;
+    private final RegExpAlphabet myAlphabet;
+    private final RegExpNfa.Assertion[] myAssertions;
+    private final int myCacheSize;
+    private final Cache myAnchored;
+    private final Cache myUnanchored;
+    private RegExpPikeVm myPikeVm;
+
+    public RegExpLazyDfa(@Nonnull RegExpNfa nfa) {
+        this(nfa, DEFAULT_CACHE_SIZE);
+    }
+
+    /**
+     * @param cacheSize the approximate number of bytes the states of each of the two DFAs, for whole and partial
+     *                  matches, may use
+     */
+    public RegExpLazyDfa(@Nonnull RegExpNfa nfa, int cacheSize) {
+        myNfa = nfa;
+        myAlphabet = RegExpAlphabet.of(nfa);
+        final Set<RegExpNfa.Assertion> assertions = EnumSet.noneOf(RegExpNfa.Assertion.class);
+        for (int state = 0; state < nfa.getStateCount(); state++) {
+            if (nfa.getKind(state) == RegExpNfa.StateKind.ASSERTION) {
+                assertions.add(nfa.getAssertion(state));
+            }
+        }
+        myAssertions = assertions.toArray(new RegExpNfa.Assertion[0]);
+        myCacheSize = cacheSize;
+        myAnchored = new Cache(false);
+        myUnanchored = new Cache(true);
+    }
+
+    @Override
+    public boolean matches(@Nonnull CharSequence text) {
+        final Cache cache = myAnchored;
+        final int length = text.length();
+        int state = cache.getStartState();
+        int flushOffset = 0;
+        int flushCount = cache.myFlushCount;
+        for (int offset = 0; offset < length; ) {
+            final int codePoint = Character.codePointAt(text, offset);
+            state = cache.step(state, getContext(text, offset), myAlphabet.getClass(codePoint));
+            if (state == cache.myDeadState) {
+                return false;
+            }
+            offset += Character.charCount(codePoint);
+            if (cache.myFlushCount != flushCount) {
+                if (offset - flushOffset < MIN_PROGRESS_PER_STATE * cache.myStatesAtFlush) {
+                    return getPikeVm().matches(text);
+                }
+                flushOffset = offset;
+                flushCount = cache.myFlushCount;
+            }
+        }
+        return cache.isAccepting(state, getContext(text, length));
+    }
+
+    @Nullable
+    @Override
+    public int[] find(@Nonnull CharSequence text, int from) {
+        final Cache cache = myUnanchored;
+        final int length = text.length();
+        int state = cache.getStartState();
+        int flushOffset = from;
+        int flushCount = cache.myFlushCount;
+        for (int offset = from; ; ) {
+            final int context = getContext(text, offset);
+            if (cache.isAccepting(state, context)) {
+                return getPikeVm().find(text, from);
+            }
+            if (offset == length) {
+                return null;
+            }
+            final int codePoint = Character.codePointAt(text, offset);
+            state = cache.step(state, context, myAlphabet.getClass(codePoint));
+            offset += Character.charCount(codePoint);
+            if (cache.myFlushCount != flushCount) {
+                if (offset - flushOffset < MIN_PROGRESS_PER_STATE * cache.myStatesAtFlush) {
+                    return getPikeVm().find(text, from);
+                }
+                flushOffset = offset;
+                flushCount = cache.myFlushCount;
+            }
+        }
+    }
+
+    /**
+     * @return the number of times the cache was flushed because it was full
+     */
+    public int getFlushCount() {
+        return myAnchored.myFlushCount + myUnanchored.myFlushCount;
+    }
+
+    private RegExpPikeVm getPikeVm() {
+        if (myPikeVm == null) {
+            myPikeVm = new RegExpPikeVm(myNfa);
+        }
+        return myPikeVm;
+    }
+
+    /**
+     * @return a bit for each assertion of the NFA which holds at the offset
+     */
+    private int getContext(CharSequence text, int offset) {
+        int context = 0;
+        for (RegExpNfa.Assertion assertion : myAssertions) {
+            if (assertion.test(text, offset)) {
+                context |= 1 << assertion.ordinal();
+            }
+        }
+        return context;
+    }
+
+    private static final class Key {
+        private final int[] myStates;
+        private final int myHashCode;
+
+        private Key(int[] states) {
+            myStates = states;
+            myHashCode = Arrays.hashCode(states);
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            return o instanceof Key key && Arrays.equals(myStates, key.myStates);
+        }
+
+        @Override
+        public int hashCode() {
+            return myHashCode;
+        }
+    }
+
+    /**
+     * The DFA states built so far, with their transitions per context and character class.
+     */
+    private final class Cache {
+        private static final int UNKNOWN = -1;
+
+        private final boolean myUnanchored;
+        private final Map<Key, Integer> myIds = new HashMap<>();
+        private final List<int[]> myStates = new ArrayList<>();
+        /**
+         * per state and context id: the next state for each character class, followed by whether the state accepts
+         */
+        private final List<int[][]> myTransitions = new ArrayList<>();
+        private final Map<Integer, Integer> myContextIds = new HashMap<>();
+        private int myLastContext = -1;
+        private int myLastContextId;
+        private long mySize;
+        private int myDeadState;
+        private int myFlushCount;
+        private int myStatesAtFlush;
+        private int[] myStack = new int[16];
+        private boolean[] myVisited = new boolean[myNfa.getStateCount()];
+
+        private Cache(boolean unanchored) {
+            myUnanchored = unanchored;
+            flush();
+            myFlushCount = 0;
+        }
+
+        private int getStartState() {
+            return intern(new int[]{myNfa.getStart()});
+        }
+
+        private boolean isAccepting(int state, int context) {
+            return getTransitions(state, context)[myAlphabet.getClassCount()] != 0;
+        }
+
+        private int step(int state, int context, int characterClass) {
+            final int[] transitions = getTransitions(state, context);
+            int next = transitions[characterClass];
+            if (next == UNKNOWN) {
+                final int[] nextStates = computeNextStates(myStates.get(state), context, myAlphabet.getRepresentative(characterClass));
+                if (mySize > myCacheSize) {
+                    // the states the caller knows are gone, only the one returned is valid
+                    myStatesAtFlush = myStates.size();
+                    flush();
+                    return intern(nextStates);
+                }
+                next = intern(nextStates);
+                transitions[characterClass] = next;
+            }
+            return next;
+        }
+
+        private int[] getTransitions(int state, int context) {
+            int contextId = myLastContextId;
+            if (context != myLastContext) {
+                contextId = myContextIds.computeIfAbsent(context, k -> myContextIds.size());
+                myLastContext = context;
+                myLastContextId = contextId;
+            }
+            int[][] byContext = myTransitions.get(state);
+            if (contextId >= byContext.length) {
+                byContext = Arrays.copyOf(byContext, contextId + 1);
+                myTransitions.set(state, byContext);
+            }
+            int[] transitions = byContext[contextId];
+            if (transitions == null) {
+                final int classCount = myAlphabet.getClassCount();
+                transitions = new int[classCount + 1];
+                Arrays.fill(transitions, 0, classCount, UNKNOWN);
+                transitions[classCount] = closureAccepts(myStates.get(state), context) ? 1 : 0;
+                byContext[contextId] = transitions;
+                mySize += 16 + 4L * transitions.length;
+            }
+            return transitions;
+        }
+
+        private int intern(int[] states) {
+            final Key key = new Key(states);
+            final Integer id = myIds.get(key);
+            if (id != null) {
+                return id;
+            }
+            final int state = myStates.size();
+            myIds.put(key, state);
+            myStates.add(states);
+            myTransitions.add(new int[1][]);
+            mySize += 128 + 8L * states.length;
+            return state;
+        }
+
+        private void flush() {
+            myIds.clear();
+            myStates.clear();
+            myTransitions.clear();
+            mySize = 0;
+            myFlushCount++;
+            myDeadState = myUnanchored ? UNKNOWN : intern(new int[0]);
+        }
+
+        private boolean closureAccepts(int[] states, int context) {
+            final boolean[] accepts = new boolean[1];
+            closure(states, context, state -> {
+                if (myNfa.getKind(state) == RegExpNfa.StateKind.MATCH) {
+                    accepts[0] = true;
+                }
+            });
+            return accepts[0];
+        }
+
+        /**
+         * @return the sorted NFA states entered by consuming the code point from the closure of the states
+         */
+        private int[] computeNextStates(int[] states, int context, int codePoint) {
+            final int[] next = new int[myNfa.getStateCount() + 1];
+            final int[] count = new int[1];
+            closure(states, context, state -> {
+                if (myNfa.accepts(state, codePoint)) {
+                    next[count[0]++] = myNfa.getNext(state);
+                }
+            });
+            if (myUnanchored) {
+                // a match may start at every offset
+                next[count[0]++] = myNfa.getStart();
+            }
+            final int[] result = Arrays.copyOf(next, count[0]);
+            Arrays.sort(result);
+            int size = 0;
+            for (int i = 0; i < result.length; i++) {
+                if (i == 0 || result[i] != result[i - 1]) {
+                    result[size++] = result[i];
+                }
+            }
+            return Arrays.copyOf(result, size);
+        }
+
+        /**
+         * Reports the {@link RegExpNfa.StateKind#CHARACTERS} and {@link RegExpNfa.StateKind#MATCH} states reachable
+         * from the states without consuming input, passing the assertions which hold in the context.
+         */
+        private void closure(int[] states, int context, StateConsumer consumer) {
+            Arrays.fill(myVisited, false);
+            int top = 0;
+            for (int i = states.length - 1; i >= 0; i--) {
+                if (top == myStack.length) {
+                    myStack = Arrays.copyOf(myStack, top * 2);
+                }
+                myStack[top++] = states[i];
+            }
+            while (top > 0) {
+                final int state = myStack[--top];
+                if (state < 0 || myVisited[state]) {
+                    continue;
+                }
+                myVisited[state] = true;
+                if (top + 2 > myStack.length) {
+                    myStack = Arrays.copyOf(myStack, myStack.length * 2);
+                }
+                switch (myNfa.getKind(state)) {
+                    case CHARACTERS, MATCH -> consumer.accept(state);
+                    case EPSILON, SAVE -> myStack[top++] = myNfa.getNext(state);
+                    case SPLIT -> {
+                        myStack[top++] = myNfa.getAlternative(state);
+                        myStack[top++] = myNfa.getNext(state);
+                    }
+                    case ASSERTION -> {
+                        if ((context & 1 << myNfa.getAssertion(state).ordinal()) != 0) {
+                            myStack[top++] = myNfa.getNext(state);
+                        }
+                    }
+                }
+            }
+        }
+    }
+
+    @FunctionalInterface
+    private interface StateConsumer {
+        void accept(int state);
+    }
+}
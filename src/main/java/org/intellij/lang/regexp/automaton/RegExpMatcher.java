@@ -0,0 +1,37 @@
+/*
+ * Copyright 2013-2026 consulo.io
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.intellij.lang.regexp.automaton;
+
+import jakarta.annotation.Nonnull;
+import jakarta.annotation.Nullable;
+
+/**
+ * Matches text against a compiled regexp in time linear in the length of the text, see {@link RegExpMatchers}.
+ */
+public interface RegExpMatcher {
+    /**
+     * @return true if the whole text matches, like {@link java.util.regex.Matcher#matches()}
+     */
+    boolean matches(@Nonnull CharSequence text);
+
+    /**
+     * Finds the first match at or after an offset, like {@link java.util.regex.Matcher#find(int)}.
+     *
+     * @return the start and end offset of the match, or null if there is none
+     */
+    @Nullable
+    int[] find(@Nonnull CharSequence text, int from);
+}
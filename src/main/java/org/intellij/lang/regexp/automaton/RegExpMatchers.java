@@ -0,0 +1,163 @@
+/*
+ * Copyright 2013-2026 consulo.io
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.intellij.lang.regexp.automaton;
+
+import consulo.annotation.access.RequiredReadAction;
+import consulo.language.psi.PsiErrorElement;
+import consulo.language.psi.PsiFile;
+import consulo.language.psi.util.PsiTreeUtil;
+import jakarta.annotation.Nonnull;
+import jakarta.annotation.Nullable;
+import org.intellij.lang.regexp.RegExpCapability;
+import org.intellij.lang.regexp.RegExpFile;
+import org.intellij.lang.regexp.RegExpLanguageHost;
+import org.intellij.lang.regexp.psi.RegExpPattern;
+
+import java.lang.ref.Reference;
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.WeakReference;
+import java.util.EnumSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Creates {@link RegExpMatcher}s, which can't hang on any input, unlike {@link java.util.regex.Pattern}.
+ * Hosts which evaluate regexps on user input can use them instead of {@link java.util.regex.Pattern} where
+ * the regexp is supported, see {@link RegExpNfaCompiler}.
+ */
+public final class RegExpMatchers {
+    private static final Map<CompiledKey, CompiledReference> ourCompiled = new ConcurrentHashMap<>();
+    private static final ReferenceQueue<RegExpCompiledMatcher> ourCollected = new ReferenceQueue<>();
+    /**
+     * keys of the patterns which can't be compiled, so the compilation isn't attempted again, cleared when full
+     */
+    private static final Set<CompiledKey> ourUncompilable = ConcurrentHashMap.newKeySet();
+    private static final int MAX_UNCOMPILABLE = 1024;
+
+    /**
+     * @param capabilities the syntax of the dialect, and host the class name of the host, which both change how the same
+     *                     text is parsed and matched
+     */
+    private record CompiledKey(String pattern, int flags, Set<RegExpCapability> capabilities, @Nullable String host) {
+    }
+
+    private static final class CompiledReference extends WeakReference<RegExpCompiledMatcher> {
+        private final CompiledKey myKey;
+
+        private CompiledReference(CompiledKey key, RegExpCompiledMatcher matcher) {
+            super(matcher, ourCollected);
+            myKey = key;
+        }
+    }
+
+    private RegExpMatchers() {
+    }
+
+    /**
+     * Short patterns without assertions are matched bit-parallel by a {@link RegExpShiftAndMatcher}, others by
+     * a {@link RegExpLazyDfa}.
+     *
+     * @param flags the {@link java.util.regex.Pattern} flags the regexp is compiled with
+     * @return a matcher for the regexp in the file, or null if the regexp has errors, is not supported or would only be
+     * matched approximately, see {@link RegExpNfaCompiler.Result#approximate()}
+     */
+    @Nullable
+    @RequiredReadAction
+    public static RegExpMatcher create(@Nonnull PsiFile regexpFile, int flags) {
+        final RegExpPattern pattern = getPattern(regexpFile);
+        final RegExpNfa nfa = pattern == null ? null : getExactNfa(pattern, flags);
+        if (nfa == null) {
+            return null;
+        }
+        final RegExpGlushkovAutomaton automaton = RegExpGlushkovAutomaton.build(pattern, flags);
+        return automaton == null ? create(nfa) : new RegExpShiftAndMatcher(automaton, nfa);
+    }
+
+    /**
+     * Like {@link #create(PsiFile, int)}, but returns a {@link RegExpCompiledMatcher} where the pattern can be compiled
+     * to bytecode. Compiled matchers are cached by pattern text, flags and dialect for as long as they are in use, and so
+     * are, up to a bound, the patterns which can't be compiled.
+     *
+     * @param flags the {@link java.util.regex.Pattern} flags the regexp is compiled with
+     * @return a matcher for the regexp in the file, or null if the regexp has errors, is not supported or would only be
+     * matched approximately
+     */
+    @Nullable
+    @RequiredReadAction
+    public static RegExpMatcher createCompiled(@Nonnull PsiFile regexpFile, int flags) {
+        expungeCollected();
+        final CompiledKey key = getKey(regexpFile, flags);
+        final CompiledReference reference = ourCompiled.get(key);
+        final RegExpCompiledMatcher cached = reference == null ? null : reference.get();
+        if (cached != null) {
+            return cached;
+        }
+        if (ourUncompilable.contains(key)) {
+            return create(regexpFile, flags);
+        }
+        final RegExpPattern pattern = getPattern(regexpFile);
+        final RegExpNfa nfa = pattern == null ? null : getExactNfa(pattern, flags);
+        final RegExpCompiledMatcher compiled = nfa == null ? null : RegExpCompiledMatcher.compile(nfa);
+        if (compiled == null) {
+            if (ourUncompilable.size() >= MAX_UNCOMPILABLE) {
+                ourUncompilable.clear();
+            }
+            ourUncompilable.add(key);
+            return nfa == null ? null : create(regexpFile, flags);
+        }
+        ourCompiled.put(key, new CompiledReference(key, compiled));
+        return compiled;
+    }
+
+    @Nonnull
+    private static CompiledKey getKey(@Nonnull PsiFile regexpFile, int flags) {
+        if (regexpFile instanceof RegExpFile file) {
+            final RegExpLanguageHost host = file.getRegExpHost();
+            return new CompiledKey(file.getText(), flags, EnumSet.copyOf(file.getCapabilities()), host == null ? null : host.getClass().getName());
+        }
+        return new CompiledKey(regexpFile.getText(), flags, RegExpCapability.DEFAULT_CAPABILITIES, null);
+    }
+
+    @Nullable
+    @RequiredReadAction
+    private static RegExpPattern getPattern(@Nonnull PsiFile regexpFile) {
+        final RegExpPattern pattern = PsiTreeUtil.getChildOfType(regexpFile, RegExpPattern.class);
+        return pattern == null || PsiTreeUtil.getChildOfType(regexpFile, PsiErrorElement.class) != null ? null : pattern;
+    }
+
+    @Nullable
+    @RequiredReadAction
+    private static RegExpNfa getExactNfa(@Nonnull RegExpPattern pattern, int flags) {
+        final RegExpNfaCompiler.Result result = RegExpNfaCompiler.compile(pattern, flags);
+        return result.approximate() ? null : result.nfa();
+    }
+
+    private static void expungeCollected() {
+        Reference<? extends RegExpCompiledMatcher> reference;
+        while ((reference = ourCollected.poll()) != null) {
+            ourCompiled.remove(((CompiledReference) reference).myKey, reference);
+        }
+    }
+
+    /**
+     * @return a {@link RegExpLazyDfa}, which falls back to the {@link RegExpPikeVm} where the DFA would grow too large
+     */
+    @Nonnull
+    public static RegExpMatcher create(@Nonnull RegExpNfa nfa) {
+        return new RegExpLazyDfa(nfa);
+    }
+}
@@ -0,0 +1,326 @@
+/*
+ * Copyright 2013-2026 consulo.io
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.intellij.lang.regexp.automaton;
+
+import jakarta.annotation.Nonnull;
+import jakarta.annotation.Nullable;
+import org.intellij.lang.regexp.CodePointSet;
+
+import java.util.Arrays;
+
+/**
+ * Immutable Thompson automaton of a regular expression, see {@link RegExpNfaCompiler}.
+ * <p>
+ * States are numbered from 0 and stored in parallel arrays. Every state has at most two outgoing edges: a
+ * {@link StateKind#CHARACTERS} state consumes one code point of its set, all other states are passed without
+ * consuming input. A {@link StateKind#SPLIT} state prefers its {@link #getNext(int) next} state to its
+ * {@link #getAlternative(int) alternative}, which is how greedy and reluctant quantifiers and the order of branches are
+ * kept for leftmost-first matching.
+ * <p>
+ * Capture slot {@code 2k} records the start and slot {@code 2k + 1} the end of group k; group 0 is the whole match.
+ */
+public final class RegExpNfa {
+    public enum StateKind {
+        /**
+         * consumes a code point of {@link #getCharacters(int)}
+         */
+        CHARACTERS,
+        EPSILON,
+        /**
+         * continues with both {@link #getNext(int)} and, with lower priority, {@link #getAlternative(int)}
+         */
+        SPLIT,
+        /**
+         * continues only where {@link #getAssertion(int)} holds
+         */
+        ASSERTION,
+        /**
+         * records the current position in capture slot {@link #getSlot(int)}
+         */
+        SAVE,
+        MATCH
+    }
+
+    /**
+     * Zero-width assertions, with the semantics of {@code java.util.regex} for the flags they were compiled with.
+     */
+    public enum Assertion {
+        /**
+         * {@code \A}, or {@code ^} without {@code MULTILINE}
+         */
+        TEXT_START,
+        /**
+         * {@code \z}
+         */
+        TEXT_END,
+        /**
+         * {@code \Z}, or {@code $} without {@code MULTILINE}: the end, or before a line terminator at the end
+         */
+        TEXT_END_OR_FINAL_TERMINATOR,
+        /**
+         * like {@link #TEXT_END_OR_FINAL_TERMINATOR} with {@code UNIX_LINES}
+         */
+        UNIX_TEXT_END_OR_FINAL_TERMINATOR,
+        /**
+         * {@code ^} with {@code MULTILINE}
+         */
+        LINE_START,
+        UNIX_LINE_START,
+        /**
+         * {@code $} with {@code MULTILINE}
+         */
+        LINE_END,
+        UNIX_LINE_END,
+        WORD_BOUNDARY,
+        NON_WORD_BOUNDARY;
+
+        /**
+         * @param offset a char offset in the text
+         */
+        public boolean test(@Nonnull CharSequence text, int offset) {
+            final int length = text.length();
+            switch (this) {
+                case TEXT_START -> {
+                    return offset == 0;
+                }
+                case TEXT_END -> {
+                    return offset == length;
+                }
+                case TEXT_END_OR_FINAL_TERMINATOR -> {
+                    if (offset == length) {
+                        return true;
+                    }
+                    if (offset == length - 2) {
+                        return text.charAt(offset) == '\r' && text.charAt(offset + 1) == '\n';
+                    }
+                    if (offset == length - 1) {
+                        final char ch = text.charAt(offset);
+                        // not between \r and \n
+                        return ch == '\n' ? offset == 0 || text.charAt(offset - 1) != '\r' : isLineTerminator(ch);
+                    }
+                    return false;
+                }
+                case UNIX_TEXT_END_OR_FINAL_TERMINATOR -> {
+                    return offset == length || offset == length - 1 && text.charAt(offset) == '\n';
+                }
+                case LINE_START, UNIX_LINE_START -> {
+                    // like Perl, ^ doesn't match at the end of the input, even after a line terminator
+                    if (offset == length) {
+                        return false;
+                    }
+                    if (offset == 0) {
+                        return true;
+                    }
+                    final char ch = text.charAt(offset - 1);
+                    if (this == UNIX_LINE_START) {
+                        return ch == '\n';
+                    }
+                    return isLineTerminator(ch) && !(ch == '\r' && text.charAt(offset) == '\n');
+                }
+                case LINE_END -> {
+                    if (offset == length) {
+                        return true;
+                    }
+                    final char ch = text.charAt(offset);
+                    return ch == '\n' ? offset == 0 || text.charAt(offset - 1) != '\r' : isLineTerminator(ch);
+                }
+                case UNIX_LINE_END -> {
+                    return offset == length || text.charAt(offset) == '\n';
+                }
+                case WORD_BOUNDARY, NON_WORD_BOUNDARY -> {
+                    final boolean before = offset > 0 && isWord(Character.codePointBefore(text, offset));
+                    final boolean after = offset < length && isWord(Character.codePointAt(text, offset));
+                    return (before != after) == (this == WORD_BOUNDARY);
+                }
+            }
+            throw new AssertionError(this);
+        }
+
+        private static boolean isLineTerminator(char ch) {
+            return ch == '\n' || ch == '\r' || ch == '\u0085' || ch == '\u2028' || ch == '\u2029';
+        }
+
+        private static boolean isWord(int codePoint) {
+            return codePoint == '_' || Character.isLetterOrDigit(codePoint);
+        }
+    }
+
+    private static final StateKind[] STATE_KINDS = StateKind.values();
+    private static final Assertion[] ASSERTIONS = Assertion.values();
+
+    private final byte[] myKinds;
+    private final int[] myNext;
+    private final int[] myAlternatives;
+    private final int[] myValues;
+    private final int[] myNodes;
+    private final CodePointSet[] mySets;
+    private final int myStart;
+    private final int myGroupCount;
+
+    private RegExpNfa(Builder builder, int start, int groupCount) {
+        final int size = builder.mySize;
+        myKinds = Arrays.copyOf(builder.myKinds, size);
+        myNext = Arrays.copyOf(builder.myNext, size);
+        myAlternatives = Arrays.copyOf(builder.myAlternatives, size);
+        myValues = Arrays.copyOf(builder.myValues, size);
+        myNodes = Arrays.copyOf(builder.myNodes, size);
+        mySets = Arrays.copyOf(builder.mySets, size);
+        myStart = start;
+        myGroupCount = groupCount;
+    }
+
+    public int getStateCount() {
+        return myKinds.length;
+    }
+
+    public int getStart() {
+        return myStart;
+    }
+
+    /**
+     * @return the number of capturing groups, not counting group 0
+     */
+    public int getGroupCount() {
+        return myGroupCount;
+    }
+
+    /**
+     * @return the number of capture slots, two per group including group 0
+     */
+    public int getSlotCount() {
+        return (myGroupCount + 1) * 2;
+    }
+
+    @Nonnull
+    public StateKind getKind(int state) {
+        return STATE_KINDS[myKinds[state]];
+    }
+
+    /**
+     * @return the preferred successor of the state, or -1 for a {@link StateKind#MATCH} state
+     */
+    public int getNext(int state) {
+        return myNext[state];
+    }
+
+    /**
+     * @return the less preferred successor of a {@link StateKind#SPLIT} state, or -1
+     */
+    public int getAlternative(int state) {
+        return myAlternatives[state];
+    }
+
+    /**
+     * @return the code points consumed by a {@link StateKind#CHARACTERS} state, or null for other states
+     */
+    @Nullable
+    public CodePointSet getCharacters(int state) {
+        return mySets[state];
+    }
+
+    public boolean accepts(int state, int codePoint) {
+        final CodePointSet set = mySets[state];
+        return set != null && set.contains(codePoint);
+    }
+
+    @Nonnull
+    public Assertion getAssertion(int state) {
+        return ASSERTIONS[myValues[state]];
+    }
+
+    public int getSlot(int state) {
+        return myValues[state];
+    }
+
+    /**
+     * @return the {@link org.intellij.lang.regexp.psi.impl.RegExpModel} node the state was compiled from, or -1
+     */
+    public int getNode(int state) {
+        return myNodes[state];
+    }
+
+    /**
+     * Adds states in any order, and links them once their successors exist.
+     */
+    static final class Builder {
+        private int mySize = 0;
+        private byte[] myKinds = new byte[16];
+        private int[] myNext = new int[16];
+        private int[] myAlternatives = new int[16];
+        private int[] myValues = new int[16];
+        private int[] myNodes = new int[16];
+        private CodePointSet[] mySets = new CodePointSet[16];
+
+        int size() {
+            return mySize;
+        }
+
+        int add(StateKind kind, int next, int node) {
+            if (mySize == myKinds.length) {
+                grow();
+            }
+            final int state = mySize++;
+            myKinds[state] = (byte) kind.ordinal();
+            myNext[state] = next;
+            myAlternatives[state] = -1;
+            myNodes[state] = node;
+            return state;
+        }
+
+        int addCharacters(CodePointSet set, int next, int node) {
+            final int state = add(StateKind.CHARACTERS, next, node);
+            mySets[state] = set;
+            return state;
+        }
+
+        int addSplit(int next, int alternative, int node) {
+            final int state = add(StateKind.SPLIT, next, node);
+            myAlternatives[state] = alternative;
+            return state;
+        }
+
+        int addAssertion(Assertion assertion, int next, int node) {
+            final int state = add(StateKind.ASSERTION, next, node);
+            myValues[state] = assertion.ordinal();
+            return state;
+        }
+
+        int addSave(int slot, int next, int node) {
+            final int state = add(StateKind.SAVE, next, node);
+            myValues[state] = slot;
+            return state;
+        }
+
+        void link(int state, int next, int alternative) {
+            myNext[state] = next;
+            myAlternatives[state] = alternative;
+        }
+
+        private void grow() {
+            final int length = myKinds.length << 1;
+            myKinds = Arrays.copyOf(myKinds, length);
+            myNext = Arrays.copyOf(myNext, length);
+            myAlternatives = Arrays.copyOf(myAlternatives, length);
+            myValues = Arrays.copyOf(myValues, length);
+            myNodes = Arrays.copyOf(myNodes, length);
+            mySets = Arrays.copyOf(mySets, length);
+        }
+
+        RegExpNfa build(int start, int groupCount) {
+            return new RegExpNfa(this, start, groupCount);
+        }
+    }
+}
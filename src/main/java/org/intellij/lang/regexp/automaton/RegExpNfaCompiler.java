@@ -0,0 +1,592 @@
+/*
+ * Copyright 2013-2026 consulo.io
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.intellij.lang.regexp.automaton;
+
+import consulo.annotation.access.RequiredReadAction;
+import consulo.language.psi.PsiElement;
+import consulo.language.psi.PsiErrorElement;
+import consulo.language.psi.util.PsiTreeUtil;
+import jakarta.annotation.Nonnull;
+import jakarta.annotation.Nullable;
+import org.intellij.lang.regexp.CodePointSet;
+import org.intellij.lang.regexp.psi.RegExpBoundary;
+import org.intellij.lang.regexp.psi.RegExpGroup;
+import org.intellij.lang.regexp.psi.RegExpOptions;
+import org.intellij.lang.regexp.psi.RegExpPattern;
+import org.intellij.lang.regexp.psi.RegExpSimpleClass;
+import org.intellij.lang.regexp.psi.impl.RegExpCharacterSets;
+import org.intellij.lang.regexp.psi.impl.RegExpModel;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.regex.Pattern;
+
+/**
+ * Compiles a regexp into a {@link RegExpNfa} with the Thompson construction, for matching in time linear in the input
+ * and for static analysis.
+ * <p>
+ * The compiler works on the {@link RegExpModel} of the file and follows the semantics of {@code java.util.regex}:
+ * character classes are evaluated by {@link RegExpCharacterSets}, and the flags {@code CASE_INSENSITIVE},
+ * {@code UNICODE_CASE}, {@code MULTILINE}, {@code DOTALL} and {@code UNIX_LINES} are supported, passed in or set
+ * inline with {@code (?i)} or {@code (?i:...)}. Counted repetitions are expanded into copies of their operand.
+ * <p>
+ * Constructs an automaton can't express, like back references, conditionals, lookarounds, atomic groups and possessive
+ * quantifiers, are not approximated: every one of them is reported as {@link Unsupported}, and no automaton is built.
+ */
+public final class RegExpNfaCompiler {
+    public enum Reason {
+        BACK_REFERENCE,
+        CONDITIONAL,
+        LOOKAROUND,
+        ATOMIC_GROUP,
+        POSSESSIVE_QUANTIFIER,
+        /**
+         * {@code \G} or {@code \b{g}}
+         */
+        BOUNDARY,
+        /**
+         * a matching flag other than the supported ones, passed in or set inline
+         */
+        FLAG,
+        /**
+         * a character class whose set is unknown, like {@code \X} or an unknown property
+         */
+        CHARACTER_SET,
+        /**
+         * an element of another dialect which the model doesn't describe
+         */
+        ELEMENT,
+        /**
+         * a syntax error, or invalid repetition bounds
+         */
+        ERROR,
+        /**
+         * the automaton would have more than {@link #MAX_STATES} states
+         */
+        TOO_LARGE
+    }
+
+    /**
+     * @param node the model node of the construct, or -1 if the pattern is not part of the model
+     */
+    public record Unsupported(int node, @Nonnull Reason reason) {
+    }
+
+    /**
+     * @param nfa         the automaton, or null if the pattern contains unsupported constructs
+     * @param unsupported all unsupported constructs, in the order they appear in the pattern
+     * @param approximate whether the automaton may match differently than {@code java.util.regex} in corner cases:
+     *                    properties and POSIX bracket expressions, whose case {@link Pattern} folds in part under
+     *                    {@code CASE_INSENSITIVE}, and characters matched with {@code UNICODE_CASE}, which
+     *                    {@link Pattern} compares by case variants of the input rather than of the pattern
+     */
+    public record Result(@Nullable RegExpNfa nfa, @Nonnull List<Unsupported> unsupported, boolean approximate) {
+    }
+
+    public static final int SUPPORTED_FLAGS =
+        Pattern.CASE_INSENSITIVE | Pattern.UNICODE_CASE | Pattern.MULTILINE | Pattern.DOTALL | Pattern.UNIX_LINES;
+
+    public static final int MAX_STATES = 10_000;
+
+    private final RegExpModel myModel;
+    private final int myRoot;
+    private final int[] myFlags;
+    private final CodePointSet[] mySets;
+    private final RegExpNfa.Builder myBuilder = new RegExpNfa.Builder();
+    private final List<Unsupported> myUnsupported = new ArrayList<>();
+    private boolean myTooLarge;
+
+    private RegExpNfaCompiler(RegExpModel model, int root) {
+        myModel = model;
+        myRoot = root;
+        myFlags = new int[model.getEnd(root) - root];
+        mySets = new CodePointSet[model.getEnd(root) - root];
+    }
+
+    /**
+     * @param flags the {@link Pattern} flags the regexp is compiled with
+     */
+    @Nonnull
+    @RequiredReadAction
+    public static Result compile(@Nonnull RegExpPattern pattern, int flags) {
+        final RegExpModel model = RegExpModel.getInstance(pattern.getContainingFile());
+        final int node = model.getNode(pattern);
+        // the model leaves out error elements, so it doesn't describe what the user meant
+        if (node < 0 || PsiTreeUtil.findChildOfType(pattern, PsiErrorElement.class) != null) {
+            return new Result(null, List.of(new Unsupported(node, Reason.ERROR)), false);
+        }
+        return compile(model, node, flags);
+    }
+
+    /**
+     * Compiles the subtree of a node of the model. Reading inline options requires a read action.
+     *
+     * @param flags the {@link Pattern} flags the regexp is compiled with
+     */
+    @Nonnull
+    @RequiredReadAction
+    public static Result compile(@Nonnull RegExpModel model, int node, int flags) {
+        final RegExpNfaCompiler compiler = analyze(model, node, flags);
+        if (!compiler.myUnsupported.isEmpty()) {
+            return new Result(null, List.copyOf(compiler.myUnsupported), false);
+        }
+        final RegExpNfa.Builder builder = compiler.myBuilder;
+        final int match = builder.add(RegExpNfa.StateKind.MATCH, -1, -1);
+        final int start = builder.addSave(0, compiler.compileNode(node, builder.addSave(1, match, node)), node);
+        if (compiler.myTooLarge) {
+            return new Result(null, List.of(new Unsupported(node, Reason.TOO_LARGE)), false);
+        }
+        return new Result(builder.build(start, compiler.getGroupCount()), List.of(), compiler.isApproximate());
+    }
+
+    /**
+     * Computes the flags in effect, reports the unsupported constructs and evaluates the character sets of the subtree
+     * of a node, without building an automaton.
+     */
+    @Nonnull
+    @RequiredReadAction
+    static RegExpNfaCompiler analyze(@Nonnull RegExpModel model, int node, int flags) {
+        final RegExpNfaCompiler compiler = new RegExpNfaCompiler(model, node);
+        if ((flags & ~SUPPORTED_FLAGS) != 0) {
+            compiler.myUnsupported.add(new Unsupported(node, Reason.FLAG));
+        }
+        compiler.computeFlags(flags);
+        compiler.check();
+        return compiler;
+    }
+
+    @Nonnull
+    List<Unsupported> getUnsupported() {
+        return myUnsupported;
+    }
+
+    /**
+     * @return the code points a character, range, class or property node of the analyzed subtree matches
+     */
+    CodePointSet getCharacters(int node) {
+        return mySets[node - myRoot];
+    }
+
+    // ---- flags and supported constructs
+
+    /**
+     * Computes the flags in effect at every node. Options set inline apply up to the end of the enclosing group,
+     * including the following branches.
+     */
+    @RequiredReadAction
+    private void computeFlags(int flags) {
+        final int end = myModel.getEnd(myRoot);
+        final Deque<int[]> scopes = new ArrayDeque<>();
+        int current = flags;
+        for (int node = myRoot; node < end; node++) {
+            while (!scopes.isEmpty() && scopes.peek()[0] <= node) {
+                current = scopes.pop()[1];
+            }
+            final RegExpModel.Kind kind = myModel.getKind(node);
+            if (kind == RegExpModel.Kind.GROUP) {
+                scopes.push(new int[]{myModel.getEnd(node), current});
+                if (myModel.getGroupType(node) == RegExpGroup.Type.OPTIONS) {
+                    current = applyOptions(node, current);
+                }
+            }
+            else if (kind == RegExpModel.Kind.SET_OPTIONS) {
+                current = applyOptions(node, current);
+            }
+            myFlags[node - myRoot] = current;
+        }
+    }
+
+    @RequiredReadAction
+    private int applyOptions(int node, int flags) {
+        final PsiElement element = myModel.getElement(node);
+        int result = flags;
+        boolean unknown = false;
+        for (RegExpOptions options : PsiTreeUtil.getChildrenOfTypeAsList(element, RegExpOptions.class)) {
+            final String text = options.getText();
+            for (int i = 0; i < text.length(); i++) {
+                final char option = text.charAt(i);
+                final int flag = toFlag(option);
+                if (flag == -1) {
+                    unknown = true;
+                }
+                else if (flag != 0 && options.isSwitchedOn(option)) {
+                    result |= flag;
+                }
+                else if (flag != 0 && options.isSwitchedOff(option)) {
+                    result &= ~flag;
+                }
+            }
+        }
+        if (unknown || (result & ~SUPPORTED_FLAGS) != 0 && (flags & ~SUPPORTED_FLAGS) == 0) {
+            myUnsupported.add(new Unsupported(node, Reason.FLAG));
+        }
+        return result;
+    }
+
+    /**
+     * @return the {@link Pattern} flag of an inline option, -1 for an unknown option, or 0 for other characters
+     */
+    private static int toFlag(char option) {
+        return switch (option) {
+            case 'i' -> Pattern.CASE_INSENSITIVE;
+            case 'm' -> Pattern.MULTILINE;
+            case 's' -> Pattern.DOTALL;
+            case 'u' -> Pattern.UNICODE_CASE;
+            case 'd' -> Pattern.UNIX_LINES;
+            case 'x' -> Pattern.COMMENTS;
+            case 'U' -> Pattern.UNICODE_CHARACTER_CLASS;
+            case '(', '?', '-', ':', ')' -> 0;
+            default -> Character.isLetter(option) ? -1 : 0;
+        };
+    }
+
+    /**
+     * Reports unsupported constructs and evaluates the character sets, with the flags in effect.
+     */
+    private void check() {
+        final int end = myModel.getEnd(myRoot);
+        for (int node = myRoot; node < end; node++) {
+            final Reason reason = switch (myModel.getKind(node)) {
+                case BACKREF, NAMED_GROUP_REF -> Reason.BACK_REFERENCE;
+                case CONDITIONAL -> Reason.CONDITIONAL;
+                case GROUP -> switch (myModel.getGroupType(node)) {
+                    case POSITIVE_LOOKAHEAD, NEGATIVE_LOOKAHEAD, POSITIVE_LOOKBEHIND, NEGATIVE_LOOKBEHIND -> Reason.LOOKAROUND;
+                    case ATOMIC -> Reason.ATOMIC_GROUP;
+                    default -> null;
+                };
+                case CLOSURE -> myModel.isPossessive(node) ? Reason.POSSESSIVE_QUANTIFIER
+                                : myModel.hasValidBounds(node) ? null : Reason.ERROR;
+                case BOUNDARY -> getAssertion(node) == null ? Reason.BOUNDARY : null;
+                case CHAR, CHAR_RANGE, CLASS, INTERSECTION, SIMPLE_CLASS, PROPERTY, POSIX_BRACKET_EXPRESSION -> {
+                    final CodePointSet set = evaluate(node);
+                    mySets[node - myRoot] = set;
+                    yield set == null ? Reason.CHARACTER_SET : null;
+                }
+                case UNKNOWN -> Reason.ELEMENT;
+                default -> null;
+            };
+            if (reason != null) {
+                myUnsupported.add(new Unsupported(node, reason));
+            }
+            // the elements of a class are part of its set, the condition of a conditional is reported with it
+            if (isClassElement(node) || myModel.getKind(node) == RegExpModel.Kind.CONDITIONAL) {
+                node = myModel.getEnd(node) - 1;
+            }
+        }
+    }
+
+    private boolean isClassElement(int node) {
+        return switch (myModel.getKind(node)) {
+            case CHAR, CHAR_RANGE, CLASS, INTERSECTION, SIMPLE_CLASS, PROPERTY, POSIX_BRACKET_EXPRESSION -> true;
+            default -> false;
+        };
+    }
+
+    @Nullable
+    private CodePointSet evaluate(int node) {
+        final int flags = myFlags[node - myRoot];
+        if (myModel.getKind(node) == RegExpModel.Kind.SIMPLE_CLASS && myModel.getSimpleClassKind(node) == RegExpSimpleClass.Kind.ANY) {
+            if ((flags & Pattern.DOTALL) != 0) {
+                return CodePointSet.ALL;
+            }
+            if ((flags & Pattern.UNIX_LINES) != 0) {
+                return CodePointSet.of('\n').complement();
+            }
+        }
+        return RegExpCharacterSets.evaluate(myModel, node, (flags & Pattern.CASE_INSENSITIVE) != 0, (flags & Pattern.UNICODE_CASE) != 0);
+    }
+
+    @Nullable
+    private RegExpNfa.Assertion getAssertion(int node) {
+        final int flags = myFlags[node - myRoot];
+        final boolean multiline = (flags & Pattern.MULTILINE) != 0;
+        final boolean unixLines = (flags & Pattern.UNIX_LINES) != 0;
+        final RegExpBoundary.Type type = myModel.getBoundaryType(node);
+        return switch (type) {
+            case BEGIN -> RegExpNfa.Assertion.TEXT_START;
+            case END -> RegExpNfa.Assertion.TEXT_END;
+            case LINE_START -> !multiline ? RegExpNfa.Assertion.TEXT_START
+                               : unixLines ? RegExpNfa.Assertion.UNIX_LINE_START : RegExpNfa.Assertion.LINE_START;
+            case LINE_END -> multiline ? (unixLines ? RegExpNfa.Assertion.UNIX_LINE_END : RegExpNfa.Assertion.LINE_END)
+                             : unixLines ? RegExpNfa.Assertion.UNIX_TEXT_END_OR_FINAL_TERMINATOR
+                             : RegExpNfa.Assertion.TEXT_END_OR_FINAL_TERMINATOR;
+            case END_NO_LINE_TERM -> unixLines ? RegExpNfa.Assertion.UNIX_TEXT_END_OR_FINAL_TERMINATOR
+                                     : RegExpNfa.Assertion.TEXT_END_OR_FINAL_TERMINATOR;
+            case WORD -> RegExpNfa.Assertion.WORD_BOUNDARY;
+            case NON_WORD -> RegExpNfa.Assertion.NON_WORD_BOUNDARY;
+            case UNICODE_EXTENDED_GRAPHEME, PREVIOUS_MATCH -> null;
+        };
+    }
+
+    /**
+     * @see Result#approximate()
+     */
+    private boolean isApproximate() {
+        final int end = myModel.getEnd(myRoot);
+        final int unicodeCase = Pattern.CASE_INSENSITIVE | Pattern.UNICODE_CASE;
+        for (int node = myRoot; node < end; node++) {
+            switch (myModel.getKind(node)) {
+                case PROPERTY, POSIX_BRACKET_EXPRESSION -> {
+                    return true;
+                }
+                case CHAR, CHAR_RANGE -> {
+                    if ((myFlags[node - myRoot] & unicodeCase) == unicodeCase) {
+                        return true;
+                    }
+                }
+                default -> {
+                }
+            }
+        }
+        return false;
+    }
+
+    private int getGroupCount() {
+        int count = 0;
+        final int end = myModel.getEnd(myRoot);
+        for (int node = myRoot; node < end; node++) {
+            if (myModel.getKind(node) == RegExpModel.Kind.GROUP) {
+                count = Math.max(count, myModel.getGroupNumber(node));
+            }
+        }
+        return count;
+    }
+
+    // ---- Thompson construction
+
+    /**
+     * A step of the construction. Steps work on a stack of states: a step replaces the state on top, the state following
+     * what it builds, by the first state of what it builds, or combines the states on top.
+     *
+     * @param node  the model node the step builds
+     * @param state a state the step refers to, see {@link Step}
+     * @param count the number of iterations left for a repetition
+     */
+    private record Task(Step step, int node, int state, int count) {
+    }
+
+    private enum Step {
+        /**
+         * builds the node followed by the top state
+         */
+        COMPILE,
+        /**
+         * pushes the state of the task
+         */
+        PUSH,
+        /**
+         * replaces the two top states by a split preferring the top one
+         */
+        SPLIT,
+        /**
+         * builds a save of the group node followed by the top state, the count is the slot
+         */
+        SAVE,
+        /**
+         * builds a split between the top state, an iteration of the closure node, and the state of the task, which
+         * follows the closure
+         */
+        OPTIONAL,
+        /**
+         * links the loop split of the closure node, the state of the task, to the top state, its body, and to the state
+         * below, which follows the closure
+         */
+        LOOP,
+        /**
+         * builds the optional iterations of a bounded closure node, followed by the state of the task
+         */
+        REPEAT_OPTIONAL,
+        /**
+         * builds the mandatory iterations of the operand node
+         */
+        REPEAT
+    }
+
+    /**
+     * Builds the states of a node from right to left, so every state is created after its successor. The subtree is
+     * walked with an explicit stack of tasks, as nesting is only limited by the length of the pattern.
+     *
+     * @param next the state following the node
+     * @return the first state of the node
+     */
+    private int compileNode(int root, int next) {
+        final boolean[] addsStates = computeAddsStates();
+        final Deque<Task> tasks = new ArrayDeque<>();
+        final Deque<Integer> states = new ArrayDeque<>();
+        states.push(next);
+        tasks.push(new Task(Step.COMPILE, root, -1, 0));
+        while (!tasks.isEmpty()) {
+            if (myBuilder.size() > MAX_STATES) {
+                myTooLarge = true;
+                return next;
+            }
+            final Task task = tasks.pop();
+            final int node = task.node();
+            switch (task.step()) {
+                case COMPILE -> expand(node, states.pop(), addsStates, tasks, states);
+                case PUSH -> states.push(task.state());
+                case SPLIT -> {
+                    final int first = states.pop();
+                    states.push(myBuilder.addSplit(first, states.pop(), node));
+                }
+                case SAVE -> states.push(myBuilder.addSave(task.count(), states.pop(), node));
+                case OPTIONAL -> states.push(addExit(node, states.pop(), task.state()));
+                case LOOP -> {
+                    final int body = states.pop();
+                    final int exit = states.pop();
+                    final int loop = task.state();
+                    if (myModel.isReluctant(node)) {
+                        myBuilder.link(loop, exit, body);
+                    }
+                    else {
+                        myBuilder.link(loop, body, exit);
+                    }
+                    states.push(myModel.getMin(node) == 0 ? addExit(node, body, exit) : body);
+                }
+                case REPEAT_OPTIONAL -> {
+                    if (task.count() > 0) {
+                        tasks.push(new Task(Step.REPEAT_OPTIONAL, node, task.state(), task.count() - 1));
+                        tasks.push(new Task(Step.OPTIONAL, node, task.state(), 0));
+                        tasks.push(new Task(Step.COMPILE, myModel.getFirstChild(node), -1, 0));
+                    }
+                }
+                case REPEAT -> {
+                    if (task.count() > 0) {
+                        tasks.push(new Task(Step.REPEAT, node, -1, task.count() - 1));
+                        tasks.push(new Task(Step.COMPILE, node, -1, 0));
+                    }
+                }
+            }
+        }
+        return states.pop();
+    }
+
+    /**
+     * Builds a leaf node followed by a state, or pushes the tasks building a composite node. Tasks run in the reverse
+     * order they are pushed in.
+     */
+    private void expand(int node, int next, boolean[] addsStates, Deque<Task> tasks, Deque<Integer> states) {
+        switch (myModel.getKind(node)) {
+            case PATTERN -> {
+                final int count = myModel.getChildCount(node);
+                if (count == 0) {
+                    states.push(next);
+                    return;
+                }
+                // the last branch is built first, and every other one is followed by a split to the branches after it
+                int i = 0;
+                for (int branch = myModel.getFirstChild(node); branch != -1; branch = myModel.getNextSibling(branch), i++) {
+                    if (i < count - 1) {
+                        tasks.push(new Task(Step.SPLIT, node, -1, 0));
+                    }
+                    tasks.push(new Task(Step.COMPILE, branch, -1, 0));
+                    tasks.push(new Task(Step.PUSH, node, next, 0));
+                }
+            }
+            case BRANCH -> {
+                states.push(next);
+                for (int child = myModel.getFirstChild(node); child != -1; child = myModel.getNextSibling(child)) {
+                    tasks.push(new Task(Step.COMPILE, child, -1, 0));
+                }
+            }
+            case GROUP -> {
+                final int pattern = myModel.getFirstChild(node);
+                final int number = myModel.getGroupNumber(node);
+                if (number <= 0) {
+                    states.push(next);
+                }
+                else {
+                    states.push(myBuilder.addSave(number * 2 + 1, next, node));
+                    tasks.push(new Task(Step.SAVE, node, -1, number * 2));
+                }
+                if (pattern >= 0) {
+                    tasks.push(new Task(Step.COMPILE, pattern, -1, 0));
+                }
+            }
+            case CLOSURE -> expandClosure(node, next, addsStates, tasks, states);
+            case BOUNDARY -> {
+                final RegExpNfa.Assertion assertion = getAssertion(node);
+                assert assertion != null;
+                states.push(myBuilder.addAssertion(assertion, next, node));
+            }
+            case SET_OPTIONS -> states.push(next);
+            default -> states.push(myBuilder.addCharacters(mySets[node - myRoot], next, node));
+        }
+    }
+
+    /**
+     * Expands {@code x{n,m}} to n copies of x followed by m - n nested optional copies, {@code x(x(x)?)?},
+     * and {@code x{n,}} to n copies followed by a loop back to the last one, or an optional loop for n = 0.
+     * Repeating an operand without states of its own, like {@code (?:)}, builds nothing however often it's repeated.
+     */
+    private void expandClosure(int node, int next, boolean[] addsStates, Deque<Task> tasks, Deque<Integer> states) {
+        final int atom = myModel.getFirstChild(node);
+        final int min = myModel.getMin(node);
+        final int max = myModel.getMax(node);
+        if (atom < 0 || max == 0 || !addsStates[atom - myRoot]) {
+            states.push(next);
+            return;
+        }
+        if (max == RegExpModel.UNBOUNDED) {
+            // an iteration returns to a state of its own, so an iteration matching the empty string can still exit
+            final int loop = myBuilder.addSplit(-1, -1, node);
+            tasks.push(new Task(Step.REPEAT, atom, -1, Math.max(min - 1, 0)));
+            tasks.push(new Task(Step.LOOP, node, loop, 0));
+            tasks.push(new Task(Step.COMPILE, atom, -1, 0));
+            states.push(next);
+            states.push(loop);
+        }
+        else {
+            tasks.push(new Task(Step.REPEAT, atom, -1, min));
+            tasks.push(new Task(Step.REPEAT_OPTIONAL, node, next, max - min));
+            states.push(next);
+        }
+    }
+
+    /**
+     * @return a split between an iteration of a closure and the state following it, in the order of the closure
+     */
+    private int addExit(int node, int body, int exit) {
+        return myModel.isReluctant(node) ? myBuilder.addSplit(exit, body, node) : myBuilder.addSplit(body, exit, node);
+    }
+
+    /**
+     * Computes bottom-up whether building a node of the subtree adds states, rather than only returning the state
+     * following it.
+     */
+    private boolean[] computeAddsStates() {
+        final int end = myModel.getEnd(myRoot);
+        final boolean[] result = new boolean[end - myRoot];
+        // in reverse preorder the children of a node are visited before the node itself
+        for (int node = end - 1; node >= myRoot; node--) {
+            boolean children = false;
+            for (int child = myModel.getFirstChild(node); child != -1 && !children; child = myModel.getNextSibling(child)) {
+                children = result[child - myRoot];
+            }
+            result[node - myRoot] = switch (myModel.getKind(node)) {
+                case PATTERN -> children || myModel.getChildCount(node) > 1;
+                case BRANCH -> children;
+                case GROUP -> children || myModel.getGroupNumber(node) > 0;
+                case CLOSURE -> children && myModel.getMax(node) != 0;
+                case SET_OPTIONS -> false;
+                default -> true;
+            };
+        }
+        return result;
+    }
+}
@@ -0,0 +1,225 @@
+/*
+ * Copyright 2013-2026 consulo.io
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.intellij.lang.regexp.automaton;
+
+import jakarta.annotation.Nonnull;
+import jakarta.annotation.Nullable;
+
+import java.util.Arrays;
+
+/**
+ * Simulates a {@link RegExpNfa} with the Pike VM: all threads advance over the input in lockstep, one code point at
+ * a time, so matching takes O(states &times; input length) time whatever the pattern, and never backtracks.
+ * <p>
+ * Threads are kept in priority order, and a state is entered by at most one thread per input position: the one with
+ * the highest priority. Once a thread matches, the threads with lower priority are dropped. This gives the
+ * leftmost-first match and the capture groups a backtracking matcher like {@code java.util.regex} finds, except
+ * for repetitions which can match the empty string, whose empty iterations may set groups differently.
+ * <p>
+ * Instances are not thread-safe, they reuse their thread lists between calls.
+ */
+public final class RegExpPikeVm implements RegExpMatcher {
+    private final RegExpNfa myNfa;
+    private final int mySlotCount;
+    private ThreadList myCurrent;
+    private ThreadList myNext;
+    /**
+     * pending work of {@link #addThread}: a state to enter, or {@code -2 - slot} followed by a value to restore
+     */
+    private int[] myStack;
+    private int[] myCaptures;
+
+    public RegExpPikeVm(@Nonnull RegExpNfa nfa) {
+        myNfa = nfa;
+        mySlotCount = nfa.getSlotCount();
+        myCurrent = new ThreadList(nfa.getStateCount(), mySlotCount);
+        myNext = new ThreadList(nfa.getStateCount(), mySlotCount);
+        myStack = new int[16];
+        myCaptures = new int[mySlotCount];
+    }
+
+    @Nonnull
+    public RegExpNfa getNfa() {
+        return myNfa;
+    }
+
+    @Override
+    public boolean matches(@Nonnull CharSequence text) {
+        return run(text, 0, true, true) != null;
+    }
+
+    @Nullable
+    @Override
+    public int[] find(@Nonnull CharSequence text, int from) {
+        final int[] captures = run(text, from, false, false);
+        return captures == null ? null : new int[]{captures[0], captures[1]};
+    }
+
+    /**
+     * Matches the whole text, like {@link java.util.regex.Matcher#matches()}.
+     *
+     * @return the capture slots, start and end offset of every group with -1 for groups which didn't participate,
+     * or null if the text doesn't match
+     */
+    @Nullable
+    public int[] matchGroups(@Nonnull CharSequence text) {
+        return run(text, 0, true, true);
+    }
+
+    /**
+     * Finds the first match at or after an offset, like {@link java.util.regex.Matcher#find(int)}.
+     *
+     * @return the capture slots, see {@link #matchGroups(CharSequence)}, or null if there is no match
+     */
+    @Nullable
+    public int[] findGroups(@Nonnull CharSequence text, int from) {
+        return run(text, from, false, false);
+    }
+
+    @Nullable
+    private int[] run(CharSequence text, int from, boolean anchorStart, boolean anchorEnd) {
+        final int length = text.length();
+        int[] matched = null;
+        myCurrent.clear();
+        Arrays.fill(myCaptures, -1);
+        int offset = from;
+        while (true) {
+            // a new thread starting here has lower priority than those that started earlier
+            if (matched == null && (!anchorStart || offset == from)) {
+                Arrays.fill(myCaptures, -1);
+                addThread(myCurrent, myNfa.getStart(), text, offset);
+            }
+            if (myCurrent.mySize == 0 && (matched != null || anchorStart)) {
+                break;
+            }
+            final int codePoint = offset < length ? Character.codePointAt(text, offset) : -1;
+            final int nextOffset = offset < length ? offset + Character.charCount(codePoint) : offset;
+            myNext.clear();
+            for (int i = 0; i < myCurrent.mySize; i++) {
+                final int state = myCurrent.myStates[i];
+                final RegExpNfa.StateKind kind = myNfa.getKind(state);
+                if (kind == RegExpNfa.StateKind.MATCH) {
+                    if (anchorEnd && offset != length) {
+                        continue;
+                    }
+                    matched = Arrays.copyOfRange(myCurrent.myCaptures, i * mySlotCount, (i + 1) * mySlotCount);
+                    // the threads with lower priority can only find worse matches
+                    break;
+                }
+                if (codePoint >= 0 && myNfa.accepts(state, codePoint)) {
+                    System.arraycopy(myCurrent.myCaptures, i * mySlotCount, myCaptures, 0, mySlotCount);
+                    addThread(myNext, myNfa.getNext(state), text, nextOffset);
+                }
+            }
+            if (offset == length) {
+                break;
+            }
+            final ThreadList list = myCurrent;
+            myCurrent = myNext;
+            myNext = list;
+            offset = nextOffset;
+        }
+        return matched;
+    }
+
+    /**
+     * Adds a thread in state {@code start} with the captures in {@link #myCaptures}, following the epsilon edges
+     * in priority order. Only threads in {@link RegExpNfa.StateKind#CHARACTERS} and {@link RegExpNfa.StateKind#MATCH}
+     * states are kept in the list, the other states are passed through.
+     */
+    private void addThread(ThreadList list, int start, CharSequence text, int offset) {
+        int top = 0;
+        myStack[top++] = start;
+        while (top > 0) {
+            int state = myStack[--top];
+            if (state < -1) {
+                myCaptures[-2 - state] = myStack[--top];
+                continue;
+            }
+            while (state >= 0 && !list.contains(state)) {
+                list.visit(state);
+                switch (myNfa.getKind(state)) {
+                    case CHARACTERS, MATCH -> {
+                        list.add(state, myCaptures);
+                        state = -1;
+                    }
+                    case EPSILON -> state = myNfa.getNext(state);
+                    case SPLIT -> {
+                        if (top + 1 >= myStack.length) {
+                            myStack = Arrays.copyOf(myStack, myStack.length * 2);
+                        }
+                        myStack[top++] = myNfa.getAlternative(state);
+                        state = myNfa.getNext(state);
+                    }
+                    case ASSERTION -> state = myNfa.getAssertion(state).test(text, offset) ? myNfa.getNext(state) : -1;
+                    case SAVE -> {
+                        final int slot = myNfa.getSlot(state);
+                        if (top + 2 >= myStack.length) {
+                            myStack = Arrays.copyOf(myStack, myStack.length * 2);
+                        }
+                        // restored once the states after this one have been followed
+                        myStack[top++] = myCaptures[slot];
+                        myStack[top++] = -2 - slot;
+                        myCaptures[slot] = offset;
+                        state = myNfa.getNext(state);
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * States in priority order with the captures of their threads, and a sparse set of the states visited while
+     * adding threads, which is cleared in constant time.
+     */
+    private static final class ThreadList {
+        private final int[] myStates;
+        private final int[] myCaptures;
+        private final int[] myDense;
+        private final int[] mySparse;
+        private final int mySlotCount;
+        private int mySize;
+        private int myVisitedCount;
+
+        private ThreadList(int stateCount, int slotCount) {
+            myStates = new int[stateCount];
+            myCaptures = new int[stateCount * slotCount];
+            myDense = new int[stateCount];
+            mySparse = new int[stateCount];
+            mySlotCount = slotCount;
+        }
+
+        private void clear() {
+            mySize = 0;
+            myVisitedCount = 0;
+        }
+
+        private boolean contains(int state) {
+            final int index = mySparse[state];
+            return index < myVisitedCount && myDense[index] == state;
+        }
+
+        private void visit(int state) {
+            mySparse[state] = myVisitedCount;
+            myDense[myVisitedCount++] = state;
+        }
+
+        private void add(int state, int[] captures) {
+            System.arraycopy(captures, 0, myCaptures, mySize * mySlotCount, mySlotCount);
+            myStates[mySize++] = state;
+        }
+    }
+}
@@ -0,0 +1,147 @@
+/*
+ * Copyright 2013-2026 consulo.io
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.intellij.lang.regexp.automaton;
+
+import jakarta.annotation.Nonnull;
+import jakarta.annotation.Nullable;
+import org.intellij.lang.regexp.CodePointSet;
+
+import java.util.Arrays;
+
+/**
+ * Simulates a {@link RegExpGlushkovAutomaton} bit-parallel: the set of active positions is a {@code long}, and one input
+ * code point advances all of them with a few table lookups, an OR and an AND, like the Shift-And algorithm does for
+ * plain strings.
+ * <p>
+ * The positions a set can move to are looked up byte by byte in precomputed tables of the unions of follow sets, then
+ * masked with the positions accepting the code point. These masks are precomputed for ASCII, and looked up by the
+ * class of the code point in a {@link RegExpAlphabet} otherwise.
+ * <p>
+ * The automaton knows whether and where a match ends, but not the leftmost-first bounds, so
+ * {@link #find(CharSequence, int)} lets the {@link RegExpPikeVm} find them once it knows there is a match.
+ * <p>
+ * Instances are not thread-safe.
+ */
+public final class RegExpShiftAndMatcher implements RegExpMatcher {
+    private final RegExpNfa myNfa;
+    private final long myFirst;
+    private final long myLast;
+    private final boolean myNullable;
+    /**
+     * for byte k of a set of positions, the union of the follow sets of its positions
+     */
+    private final long[][] myFollow;
+    private final long[] myAsciiMasks = new long[128];
+    private final RegExpAlphabet myAlphabet;
+    private final long[] myClassMasks;
+    private RegExpPikeVm myPikeVm;
+
+    /**
+     * @param nfa the automaton of the same pattern, to find the bounds of matches with
+     */
+    public RegExpShiftAndMatcher(@Nonnull RegExpGlushkovAutomaton automaton, @Nonnull RegExpNfa nfa) {
+        myNfa = nfa;
+        myFirst = automaton.getFirst();
+        myLast = automaton.getLast();
+        myNullable = automaton.isNullable();
+        final int count = automaton.getPositionCount();
+        myFollow = new long[(count + 7) / 8][256];
+        for (int k = 0; k < myFollow.length; k++) {
+            final long[] table = myFollow[k];
+            for (int bits = 1; bits < 256; bits++) {
+                // the union of the lowest position's follow set and the rest's, which is already computed
+                final int position = k * 8 + Integer.numberOfTrailingZeros(bits);
+                table[bits] = table[bits & bits - 1] | (position < count ? automaton.getFollow(position) : 0);
+            }
+        }
+        final CodePointSet[] sets = new CodePointSet[count];
+        for (int position = 0; position < count; position++) {
+            sets[position] = automaton.getCharacters(position);
+        }
+        for (int codePoint = 0; codePoint < myAsciiMasks.length; codePoint++) {
+            myAsciiMasks[codePoint] = getMask(sets, codePoint);
+        }
+        myAlphabet = RegExpAlphabet.of(Arrays.asList(sets));
+        myClassMasks = new long[myAlphabet.getClassCount()];
+        for (int characterClass = 0; characterClass < myClassMasks.length; characterClass++) {
+            myClassMasks[characterClass] = getMask(sets, myAlphabet.getRepresentative(characterClass));
+        }
+    }
+
+    private static long getMask(CodePointSet[] sets, int codePoint) {
+        long mask = 0;
+        for (int position = 0; position < sets.length; position++) {
+            if (sets[position].contains(codePoint)) {
+                mask |= 1L << position;
+            }
+        }
+        return mask;
+    }
+
+    @Override
+    public boolean matches(@Nonnull CharSequence text) {
+        final int length = text.length();
+        if (length == 0) {
+            return myNullable;
+        }
+        int codePoint = Character.codePointAt(text, 0);
+        long positions = myFirst & getMask(codePoint);
+        for (int offset = Character.charCount(codePoint); offset < length && positions != 0; offset += Character.charCount(codePoint)) {
+            codePoint = Character.codePointAt(text, offset);
+            positions = follow(positions) & getMask(codePoint);
+        }
+        return (positions & myLast) != 0;
+    }
+
+    @Nullable
+    @Override
+    public int[] find(@Nonnull CharSequence text, int from) {
+        if (myNullable) {
+            return getPikeVm().find(text, from);
+        }
+        final int length = text.length();
+        long positions = 0;
+        for (int offset = from; offset < length; ) {
+            final int codePoint = Character.codePointAt(text, offset);
+            // a match may start at every offset
+            positions = (follow(positions) | myFirst) & getMask(codePoint);
+            if ((positions & myLast) != 0) {
+                return getPikeVm().find(text, from);
+            }
+            offset += Character.charCount(codePoint);
+        }
+        return null;
+    }
+
+    private long follow(long positions) {
+        long result = 0;
+        for (int k = 0; positions != 0; k++, positions >>>= 8) {
+            result |= myFollow[k][(int) positions & 0xFF];
+        }
+        return result;
+    }
+
+    private long getMask(int codePoint) {
+        return codePoint < myAsciiMasks.length ? myAsciiMasks[codePoint] : myClassMasks[myAlphabet.getClass(codePoint)];
+    }
+
+    private RegExpPikeVm getPikeVm() {
+        if (myPikeVm == null) {
+            myPikeVm = new RegExpPikeVm(myNfa);
+        }
+        return myPikeVm;
+    }
+}
@@ -0,0 +1,222 @@
+/*
+ * Copyright 2013-2026 consulo.io
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.intellij.lang.regexp.inspection;
+
+import consulo.application.util.concurrent.AppExecutorUtil;
+import jakarta.annotation.Nonnull;
+import jakarta.annotation.Nullable;
+import org.intellij.lang.regexp.psi.impl.RegExpBacktrackingAnalysis;
+
+import java.util.Arrays;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Pattern;
+
+/**
+ * Measures how long {@code java.util.regex} takes to match an {@link RegExpBacktrackingAnalysis.AttackString} with
+ * growing pump counts.
+ * <p>
+ * Measurements run one at a time on the application thread pool, which the platform shuts down, and each match is
+ * aborted when it exceeds its time limit: the input checks the deadline every few hundred characters the matcher reads,
+ * so even a runaway match stops promptly.
+ * Measurements are cached by pattern, flags and attack string.
+ */
+final class RegExpBacktrackingVerifier {
+    private static final long STEP_TIMEOUT = TimeUnit.MILLISECONDS.toNanos(250);
+    private static final long TOTAL_TIMEOUT = TimeUnit.SECONDS.toNanos(1);
+    private static final int[] EXPONENTIAL_PUMP_COUNTS = {8, 12, 16, 20, 24, 28, 32};
+    private static final int[] POLYNOMIAL_PUMP_COUNTS = {64, 128, 256, 512, 1024, 2048, 4096};
+    private static final int MAX_CACHED_MEASUREMENTS = 256;
+
+    private static final ExecutorService ourExecutor = AppExecutorUtil.createBoundedApplicationPoolExecutor("RegExp Backtracking Verifier", 1);
+    private static final Map<Key, Measurement> ourMeasurements = new ConcurrentHashMap<>();
+    private static final Set<Key> ourPending = ConcurrentHashMap.newKeySet();
+
+    private record Key(String pattern, int flags, RegExpBacktrackingAnalysis.AttackString attackString,
+                       RegExpBacktrackingAnalysis.Kind kind) {
+    }
+
+    /**
+     * @param pumpCounts the pump counts matched, in increasing order
+     * @param times      the time each match took, in nanoseconds; the last one may have been aborted
+     * @param aborted    true if the last match exceeded its time limit
+     */
+    record Measurement(@Nonnull int[] pumpCounts, @Nonnull long[] times, boolean aborted) {
+        boolean isEmpty() {
+            return pumpCounts.length == 0;
+        }
+
+        /**
+         * @return the growth curve, like {@code n=8: 0.1 ms, n=12: 3.5 ms, n=16: > 250 ms}
+         */
+        @Nonnull
+        String format() {
+            final StringBuilder builder = new StringBuilder();
+            for (int i = 0; i < pumpCounts.length; i++) {
+                if (i > 0) {
+                    builder.append(", ");
+                }
+                builder.append("n=").append(pumpCounts[i]).append(": ");
+                if (aborted && i == pumpCounts.length - 1) {
+                    builder.append("> ").append(TimeUnit.NANOSECONDS.toMillis(STEP_TIMEOUT)).append(" ms");
+                }
+                else {
+                    builder.append(String.format(Locale.ROOT, "%.1f ms", times[i] / 1_000_000.0));
+                }
+            }
+            return builder.toString();
+        }
+    }
+
+    private RegExpBacktrackingVerifier() {
+    }
+
+    /**
+     * @return the cached measurement, or null if the pattern hasn't been measured with this attack string yet
+     */
+    @Nullable
+    static Measurement getMeasurement(@Nonnull String pattern,
+                                      int flags,
+                                      @Nonnull RegExpBacktrackingAnalysis.AttackString attackString,
+                                      @Nonnull RegExpBacktrackingAnalysis.Kind kind) {
+        return ourMeasurements.get(new Key(pattern, flags, attackString, kind));
+    }
+
+    /**
+     * Measures in the background, unless a measurement is cached or already running.
+     *
+     * @param onMeasured called on a pooled thread when the measurement is done
+     */
+    static void measureLater(@Nonnull String pattern,
+                             int flags,
+                             @Nonnull RegExpBacktrackingAnalysis.AttackString attackString,
+                             @Nonnull RegExpBacktrackingAnalysis.Kind kind,
+                             @Nonnull Runnable onMeasured) {
+        final Key key = new Key(pattern, flags, attackString, kind);
+        if (ourMeasurements.containsKey(key) || !ourPending.add(key)) {
+            return;
+        }
+        ourExecutor.execute(() -> {
+            try {
+                measure(key);
+            }
+            finally {
+                ourPending.remove(key);
+            }
+            onMeasured.run();
+        });
+    }
+
+    /**
+     * Measures in the calling thread, taking at most about a second.
+     */
+    @Nonnull
+    static Measurement measure(@Nonnull String pattern,
+                               int flags,
+                               @Nonnull RegExpBacktrackingAnalysis.AttackString attackString,
+                               @Nonnull RegExpBacktrackingAnalysis.Kind kind) {
+        return measure(new Key(pattern, flags, attackString, kind));
+    }
+
+    private static Measurement measure(Key key) {
+        final Measurement cached = ourMeasurements.get(key);
+        if (cached != null) {
+            return cached;
+        }
+        final Measurement measurement = run(key);
+        if (ourMeasurements.size() >= MAX_CACHED_MEASUREMENTS) {
+            ourMeasurements.clear();
+        }
+        ourMeasurements.put(key, measurement);
+        return measurement;
+    }
+
+    private static Measurement run(Key key) {
+        final Pattern pattern;
+        try {
+            pattern = Pattern.compile(key.pattern(), key.flags());
+        }
+        catch (IllegalArgumentException e) {
+            return new Measurement(new int[0], new long[0], false);
+        }
+        final int[] pumpCounts = key.kind() == RegExpBacktrackingAnalysis.Kind.EXPONENTIAL ? EXPONENTIAL_PUMP_COUNTS : POLYNOMIAL_PUMP_COUNTS;
+        final long[] times = new long[pumpCounts.length];
+        final long end = System.nanoTime() + TOTAL_TIMEOUT;
+        int count = 0;
+        boolean aborted = false;
+        while (count < pumpCounts.length && !aborted && System.nanoTime() < end) {
+            final String input = key.attackString().build(pumpCounts[count]);
+            final long start = System.nanoTime();
+            try {
+                pattern.matcher(new DeadlineCharSequence(input, Math.min(start + STEP_TIMEOUT, end))).matches();
+            }
+            catch (DeadlineExceededException | StackOverflowError e) {
+                aborted = true;
+            }
+            times[count++] = System.nanoTime() - start;
+        }
+        return new Measurement(Arrays.copyOf(pumpCounts, count), Arrays.copyOf(times, count), aborted);
+    }
+
+    private static final class DeadlineExceededException extends RuntimeException {
+        DeadlineExceededException() {
+            super(null, null, false, false);
+        }
+    }
+
+    /**
+     * Input which aborts the match once the deadline has passed.
+     */
+    private static final class DeadlineCharSequence implements CharSequence {
+        private final String myText;
+        private final long myDeadline;
+        private int myReads;
+
+        DeadlineCharSequence(String text, long deadline) {
+            myText = text;
+            myDeadline = deadline;
+        }
+
+        @Override
+        public int length() {
+            return myText.length();
+        }
+
+        @Override
+        public char charAt(int index) {
+            if ((++myReads & 0xFF) == 0 && System.nanoTime() > myDeadline) {
+                throw new DeadlineExceededException();
+            }
+            return myText.charAt(index);
+        }
+
+        @Nonnull
+        @Override
+        public CharSequence subSequence(int start, int end) {
+            return myText.subSequence(start, end);
+        }
+
+        @Nonnull
+        @Override
+        public String toString() {
+            return myText;
+        }
+    }
+}
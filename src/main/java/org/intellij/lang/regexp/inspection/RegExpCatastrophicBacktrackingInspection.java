@@ -0,0 +1,182 @@
+/*
+ * Copyright 2013-2026 consulo.io
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.intellij.lang.regexp.inspection;
+
+import consulo.annotation.access.RequiredReadAction;
+import consulo.annotation.component.ExtensionImpl;
+import consulo.application.Application;
+import consulo.language.Language;
+import consulo.language.editor.DaemonCodeAnalyzer;
+import consulo.language.editor.inspection.LocalInspectionTool;
+import consulo.language.editor.inspection.ProblemHighlightType;
+import consulo.language.editor.inspection.ProblemsHolder;
+import consulo.language.editor.rawHighlight.HighlightDisplayLevel;
+import consulo.language.inject.InjectedLanguageManager;
+import consulo.language.psi.PsiElementVisitor;
+import consulo.language.psi.PsiFile;
+import consulo.localize.LocalizeValue;
+import consulo.project.Project;
+import consulo.regexp.localize.RegExpLocalize;
+import consulo.util.lang.StringUtil;
+import jakarta.annotation.Nonnull;
+import jakarta.annotation.Nullable;
+import org.intellij.lang.regexp.RegExpCapability;
+import org.intellij.lang.regexp.RegExpFile;
+import org.intellij.lang.regexp.RegExpLanguage;
+import org.intellij.lang.regexp.RegExpModifierProvider;
+import org.intellij.lang.regexp.psi.RegExpClosure;
+import org.intellij.lang.regexp.psi.RegExpElementVisitor;
+import org.intellij.lang.regexp.psi.impl.RegExpBacktrackingAnalysis;
+import org.intellij.lang.regexp.psi.impl.RegExpModel;
+
+/**
+ * Reports repetitions which can make a backtracking matcher take exponential or polynomial time,
+ * see {@link RegExpBacktrackingAnalysis}.
+ * <p>
+ * The attack string synthesized for each problem is matched with {@link java.util.regex.Pattern}, using the flags
+ * of the host, and the measured times are added to the problem description. While highlighting, the measurement runs
+ * in the background and highlighting restarts when it's done. Only regexps with the default, Java compatible syntax
+ * are measured: Pattern may parse and match those of other dialects differently from the engine they are written for.
+ */
+@ExtensionImpl
+public class RegExpCatastrophicBacktrackingInspection extends LocalInspectionTool {
+    @Nonnull
+    @Override
+    public String getShortName() {
+        return "RegExpCatastrophicBacktracking";
+    }
+
+    @Nonnull
+    @Override
+    public LocalizeValue getDisplayName() {
+        return RegExpLocalize.inspectionNameCatastrophicBacktracking();
+    }
+
+    @Nonnull
+    @Override
+    public LocalizeValue getGroupDisplayName() {
+        return RegExpLocalize.inspectionGroupNameRegexp();
+    }
+
+    @Nullable
+    @Override
+    public Language getLanguage() {
+        return RegExpLanguage.INSTANCE;
+    }
+
+    @Override
+    public boolean isEnabledByDefault() {
+        return true;
+    }
+
+    @Nonnull
+    @Override
+    public HighlightDisplayLevel getDefaultLevel() {
+        return HighlightDisplayLevel.WARNING;
+    }
+
+    @Nonnull
+    @Override
+    public PsiElementVisitor buildVisitor(@Nonnull ProblemsHolder holder, boolean isOnTheFly) {
+        return new RegExpElementVisitor() {
+            @Override
+            @RequiredReadAction
+            public void visitRegExpClosure(RegExpClosure closure) {
+                final RegExpBacktrackingAnalysis analysis = RegExpBacktrackingAnalysis.getInstance(closure.getContainingFile());
+                final RegExpModel model = analysis.getModel();
+                final int node = model.getNode(closure);
+                final RegExpBacktrackingAnalysis.Problem problem = node < 0 ? null : analysis.getProblem(node);
+                if (problem == null) {
+                    return;
+                }
+                holder.registerProblem(closure, getMessage(model, problem).get() + getMeasurementMessage(closure, node, analysis, isOnTheFly));
+                final LocalizeValue involved = RegExpLocalize.inspectionWarningInvolvedInBacktrackingOf0(closure.getText());
+                for (int related : problem.related()) {
+                    if (related != node) {
+                        holder.registerProblem(model.getElement(related), involved.get(), ProblemHighlightType.WEAK_WARNING);
+                    }
+                }
+            }
+        };
+    }
+
+    /**
+     * Measures the attack string of the problem, in the background when highlighting, and describes the result.
+     */
+    @RequiredReadAction
+    private static String getMeasurementMessage(RegExpClosure closure, int node, RegExpBacktrackingAnalysis analysis, boolean isOnTheFly) {
+        final RegExpBacktrackingAnalysis.Problem problem = analysis.getProblem(node);
+        final RegExpBacktrackingAnalysis.AttackString attackString = analysis.getAttackString(node);
+        if (problem == null || attackString == null) {
+            return "";
+        }
+        final PsiFile file = closure.getContainingFile();
+        if (!(file instanceof RegExpFile regExpFile) || !regExpFile.getCapabilities().equals(RegExpCapability.DEFAULT_CAPABILITIES)) {
+            return "";
+        }
+        final String pattern = file.getText();
+        final int flags = RegExpModifierProvider.resolveFlags(file);
+        final RegExpBacktrackingVerifier.Measurement measurement;
+        if (isOnTheFly) {
+            measurement = RegExpBacktrackingVerifier.getMeasurement(pattern, flags, attackString, problem.kind());
+            if (measurement == null) {
+                final Project project = file.getProject();
+                final PsiFile topLevelFile = InjectedLanguageManager.getInstance(project).getTopLevelFile(file);
+                RegExpBacktrackingVerifier.measureLater(pattern, flags, attackString, problem.kind(), () -> Application.get().invokeLater(() -> {
+                    if (!project.isDisposed() && topLevelFile.isValid()) {
+                        DaemonCodeAnalyzer.getInstance(project).restart(topLevelFile);
+                    }
+                }));
+                return "";
+            }
+        }
+        else {
+            measurement = RegExpBacktrackingVerifier.measure(pattern, flags, attackString, problem.kind());
+        }
+        if (measurement.isEmpty()) {
+            return "";
+        }
+        final String input = escape(attackString.prefix()) + "(" + escape(attackString.pump()) + "){n}" + escape(attackString.suffix());
+        return " " + RegExpLocalize.inspectionWarningBacktrackingMeasured01(input, measurement.format()).get();
+    }
+
+    private static String escape(String text) {
+        return StringUtil.escapeXmlEntities(StringUtil.escapeStringCharacters(text));
+    }
+
+    @RequiredReadAction
+    private static LocalizeValue getMessage(RegExpModel model, RegExpBacktrackingAnalysis.Problem problem) {
+        final int[] related = problem.related();
+        if (problem.kind() == RegExpBacktrackingAnalysis.Kind.POLYNOMIAL) {
+            return RegExpLocalize.inspectionWarningPotentialPolynomialBacktrackingOfDegree0With1(
+                problem.degree(), getText(model, related[related.length - 1]));
+        }
+        if (related.length != 2) {
+            return RegExpLocalize.inspectionWarningPotentialExponentialBacktracking();
+        }
+        if (related[0] == problem.closure() || related[1] == problem.closure()) {
+            final int nested = related[0] == problem.closure() ? related[1] : related[0];
+            return RegExpLocalize.inspectionWarningPotentialExponentialBacktrackingNestedRepetition0(getText(model, nested));
+        }
+        return RegExpLocalize.inspectionWarningPotentialExponentialBacktracking0And1CanMatchTheSameText(
+            getText(model, related[0]), getText(model, related[1]));
+    }
+
+    @RequiredReadAction
+    private static String getText(RegExpModel model, int node) {
+        return model.getElement(node).getText();
+    }
+}
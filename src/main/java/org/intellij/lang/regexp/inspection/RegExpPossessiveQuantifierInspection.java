@@ -0,0 +1,355 @@
+/*
+ * Copyright 2013-2026 consulo.io
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.intellij.lang.regexp.inspection;
+
+import consulo.annotation.access.RequiredReadAction;
+import consulo.annotation.access.RequiredWriteAction;
+import consulo.annotation.component.ExtensionImpl;
+import consulo.language.Language;
+import consulo.language.editor.inspection.LocalInspectionTool;
+import consulo.language.editor.inspection.LocalQuickFix;
+import consulo.language.editor.inspection.ProblemDescriptor;
+import consulo.language.editor.inspection.ProblemsHolder;
+import consulo.language.editor.rawHighlight.HighlightDisplayLevel;
+import consulo.language.psi.PsiElement;
+import consulo.language.psi.PsiElementVisitor;
+import consulo.language.psi.PsiFile;
+import consulo.localize.LocalizeValue;
+import consulo.project.Project;
+import consulo.regexp.localize.RegExpLocalize;
+import jakarta.annotation.Nonnull;
+import jakarta.annotation.Nullable;
+import org.intellij.lang.regexp.CodePointSet;
+import org.intellij.lang.regexp.RegExpLanguage;
+import org.intellij.lang.regexp.RegExpLanguageHosts;
+import org.intellij.lang.regexp.RegExpModifierProvider;
+import org.intellij.lang.regexp.psi.RegExpBoundary;
+import org.intellij.lang.regexp.psi.RegExpClosure;
+import org.intellij.lang.regexp.psi.RegExpElementVisitor;
+import org.intellij.lang.regexp.psi.RegExpSimpleClass;
+import org.intellij.lang.regexp.psi.impl.RegExpCharacterSets;
+import org.intellij.lang.regexp.psi.impl.RegExpModel;
+
+import java.util.regex.Pattern;
+
+/**
+ * Reports greedy repetitions of a single character set which is disjoint from everything that can follow
+ * the repetition, like {@code \d+} in {@code \d+,}. When the rest of the pattern fails after such a repetition,
+ * it fails after every shorter repetition too, because the next character is one the rest can't start with.
+ * Backtracking into the repetition is useless, and the repetition can be made possessive or atomic without
+ * changing what the pattern matches.
+ * <p>
+ * The follow set is computed over the {@link RegExpModel}: the elements after the repetition, up through the enclosing
+ * groups, including another iteration of enclosing repetitions. The end of the pattern, {@code \z}, and anchors which
+ * fail before a character of the set end the follow set. Back references, lookarounds, conditionals and other anchors
+ * make the result unknown, as do case insensitive matching and the other flags which change character sets.
+ */
+@ExtensionImpl
+public class RegExpPossessiveQuantifierInspection extends LocalInspectionTool {
+    private static final CodePointSet WORD = new CodePointSet.Builder().add('0', '9').add('A', 'Z').add('_').add('a', 'z').build();
+    private static final CodePointSet LINE_TERMINATORS = CodePointSet.of('\n', '\r', 0x85, 0x2028, 0x2029);
+    private static final int UNSUPPORTED_FLAGS =
+        Pattern.CASE_INSENSITIVE | Pattern.UNICODE_CASE | Pattern.UNICODE_CHARACTER_CLASS | Pattern.CANON_EQ | Pattern.LITERAL | Pattern.COMMENTS;
+    private static final String UNSUPPORTED_OPTIONS = "iuUx";
+
+    @Nonnull
+    @Override
+    public String getShortName() {
+        return "RegExpPossessiveQuantifier";
+    }
+
+    @Nonnull
+    @Override
+    public LocalizeValue getDisplayName() {
+        return RegExpLocalize.inspectionNameRepetitionCanBePossessive();
+    }
+
+    @Nonnull
+    @Override
+    public LocalizeValue getGroupDisplayName() {
+        return RegExpLocalize.inspectionGroupNameRegexp();
+    }
+
+    @Nullable
+    @Override
+    public Language getLanguage() {
+        return RegExpLanguage.INSTANCE;
+    }
+
+    @Override
+    public boolean isEnabledByDefault() {
+        return true;
+    }
+
+    @Nonnull
+    @Override
+    public HighlightDisplayLevel getDefaultLevel() {
+        return HighlightDisplayLevel.WEAK_WARNING;
+    }
+
+    @Nonnull
+    @Override
+    @RequiredReadAction
+    public PsiElementVisitor buildVisitor(@Nonnull ProblemsHolder holder, boolean isOnTheFly) {
+        final PsiFile file = holder.getFile();
+        final RegExpModel model = RegExpModel.getInstance(file);
+        if ((RegExpModifierProvider.resolveFlags(file) & UNSUPPORTED_FLAGS) != 0 || hasUnsupportedOptions(model)) {
+            return PsiElementVisitor.EMPTY_VISITOR;
+        }
+        return new RegExpElementVisitor() {
+            @Override
+            @RequiredReadAction
+            public void visitRegExpClosure(RegExpClosure closure) {
+                final int node = model.getNode(closure);
+                if (node < 0 || !canBePossessive(model, node) || !RegExpLanguageHosts.INSTANCE.supportsPossessiveQuantifiers(closure)) {
+                    return;
+                }
+                holder.registerProblem(closure, RegExpLocalize.inspectionWarningCodeRefCodeCanBePossessive().get(),
+                    new MakePossessiveFix(), new WrapInAtomicGroupFix());
+            }
+        };
+    }
+
+    @RequiredReadAction
+    private static boolean hasUnsupportedOptions(RegExpModel model) {
+        for (int node = 0; node < model.size(); node++) {
+            if (model.getKind(node) == RegExpModel.Kind.SET_OPTIONS) {
+                final String text = model.getElement(node).getText();
+                for (int i = 0; i < UNSUPPORTED_OPTIONS.length(); i++) {
+                    if (text.indexOf(UNSUPPORTED_OPTIONS.charAt(i)) >= 0) {
+                        return true;
+                    }
+                }
+            }
+        }
+        return false;
+    }
+
+    private static boolean canBePossessive(RegExpModel model, int closure) {
+        if (model.isPossessive(closure) || model.isReluctant(closure) || !model.hasValidBounds(closure)) {
+            return false;
+        }
+        // an optional element backtracks at most once
+        final int max = model.getMax(closure);
+        if (max == model.getMin(closure) || max == 0 || max == 1) {
+            return false;
+        }
+        final int atom = model.getFirstChild(closure);
+        final CodePointSet set = atom < 0 ? null : getCharacterSet(model, atom);
+        return set != null && isFollowDisjoint(model, closure, set);
+    }
+
+    /**
+     * @return the characters a single character atom matches, or null if the atom isn't one
+     */
+    @Nullable
+    private static CodePointSet getCharacterSet(RegExpModel model, int node) {
+        return switch (model.getKind(node)) {
+            // DOTALL may apply
+            case SIMPLE_CLASS -> model.getSimpleClassKind(node) == RegExpSimpleClass.Kind.ANY ? CodePointSet.ALL
+                : RegExpCharacterSets.evaluate(model, node);
+            case CHAR, CLASS, PROPERTY -> RegExpCharacterSets.evaluate(model, node);
+            default -> null;
+        };
+    }
+
+    /**
+     * Walks from the closure up to the root, and checks the first sets of everything that can follow it.
+     */
+    private static boolean isFollowDisjoint(RegExpModel model, int closure, CodePointSet set) {
+        final boolean repeats = model.getMin(closure) > 0;
+        int node = closure;
+        for (int parent = model.getParent(node); parent >= 0; node = parent, parent = model.getParent(node)) {
+            switch (model.getKind(parent)) {
+                case BRANCH -> {
+                    for (int next = model.getNextSibling(node); next >= 0; next = model.getNextSibling(next)) {
+                        final FirstSet first = FirstSet.compute(model, next, set, repeats);
+                        if (first == null || first.characters().intersects(set)) {
+                            return false;
+                        }
+                        if (!first.nullable()) {
+                            return true;
+                        }
+                    }
+                }
+                case PATTERN -> {
+                    // the other branches start before the closure
+                }
+                case GROUP -> {
+                    switch (model.getGroupType(parent)) {
+                        case CAPTURING_GROUP, NON_CAPTURING, NAMED_GROUP, QUOTED_NAMED_GROUP, PYTHON_NAMED_GROUP, PCRE_BRANCH_RESET -> {
+                        }
+                        // lookarounds and atomic groups already don't backtrack, options may change the character sets
+                        default -> {
+                            return false;
+                        }
+                    }
+                }
+                case CLOSURE -> {
+                    if (model.isPossessive(parent)) {
+                        return false;
+                    }
+                    if (model.getMax(parent) != 1) {
+                        final FirstSet first = FirstSet.compute(model, node, set, repeats);
+                        if (first == null || first.characters().intersects(set)) {
+                            return false;
+                        }
+                    }
+                }
+                default -> {
+                    return false;
+                }
+            }
+        }
+        return true;
+    }
+
+    /**
+     * The characters an element can start with, and whether it can match without consuming a character.
+     * Anchors are not nullable when they fail in front of a character of the repeated set.
+     */
+    private record FirstSet(CodePointSet characters, boolean nullable) {
+        private static final FirstSet EMPTY = new FirstSet(CodePointSet.EMPTY, true);
+        private static final FirstSet FAILS = new FirstSet(CodePointSet.EMPTY, false);
+
+        /**
+         * Computes the first sets of the subtree bottom-up.
+         *
+         * @param set     the characters of the repetition
+         * @param repeats true if the repetition is preceded by a character of its set when it gives up an iteration
+         * @return the first set of the node, or null if it's unknown
+         */
+        @Nullable
+        static FirstSet compute(RegExpModel model, int root, CodePointSet set, boolean repeats) {
+            final int end = model.getEnd(root);
+            final FirstSet[] sets = new FirstSet[end - root];
+            for (int node = end - 1; node >= root; node--) {
+                sets[node - root] = computeNode(model, node, root, set, repeats, sets);
+            }
+            return sets[0];
+        }
+
+        @Nullable
+        private static FirstSet computeNode(RegExpModel model, int node, int root, CodePointSet set, boolean repeats, FirstSet[] sets) {
+            switch (model.getKind(node)) {
+                case CHAR, CLASS, SIMPLE_CLASS, PROPERTY -> {
+                    final CodePointSet characters = getCharacterSet(model, node);
+                    return characters == null ? null : new FirstSet(characters, false);
+                }
+                case BOUNDARY -> {
+                    return failsBefore(model.getBoundaryType(node), set, repeats) ? FAILS : null;
+                }
+                case GROUP -> {
+                    return switch (model.getGroupType(node)) {
+                        case CAPTURING_GROUP, NON_CAPTURING, NAMED_GROUP, QUOTED_NAMED_GROUP, PYTHON_NAMED_GROUP, PCRE_BRANCH_RESET, ATOMIC -> {
+                            final int child = model.getFirstChild(node);
+                            yield child < 0 ? EMPTY : sets[child - root];
+                        }
+                        default -> null;
+                    };
+                }
+                case PATTERN -> {
+                    final CodePointSet.Builder characters = new CodePointSet.Builder();
+                    boolean nullable = model.getFirstChild(node) < 0;
+                    for (int child = model.getFirstChild(node); child >= 0; child = model.getNextSibling(child)) {
+                        final FirstSet first = sets[child - root];
+                        if (first == null) {
+                            return null;
+                        }
+                        characters.addAll(first.characters());
+                        nullable |= first.nullable();
+                    }
+                    return new FirstSet(characters.build(), nullable);
+                }
+                case BRANCH -> {
+                    final CodePointSet.Builder characters = new CodePointSet.Builder();
+                    for (int child = model.getFirstChild(node); child >= 0; child = model.getNextSibling(child)) {
+                        final FirstSet first = sets[child - root];
+                        if (first == null) {
+                            return null;
+                        }
+                        characters.addAll(first.characters());
+                        if (!first.nullable()) {
+                            return new FirstSet(characters.build(), false);
+                        }
+                    }
+                    return new FirstSet(characters.build(), true);
+                }
+                case CLOSURE -> {
+                    final int atom = model.getFirstChild(node);
+                    if (atom < 0 || !model.hasValidBounds(node)) {
+                        return null;
+                    }
+                    if (model.getMax(node) == 0) {
+                        return EMPTY;
+                    }
+                    final FirstSet first = sets[atom - root];
+                    return first == null ? null : new FirstSet(first.characters(), first.nullable() || model.getMin(node) == 0);
+                }
+                default -> {
+                    return null;
+                }
+            }
+        }
+
+        /**
+         * @return true if the anchor fails in front of a character of the set
+         */
+        private static boolean failsBefore(RegExpBoundary.Type type, CodePointSet set, boolean repeats) {
+            return switch (type) {
+                case END -> true;
+                case LINE_END, END_NO_LINE_TERM -> !set.intersects(LINE_TERMINATORS);
+                // between two word characters
+                case WORD -> repeats && WORD.containsAll(set);
+                default -> false;
+            };
+        }
+    }
+
+    private static class MakePossessiveFix implements LocalQuickFix {
+        @Nonnull
+        @Override
+        public LocalizeValue getName() {
+            return RegExpLocalize.inspectionQuickFixMakeRepetitionPossessive();
+        }
+
+        @Override
+        @RequiredWriteAction
+        public void applyFix(@Nonnull Project project, @Nonnull ProblemDescriptor descriptor) {
+            final PsiElement element = descriptor.getPsiElement();
+            if (element instanceof RegExpClosure closure) {
+                RegExpReplacementUtil.replaceInContext(closure, closure.getText() + '+');
+            }
+        }
+    }
+
+    private static class WrapInAtomicGroupFix implements LocalQuickFix {
+        @Nonnull
+        @Override
+        public LocalizeValue getName() {
+            return RegExpLocalize.inspectionQuickFixWrapRepetitionInAtomicGroup();
+        }
+
+        @Override
+        @RequiredWriteAction
+        public void applyFix(@Nonnull Project project, @Nonnull ProblemDescriptor descriptor) {
+            final PsiElement element = descriptor.getPsiElement();
+            if (element instanceof RegExpClosure closure) {
+                RegExpReplacementUtil.replaceInContext(closure, "(?>" + closure.getText() + ')');
+            }
+        }
+    }
+}
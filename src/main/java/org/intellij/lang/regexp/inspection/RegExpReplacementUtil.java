@@ -0,0 +1,95 @@
+/*
+ * Copyright 2013-2026 consulo.io
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.intellij.lang.regexp.inspection;
+
+import consulo.annotation.access.RequiredReadAction;
+import consulo.annotation.access.RequiredWriteAction;
+import consulo.document.Document;
+import consulo.document.util.TextRange;
+import consulo.language.inject.InjectedLanguageManager;
+import consulo.language.psi.PsiDocumentManager;
+import consulo.language.psi.PsiElement;
+import consulo.language.psi.PsiFile;
+import consulo.language.psi.PsiFileFactory;
+import consulo.language.psi.PsiLanguageInjectionHost;
+import consulo.language.psi.util.PsiTreeUtil;
+import consulo.project.Project;
+import consulo.util.lang.StringUtil;
+import jakarta.annotation.Nonnull;
+import jakarta.annotation.Nullable;
+import org.intellij.lang.regexp.RegExpFileType;
+import org.intellij.lang.regexp.psi.RegExpAtom;
+import org.intellij.lang.regexp.psi.RegExpBranch;
+import org.intellij.lang.regexp.psi.RegExpPattern;
+import org.intellij.lang.regexp.psi.impl.RegExpElementImpl;
+
+/**
+ * Replaces regexp elements with new regexp text, for quick fixes and intentions.
+ */
+public final class RegExpReplacementUtil {
+    private RegExpReplacementUtil() {
+    }
+
+    /**
+     * Replaces the element with the regexp parsed from the text. When the regexp is injected into a string literal,
+     * the text is escaped and written to the host document instead, as the group surrounders do.
+     *
+     * @param element a pattern, branch or atom
+     * @param text    regexp text which parses to an element of the same kind
+     */
+    @RequiredWriteAction
+    public static void replaceInContext(@Nonnull PsiElement element, @Nonnull String text) {
+        final Project project = element.getProject();
+        final InjectedLanguageManager manager = InjectedLanguageManager.getInstance(project);
+        final PsiLanguageInjectionHost host = manager.getInjectionHost(element);
+        if (host != null && RegExpElementImpl.isLiteralExpression(host)) {
+            final PsiDocumentManager documentManager = PsiDocumentManager.getInstance(project);
+            final Document document = documentManager.getDocument(manager.getTopLevelFile(element));
+            if (document == null) {
+                return;
+            }
+            final TextRange range = manager.injectedToHost(element, element.getTextRange());
+            documentManager.doPostponedOperationsAndUnblockDocument(document);
+            document.replaceString(range.getStartOffset(), range.getEndOffset(), StringUtil.escapeStringCharacters(text));
+            documentManager.commitDocument(document);
+            return;
+        }
+        final PsiElement replacement = createReplacement(element, text);
+        if (replacement != null) {
+            element.replace(replacement);
+        }
+    }
+
+    @Nullable
+    @RequiredReadAction
+    private static PsiElement createReplacement(PsiElement element, String text) {
+        final PsiFile file = PsiFileFactory.getInstance(element.getProject())
+            .createFileFromText("dummy.regexp", RegExpFileType.INSTANCE, text);
+        final RegExpPattern pattern = PsiTreeUtil.getChildOfType(file, RegExpPattern.class);
+        if (pattern == null || element instanceof RegExpPattern) {
+            return pattern;
+        }
+        final RegExpBranch[] branches = pattern.getBranches();
+        if (branches.length != 1) {
+            return null;
+        }
+        if (element instanceof RegExpBranch) {
+            return branches[0];
+        }
+        final RegExpAtom[] atoms = branches[0].getAtoms();
+        return atoms.length == 1 ? atoms[0] : null;
+    }
+}
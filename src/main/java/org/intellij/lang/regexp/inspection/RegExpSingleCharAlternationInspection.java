@@ -0,0 +1,298 @@
+/*
+ * Copyright 2013-2026 consulo.io
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.intellij.lang.regexp.inspection;
+
+import consulo.annotation.access.RequiredReadAction;
+import consulo.annotation.access.RequiredWriteAction;
+import consulo.annotation.component.ExtensionImpl;
+import consulo.language.Language;
+import consulo.language.editor.inspection.LocalInspectionTool;
+import consulo.language.editor.inspection.LocalQuickFix;
+import consulo.language.editor.inspection.ProblemDescriptor;
+import consulo.language.editor.inspection.ProblemsHolder;
+import consulo.language.editor.rawHighlight.HighlightDisplayLevel;
+import consulo.language.psi.PsiElement;
+import consulo.language.psi.PsiElementVisitor;
+import consulo.localize.LocalizeValue;
+import consulo.project.Project;
+import consulo.regexp.localize.RegExpLocalize;
+import jakarta.annotation.Nonnull;
+import jakarta.annotation.Nullable;
+import org.intellij.lang.regexp.CodePointSet;
+import org.intellij.lang.regexp.RegExpLanguage;
+import org.intellij.lang.regexp.psi.*;
+import org.intellij.lang.regexp.psi.impl.RegExpCharacterSets;
+import org.intellij.lang.regexp.psi.impl.RegExpModel;
+
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Reports alternations of single characters, simple classes, properties and character classes, like {@code (a|b|\d)},
+ * which can be replaced with one character class, {@code [ab\d]}. A class is matched with a single test,
+ * while an alternation is matched branch by branch, backtracking from one to the next.
+ * <p>
+ * The characters of all branches are collected in a {@link CodePointSet}, so duplicates disappear and adjacent
+ * characters become ranges. Simple classes and properties are kept as they are written, and characters they contain
+ * are left out. A capturing group is kept around the class, so group numbers don't change, and only if no
+ * back reference refers to the group.
+ */
+@ExtensionImpl
+public class RegExpSingleCharAlternationInspection extends LocalInspectionTool {
+    private static final String CLASS_META_CHARACTERS = "\\[]^-";
+
+    @Nonnull
+    @Override
+    public String getShortName() {
+        return "RegExpSingleCharAlternation";
+    }
+
+    @Nonnull
+    @Override
+    public LocalizeValue getDisplayName() {
+        return RegExpLocalize.inspectionNameSingleCharacterAlternation();
+    }
+
+    @Nonnull
+    @Override
+    public LocalizeValue getGroupDisplayName() {
+        return RegExpLocalize.inspectionGroupNameRegexp();
+    }
+
+    @Nullable
+    @Override
+    public Language getLanguage() {
+        return RegExpLanguage.INSTANCE;
+    }
+
+    @Override
+    public boolean isEnabledByDefault() {
+        return true;
+    }
+
+    @Nonnull
+    @Override
+    public HighlightDisplayLevel getDefaultLevel() {
+        return HighlightDisplayLevel.WARNING;
+    }
+
+    @Nonnull
+    @Override
+    public PsiElementVisitor buildVisitor(@Nonnull ProblemsHolder holder, boolean isOnTheFly) {
+        return new RegExpElementVisitor() {
+            @Override
+            @RequiredReadAction
+            public void visitRegExpPattern(RegExpPattern pattern) {
+                if (pattern.getBranches().length < 2 || isReferencedGroup(pattern.getParent()) || createClassText(pattern) == null) {
+                    return;
+                }
+                holder.registerProblem(pattern, RegExpLocalize.inspectionWarningSingleCharacterAlternationInRegexp().get(),
+                    new ReplaceAlternationWithCharacterClassFix());
+            }
+        };
+    }
+
+    @RequiredReadAction
+    private static boolean isReferencedGroup(PsiElement element) {
+        if (!(element instanceof RegExpGroup group) || !group.isCapturing()) {
+            return false;
+        }
+        final RegExpModel model = RegExpModel.getInstance(group.getContainingFile());
+        final int node = model.getNode(group);
+        // a reference which doesn't resolve may still refer to the group at runtime
+        return node < 0 || model.getReferenceCount(node) > 0 || model.hasUnresolvedReferences();
+    }
+
+    /**
+     * @return the text of a character class matching the same characters as the alternation, or null if there is none
+     */
+    @Nullable
+    @RequiredReadAction
+    private static String createClassText(RegExpPattern pattern) {
+        final CodePointSet.Builder characters = new CodePointSet.Builder();
+        final Map<Integer, String> texts = new HashMap<>();
+        final Set<String> classes = new LinkedHashSet<>();
+        final CodePointSet.Builder covered = new CodePointSet.Builder();
+        for (RegExpBranch branch : pattern.getBranches()) {
+            final RegExpAtom[] atoms = branch.getAtoms();
+            if (atoms.length != 1 || !(atoms[0] instanceof RegExpClassElement element)
+                || !addElement(element, characters, texts, classes, covered)) {
+                return null;
+            }
+        }
+        final CodePointSet coveredSet = covered.build();
+        final CodePointSet set = characters.build();
+        final StringBuilder text = new StringBuilder("[");
+        for (int i = 0; i < set.getRangeCount(); i++) {
+            final int from = set.getRangeStart(i);
+            final int to = set.getRangeEnd(i);
+            if (coveredSet.containsAll(CodePointSet.range(from, to))) {
+                continue;
+            }
+            appendCodePoint(text, from, texts);
+            if (to > from + 1) {
+                text.append('-');
+            }
+            if (to > from) {
+                appendCodePoint(text, to, texts);
+            }
+        }
+        for (String element : classes) {
+            text.append(element);
+        }
+        return text.append(']').toString();
+    }
+
+    /**
+     * Adds a branch or an element of a class in a branch.
+     *
+     * @return false if the element can't be part of the merged class
+     */
+    @RequiredReadAction
+    private static boolean addElement(RegExpClassElement element,
+                                      CodePointSet.Builder characters,
+                                      Map<Integer, String> texts,
+                                      Set<String> classes,
+                                      CodePointSet.Builder covered) {
+        if (element instanceof RegExpChar ch) {
+            final int value = ch.getValue();
+            if (value < 0) {
+                return false;
+            }
+            characters.add(value);
+            texts.putIfAbsent(value, ch.getText());
+            return true;
+        }
+        if (element instanceof RegExpCharRange range) {
+            final RegExpChar from = range.getFrom();
+            final RegExpChar to = range.getTo();
+            if (to == null || from.getValue() < 0 || to.getValue() < from.getValue()) {
+                return false;
+            }
+            characters.add(from.getValue(), to.getValue());
+            texts.putIfAbsent(from.getValue(), from.getText());
+            texts.putIfAbsent(to.getValue(), to.getText());
+            return true;
+        }
+        if (element instanceof RegExpSimpleClass simpleClass) {
+            final RegExpSimpleClass.Kind kind = simpleClass.getKind();
+            // '.' means a dot inside a class
+            if (kind == RegExpSimpleClass.Kind.ANY || RegExpCharacterSets.getSimpleClassSet(kind) == null) {
+                return false;
+            }
+            final boolean covering = switch (kind) {
+                case DIGIT, WORD, SPACE, HORIZONTAL_SPACE, VERTICAL_SPACE -> true;
+                default -> false;
+            };
+            addClass(element, covering, classes, covered);
+            return true;
+        }
+        if (element instanceof RegExpProperty property) {
+            addClass(element, !property.isNegated(), classes, covered);
+            return true;
+        }
+        if (element instanceof RegExpPosixBracketExpression) {
+            addClass(element, false, classes, covered);
+            return true;
+        }
+        if (element instanceof RegExpClass regExpClass) {
+            return !regExpClass.isNegated() && addElements(regExpClass.getElements(), characters, texts, classes, covered);
+        }
+        if (element instanceof RegExpUnion union) {
+            return addElements(union.getElements(), characters, texts, classes, covered);
+        }
+        return false;
+    }
+
+    @RequiredReadAction
+    private static boolean addElements(RegExpClassElement[] elements,
+                                       CodePointSet.Builder characters,
+                                       Map<Integer, String> texts,
+                                       Set<String> classes,
+                                       CodePointSet.Builder covered) {
+        for (RegExpClassElement element : elements) {
+            if (!addElement(element, characters, texts, classes, covered)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Keeps a class as it is written. Only the characters of classes which can't match less under matching flags,
+     * like {@code \d} but unlike {@code \W} with {@code UNICODE_CHARACTER_CLASS}, are left out of the merged class.
+     */
+    @RequiredReadAction
+    private static void addClass(RegExpClassElement element, boolean covering, Set<String> classes, CodePointSet.Builder covered) {
+        classes.add(element.getText());
+        final CodePointSet set = covering ? RegExpCharacterSets.getCharacterSet(element) : null;
+        if (set != null) {
+            covered.addAll(set);
+        }
+    }
+
+    /**
+     * Writes printable ASCII characters escaped as needed inside a class, and any other character as it was written.
+     */
+    private static void appendCodePoint(StringBuilder text, int codePoint, Map<Integer, String> texts) {
+        if (codePoint > ' ' && codePoint <= '~') {
+            if (CLASS_META_CHARACTERS.indexOf(codePoint) >= 0) {
+                text.append('\\');
+            }
+            text.appendCodePoint(codePoint);
+        }
+        else {
+            final String original = texts.get(codePoint);
+            if (original != null) {
+                text.append(original);
+            }
+            else {
+                text.appendCodePoint(codePoint);
+            }
+        }
+    }
+
+    private static class ReplaceAlternationWithCharacterClassFix implements LocalQuickFix {
+        @Nonnull
+        @Override
+        public LocalizeValue getName() {
+            return RegExpLocalize.inspectionQuickFixReplaceAlternationWithCharacterClass();
+        }
+
+        @Override
+        @RequiredWriteAction
+        public void applyFix(@Nonnull Project project, @Nonnull ProblemDescriptor descriptor) {
+            final PsiElement element = descriptor.getPsiElement();
+            if (!(element instanceof RegExpPattern pattern)) {
+                return;
+            }
+            final String text = createClassText(pattern);
+            if (text == null) {
+                return;
+            }
+            // a non-capturing group around the class is unnecessary
+            final PsiElement parent = pattern.getParent();
+            if (parent instanceof RegExpGroup group && group.getType() == RegExpGroup.Type.NON_CAPTURING) {
+                RegExpReplacementUtil.replaceInContext(group, text);
+            }
+            else {
+                RegExpReplacementUtil.replaceInContext(pattern, text);
+            }
+        }
+    }
+}
@@ -0,0 +1,223 @@
+/*
+ * Copyright 2013-2026 consulo.io
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.intellij.lang.regexp.inspection;
+
+import consulo.annotation.access.RequiredReadAction;
+import consulo.annotation.access.RequiredWriteAction;
+import consulo.annotation.component.ExtensionImpl;
+import consulo.document.util.TextRange;
+import consulo.language.Language;
+import consulo.language.editor.inspection.LocalInspectionTool;
+import consulo.language.editor.inspection.LocalQuickFix;
+import consulo.language.editor.inspection.ProblemDescriptor;
+import consulo.language.editor.inspection.ProblemsHolder;
+import consulo.language.editor.rawHighlight.HighlightDisplayLevel;
+import consulo.language.psi.PsiElement;
+import consulo.language.psi.PsiElementVisitor;
+import consulo.localize.LocalizeValue;
+import consulo.project.Project;
+import consulo.regexp.localize.RegExpLocalize;
+import consulo.util.lang.ThreeState;
+import jakarta.annotation.Nonnull;
+import jakarta.annotation.Nullable;
+import org.intellij.lang.regexp.RegExpLanguage;
+import org.intellij.lang.regexp.RegExpLanguageHosts;
+import org.intellij.lang.regexp.psi.RegExpElementVisitor;
+import org.intellij.lang.regexp.psi.RegExpGroup;
+import org.intellij.lang.regexp.psi.impl.RegExpModel;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * Reports anonymous capturing groups which no back reference, named group reference or conditional refers to.
+ * Every capturing group costs bookkeeping on each match attempt, a non-capturing group doesn't.
+ * <p>
+ * References are counted by the cached {@link RegExpModel} of the file. Groups the host reports as used, see
+ * {@link org.intellij.lang.regexp.RegExpLanguageHost#isGroupUsedByHost(RegExpGroup)}, are not reported. Most hosts
+ * can't tell, which is why the inspection is disabled by default. Named groups are not reported, because they are
+ * usually named to be used by the host.
+ * <p>
+ * The quick fix renumbers the numeric back references, absolute and relative, which the conversion affects.
+ */
+@ExtensionImpl
+public class RegExpUnusedCapturingGroupInspection extends LocalInspectionTool {
+    @Nonnull
+    @Override
+    public String getShortName() {
+        return "RegExpUnusedCapturingGroup";
+    }
+
+    @Nonnull
+    @Override
+    public LocalizeValue getDisplayName() {
+        return RegExpLocalize.inspectionNameUnusedCapturingGroup();
+    }
+
+    @Nonnull
+    @Override
+    public LocalizeValue getGroupDisplayName() {
+        return RegExpLocalize.inspectionGroupNameRegexp();
+    }
+
+    @Nullable
+    @Override
+    public Language getLanguage() {
+        return RegExpLanguage.INSTANCE;
+    }
+
+    @Override
+    public boolean isEnabledByDefault() {
+        return false;
+    }
+
+    @Nonnull
+    @Override
+    public HighlightDisplayLevel getDefaultLevel() {
+        return HighlightDisplayLevel.WEAK_WARNING;
+    }
+
+    @Nonnull
+    @Override
+    @RequiredReadAction
+    public PsiElementVisitor buildVisitor(@Nonnull ProblemsHolder holder, boolean isOnTheFly) {
+        final RegExpModel model = RegExpModel.getInstance(holder.getFile());
+        // a reference which doesn't resolve may be meant for any group; with branch reset groups share numbers
+        if (model.hasUnresolvedReferences() || hasBranchReset(model)) {
+            return PsiElementVisitor.EMPTY_VISITOR;
+        }
+        return new RegExpElementVisitor() {
+            @Override
+            @RequiredReadAction
+            public void visitRegExpGroup(RegExpGroup group) {
+                if (group.getType() != RegExpGroup.Type.CAPTURING_GROUP) {
+                    return;
+                }
+                final int node = model.getNode(group);
+                if (node < 0 || model.getReferenceCount(node) > 0
+                    || RegExpLanguageHosts.INSTANCE.isGroupUsedByHost(group) == ThreeState.YES) {
+                    return;
+                }
+                holder.registerProblem(group, TextRange.from(0, 1), RegExpLocalize.inspectionWarningCapturingGroupIsNeverReferenced().get(),
+                    new ConvertToNonCapturingGroupFix());
+            }
+        };
+    }
+
+    private static boolean hasBranchReset(RegExpModel model) {
+        for (int node = 0; node < model.size(); node++) {
+            if (model.getKind(node) == RegExpModel.Kind.GROUP && model.getGroupType(node) == RegExpGroup.Type.PCRE_BRANCH_RESET) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private record Edit(int offset, int length, String text) {
+    }
+
+    private static class ConvertToNonCapturingGroupFix implements LocalQuickFix {
+        @Nonnull
+        @Override
+        public LocalizeValue getName() {
+            return RegExpLocalize.inspectionQuickFixConvertToNonCapturingGroup();
+        }
+
+        @Override
+        @RequiredWriteAction
+        public void applyFix(@Nonnull Project project, @Nonnull ProblemDescriptor descriptor) {
+            if (!(descriptor.getPsiElement() instanceof RegExpGroup group) || group.getType() != RegExpGroup.Type.CAPTURING_GROUP) {
+                return;
+            }
+            final RegExpModel model = RegExpModel.getInstance(group.getContainingFile());
+            final int node = model.getNode(group);
+            if (node < 0) {
+                return;
+            }
+            final List<Edit> edits = new ArrayList<>();
+            edits.add(new Edit(model.getStartOffset(node), 1, "(?:"));
+            addBackrefEdits(model, node, edits);
+            if (edits.size() == 1) {
+                final String text = group.getText();
+                RegExpReplacementUtil.replaceInContext(group, "(?:" + text.substring(1));
+                return;
+            }
+            // renumbered references may be anywhere, so the whole pattern is replaced at once
+            if (model.getKind(0) != RegExpModel.Kind.PATTERN || model.getNextSibling(0) >= 0) {
+                return;
+            }
+            edits.sort(Comparator.comparingInt(Edit::offset));
+            final String fileText = group.getContainingFile().getText();
+            final StringBuilder text = new StringBuilder();
+            int offset = model.getStartOffset(0);
+            for (Edit edit : edits) {
+                text.append(fileText, offset, edit.offset()).append(edit.text());
+                offset = edit.offset() + edit.length();
+            }
+            text.append(fileText, offset, model.getEndOffset(0));
+            RegExpReplacementUtil.replaceInContext(model.getElement(0), text.toString());
+        }
+
+        /**
+         * Decrements absolute back references to later groups, and relative back references across the group.
+         */
+        @RequiredReadAction
+        private static void addBackrefEdits(RegExpModel model, int group, List<Edit> edits) {
+            final int number = model.getGroupNumber(group);
+            final int groupOffset = model.getStartOffset(group);
+            for (int node = 0; node < model.size(); node++) {
+                if (model.getKind(node) != RegExpModel.Kind.BACKREF) {
+                    continue;
+                }
+                final int index = model.getBackrefIndex(node);
+                final int target = model.getTarget(node);
+                final boolean renumber = index > number
+                    || index < 0 && target >= 0 && model.getStartOffset(target) < groupOffset && groupOffset < model.getStartOffset(node);
+                if (!renumber) {
+                    continue;
+                }
+                final PsiElement element = model.getElement(node);
+                final String text = replaceNumber(element.getText(), Math.abs(index) - 1);
+                if (text == null) {
+                    continue;
+                }
+                final int end = model.getEndOffset(node);
+                final String fileText = element.getContainingFile().getText();
+                // keep \1 followed by a digit from turning into a reference to another group
+                final boolean wrap = text.charAt(0) == '\\' && Character.isDigit(text.charAt(1))
+                    && end < fileText.length() && Character.isDigit(fileText.charAt(end));
+                edits.add(new Edit(model.getStartOffset(node), end - model.getStartOffset(node), wrap ? "(?:" + text + ")" : text));
+            }
+        }
+
+        /**
+         * @return the text of the reference with its last number replaced, or null if it has no number
+         */
+        @Nullable
+        private static String replaceNumber(String text, int number) {
+            int end = text.length();
+            while (end > 0 && !Character.isDigit(text.charAt(end - 1))) {
+                end--;
+            }
+            int start = end;
+            while (start > 0 && Character.isDigit(text.charAt(start - 1))) {
+                start--;
+            }
+            return start == end ? null : text.substring(0, start) + number + text.substring(end);
+        }
+    }
+}
@@ -23,11 +23,9 @@ import consulo.document.Document;
 import consulo.document.event.DocumentAdapter;
 import consulo.document.event.DocumentEvent;
 import consulo.language.editor.ui.awt.EditorTextField;
-import consulo.language.inject.InjectedLanguageManagerUtil;
 import consulo.language.plain.PlainTextFileType;
 import consulo.language.psi.PsiDocumentManager;
 import consulo.language.psi.PsiFile;
-import consulo.language.psi.PsiLanguageInjectionHost;
 import consulo.project.Project;
 import consulo.project.ProjectPropertiesComponent;
 import consulo.ui.annotation.RequiredUIAccess;
@@ -38,6 +36,8 @@ import consulo.ui.ex.awt.*;
 import consulo.ui.ex.awt.util.Alarm;
 import org.intellij.lang.regexp.RegExpLanguage;
 import org.intellij.lang.regexp.RegExpModifierProvider;
+import org.intellij.lang.regexp.automaton.RegExpMatcher;
+import org.intellij.lang.regexp.automaton.RegExpMatchers;
 import org.jetbrains.annotations.TestOnly;
 
 import jakarta.annotation.Nonnull;
@@ -153,16 +153,13 @@ public class CheckRegExpForm {
     @RequiredReadAction
     private static boolean isMatchingText(@Nonnull PsiFile regexpFile, @Nonnull String sampleText) {
         final String regExp = regexpFile.getText();
-
-        PsiLanguageInjectionHost host = InjectedLanguageManagerUtil.findInjectionHost(regexpFile);
-        int flags = 0;
-        if (host != null) {
-            for (RegExpModifierProvider provider : RegExpModifierProvider.forLanguage(host.getLanguage())) {
-                flags = provider.getFlags(host, regexpFile);
-                if (flags > 0) {
-                    break;
-                }
-            }
+        final int flags = RegExpModifierProvider.resolveFlags(regexpFile);
+        // unlike Pattern, the automaton can't hang on a sample which makes the regexp backtrack; regexps which it would
+        // only match approximately are left to Pattern. The regexp is matched again on every edit of the sample, so it's
+        // compiled to bytecode once
+        final RegExpMatcher matcher = RegExpMatchers.createCompiled(regexpFile, flags);
+        if (matcher != null) {
+            return matcher.matches(sampleText);
         }
         try {
             return Pattern.compile(regExp, flags).matcher(sampleText).matches();
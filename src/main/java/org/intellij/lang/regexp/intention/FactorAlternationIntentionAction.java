@@ -0,0 +1,345 @@
+/*
+ * Copyright 2013-2026 consulo.io
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.intellij.lang.regexp.intention;
+
+import consulo.annotation.access.RequiredReadAction;
+import consulo.annotation.access.RequiredWriteAction;
+import consulo.annotation.component.ExtensionImpl;
+import consulo.codeEditor.Editor;
+import consulo.language.editor.intention.IntentionMetaData;
+import consulo.language.editor.intention.PsiElementBaseIntentionAction;
+import consulo.language.psi.PsiElement;
+import consulo.language.psi.PsiFile;
+import consulo.language.psi.util.PsiTreeUtil;
+import consulo.language.util.IncorrectOperationException;
+import consulo.localize.LocalizeValue;
+import consulo.project.Project;
+import consulo.regexp.localize.RegExpLocalize;
+import jakarta.annotation.Nonnull;
+import jakarta.annotation.Nullable;
+import org.intellij.lang.regexp.RegExpLanguageHosts;
+import org.intellij.lang.regexp.RegExpModifierProvider;
+import org.intellij.lang.regexp.inspection.RegExpReplacementUtil;
+import org.intellij.lang.regexp.psi.RegExpAtom;
+import org.intellij.lang.regexp.psi.RegExpBranch;
+import org.intellij.lang.regexp.psi.RegExpChar;
+import org.intellij.lang.regexp.psi.RegExpPattern;
+import org.intellij.lang.regexp.psi.RegExpSetOptions;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.regex.Pattern;
+
+/**
+ * Factors the common prefixes out of an alternation of literal strings, e.g. {@code selection|selector|set} becomes
+ * {@code se(?:lect(?:ion|or)|t)}, so a backtracking matcher compares each prefix once instead of once per branch.
+ * <p>
+ * The branches are put into a prefix trie. Two literal branches can only both match at the same position when one is
+ * a prefix of the other, so the order of branches only matters where a branch ends in the middle of the trie:
+ * longer branches which came first in the alternation are written before the empty alternative, the others after it,
+ * e.g. {@code select|selection} becomes {@code select(?:ion)??}. This keeps the leftmost-first semantics of
+ * the alternation. Building the trie takes time linear in the total length of the branches, and so does writing it
+ * unless branches have to be reordered.
+ */
+@ExtensionImpl
+@IntentionMetaData(ignoreId = "regexp.FactorAlternationIntentionAction", categories = "RegExp", fileExtensions = "regexp")
+public class FactorAlternationIntentionAction extends PsiElementBaseIntentionAction {
+    private static final int UNSUPPORTED_FLAGS = Pattern.CASE_INSENSITIVE | Pattern.COMMENTS | Pattern.LITERAL | Pattern.CANON_EQ;
+
+    @Nonnull
+    @Override
+    public LocalizeValue getText() {
+        return RegExpLocalize.intentionNameFactorCommonPrefixesOutOfAlternation();
+    }
+
+    @Override
+    @RequiredReadAction
+    public boolean isAvailable(@Nonnull Project project, Editor editor, @Nonnull PsiElement element) {
+        final RegExpPattern pattern = findAlternation(element);
+        if (pattern == null) {
+            return false;
+        }
+        // only worth it if some branches share a prefix
+        final Set<Integer> firstCharacters = new HashSet<>();
+        for (RegExpBranch branch : pattern.getBranches()) {
+            final RegExpAtom[] atoms = branch.getAtoms();
+            if (atoms.length > 0 && !firstCharacters.add(((RegExpChar) atoms[0]).getValue())) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    @Override
+    @RequiredWriteAction
+    public void invoke(@Nonnull Project project, Editor editor, @Nonnull PsiElement element) throws IncorrectOperationException {
+        final RegExpPattern pattern = findAlternation(element);
+        if (pattern == null) {
+            return;
+        }
+        final RegExpBranch[] branches = pattern.getBranches();
+        final Trie trie = new Trie();
+        for (int i = 0; i < branches.length; i++) {
+            trie.add(i, branches[i].getAtoms());
+        }
+        final StringBuilder text = new StringBuilder();
+        trie.write(text, pattern);
+        RegExpReplacementUtil.replaceInContext(pattern, text.toString());
+    }
+
+    /**
+     * @return the alternation of literal strings around the element, or null if there is none
+     */
+    @Nullable
+    @RequiredReadAction
+    private static RegExpPattern findAlternation(PsiElement element) {
+        final RegExpPattern pattern = PsiTreeUtil.getParentOfType(element, RegExpPattern.class, false);
+        if (pattern == null || pattern.getBranches().length < 2) {
+            return null;
+        }
+        for (RegExpBranch branch : pattern.getBranches()) {
+            for (RegExpAtom atom : branch.getAtoms()) {
+                if (!(atom instanceof RegExpChar ch) || ch.getValue() < 0) {
+                    return null;
+                }
+            }
+        }
+        // with these flags, different characters may match the same text, or characters may be ignored
+        final PsiFile file = pattern.getContainingFile();
+        if ((RegExpModifierProvider.resolveFlags(file) & UNSUPPORTED_FLAGS) != 0
+            || PsiTreeUtil.findChildOfType(file, RegExpSetOptions.class) != null) {
+            return null;
+        }
+        return pattern;
+    }
+
+    /**
+     * Prefix trie of the branches. Every node knows the sorted indexes of the branches passing through it,
+     * so the branches of a subtree between two indexes can be found with a binary search.
+     */
+    private static final class Trie {
+        private final Map<Long, Integer> myChildren = new HashMap<>();
+        private int mySize = 1;
+        private int[] myFirstChild = {-1};
+        private int[] myLastChild = {-1};
+        private int[] myNextSibling = {-1};
+        private int[] myEnds = {-1};
+        private int[] myCodePoints = {-1};
+        private String[] myTexts = {""};
+        private int[][] myBranches = {new int[4]};
+        private int[] myBranchCounts = {0};
+
+        @RequiredReadAction
+        void add(int index, RegExpAtom[] atoms) {
+            if (contains(atoms)) {
+                // a repeated branch never matches
+                return;
+            }
+            int node = 0;
+            addBranch(node, index);
+            for (RegExpAtom atom : atoms) {
+                final int codePoint = ((RegExpChar) atom).getValue();
+                final long key = (long) node << 21 | codePoint;
+                Integer child = myChildren.get(key);
+                if (child == null) {
+                    child = createNode(node, codePoint, atom.getText());
+                    myChildren.put(key, child);
+                }
+                node = child;
+                addBranch(node, index);
+            }
+            myEnds[node] = index;
+        }
+
+        private boolean contains(RegExpAtom[] atoms) {
+            int node = 0;
+            for (RegExpAtom atom : atoms) {
+                final Integer child = myChildren.get((long) node << 21 | ((RegExpChar) atom).getValue());
+                if (child == null) {
+                    return false;
+                }
+                node = child;
+            }
+            return myEnds[node] >= 0;
+        }
+
+        private int createNode(int parent, int codePoint, String text) {
+            if (mySize == myEnds.length) {
+                final int capacity = mySize * 2;
+                myFirstChild = Arrays.copyOf(myFirstChild, capacity);
+                myLastChild = Arrays.copyOf(myLastChild, capacity);
+                myNextSibling = Arrays.copyOf(myNextSibling, capacity);
+                myEnds = Arrays.copyOf(myEnds, capacity);
+                myCodePoints = Arrays.copyOf(myCodePoints, capacity);
+                myTexts = Arrays.copyOf(myTexts, capacity);
+                myBranches = Arrays.copyOf(myBranches, capacity);
+                myBranchCounts = Arrays.copyOf(myBranchCounts, capacity);
+            }
+            final int node = mySize++;
+            myFirstChild[node] = myLastChild[node] = myNextSibling[node] = myEnds[node] = -1;
+            myCodePoints[node] = codePoint;
+            myTexts[node] = text;
+            myBranches[node] = new int[2];
+            if (myLastChild[parent] < 0) {
+                myFirstChild[parent] = node;
+            }
+            else {
+                myNextSibling[myLastChild[parent]] = node;
+            }
+            myLastChild[parent] = node;
+            return node;
+        }
+
+        private void addBranch(int node, int index) {
+            if (myBranchCounts[node] == myBranches[node].length) {
+                myBranches[node] = Arrays.copyOf(myBranches[node], myBranchCounts[node] * 2);
+            }
+            myBranches[node][myBranchCounts[node]++] = index;
+        }
+
+        /**
+         * @return true if a branch with an index between {@code from} and {@code to}, both exclusive, passes through the node
+         */
+        private boolean hasBranches(int node, int from, int to) {
+            int position = Arrays.binarySearch(myBranches[node], 0, myBranchCounts[node], from + 1);
+            if (position < 0) {
+                position = -position - 1;
+            }
+            return position < myBranchCounts[node] && myBranches[node][position] < to;
+        }
+
+        @RequiredReadAction
+        void write(StringBuilder out, PsiElement context) {
+            final int branchCount = myBranchCounts[0] == 0 ? 0 : myBranches[0][myBranchCounts[0] - 1] + 1;
+            writeNode(out, 0, -1, branchCount, true, context);
+        }
+
+        /**
+         * Writes the branches between {@code from} and {@code to}, both exclusive, which pass through the node,
+         * without the node's own character.
+         */
+        @RequiredReadAction
+        private void writeNode(StringBuilder out, int node, int from, int to, boolean root, PsiElement context) {
+            while (true) {
+                final int end = myEnds[node] > from && myEnds[node] < to ? myEnds[node] : -1;
+                final int count = end < 0 ? countChildren(node, from, to) : countChildren(node, from, end) + countChildren(node, end, to);
+                if (count == 0) {
+                    return;
+                }
+                if (end < 0 && count == 1 && !root) {
+                    // no choice here, just a common prefix
+                    final int child = findChild(node, from, to);
+                    writeCharacter(out, child, context);
+                    node = child;
+                    continue;
+                }
+                final int before = end < 0 ? 0 : countChildren(node, from, end);
+                if (end >= 0 && !root && (before == 0 || before == count)) {
+                    // the branch ending here and the longer ones form an optional group, greedy if the longer ones come first
+                    final int partFrom = before == 0 ? end : from;
+                    final int partTo = before == 0 ? to : end;
+                    final int child = findChild(node, partFrom, partTo);
+                    if (count == 1 && countChildren(child, partFrom, partTo) == 0) {
+                        writeCharacter(out, child, context);
+                    }
+                    else {
+                        out.append("(?:");
+                        writeChildren(out, node, partFrom, partTo, false, context);
+                        out.append(')');
+                    }
+                    out.append(before == 0 ? "??" : "?");
+                    return;
+                }
+                if (!root) {
+                    out.append("(?:");
+                }
+                if (end < 0) {
+                    writeChildren(out, node, from, to, false, context);
+                }
+                else {
+                    // the branch ending here is the empty alternative
+                    if (writeChildren(out, node, from, end, false, context)) {
+                        out.append('|');
+                    }
+                    writeChildren(out, node, end, to, true, context);
+                }
+                if (!root) {
+                    out.append(')');
+                }
+                return;
+            }
+        }
+
+        /**
+         * @return true if any children were written
+         */
+        @RequiredReadAction
+        private boolean writeChildren(StringBuilder out, int node, int from, int to, boolean separate, PsiElement context) {
+            boolean written = false;
+            for (int child = myFirstChild[node]; child >= 0; child = myNextSibling[child]) {
+                if (hasBranches(child, from, to)) {
+                    if (written || separate) {
+                        out.append('|');
+                    }
+                    writeCharacter(out, child, context);
+                    writeNode(out, child, from, to, false, context);
+                    written = true;
+                }
+            }
+            return written;
+        }
+
+        private int countChildren(int node, int from, int to) {
+            int count = 0;
+            for (int child = myFirstChild[node]; child >= 0; child = myNextSibling[child]) {
+                if (hasBranches(child, from, to)) {
+                    count++;
+                }
+            }
+            return count;
+        }
+
+        private int findChild(int node, int from, int to) {
+            for (int child = myFirstChild[node]; child >= 0; child = myNextSibling[child]) {
+                if (hasBranches(child, from, to)) {
+                    return child;
+                }
+            }
+            throw new IllegalStateException();
+        }
+
+        /**
+         * Writes printable ASCII characters escaped as the host requires, and any other character as it was written.
+         */
+        @RequiredReadAction
+        private void writeCharacter(StringBuilder out, int node, PsiElement context) {
+            final int codePoint = myCodePoints[node];
+            if (codePoint < ' ' || codePoint > '~' || Character.isLetterOrDigit(codePoint)) {
+                out.append(myTexts[node]);
+            }
+            else {
+                final char c = (char) codePoint;
+                if (RegExpLanguageHosts.INSTANCE.characterNeedsEscaping(c, context)) {
+                    out.append('\\');
+                }
+                out.append(c);
+            }
+        }
+    }
+}
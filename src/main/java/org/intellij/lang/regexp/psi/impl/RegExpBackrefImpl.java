@@ -22,7 +22,6 @@ import consulo.language.ast.ASTNode;
 import consulo.language.psi.PsiElement;
 import consulo.language.psi.PsiFile;
 import consulo.language.psi.PsiReference;
-import consulo.language.psi.SyntaxTraverser;
 import consulo.language.psi.resolve.PsiElementProcessor;
 import consulo.language.psi.util.PsiElementFilter;
 import consulo.language.psi.util.PsiTreeUtil;
@@ -38,8 +37,6 @@ import jakarta.annotation.Nonnull;
 import org.jetbrains.annotations.NotNull;
 import org.jspecify.annotations.Nullable;
 
-import java.util.List;
-
 public class RegExpBackrefImpl extends RegExpElementImpl implements RegExpBackref {
     public RegExpBackrefImpl(ASTNode astNode) {
         super(astNode);
@@ -64,24 +61,10 @@ public class RegExpBackrefImpl extends RegExpElementImpl implements RegExpBackre
         return resolve(getIndex(), getContainingFile());
     }
 
+    @RequiredReadAction
     static @Nullable RegExpGroup resolve(int index, PsiFile file) {
-        if (index < 0) {
-            return resolveRelativeGroup(Math.abs(index), file);
-        }
-
-        return SyntaxTraverser.psiTraverser(file)
-            .filter(RegExpGroup.class)
-            .filter(RegExpGroup::isCapturing)
-            .skip(index - 1)
-            .first();
-    }
-
-    private static @Nullable RegExpGroup resolveRelativeGroup(int index, PsiFile file) {
-        List<RegExpGroup> groups = SyntaxTraverser.psiTraverser(file)
-            .filter(RegExpGroup.class)
-            .filter(RegExpGroup::isCapturing)
-            .toList();
-        return index <= groups.size() ? groups.get(groups.size() - index) : null;
+        final RegExpGroupIndex groupIndex = RegExpGroupIndex.getInstance(file);
+        return index < 0 ? groupIndex.getRelativeGroup(-index) : groupIndex.getGroup(index);
     }
 
     @Nonnull
@@ -0,0 +1,848 @@
+/*
+ * Copyright 2013-2026 consulo.io
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.intellij.lang.regexp.psi.impl;
+
+import consulo.annotation.access.RequiredReadAction;
+import consulo.application.util.CachedValueProvider;
+import consulo.language.psi.PsiFile;
+import consulo.language.psi.util.LanguageCachedValueUtil;
+import jakarta.annotation.Nonnull;
+import jakarta.annotation.Nullable;
+import org.intellij.lang.regexp.CodePointSet;
+import org.intellij.lang.regexp.psi.RegExpGroup;
+
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Finds repetitions which can make a backtracking matcher like {@code java.util.regex} take exponential or polynomial
+ * time on inputs that fail to match.
+ * <p>
+ * The analysis works on the position automaton of the pattern: a state per character matching element, labelled with
+ * the code points it matches, and a transition for every way one state can follow another. Transitions are not merged,
+ * so {@code (a+)+} has two transitions from {@code a} to {@code a}, one per quantifier, and the automaton is exactly as
+ * ambiguous as the pattern.
+ * <ul>
+ * <li>A repetition backtracks exponentially if a state can return to itself on the same input along two different
+ * paths. In the product of the automaton with itself, such paths form a cycle through a diagonal state which takes
+ * different transitions at some step.</li>
+ * <li>Repetitions backtrack polynomially with degree k if there is a chain of k loops in which each loop, the path to
+ * the next loop and that loop can all match the same input.</li>
+ * </ul>
+ * Lookarounds, back references and boundaries are treated as matching the empty string. The matcher never backtracks
+ * into possessive repetitions and atomic groups, so each of these is a single state. Repetitions with a small upper
+ * bound are treated as matching once. Patterns too large to analyze in reasonable time have no problems.
+ * <p>
+ * For every problem the analysis also synthesizes an {@link AttackString}: input that reaches the ambiguous loops,
+ * repeats a word they can all match, and then fails, so that the matcher has to try every way to match the repetitions.
+ */
+public final class RegExpBacktrackingAnalysis {
+    public enum Kind {
+        EXPONENTIAL,
+        POLYNOMIAL
+    }
+
+    /**
+     * @param closure the repetition whose loop causes the backtracking
+     * @param degree  the polynomial degree, or 0 for exponential backtracking
+     * @param related the other sub-expressions involved: for exponential backtracking the two elements which match
+     *                the same input, for polynomial backtracking the preceding repetitions of the chain
+     */
+    public record Problem(@Nonnull Kind kind, int closure, int degree, @Nonnull int[] related) {
+    }
+
+    /**
+     * Input of the form {@code prefix + pump * n + suffix}, for which a backtracking matcher takes time exponential
+     * or polynomial in n. The suffix is empty if every character can continue a match.
+     */
+    public record AttackString(@Nonnull String prefix, @Nonnull String pump, @Nonnull String suffix) {
+        @Nonnull
+        public String build(int pumpCount) {
+            final StringBuilder builder = new StringBuilder(prefix.length() + pump.length() * pumpCount + suffix.length());
+            builder.append(prefix);
+            for (int i = 0; i < pumpCount; i++) {
+                builder.append(pump);
+            }
+            return builder.append(suffix).toString();
+        }
+    }
+
+    /**
+     * repetitions with a larger upper bound backtrack like unbounded ones
+     */
+    private static final int MAX_BOUNDED_REPETITION = 32;
+    private static final int MAX_POSITIONS = 200;
+    private static final int MAX_POLYNOMIAL_POSITIONS = 100;
+    private static final int MAX_WORK = 2_000_000;
+
+    private static final int[] NO_POSITIONS = new int[0];
+    private static final AttackString ABORTED = new AttackString("", "", "");
+    private static final String PREFERRED_CHARACTERS = "abcdefghijklmnopqrstuvwxyz0123456789ABCDEFGHIJKLMNOPQRSTUVWXYZ _-";
+    private static final String PREFERRED_FAILURE_CHARACTERS = "!#%&~ \n\0";
+
+    private final RegExpModel myModel;
+    private final Problem[] myProblems;
+    private final AttackString[] myAttackStrings;
+
+    // position automaton
+    private int myPositionCount;
+    private int[] myPositionNodes = new int[16];
+    private CodePointSet[] myLabels = new CodePointSet[16];
+    private int myEdgeCount;
+    private int[] myEdgeFrom = new int[16];
+    private int[] myEdgeTo = new int[16];
+    private int[] myEdgeClosures = new int[16];
+    private int[] myStartPositions;
+    private int[][] myOutgoing;
+    private boolean[] myReachable;
+    private CodePointSet[] myIntersections;
+    private int myWork;
+
+    private RegExpBacktrackingAnalysis(RegExpModel model) {
+        myModel = model;
+        myProblems = new Problem[model.size()];
+        myAttackStrings = new AttackString[model.size()];
+        if (model.size() > 0 && buildAutomaton() && myPositionCount <= MAX_POSITIONS) {
+            myIntersections = new CodePointSet[myPositionCount * myPositionCount];
+            analyze();
+        }
+    }
+
+    @Nonnull
+    @RequiredReadAction
+    public static RegExpBacktrackingAnalysis getInstance(@Nullable PsiFile file) {
+        final RegExpModel model = RegExpModel.getInstance(file);
+        if (file == null) {
+            return new RegExpBacktrackingAnalysis(model);
+        }
+        return LanguageCachedValueUtil.getCachedValue(file,
+            () -> CachedValueProvider.Result.create(new RegExpBacktrackingAnalysis(model), file));
+    }
+
+    @Nonnull
+    public RegExpModel getModel() {
+        return myModel;
+    }
+
+    /**
+     * @return the backtracking problem caused by the loop of a {@link RegExpModel.Kind#CLOSURE} node, or null
+     */
+    @Nullable
+    public Problem getProblem(int node) {
+        return myProblems[node];
+    }
+
+    /**
+     * @return input which makes the loop of a {@link RegExpModel.Kind#CLOSURE} node with a {@link #getProblem(int) problem}
+     * backtrack, or null
+     */
+    @Nullable
+    public AttackString getAttackString(int node) {
+        return myAttackStrings[node];
+    }
+
+    // ---- construction of the position automaton
+
+    private boolean buildAutomaton() {
+        final int size = myModel.size();
+        final boolean[] inClass = new boolean[size];
+        for (int node = 0; node < size; node++) {
+            final int parent = myModel.getParent(node);
+            inClass[node] = parent >= 0 && (inClass[parent] || myModel.getKind(parent) == RegExpModel.Kind.CLASS);
+        }
+        final boolean[] nullable = new boolean[size];
+        final int[][] first = new int[size][];
+        final int[][] last = new int[size][];
+        // in reverse preorder the children of a node are processed before the node itself
+        for (int node = size - 1; node >= 0; node--) {
+            if (inClass[node]) {
+                continue;
+            }
+            first[node] = last[node] = NO_POSITIONS;
+            nullable[node] = true;
+            switch (myModel.getKind(node)) {
+                case CHAR, CLASS, INTERSECTION, SIMPLE_CLASS, PROPERTY, POSIX_BRACKET_EXPRESSION, CHAR_RANGE, UNKNOWN -> {
+                    first[node] = last[node] = new int[]{addPosition(node, getLabel(node))};
+                    nullable[node] = false;
+                }
+                case BRANCH -> concatenate(node, nullable, first, last);
+                case GROUP -> {
+                    final RegExpGroup.Type type = myModel.getGroupType(node);
+                    if (type != RegExpGroup.Type.POSITIVE_LOOKAHEAD && type != RegExpGroup.Type.NEGATIVE_LOOKAHEAD &&
+                        type != RegExpGroup.Type.POSITIVE_LOOKBEHIND && type != RegExpGroup.Type.NEGATIVE_LOOKBEHIND) {
+                        concatenate(node, nullable, first, last);
+                        if (type == RegExpGroup.Type.ATOMIC) {
+                            makeOpaque(node, first, last);
+                        }
+                    }
+                }
+                case PATTERN, CONDITIONAL -> {
+                    int branches = 0;
+                    boolean anyNullable = false;
+                    int[] firstPositions = NO_POSITIONS;
+                    int[] lastPositions = NO_POSITIONS;
+                    for (int child = myModel.getFirstChild(node); child != -1; child = myModel.getNextSibling(child)) {
+                        if (myModel.getKind(child) != RegExpModel.Kind.BRANCH) {
+                            continue; // the condition of a conditional
+                        }
+                        branches++;
+                        anyNullable |= nullable[child];
+                        firstPositions = union(firstPositions, first[child]);
+                        lastPositions = union(lastPositions, last[child]);
+                    }
+                    first[node] = firstPositions;
+                    last[node] = lastPositions;
+                    nullable[node] = anyNullable || branches == 0 || (myModel.getKind(node) == RegExpModel.Kind.CONDITIONAL && branches < 2);
+                }
+                case CLOSURE -> {
+                    final int atom = myModel.getFirstChild(node);
+                    final int max = myModel.getMax(node);
+                    if (atom == -1 || max == 0) {
+                        break;
+                    }
+                    first[node] = first[atom];
+                    last[node] = last[atom];
+                    nullable[node] = myModel.getMin(node) == 0 || nullable[atom];
+                    if (max == RegExpModel.UNBOUNDED || max > MAX_BOUNDED_REPETITION) {
+                        for (int from : last[atom]) {
+                            for (int to : first[atom]) {
+                                addEdge(from, to, node);
+                            }
+                        }
+                    }
+                    if (myModel.isPossessive(node)) {
+                        makeOpaque(node, first, last);
+                    }
+                }
+                default -> {
+                    // matches the empty string
+                }
+            }
+            if (myEdgeCount > MAX_WORK) {
+                return false;
+            }
+        }
+
+        // top-level patterns of a file with errors follow each other
+        final int[] start = new int[myPositionCount];
+        int startCount = 0;
+        boolean nullablePrefix = true;
+        for (int root = 0; root != -1 && nullablePrefix; root = myModel.getNextSibling(root)) {
+            for (int position : first[root]) {
+                start[startCount++] = position;
+            }
+            nullablePrefix = nullable[root];
+        }
+        myStartPositions = Arrays.copyOf(start, startCount);
+        myOutgoing = buildOutgoing();
+        myReachable = new boolean[myPositionCount];
+        final Deque<Integer> queue = new ArrayDeque<>();
+        for (int position : myStartPositions) {
+            myReachable[position] = true;
+            queue.add(position);
+        }
+        while (!queue.isEmpty()) {
+            final int position = queue.poll();
+            for (int edge : myOutgoing[position]) {
+                final int to = myEdgeTo[edge];
+                if (!myReachable[to]) {
+                    myReachable[to] = true;
+                    queue.add(to);
+                }
+            }
+        }
+        return true;
+    }
+
+    private void concatenate(int node, boolean[] nullable, int[][] first, int[][] last) {
+        int[] firstPositions = NO_POSITIONS;
+        int[] lastPositions = NO_POSITIONS;
+        boolean allNullable = true;
+        for (int child = myModel.getFirstChild(node); child != -1; child = myModel.getNextSibling(child)) {
+            if (first[child] == null) {
+                continue;
+            }
+            for (int from : lastPositions) {
+                for (int to : first[child]) {
+                    addEdge(from, to, -1);
+                }
+            }
+            if (allNullable) {
+                firstPositions = union(firstPositions, first[child]);
+            }
+            lastPositions = nullable[child] ? union(lastPositions, last[child]) : last[child];
+            allNullable &= nullable[child];
+        }
+        first[node] = firstPositions;
+        last[node] = lastPositions;
+        nullable[node] = allNullable;
+    }
+
+    /**
+     * Replaces the positions of a subtree the matcher never backtracks into by a single position matching all their
+     * code points. The positions inside become unreachable.
+     */
+    private void makeOpaque(int node, int[][] first, int[][] last) {
+        final int end = myModel.getEnd(node);
+        final CodePointSet.Builder label = new CodePointSet.Builder();
+        boolean empty = true;
+        for (int position = 0; position < myPositionCount; position++) {
+            if (myPositionNodes[position] >= node && myPositionNodes[position] < end) {
+                label.addAll(myLabels[position]);
+                empty = false;
+            }
+        }
+        if (empty) {
+            return;
+        }
+        first[node] = last[node] = new int[]{addPosition(node, label.build())};
+    }
+
+    private CodePointSet getLabel(int node) {
+        final CodePointSet set = myModel.getKind(node) == RegExpModel.Kind.SIMPLE_CLASS
+                                 ? RegExpCharacterSets.getSimpleClassSet(myModel.getSimpleClassKind(node))
+                                 : RegExpCharacterSets.evaluate(myModel, node);
+        return set == null ? CodePointSet.ALL : set;
+    }
+
+    private int addPosition(int node, CodePointSet label) {
+        if (myPositionCount == myPositionNodes.length) {
+            myPositionNodes = Arrays.copyOf(myPositionNodes, myPositionCount * 2);
+            myLabels = Arrays.copyOf(myLabels, myPositionCount * 2);
+        }
+        myPositionNodes[myPositionCount] = node;
+        myLabels[myPositionCount] = label;
+        return myPositionCount++;
+    }
+
+    private void addEdge(int from, int to, int closure) {
+        if (myEdgeCount == myEdgeFrom.length) {
+            myEdgeFrom = Arrays.copyOf(myEdgeFrom, myEdgeCount * 2);
+            myEdgeTo = Arrays.copyOf(myEdgeTo, myEdgeCount * 2);
+            myEdgeClosures = Arrays.copyOf(myEdgeClosures, myEdgeCount * 2);
+        }
+        myEdgeFrom[myEdgeCount] = from;
+        myEdgeTo[myEdgeCount] = to;
+        myEdgeClosures[myEdgeCount] = closure;
+        myEdgeCount++;
+    }
+
+    private int[][] buildOutgoing() {
+        final int[] counts = new int[myPositionCount];
+        for (int edge = 0; edge < myEdgeCount; edge++) {
+            counts[myEdgeFrom[edge]]++;
+        }
+        final int[][] outgoing = new int[myPositionCount][];
+        for (int position = 0; position < myPositionCount; position++) {
+            outgoing[position] = new int[counts[position]];
+            counts[position] = 0;
+        }
+        for (int edge = 0; edge < myEdgeCount; edge++) {
+            final int from = myEdgeFrom[edge];
+            outgoing[from][counts[from]++] = edge;
+        }
+        return outgoing;
+    }
+
+    private static int[] union(int[] a, int[] b) {
+        if (a.length == 0) {
+            return b;
+        }
+        if (b.length == 0) {
+            return a;
+        }
+        final int[] result = Arrays.copyOf(a, a.length + b.length);
+        System.arraycopy(b, 0, result, a.length, b.length);
+        return result;
+    }
+
+    @Nonnull
+    private CodePointSet intersection(int a, int b) {
+        final int index = a * myPositionCount + b;
+        CodePointSet set = myIntersections[index];
+        if (set == null) {
+            set = a == b ? myLabels[a] : myLabels[a].intersection(myLabels[b]);
+            myIntersections[index] = set;
+            myIntersections[b * myPositionCount + a] = set;
+        }
+        return set;
+    }
+
+    // ---- ambiguity analysis
+
+    private void analyze() {
+        findExponentialBacktracking();
+        if (myPositionCount <= MAX_POLYNOMIAL_POSITIONS && myWork < MAX_WORK) {
+            findPolynomialBacktracking();
+        }
+    }
+
+    /**
+     * Looks for a strongly connected component of the product automaton which contains a diagonal state and a
+     * transition taking two different edges.
+     */
+    private void findExponentialBacktracking() {
+        final int n = myPositionCount;
+        // product states are pairs of reachable positions which can be entered on the same code point
+        final int[] stateOf = new int[n * n];
+        Arrays.fill(stateOf, -1);
+        int stateCount = 0;
+        for (int a = 0; a < n; a++) {
+            for (int b = 0; b < n; b++) {
+                if (myReachable[a] && myReachable[b] && !intersection(a, b).isEmpty()) {
+                    stateOf[a * n + b] = stateCount++;
+                }
+            }
+        }
+        final int[] pairs = new int[stateCount];
+        for (int pair = 0; pair < n * n; pair++) {
+            if (stateOf[pair] >= 0) {
+                pairs[stateOf[pair]] = pair;
+            }
+        }
+        // transitions, with the pair of edges taken by each
+        final int[][] successors = new int[stateCount][];
+        final int[][] firstEdges = new int[stateCount][];
+        final int[][] secondEdges = new int[stateCount][];
+        int[] targets = new int[16];
+        int[] edgesA = new int[16];
+        int[] edgesB = new int[16];
+        for (int state = 0; state < stateCount; state++) {
+            final int a = pairs[state] / n;
+            final int b = pairs[state] % n;
+            int count = 0;
+            for (int edgeA : myOutgoing[a]) {
+                for (int edgeB : myOutgoing[b]) {
+                    if (++myWork > MAX_WORK) {
+                        return;
+                    }
+                    final int target = stateOf[myEdgeTo[edgeA] * n + myEdgeTo[edgeB]];
+                    if (target < 0) {
+                        continue;
+                    }
+                    if (count == targets.length) {
+                        targets = Arrays.copyOf(targets, count * 2);
+                        edgesA = Arrays.copyOf(edgesA, count * 2);
+                        edgesB = Arrays.copyOf(edgesB, count * 2);
+                    }
+                    targets[count] = target;
+                    edgesA[count] = edgeA;
+                    edgesB[count] = edgeB;
+                    count++;
+                }
+            }
+            successors[state] = Arrays.copyOf(targets, count);
+            firstEdges[state] = Arrays.copyOf(edgesA, count);
+            secondEdges[state] = Arrays.copyOf(edgesB, count);
+        }
+
+        final int[] components = findComponents(successors);
+        final int componentCount = Arrays.stream(components).max().orElse(-1) + 1;
+        final int[] diagonals = new int[componentCount];
+        Arrays.fill(diagonals, -1);
+        for (int state = 0; state < stateCount; state++) {
+            if (pairs[state] / n == pairs[state] % n) {
+                diagonals[components[state]] = state;
+            }
+        }
+        final int[] closures = new int[componentCount];
+        final int[] divergenceA = new int[componentCount];
+        final int[] divergenceB = new int[componentCount];
+        final int[] divergenceStates = new int[componentCount];
+        Arrays.fill(closures, Integer.MAX_VALUE);
+        Arrays.fill(divergenceA, -1);
+        for (int state = 0; state < stateCount; state++) {
+            final int component = components[state];
+            if (diagonals[component] < 0) {
+                continue;
+            }
+            for (int i = 0; i < successors[state].length; i++) {
+                if (components[successors[state][i]] != component) {
+                    continue;
+                }
+                final int edgeA = firstEdges[state][i];
+                final int edgeB = secondEdges[state][i];
+                closures[component] = minClosure(closures[component], myEdgeClosures[edgeA]);
+                closures[component] = minClosure(closures[component], myEdgeClosures[edgeB]);
+                if (edgeA != edgeB && divergenceA[component] < 0) {
+                    divergenceA[component] = edgeA;
+                    divergenceB[component] = edgeB;
+                    divergenceStates[component] = state;
+                }
+            }
+        }
+        for (int component = 0; component < componentCount; component++) {
+            final int closure = closures[component];
+            if (divergenceA[component] < 0 || closure == Integer.MAX_VALUE || myProblems[closure] != null) {
+                continue;
+            }
+            final int edgeA = divergenceA[component];
+            final int edgeB = divergenceB[component];
+            final int[] related;
+            if (myEdgeTo[edgeA] != myEdgeTo[edgeB]) {
+                related = new int[]{myPositionNodes[myEdgeTo[edgeA]], myPositionNodes[myEdgeTo[edgeB]]};
+            }
+            else if (myEdgeClosures[edgeA] >= 0 && myEdgeClosures[edgeB] >= 0) {
+                related = new int[]{myEdgeClosures[edgeA], myEdgeClosures[edgeB]};
+            }
+            else {
+                related = NO_POSITIONS;
+            }
+            myProblems[closure] = new Problem(Kind.EXPONENTIAL, closure, 0, related);
+
+            // the pump leads from the diagonal state over the diverging transition back to the diagonal state
+            final int diagonal = diagonals[component];
+            final int source = divergenceStates[component];
+            final int target = stateOf[myEdgeTo[edgeA] * n + myEdgeTo[edgeB]];
+            final StringBuilder pump = new StringBuilder();
+            for (int state : findPath(successors, components, diagonal, source)) {
+                pump.appendCodePoint(pickCodePoint(intersection(pairs[state] / n, pairs[state] % n), PREFERRED_CHARACTERS));
+            }
+            pump.appendCodePoint(pickCodePoint(intersection(myEdgeTo[edgeA], myEdgeTo[edgeB]), PREFERRED_CHARACTERS));
+            for (int state : findPath(successors, components, target, diagonal)) {
+                pump.appendCodePoint(pickCodePoint(intersection(pairs[state] / n, pairs[state] % n), PREFERRED_CHARACTERS));
+            }
+            myAttackStrings[closure] = createAttackString(pairs[diagonal] / n, pump.toString());
+        }
+    }
+
+    /**
+     * Computes the longest chains of loops where a loop, the path to the next loop and the next loop match the same
+     * input, and reports the last repetition of every chain of two or more loops.
+     */
+    private void findPolynomialBacktracking() {
+        final int n = myPositionCount;
+        final int[][] successors = new int[n][];
+        for (int position = 0; position < n; position++) {
+            final int[] outgoing = myOutgoing[position];
+            final int[] targets = new int[outgoing.length];
+            int count = 0;
+            if (myReachable[position]) {
+                for (int edge : outgoing) {
+                    targets[count++] = myEdgeTo[edge];
+                }
+            }
+            successors[position] = Arrays.copyOf(targets, count);
+        }
+        final int[] components = findComponents(successors);
+        final int componentCount = Arrays.stream(components).max().orElse(-1) + 1;
+
+        // loops and the repetition responsible for each
+        final int[] closures = new int[componentCount];
+        Arrays.fill(closures, Integer.MAX_VALUE);
+        for (int edge = 0; edge < myEdgeCount; edge++) {
+            final int from = myEdgeFrom[edge];
+            if (myReachable[from] && components[from] == components[myEdgeTo[edge]]) {
+                closures[components[from]] = minClosure(closures[components[from]], myEdgeClosures[edge]);
+            }
+        }
+
+        // components are numbered in reverse topological order, see findComponents()
+        final BitSet[] reachableComponents = new BitSet[componentCount];
+        for (int component = 0; component < componentCount; component++) {
+            reachableComponents[component] = new BitSet(componentCount);
+        }
+        for (int position = 0; position < n; position++) {
+            for (int target : successors[position]) {
+                reachableComponents[components[position]].set(components[target]);
+            }
+        }
+        for (int component = 0; component < componentCount; component++) {
+            final BitSet reachable = reachableComponents[component];
+            for (int next = reachable.nextSetBit(0); next >= 0 && next < component; next = reachable.nextSetBit(next + 1)) {
+                reachable.or(reachableComponents[next]);
+            }
+        }
+        final int[][] members = new int[componentCount][];
+        final int[] memberCounts = new int[componentCount];
+        for (int position = 0; position < n; position++) {
+            memberCounts[components[position]]++;
+        }
+        for (int component = 0; component < componentCount; component++) {
+            members[component] = new int[memberCounts[component]];
+            memberCounts[component] = 0;
+        }
+        for (int position = 0; position < n; position++) {
+            members[components[position]][memberCounts[components[position]]++] = position;
+        }
+
+        final int[] degrees = new int[componentCount];
+        final AttackString[] attackStrings = new AttackString[componentCount];
+        final int[] predecessors = new int[componentCount];
+        final boolean[] extended = new boolean[componentCount];
+        Arrays.fill(predecessors, -1);
+        for (int b = componentCount - 1; b >= 0; b--) {
+            if (!isPolynomialCandidate(closures[b])) {
+                continue;
+            }
+            degrees[b] = 1;
+            for (int a = componentCount - 1; a > b; a--) {
+                if (degrees[a] == 0 || !reachableComponents[a].get(b)) {
+                    continue;
+                }
+                final AttackString attackString = findPolynomialAttackString(members[a], members[b], components);
+                if (attackString == ABORTED) {
+                    return;
+                }
+                if (attackString != null) {
+                    extended[a] = true;
+                    if (degrees[a] + 1 > degrees[b]) {
+                        degrees[b] = degrees[a] + 1;
+                        predecessors[b] = a;
+                        attackStrings[b] = attackString;
+                    }
+                }
+            }
+        }
+        for (int component = 0; component < componentCount; component++) {
+            if (degrees[component] < 2 || extended[component] || myProblems[closures[component]] != null) {
+                continue;
+            }
+            final int[] related = new int[degrees[component] - 1];
+            int index = related.length;
+            for (int previous = predecessors[component]; previous >= 0; previous = predecessors[previous]) {
+                related[--index] = closures[previous];
+            }
+            myProblems[closures[component]] =
+                new Problem(Kind.POLYNOMIAL, closures[component], degrees[component], related);
+            myAttackStrings[closures[component]] = attackStrings[component];
+        }
+    }
+
+    private boolean isPolynomialCandidate(int closure) {
+        return closure != Integer.MAX_VALUE && (myProblems[closure] == null || myProblems[closure].kind() != Kind.EXPONENTIAL);
+    }
+
+    /**
+     * Searches the product of three copies of the automaton for positions p in component a and q in component b
+     * and a word which leads from (p, p, q) to (p, q, q): then p loops, leads to q and q loops on that word.
+     *
+     * @return the attack string repeating the word, null if there is no such word, or {@link #ABORTED}
+     */
+    @Nullable
+    private AttackString findPolynomialAttackString(int[] a, int[] b, int[] components) {
+        final int n = myPositionCount;
+        final int componentA = components[a[0]];
+        final int componentB = components[b[0]];
+        for (int p : a) {
+            for (int q : b) {
+                // the predecessor of every visited state, and the code point read to enter it
+                final Map<Long, Long> parents = new HashMap<>();
+                final Map<Long, Integer> codePoints = new HashMap<>();
+                final long start = ((long) p * n + p) * n + q;
+                final long goal = ((long) p * n + q) * n + q;
+                final Deque<Long> queue = new ArrayDeque<>();
+                queue.add(start);
+                while (!queue.isEmpty() && !parents.containsKey(goal)) {
+                    final long state = queue.poll();
+                    final int stateX = (int) (state / n / n);
+                    final int stateY = (int) (state / n % n);
+                    final int stateZ = (int) (state % n);
+                    for (int edgeX : myOutgoing[stateX]) {
+                        final int x = myEdgeTo[edgeX];
+                        if (components[x] != componentA) {
+                            continue;
+                        }
+                        for (int edgeY : myOutgoing[stateY]) {
+                            final int y = myEdgeTo[edgeY];
+                            final CodePointSet xy = intersection(x, y);
+                            if (xy.isEmpty()) {
+                                continue;
+                            }
+                            for (int edgeZ : myOutgoing[stateZ]) {
+                                if (++myWork > MAX_WORK) {
+                                    return ABORTED;
+                                }
+                                final int z = myEdgeTo[edgeZ];
+                                if (components[z] != componentB || !xy.intersects(myLabels[z])) {
+                                    continue;
+                                }
+                                final long next = ((long) x * n + y) * n + z;
+                                if (next != start && !parents.containsKey(next)) {
+                                    parents.put(next, state);
+                                    codePoints.put(next, pickCodePoint(xy.intersection(myLabels[z]), PREFERRED_CHARACTERS));
+                                    queue.add(next);
+                                }
+                            }
+                        }
+                    }
+                }
+                if (parents.containsKey(goal)) {
+                    final StringBuilder pump = new StringBuilder();
+                    for (long state = goal; state != start; state = parents.get(state)) {
+                        pump.appendCodePoint(codePoints.get(state));
+                    }
+                    return createAttackString(p, new StringBuilder(pump.reverse()).toString());
+                }
+            }
+        }
+        return null;
+    }
+
+    // ---- attack strings
+
+    private AttackString createAttackString(int loopPosition, String pump) {
+        // the prefix reaches the loop, entering it on its last character
+        final int[] parents = new int[myPositionCount];
+        Arrays.fill(parents, -2);
+        final Deque<Integer> queue = new ArrayDeque<>();
+        for (int position : myStartPositions) {
+            if (parents[position] == -2) {
+                parents[position] = -1;
+                queue.add(position);
+            }
+        }
+        while (!queue.isEmpty() && parents[loopPosition] == -2) {
+            final int position = queue.poll();
+            for (int edge : myOutgoing[position]) {
+                final int to = myEdgeTo[edge];
+                if (parents[to] == -2) {
+                    parents[to] = position;
+                    queue.add(to);
+                }
+            }
+        }
+        final StringBuilder prefix = new StringBuilder();
+        for (int position = loopPosition; position >= 0; position = parents[position]) {
+            prefix.appendCodePoint(pickCodePoint(myLabels[position], PREFERRED_CHARACTERS));
+        }
+
+        // the suffix is a character no element of the pattern matches
+        final CodePointSet.Builder matched = new CodePointSet.Builder();
+        for (int position = 0; position < myPositionCount; position++) {
+            if (myReachable[position]) {
+                matched.addAll(myLabels[position]);
+            }
+        }
+        final CodePointSet unmatched = matched.build().complement();
+        final String suffix = unmatched.isEmpty()
+                              ? ""
+                              : new String(Character.toChars(pickCodePoint(unmatched, PREFERRED_FAILURE_CHARACTERS)));
+        return new AttackString(prefix.reverse().toString(), pump, suffix);
+    }
+
+    private static int pickCodePoint(CodePointSet set, String preferred) {
+        for (int i = 0; i < preferred.length(); i++) {
+            if (set.contains(preferred.charAt(i))) {
+                return preferred.charAt(i);
+            }
+        }
+        return set.getFirst();
+    }
+
+    /**
+     * @return the states of a shortest path inside a component, excluding the start and including the end state;
+     * empty if both are the same
+     */
+    private static int[] findPath(int[][] successors, int[] components, int from, int to) {
+        if (from == to) {
+            return NO_POSITIONS;
+        }
+        final Map<Integer, Integer> parents = new HashMap<>();
+        final Deque<Integer> queue = new ArrayDeque<>();
+        queue.add(from);
+        parents.put(from, from);
+        while (!queue.isEmpty() && !parents.containsKey(to)) {
+            final int state = queue.poll();
+            for (int successor : successors[state]) {
+                if (components[successor] == components[from] && !parents.containsKey(successor)) {
+                    parents.put(successor, state);
+                    queue.add(successor);
+                }
+            }
+        }
+        int length = 0;
+        for (int state = to; state != from; state = parents.get(state)) {
+            length++;
+        }
+        final int[] path = new int[length];
+        for (int state = to; state != from; state = parents.get(state)) {
+            path[--length] = state;
+        }
+        return path;
+    }
+
+    private static int minClosure(int current, int closure) {
+        return closure >= 0 && closure < current ? closure : current;
+    }
+
+    /**
+     * Iterative Tarjan algorithm.
+     *
+     * @return the strongly connected component of every vertex; components are numbered in reverse topological order,
+     * so every edge leads to a component with an equal or lower number
+     */
+    private static int[] findComponents(int[][] successors) {
+        final int count = successors.length;
+        final int[] components = new int[count];
+        final int[] index = new int[count];
+        final int[] lowLink = new int[count];
+        final int[] nextSuccessor = new int[count];
+        final boolean[] onStack = new boolean[count];
+        Arrays.fill(index, -1);
+        final int[] stack = new int[count];
+        int stackSize = 0;
+        final int[] callStack = new int[count];
+        int nextIndex = 0;
+        int componentCount = 0;
+        for (int root = 0; root < count; root++) {
+            if (index[root] >= 0) {
+                continue;
+            }
+            int depth = 0;
+            callStack[depth++] = root;
+            index[root] = lowLink[root] = nextIndex++;
+            stack[stackSize++] = root;
+            onStack[root] = true;
+            while (depth > 0) {
+                final int vertex = callStack[depth - 1];
+                if (nextSuccessor[vertex] < successors[vertex].length) {
+                    final int successor = successors[vertex][nextSuccessor[vertex]++];
+                    if (index[successor] < 0) {
+                        index[successor] = lowLink[successor] = nextIndex++;
+                        stack[stackSize++] = successor;
+                        onStack[successor] = true;
+                        callStack[depth++] = successor;
+                    }
+                    else if (onStack[successor]) {
+                        lowLink[vertex] = Math.min(lowLink[vertex], index[successor]);
+                    }
+                    continue;
+                }
+                depth--;
+                if (depth > 0) {
+                    final int parent = callStack[depth - 1];
+                    lowLink[parent] = Math.min(lowLink[parent], lowLink[vertex]);
+                }
+                if (lowLink[vertex] == index[vertex]) {
+                    int member;
+                    do {
+                        member = stack[--stackSize];
+                        onStack[member] = false;
+                        components[member] = componentCount;
+                    }
+                    while (member != vertex);
+                    componentCount++;
+                }
+            }
+        }
+        return components;
+    }
+}
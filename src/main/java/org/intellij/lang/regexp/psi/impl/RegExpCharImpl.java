@@ -16,18 +16,16 @@
 package org.intellij.lang.regexp.psi.impl;
 
 import consulo.annotation.access.RequiredReadAction;
-import consulo.component.util.UnicodeCharacterRegistry;
 import consulo.language.ast.ASTNode;
 import consulo.language.ast.IElementType;
 import consulo.language.ast.StringEscapesTokenTypes;
 import consulo.language.ast.TokenSet;
 import org.intellij.lang.regexp.RegExpTT;
+import org.intellij.lang.regexp.UnicodeCharacterNames;
 import org.intellij.lang.regexp.psi.RegExpChar;
 import org.intellij.lang.regexp.psi.RegExpElementVisitor;
 import jakarta.annotation.Nonnull;
 
-import java.util.Objects;
-
 public class RegExpCharImpl extends RegExpElementImpl implements RegExpChar {
     private static final TokenSet OCT_CHARS = TokenSet.create(RegExpTT.OCT_CHAR, RegExpTT.BAD_OCT_VALUE);
     private static final TokenSet HEX_CHARS = TokenSet.create(RegExpTT.HEX_CHAR, RegExpTT.BAD_HEX_VALUE);
@@ -112,14 +110,7 @@ public class RegExpCharImpl extends RegExpElementImpl implements RegExpChar {
                     yield -1;
                 }
 
-                String charPoint = s.substring(3, length - 1);
-                UnicodeCharacterRegistry.UnicodeCharacter unicodeCharacter =
-                    UnicodeCharacterRegistry.listCharacters()
-                        .stream()
-                        .filter(it -> Objects.equals(it.getName(), charPoint))
-                        .findFirst()
-                        .orElse(null);
-                yield unicodeCharacter == null ? -1 : unicodeCharacter.getCodePoint();
+                yield UnicodeCharacterNames.getInstance().getCodePoint(s.substring(3, length - 1));
             }
             case 'x' -> {
                 if (length <= 2) {
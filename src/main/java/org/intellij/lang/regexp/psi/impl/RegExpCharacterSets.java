@@ -0,0 +1,277 @@
+/*
+ * Copyright 2013-2026 consulo.io
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.intellij.lang.regexp.psi.impl;
+
+import consulo.annotation.access.RequiredReadAction;
+import consulo.application.util.CachedValueProvider;
+import consulo.language.psi.util.LanguageCachedValueUtil;
+import jakarta.annotation.Nonnull;
+import jakarta.annotation.Nullable;
+import org.intellij.lang.regexp.CodePointSet;
+import org.intellij.lang.regexp.DefaultRegExpPropertiesProvider;
+import org.intellij.lang.regexp.psi.RegExpClassElement;
+import org.intellij.lang.regexp.psi.RegExpSimpleClass;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Evaluates character classes and class elements to the set of code points they match.
+ * <p>
+ * Sets are computed bottom-up over the {@link RegExpModel} of the file, without recursion, so deeply nested classes
+ * are fine, and are cached per element until the file is modified. Negation, nested classes and intersections
+ * are evaluated with Java semantics; properties and POSIX bracket expressions are resolved through
+ * {@link DefaultRegExpPropertiesProvider}. Matching flags are not applied, except case insensitivity on request.
+ * <p>
+ * A set is unknown (null) if any part of it can't be evaluated, e.g. an invalid escape, a reversed range,
+ * an unknown property, or a class like {@code \X} which matches more than one character.
+ */
+public final class RegExpCharacterSets {
+    private static final CodePointSet DIGIT = CodePointSet.range('0', '9');
+    private static final CodePointSet WORD = new CodePointSet.Builder().add('0', '9').add('A', 'Z').add('_').add('a', 'z').build();
+    private static final CodePointSet SPACE = CodePointSet.range('\t', '\r').union(CodePointSet.of(' '));
+    private static final CodePointSet HORIZONTAL_SPACE = new CodePointSet.Builder()
+        .add('\t').add(' ').add(0xA0).add(0x1680).add(0x180E).add(0x2000, 0x200A).add(0x202F).add(0x205F).add(0x3000)
+        .build();
+    private static final CodePointSet VERTICAL_SPACE = new CodePointSet.Builder().add('\n', '\r').add(0x85).add(0x2028, 0x2029).build();
+    private static final CodePointSet LINE_TERMINATORS = CodePointSet.of('\n', '\r', 0x85, 0x2028, 0x2029);
+    private static final CodePointSet ASCII_UPPER_CASE = CodePointSet.range('A', 'Z');
+    private static final CodePointSet ASCII_LOWER_CASE = CodePointSet.range('a', 'z');
+
+    private RegExpCharacterSets() {
+    }
+
+    /**
+     * @return the code points matched by the element, or null if the set is unknown
+     */
+    @Nullable
+    @RequiredReadAction
+    public static CodePointSet getCharacterSet(@Nonnull RegExpClassElement element) {
+        return LanguageCachedValueUtil.getCachedValue(element, () -> CachedValueProvider.Result.create(compute(element), element));
+    }
+
+    @Nullable
+    @RequiredReadAction
+    private static CodePointSet compute(RegExpClassElement element) {
+        final RegExpModel model = RegExpModel.getInstance(element.getContainingFile());
+        final int node = model.getNode(element);
+        return node < 0 ? null : evaluate(model, node);
+    }
+
+    /**
+     * Evaluates a node of the model, see {@link #getCharacterSet(RegExpClassElement)}.
+     *
+     * @return the code points matched by the node, or null if the node is not a class element or its set is unknown
+     */
+    @Nullable
+    public static CodePointSet evaluate(@Nonnull RegExpModel model, int node) {
+        return evaluate(model, node, false, false);
+    }
+
+    /**
+     * Evaluates a node of the model like {@link #evaluate(RegExpModel, int)}, matching characters and character ranges
+     * case-insensitively if requested. Like {@code java.util.regex}, simple classes and properties are not folded,
+     * and characters are folded before a class is negated.
+     *
+     * @param unicodeCase fold all cased characters, instead of only ASCII letters
+     */
+    @Nullable
+    public static CodePointSet evaluate(@Nonnull RegExpModel model, int node, boolean ignoreCase, boolean unicodeCase) {
+        if (!isClassElement(model.getKind(node))) {
+            return null;
+        }
+        final int end = model.getEnd(node);
+        final CodePointSet[] sets = new CodePointSet[end - node];
+        // in reverse preorder the children of a node are evaluated before the node itself
+        for (int i = end - 1; i >= node; i--) {
+            final CodePointSet set = evaluateNode(model, i, node, sets);
+            final RegExpModel.Kind kind = model.getKind(i);
+            sets[i - node] = set != null && ignoreCase && (kind == RegExpModel.Kind.CHAR || kind == RegExpModel.Kind.CHAR_RANGE)
+                             ? foldCase(set, unicodeCase)
+                             : set;
+        }
+        return sets[0];
+    }
+
+    /**
+     * @param unicode fold all cased characters, instead of only ASCII letters
+     * @return the set with the other case variants of its characters added
+     */
+    @Nonnull
+    public static CodePointSet foldCase(@Nonnull CodePointSet set, boolean unicode) {
+        final CodePointSet.Builder builder = new CodePointSet.Builder().addAll(set);
+        if (!unicode) {
+            addShifted(builder, set.intersection(ASCII_UPPER_CASE), 'a' - 'A');
+            addShifted(builder, set.intersection(ASCII_LOWER_CASE), 'A' - 'a');
+            return builder.build();
+        }
+        final CaseTable table = CaseTable.INSTANCE;
+        for (int i = 0; i < table.myCodePoints.length; i++) {
+            if (set.contains(table.myCodePoints[i])) {
+                for (int variant : table.myVariants[i]) {
+                    builder.add(variant);
+                }
+            }
+        }
+        return builder.build();
+    }
+
+    private static void addShifted(CodePointSet.Builder builder, CodePointSet set, int shift) {
+        for (int i = 0; i < set.getRangeCount(); i++) {
+            builder.add(set.getRangeStart(i) + shift, set.getRangeEnd(i) + shift);
+        }
+    }
+
+    /**
+     * The cased code points, each with the code points it matches case-insensitively: those which have the same
+     * lower case of their upper case, which is how {@code java.util.regex} compares characters with {@code UNICODE_CASE}.
+     */
+    private static final class CaseTable {
+        private static final CaseTable INSTANCE = new CaseTable();
+
+        private final int[] myCodePoints;
+        private final int[][] myVariants;
+
+        private CaseTable() {
+            final Map<Integer, List<Integer>> classes = new HashMap<>();
+            final List<Integer> codePoints = new ArrayList<>();
+            for (int codePoint = 0; codePoint <= Character.MAX_CODE_POINT; codePoint++) {
+                if (Character.toUpperCase(codePoint) != codePoint || Character.toLowerCase(codePoint) != codePoint) {
+                    codePoints.add(codePoint);
+                    classes.computeIfAbsent(key(codePoint), k -> new ArrayList<>()).add(codePoint);
+                }
+            }
+            myCodePoints = new int[codePoints.size()];
+            myVariants = new int[codePoints.size()][];
+            for (int i = 0; i < myCodePoints.length; i++) {
+                final int codePoint = codePoints.get(i);
+                final List<Integer> variants = classes.get(key(codePoint));
+                myCodePoints[i] = codePoint;
+                myVariants[i] = new int[variants.size() + 1];
+                for (int j = 0; j < variants.size(); j++) {
+                    myVariants[i][j] = variants.get(j);
+                }
+                // the key itself may not be cased, like the lower case of the Kelvin sign
+                myVariants[i][variants.size()] = key(codePoint);
+            }
+        }
+
+        private static int key(int codePoint) {
+            return Character.toLowerCase(Character.toUpperCase(codePoint));
+        }
+    }
+
+    @Nullable
+    private static CodePointSet evaluateNode(RegExpModel model, int node, int root, CodePointSet[] sets) {
+        switch (model.getKind(node)) {
+            case CHAR -> {
+                final int codePoint = model.getCodePoint(node);
+                return codePoint < 0 ? null : CodePointSet.of(codePoint);
+            }
+            case CHAR_RANGE -> {
+                final int from = model.getFirstChild(node);
+                final int to = from < 0 ? -1 : model.getNextSibling(from);
+                if (to < 0 || sets[from - root] == null || sets[to - root] == null) {
+                    return null;
+                }
+                final int fromCodePoint = model.getCodePoint(from);
+                final int toCodePoint = model.getCodePoint(to);
+                return fromCodePoint > toCodePoint ? null : CodePointSet.range(fromCodePoint, toCodePoint);
+            }
+            case CLASS -> {
+                final CodePointSet.Builder builder = new CodePointSet.Builder();
+                for (int child = model.getFirstChild(node); child != -1; child = model.getNextSibling(child)) {
+                    final CodePointSet set = sets[child - root];
+                    if (set == null) {
+                        return null;
+                    }
+                    builder.addAll(set);
+                }
+                final CodePointSet set = builder.build();
+                return model.isNegated(node) ? set.complement() : set;
+            }
+            case INTERSECTION -> {
+                CodePointSet result = null;
+                CodePointSet.Builder operand = null;
+                for (int child = model.getFirstChild(node); child != -1; child = model.getNextSibling(child)) {
+                    final CodePointSet set = sets[child - root];
+                    if (set == null) {
+                        return null;
+                    }
+                    if (model.isOperandStart(child) && operand != null) {
+                        result = result == null ? operand.build() : result.intersection(operand.build());
+                        operand = null;
+                    }
+                    if (operand == null) {
+                        operand = new CodePointSet.Builder();
+                    }
+                    operand.addAll(set);
+                }
+                if (operand != null) {
+                    result = result == null ? operand.build() : result.intersection(operand.build());
+                }
+                return result == null ? CodePointSet.EMPTY : result;
+            }
+            case SIMPLE_CLASS -> {
+                return getSimpleClassSet(model.getSimpleClassKind(node));
+            }
+            case PROPERTY -> {
+                final String name = model.getName(node);
+                final CodePointSet set = name == null ? null : DefaultRegExpPropertiesProvider.getInstance().getCodePoints(name);
+                return set == null || !model.isNegated(node) ? set : set.complement();
+            }
+            case POSIX_BRACKET_EXPRESSION -> {
+                final String name = model.getName(node);
+                final CodePointSet set = name == null ? null : DefaultRegExpPropertiesProvider.getInstance().getPosixCodePoints(name);
+                return set == null || !model.isNegated(node) ? set : set.complement();
+            }
+            default -> {
+                return null;
+            }
+        }
+    }
+
+    private static boolean isClassElement(RegExpModel.Kind kind) {
+        return switch (kind) {
+            case CHAR, CHAR_RANGE, CLASS, INTERSECTION, SIMPLE_CLASS, PROPERTY, POSIX_BRACKET_EXPRESSION -> true;
+            default -> false;
+        };
+    }
+
+    /**
+     * @return the code points matched by a simple class, with Java semantics, or null if the class doesn't match
+     * a single character from a fixed set
+     */
+    @Nullable
+    public static CodePointSet getSimpleClassSet(@Nonnull RegExpSimpleClass.Kind kind) {
+        return switch (kind) {
+            case ANY -> LINE_TERMINATORS.complement();
+            case DIGIT -> DIGIT;
+            case NON_DIGIT -> DIGIT.complement();
+            case WORD -> WORD;
+            case NON_WORD -> WORD.complement();
+            case SPACE -> SPACE;
+            case NON_SPACE -> SPACE.complement();
+            case HORIZONTAL_SPACE -> HORIZONTAL_SPACE;
+            case NON_HORIZONTAL_SPACE -> HORIZONTAL_SPACE.complement();
+            case VERTICAL_SPACE -> VERTICAL_SPACE;
+            case NON_VERTICAL_SPACE -> VERTICAL_SPACE.complement();
+            case XML_NAME_START, NON_XML_NAME_START, XML_NAME_PART, NON_XML_NAME_PART, UNICODE_GRAPHEME, UNICODE_LINEBREAK -> null;
+        };
+    }
+}
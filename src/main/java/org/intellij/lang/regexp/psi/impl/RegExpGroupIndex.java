@@ -0,0 +1,226 @@
+/*
+ * Copyright 2013-2026 consulo.io
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.intellij.lang.regexp.psi.impl;
+
+import consulo.annotation.access.RequiredReadAction;
+import consulo.application.util.CachedValueProvider;
+import consulo.document.util.TextRange;
+import consulo.language.psi.PsiElement;
+import consulo.language.psi.PsiFile;
+import consulo.language.psi.util.LanguageCachedValueUtil;
+import consulo.util.collection.ContainerUtil;
+import consulo.util.collection.MultiMap;
+import jakarta.annotation.Nonnull;
+import jakarta.annotation.Nullable;
+import org.intellij.lang.regexp.psi.RegExpBranch;
+import org.intellij.lang.regexp.psi.RegExpGroup;
+import org.intellij.lang.regexp.psi.RegExpRecursiveElementVisitor;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * Capturing groups of a regexp file, collected in a single pass and cached until the file is modified.
+ * <p>
+ * Groups are kept in ordinal (document) order. Group numbers follow PCRE branch reset semantics: inside {@code (?|...)}
+ * every alternative starts numbering from the same value, so several groups may share one number. In that case
+ * the first group with the number is the one a back reference resolves to.
+ * <p>
+ * Named groups are additionally indexed by name. A name may be defined more than once, in dialects that allow
+ * duplicate group names; references resolve to the first definition.
+ */
+public final class RegExpGroupIndex {
+    private static final RegExpGroupIndex EMPTY =
+        new RegExpGroupIndex(new RegExpGroup[0], new int[0], new int[0], new RegExpGroup[1], MultiMap.empty());
+
+    private final RegExpGroup[] myGroups;
+    private final int[] myStartOffsets;
+    private final int[] myNumbers;
+    private final RegExpGroup[] myGroupsByNumber;
+    private final MultiMap<String, RegExpGroup> myGroupsByName;
+
+    private RegExpGroupIndex(RegExpGroup[] groups,
+                             int[] startOffsets,
+                             int[] numbers,
+                             RegExpGroup[] groupsByNumber,
+                             MultiMap<String, RegExpGroup> groupsByName) {
+        myGroups = groups;
+        myStartOffsets = startOffsets;
+        myNumbers = numbers;
+        myGroupsByNumber = groupsByNumber;
+        myGroupsByName = groupsByName;
+    }
+
+    @Nonnull
+    @RequiredReadAction
+    public static RegExpGroupIndex getInstance(@Nullable PsiFile file) {
+        if (file == null) {
+            return EMPTY;
+        }
+        return LanguageCachedValueUtil.getCachedValue(file, () -> CachedValueProvider.Result.create(build(file), file));
+    }
+
+    @RequiredReadAction
+    private static RegExpGroupIndex build(PsiFile file) {
+        final GroupCollector collector = new GroupCollector();
+        file.accept(collector);
+        final int size = collector.myGroups.size();
+        if (size == 0 && collector.myGroupsByName.isEmpty()) {
+            return EMPTY;
+        }
+        final RegExpGroup[] groups = collector.myGroups.toArray(new RegExpGroup[size]);
+        final int[] startOffsets = new int[size];
+        final RegExpGroup[] groupsByNumber = new RegExpGroup[collector.myMaxNumber + 1];
+        for (int i = 0; i < size; i++) {
+            startOffsets[i] = groups[i].getTextRange().getStartOffset();
+            final int number = collector.myNumbers[i];
+            if (groupsByNumber[number] == null) {
+                groupsByNumber[number] = groups[i];
+            }
+        }
+        return new RegExpGroupIndex(groups, startOffsets, Arrays.copyOf(collector.myNumbers, size), groupsByNumber,
+            collector.myGroupsByName);
+    }
+
+    /**
+     * @return the capturing group with the specified number (1-based), or null if there is no such group
+     */
+    @Nullable
+    public RegExpGroup getGroup(int number) {
+        return number > 0 && number < myGroupsByNumber.length ? myGroupsByNumber[number] : null;
+    }
+
+    /**
+     * @return the number of the specified capturing group, or 0 if the group is not a capturing group of this file
+     */
+    @RequiredReadAction
+    public int getGroupNumber(@Nonnull RegExpGroup group) {
+        final int index = Arrays.binarySearch(myStartOffsets, group.getTextRange().getStartOffset());
+        return index >= 0 && myGroups[index] == group ? myNumbers[index] : 0;
+    }
+
+    /**
+     * @return the capturing group {@code index} positions from the end, as used by relative back references
+     * like {@code \g{-1}}, or null if there is no such group
+     */
+    @Nullable
+    public RegExpGroup getRelativeGroup(int index) {
+        return index > 0 && index <= myGroups.length ? myGroups[myGroups.length - index] : null;
+    }
+
+    /**
+     * @return all capturing groups in ordinal order
+     */
+    @Nonnull
+    public List<RegExpGroup> getGroups() {
+        return Arrays.asList(myGroups);
+    }
+
+    /**
+     * @return the highest group number in the file, 0 if there are no capturing groups
+     */
+    public int getGroupCount() {
+        return myGroupsByNumber.length - 1;
+    }
+
+    /**
+     * @return the first group defining the specified name, or null if there is no such group
+     */
+    @Nullable
+    public RegExpGroup getNamedGroup(@Nonnull String name) {
+        return ContainerUtil.getFirstItem(myGroupsByName.get(name));
+    }
+
+    /**
+     * @return all groups defining the specified name, in ordinal order
+     */
+    @Nonnull
+    public Collection<RegExpGroup> getNamedGroups(@Nonnull String name) {
+        return myGroupsByName.get(name);
+    }
+
+    /**
+     * @return all named groups in the file, grouped by name in order of first definition
+     */
+    @Nonnull
+    public Collection<RegExpGroup> getNamedGroups() {
+        return myGroupsByName.values();
+    }
+
+    /**
+     * @return true, if the group is named and an earlier group in the file already defines the same name
+     */
+    public boolean isDuplicateName(@Nonnull RegExpGroup group) {
+        final String name = group.getGroupName();
+        return name != null && getNamedGroup(name) != group;
+    }
+
+    /**
+     * @return the number of capturing groups starting inside the specified range of the file
+     */
+    public int countGroupsIn(@Nonnull TextRange range) {
+        return lowerBound(range.getEndOffset()) - lowerBound(range.getStartOffset());
+    }
+
+    private int lowerBound(int offset) {
+        final int index = Arrays.binarySearch(myStartOffsets, offset);
+        // start offsets are unique, because a group always starts with its own opening token
+        return index >= 0 ? index : -index - 1;
+    }
+
+    private static class GroupCollector extends RegExpRecursiveElementVisitor {
+        private final List<RegExpGroup> myGroups = new ArrayList<>();
+        private final MultiMap<String, RegExpGroup> myGroupsByName = MultiMap.createLinked();
+        private int[] myNumbers = new int[16];
+        private int myCount = 0;
+        private int myMaxNumber = 0;
+
+        @Override
+        public void visitElement(@Nonnull PsiElement element) {
+            element.acceptChildren(this);
+        }
+
+        @Override
+        public void visitRegExpGroup(RegExpGroup group) {
+            final String name = group.getGroupName();
+            if (name != null) {
+                myGroupsByName.putValue(name, group);
+            }
+            if (group.isCapturing()) {
+                if (myGroups.size() == myNumbers.length) {
+                    myNumbers = Arrays.copyOf(myNumbers, myNumbers.length << 1);
+                }
+                myNumbers[myGroups.size()] = ++myCount;
+                myGroups.add(group);
+                myMaxNumber = Math.max(myMaxNumber, myCount);
+            }
+            else if (group.getType() == RegExpGroup.Type.PCRE_BRANCH_RESET) {
+                final int start = myCount;
+                int max = start;
+                for (RegExpBranch branch : group.getPattern().getBranches()) {
+                    myCount = start;
+                    branch.accept(this);
+                    max = Math.max(max, myCount);
+                }
+                myCount = max;
+                return;
+            }
+            super.visitRegExpGroup(group);
+        }
+    }
+}
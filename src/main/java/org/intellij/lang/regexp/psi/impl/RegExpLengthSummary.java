@@ -0,0 +1,329 @@
+/*
+ * Copyright 2013-2026 consulo.io
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.intellij.lang.regexp.psi.impl;
+
+import consulo.annotation.access.RequiredReadAction;
+import consulo.application.util.CachedValueProvider;
+import consulo.language.psi.PsiFile;
+import consulo.language.psi.util.LanguageCachedValueUtil;
+import jakarta.annotation.Nonnull;
+import jakarta.annotation.Nullable;
+import org.intellij.lang.regexp.RegExpLanguageHost;
+
+/**
+ * Match length bounds of every node of a {@link RegExpModel}, and the first construct inside each node which a dialect
+ * doesn't allow in lookbehind. Both are computed bottom-up in a single pass over the model and cached with it, so
+ * checking a lookbehind group is a lookup, however deeply lookbehinds are nested.
+ * <p>
+ * Lengths are counted in atoms matched: every character, class and property counts as one, including {@code \R} and
+ * {@code \X}, which may match a line break of two characters and a grapheme cluster of any length. The lookbehind
+ * checks have always counted them like this, so {@code (?<=\R)} and {@code (?<=\X|a)} are allowed in dialects with
+ * {@link RegExpLanguageHost.Lookbehind#FIXED_LENGTH_ALTERNATION}. Lookarounds, boundaries and option settings match
+ * the empty string. Back references are unbounded, as their length depends on the input.
+ */
+public final class RegExpLengthSummary {
+    public enum LookbehindProblem {
+        GROUP_REFERENCE,
+        NAMED_GROUP_REFERENCE,
+        CONDITIONAL,
+        /**
+         * reported on a pattern whose alternatives match different lengths
+         */
+        ALTERNATION_LENGTH,
+        /**
+         * reported on a closure with a counted quantifier whose minimum and maximum differ
+         */
+        UNEQUAL_COUNTED_QUANTIFIER,
+        /**
+         * reported on a closure with a {@code *}, {@code +} or {@code ?} quantifier
+         */
+        REPETITION,
+        /**
+         * reported on a closure whose bounds are invalid; the annotator reports this problem already
+         */
+        INVALID_QUANTIFIER
+    }
+
+    private static final LookbehindProblem[] PROBLEMS = LookbehindProblem.values();
+    private static final RegExpLanguageHost.Lookbehind[] CHECKED_MODES = {
+        RegExpLanguageHost.Lookbehind.FIXED_LENGTH_ALTERNATION,
+        RegExpLanguageHost.Lookbehind.VARIABLE_LENGTH_ALTERNATION,
+        RegExpLanguageHost.Lookbehind.FINITE_REPETITION
+    };
+
+    private final RegExpModel myModel;
+    private final int[] myMinLengths;
+    private final int[] myMaxLengths;
+    /**
+     * per checked mode, the node of the first lookbehind problem in the subtree of each node, or -1
+     */
+    private final int[][] myProblemNodes;
+    private final byte[][] myProblems;
+
+    private RegExpLengthSummary(RegExpModel model) {
+        myModel = model;
+        final int size = model.size();
+        myMinLengths = new int[size];
+        myMaxLengths = new int[size];
+        myProblemNodes = new int[CHECKED_MODES.length][size];
+        myProblems = new byte[CHECKED_MODES.length][size];
+        // in reverse preorder the children of a node are summarized before the node itself
+        for (int node = size - 1; node >= 0; node--) {
+            computeLength(node);
+            for (int mode = 0; mode < CHECKED_MODES.length; mode++) {
+                computeProblem(node, mode);
+            }
+        }
+    }
+
+    @Nonnull
+    @RequiredReadAction
+    public static RegExpLengthSummary getInstance(@Nullable PsiFile file) {
+        final RegExpModel model = RegExpModel.getInstance(file);
+        if (file == null) {
+            return new RegExpLengthSummary(model);
+        }
+        return LanguageCachedValueUtil.getCachedValue(file, () -> CachedValueProvider.Result.create(new RegExpLengthSummary(model), file));
+    }
+
+    @Nonnull
+    public RegExpModel getModel() {
+        return myModel;
+    }
+
+    /**
+     * @return the minimum number of atoms the node matches
+     */
+    public int getMinLength(int node) {
+        return myMinLengths[node];
+    }
+
+    /**
+     * @return the maximum number of atoms the node matches, or {@link RegExpModel#UNBOUNDED}
+     */
+    public int getMaxLength(int node) {
+        return myMaxLengths[node];
+    }
+
+    public boolean isFixedLength(int node) {
+        return myMinLengths[node] == myMaxLengths[node];
+    }
+
+    /**
+     * @param node    a lookbehind group, or any node inside one
+     * @param support the lookbehind support of the dialect
+     * @return the first problem inside the node, in document order, or null if the dialect allows the node in lookbehind
+     */
+    @Nullable
+    public LookbehindProblem getLookbehindProblem(int node, @Nonnull RegExpLanguageHost.Lookbehind support) {
+        final int mode = getModeIndex(support);
+        return mode < 0 || myProblemNodes[mode][node] < 0 ? null : PROBLEMS[myProblems[mode][node]];
+    }
+
+    /**
+     * @return the node at which {@link #getLookbehindProblem(int, RegExpLanguageHost.Lookbehind)} occurs, or -1
+     */
+    public int getLookbehindProblemNode(int node, @Nonnull RegExpLanguageHost.Lookbehind support) {
+        final int mode = getModeIndex(support);
+        return mode < 0 ? -1 : myProblemNodes[mode][node];
+    }
+
+    private static int getModeIndex(RegExpLanguageHost.Lookbehind support) {
+        for (int mode = 0; mode < CHECKED_MODES.length; mode++) {
+            if (CHECKED_MODES[mode] == support) {
+                return mode;
+            }
+        }
+        return -1;
+    }
+
+    private void computeLength(int node) {
+        int min = 0;
+        int max = 0;
+        switch (myModel.getKind(node)) {
+            case CHAR, CHAR_RANGE, CLASS, INTERSECTION, PROPERTY, POSIX_BRACKET_EXPRESSION, SIMPLE_CLASS, UNKNOWN -> {
+                min = max = 1;
+            }
+            case BACKREF, NAMED_GROUP_REF -> max = RegExpModel.UNBOUNDED;
+            case BOUNDARY, SET_OPTIONS -> {
+            }
+            case GROUP -> {
+                switch (myModel.getGroupType(node)) {
+                    case POSITIVE_LOOKAHEAD, NEGATIVE_LOOKAHEAD, POSITIVE_LOOKBEHIND, NEGATIVE_LOOKBEHIND -> {
+                    }
+                    default -> {
+                        for (int child = myModel.getFirstChild(node); child != -1; child = myModel.getNextSibling(child)) {
+                            min = addMin(min, myMinLengths[child]);
+                            max = addMax(max, myMaxLengths[child]);
+                        }
+                    }
+                }
+            }
+            case BRANCH -> {
+                for (int child = myModel.getFirstChild(node); child != -1; child = myModel.getNextSibling(child)) {
+                    min = addMin(min, myMinLengths[child]);
+                    max = addMax(max, myMaxLengths[child]);
+                }
+            }
+            case PATTERN, CONDITIONAL -> {
+                int branches = 0;
+                for (int child = myModel.getFirstChild(node); child != -1; child = myModel.getNextSibling(child)) {
+                    if (myModel.getKind(child) != RegExpModel.Kind.BRANCH) {
+                        continue; // the condition of a conditional
+                    }
+                    if (branches++ == 0) {
+                        min = myMinLengths[child];
+                        max = myMaxLengths[child];
+                    }
+                    else {
+                        min = Math.min(min, myMinLengths[child]);
+                        max = max == RegExpModel.UNBOUNDED || myMaxLengths[child] == RegExpModel.UNBOUNDED
+                              ? RegExpModel.UNBOUNDED
+                              : Math.max(max, myMaxLengths[child]);
+                    }
+                }
+                if (myModel.getKind(node) == RegExpModel.Kind.CONDITIONAL && branches < 2) {
+                    min = 0; // a missing alternative matches the empty string
+                }
+            }
+            case CLOSURE -> {
+                final int atom = myModel.getFirstChild(node);
+                if (atom != -1) {
+                    min = multiplyMin(myMinLengths[atom], myModel.getMin(node));
+                    max = multiplyMax(myMaxLengths[atom], myModel.getMax(node));
+                }
+            }
+        }
+        myMinLengths[node] = min;
+        myMaxLengths[node] = max;
+    }
+
+    private void computeProblem(int node, int mode) {
+        final RegExpLanguageHost.Lookbehind support = CHECKED_MODES[mode];
+        int problemNode = -1;
+        LookbehindProblem problem = null;
+        switch (myModel.getKind(node)) {
+            case CLASS -> {
+            }
+            case BACKREF -> {
+                problemNode = node;
+                problem = LookbehindProblem.GROUP_REFERENCE;
+            }
+            case NAMED_GROUP_REF -> {
+                problemNode = node;
+                problem = LookbehindProblem.NAMED_GROUP_REFERENCE;
+            }
+            case CONDITIONAL -> {
+                problemNode = findChildProblem(node, mode);
+                if (problemNode < 0) {
+                    problemNode = node;
+                    problem = LookbehindProblem.CONDITIONAL;
+                }
+            }
+            case PATTERN -> {
+                problemNode = findChildProblem(node, mode);
+                if (problemNode < 0 && support == RegExpLanguageHost.Lookbehind.FIXED_LENGTH_ALTERNATION && !hasEqualLengthBranches(node)) {
+                    problemNode = node;
+                    problem = LookbehindProblem.ALTERNATION_LENGTH;
+                }
+            }
+            case CLOSURE -> {
+                final int atom = myModel.getFirstChild(node);
+                if (atom == -1) {
+                    break;
+                }
+                if (myModel.isCounted(node)) {
+                    if (support == RegExpLanguageHost.Lookbehind.FINITE_REPETITION) {
+                        break;
+                    }
+                    if (!myModel.hasValidBounds(node)) {
+                        problemNode = node;
+                        problem = LookbehindProblem.INVALID_QUANTIFIER;
+                    }
+                    else if (myModel.getMin(node) == myModel.getMax(node)) {
+                        problemNode = myProblemNodes[mode][atom];
+                    }
+                    else {
+                        problemNode = node;
+                        problem = LookbehindProblem.UNEQUAL_COUNTED_QUANTIFIER;
+                    }
+                }
+                else if (myModel.getMin(node) != 0 || myModel.getMax(node) != 1 || support != RegExpLanguageHost.Lookbehind.FINITE_REPETITION) {
+                    problemNode = node;
+                    problem = LookbehindProblem.REPETITION;
+                }
+            }
+            default -> problemNode = findChildProblem(node, mode);
+        }
+        myProblemNodes[mode][node] = problemNode;
+        if (problem != null) {
+            myProblems[mode][node] = (byte) problem.ordinal();
+        }
+        else if (problemNode >= 0) {
+            myProblems[mode][node] = myProblems[mode][problemNode];
+        }
+    }
+
+    private int findChildProblem(int node, int mode) {
+        for (int child = myModel.getFirstChild(node); child != -1; child = myModel.getNextSibling(child)) {
+            final int problemNode = myProblemNodes[mode][child];
+            if (problemNode >= 0) {
+                return problemNode;
+            }
+        }
+        return -1;
+    }
+
+    private boolean hasEqualLengthBranches(int pattern) {
+        int length = -1;
+        for (int branch = myModel.getFirstChild(pattern); branch != -1; branch = myModel.getNextSibling(branch)) {
+            if (length == -1) {
+                length = myMinLengths[branch];
+            }
+            if (myMinLengths[branch] != length || myMaxLengths[branch] != length) {
+                return myModel.getNextSibling(myModel.getFirstChild(pattern)) == -1; // a single alternative is fine
+            }
+        }
+        return true;
+    }
+
+    private static int addMin(int a, int b) {
+        return (int) Math.min((long) a + b, Integer.MAX_VALUE);
+    }
+
+    private static int addMax(int a, int b) {
+        if (a == RegExpModel.UNBOUNDED || b == RegExpModel.UNBOUNDED) {
+            return RegExpModel.UNBOUNDED;
+        }
+        final long sum = (long) a + b;
+        return sum > Integer.MAX_VALUE ? RegExpModel.UNBOUNDED : (int) sum;
+    }
+
+    private static int multiplyMin(int length, int count) {
+        return (int) Math.min((long) length * count, Integer.MAX_VALUE);
+    }
+
+    private static int multiplyMax(int length, int count) {
+        if (length == 0 || count == 0) {
+            return 0;
+        }
+        if (length == RegExpModel.UNBOUNDED || count == RegExpModel.UNBOUNDED) {
+            return RegExpModel.UNBOUNDED;
+        }
+        final long product = (long) length * count;
+        return product > Integer.MAX_VALUE ? RegExpModel.UNBOUNDED : (int) product;
+    }
+}
@@ -0,0 +1,609 @@
+/*
+ * Copyright 2013-2026 consulo.io
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.intellij.lang.regexp.psi.impl;
+
+import consulo.annotation.access.RequiredReadAction;
+import consulo.application.util.CachedValueProvider;
+import consulo.document.util.TextRange;
+import consulo.language.ast.ASTNode;
+import consulo.language.ast.IElementType;
+import consulo.language.psi.PsiElement;
+import consulo.language.psi.PsiFile;
+import consulo.language.psi.util.LanguageCachedValueUtil;
+import jakarta.annotation.Nonnull;
+import jakarta.annotation.Nullable;
+import org.intellij.lang.regexp.RegExpElementTypes;
+import org.intellij.lang.regexp.RegExpReparseableElementType;
+import org.intellij.lang.regexp.RegExpTT;
+import org.intellij.lang.regexp.UnicodeCharacterNames;
+import org.intellij.lang.regexp.psi.*;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.List;
+
+/**
+ * Immutable snapshot of the regexp syntax tree of a file, built in a single pass over the PSI and cached until
+ * the file is modified.
+ * <p>
+ * Nodes are numbered in preorder and stored in parallel arrays, so analyses can walk the tree and read decoded values
+ * (code points, quantifier bounds, group numbers) without going back to the PSI. The children of a node are
+ * the nodes following it up to {@link #getEnd(int)}. Every node keeps its text range and PSI element, for reporting
+ * problems.
+ * <p>
+ * Quantifiers are folded into the {@link Kind#CLOSURE} node they belong to, named characters are {@link Kind#CHAR}
+ * nodes, and options, numbers and error elements are left out. A file with syntax errors may contain several
+ * top-level patterns; these are siblings of the root node 0.
+ */
+public final class RegExpModel {
+    public enum Kind {
+        PATTERN,
+        BRANCH,
+        CHAR,
+        CHAR_RANGE,
+        CLASS,
+        INTERSECTION,
+        SIMPLE_CLASS,
+        PROPERTY,
+        POSIX_BRACKET_EXPRESSION,
+        GROUP,
+        CLOSURE,
+        BACKREF,
+        NAMED_GROUP_REF,
+        BOUNDARY,
+        CONDITIONAL,
+        SET_OPTIONS,
+        /**
+         * an element this model doesn't describe, like a MySQL character expression
+         */
+        UNKNOWN
+    }
+
+    /**
+     * Maximum of a closure without upper bound.
+     */
+    public static final int UNBOUNDED = -1;
+
+    private static final Kind[] KINDS = Kind.values();
+    private static final RegExpChar.Type[] CHAR_TYPES = RegExpChar.Type.values();
+    private static final RegExpSimpleClass.Kind[] SIMPLE_CLASS_KINDS = RegExpSimpleClass.Kind.values();
+    private static final RegExpGroup.Type[] GROUP_TYPES = RegExpGroup.Type.values();
+    private static final RegExpBoundary.Type[] BOUNDARY_TYPES = RegExpBoundary.Type.values();
+
+    private static final byte NEGATED = 1;
+    private static final byte COUNTED = 1 << 1;
+    private static final byte RELUCTANT = 1 << 2;
+    private static final byte POSSESSIVE = 1 << 3;
+    private static final byte INVALID_BOUNDS = 1 << 4;
+    private static final byte OPERAND_START = 1 << 5;
+
+    private static final RegExpModel EMPTY = new Builder().build();
+
+    private final byte[] myKinds;
+    private final byte[] myTypes;
+    private final byte[] myFlags;
+    private final int[] myParents;
+    private final int[] myEnds;
+    private final int[] myStartOffsets;
+    private final int[] myEndOffsets;
+    private final int[] myValues;
+    private final int[] myExtraValues;
+    private final String[] myNames;
+    private final PsiElement[] myElements;
+    private final int[] myReferenceCounts;
+    private int myUnresolvedReferenceCount;
+    private boolean myContextDependentSyntax;
+
+    private RegExpModel(Builder builder) {
+        final int size = builder.mySize;
+        myKinds = Arrays.copyOf(builder.myKinds, size);
+        myTypes = Arrays.copyOf(builder.myTypes, size);
+        myFlags = Arrays.copyOf(builder.myFlags, size);
+        myParents = Arrays.copyOf(builder.myParents, size);
+        myEnds = Arrays.copyOf(builder.myEnds, size);
+        myStartOffsets = Arrays.copyOf(builder.myStartOffsets, size);
+        myEndOffsets = Arrays.copyOf(builder.myEndOffsets, size);
+        myValues = Arrays.copyOf(builder.myValues, size);
+        myExtraValues = Arrays.copyOf(builder.myExtraValues, size);
+        myNames = Arrays.copyOf(builder.myNames, size);
+        myElements = Arrays.copyOf(builder.myElements, size);
+        myReferenceCounts = new int[size];
+    }
+
+    @Nonnull
+    @RequiredReadAction
+    public static RegExpModel getInstance(@Nullable PsiFile file) {
+        if (file == null) {
+            return EMPTY;
+        }
+        return LanguageCachedValueUtil.getCachedValue(file, () -> CachedValueProvider.Result.create(build(file), file));
+    }
+
+    @RequiredReadAction
+    private static RegExpModel build(PsiFile file) {
+        final RegExpGroupIndex groupIndex = RegExpGroupIndex.getInstance(file);
+        final Builder builder = new Builder();
+        final Deque<Pending> pending = new ArrayDeque<>();
+        pushChildren(file.getNode(), -1, pending);
+        while (!pending.isEmpty()) {
+            final Pending next = pending.pop();
+            final int node = builder.add(next.element(), next.parent(), groupIndex);
+            builder.setFlag(node, OPERAND_START, next.operandStart());
+            pushChildren(next.element().getNode(), node, pending);
+        }
+        final RegExpModel model = builder.build();
+        model.resolveReferences();
+        model.myContextDependentSyntax = RegExpReparseableElementType.containsContextDependentSyntax(file.getNode().getChars());
+        return model;
+    }
+
+    private record Pending(PsiElement element, int parent, boolean operandStart) {
+    }
+
+    private static void pushChildren(ASTNode node, int parent, Deque<Pending> pending) {
+        final List<Pending> children = new ArrayList<>();
+        // the operands of an intersection are not elements of their own, only the && tokens separate them
+        boolean operandStart = true;
+        for (ASTNode child = node.getFirstChildNode(); child != null; child = child.getTreeNext()) {
+            final IElementType type = child.getElementType();
+            if (type == RegExpTT.ANDAND) {
+                operandStart = true;
+                continue;
+            }
+            if (type == RegExpElementTypes.QUANTIFIER || type == RegExpElementTypes.NUMBER || type == RegExpElementTypes.OPTIONS) {
+                continue;
+            }
+            final PsiElement psi = child.getPsi();
+            if (psi instanceof RegExpElement ||
+                type == RegExpElementTypes.MYSQL_CHAR_EXPRESSION || type == RegExpElementTypes.MYSQL_CHAR_EQ_EXPRESSION) {
+                children.add(new Pending(psi, parent, operandStart && node.getElementType() == RegExpElementTypes.INTERSECTION));
+                operandStart = false;
+            }
+        }
+        for (int i = children.size() - 1; i >= 0; i--) {
+            pending.push(children.get(i));
+        }
+    }
+
+    @RequiredReadAction
+    private void resolveReferences() {
+        for (int node = 0; node < myKinds.length; node++) {
+            final PsiElement element = myElements[node];
+            final RegExpGroup group;
+            if (element instanceof RegExpBackref backref) {
+                group = backref.resolve();
+            }
+            else if (element instanceof RegExpNamedGroupRef groupRef) {
+                group = groupRef.resolve();
+            }
+            else {
+                continue;
+            }
+            final int target = group == null ? -1 : getNode(group);
+            myExtraValues[node] = target;
+            if (target < 0) {
+                myUnresolvedReferenceCount++;
+            }
+            else {
+                myReferenceCounts[target]++;
+            }
+        }
+    }
+
+    /**
+     * @return the number of nodes
+     */
+    public int size() {
+        return myKinds.length;
+    }
+
+    @Nonnull
+    public Kind getKind(int node) {
+        return KINDS[myKinds[node]];
+    }
+
+    /**
+     * @return the parent node, or -1 for a top-level pattern
+     */
+    public int getParent(int node) {
+        return myParents[node];
+    }
+
+    /**
+     * @return the node following the subtree of the specified node
+     */
+    public int getEnd(int node) {
+        return myEnds[node];
+    }
+
+    /**
+     * @return the first child of the node, or -1 if the node has no children
+     */
+    public int getFirstChild(int node) {
+        return myEnds[node] > node + 1 ? node + 1 : -1;
+    }
+
+    /**
+     * @return the next sibling of the node, or -1 if the node is the last child of its parent
+     */
+    public int getNextSibling(int node) {
+        final int next = myEnds[node];
+        if (next >= myKinds.length) {
+            return -1;
+        }
+        final int parent = myParents[node];
+        return parent < 0 ? next : next < myEnds[parent] ? next : -1;
+    }
+
+    public int getChildCount(int node) {
+        int count = 0;
+        for (int child = getFirstChild(node); child != -1; child = getNextSibling(child)) {
+            count++;
+        }
+        return count;
+    }
+
+    public int getStartOffset(int node) {
+        return myStartOffsets[node];
+    }
+
+    public int getEndOffset(int node) {
+        return myEndOffsets[node];
+    }
+
+    @Nonnull
+    public TextRange getTextRange(int node) {
+        return new TextRange(myStartOffsets[node], myEndOffsets[node]);
+    }
+
+    @Nonnull
+    public PsiElement getElement(int node) {
+        return myElements[node];
+    }
+
+    /**
+     * @return the node of the specified element, or -1 if the element is not part of this model
+     */
+    @RequiredReadAction
+    public int getNode(@Nonnull PsiElement element) {
+        final int offset = element.getTextRange().getStartOffset();
+        int low = 0;
+        int high = myStartOffsets.length;
+        while (low < high) {
+            final int mid = (low + high) >>> 1;
+            if (myStartOffsets[mid] < offset) {
+                low = mid + 1;
+            }
+            else {
+                high = mid;
+            }
+        }
+        for (int node = low; node < myStartOffsets.length && myStartOffsets[node] == offset; node++) {
+            if (myElements[node] == element) {
+                return node;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * @return the code point of a {@link Kind#CHAR} node, or -1 if the character is invalid
+     */
+    public int getCodePoint(int node) {
+        return myValues[node];
+    }
+
+    @Nonnull
+    public RegExpChar.Type getCharType(int node) {
+        return CHAR_TYPES[myTypes[node]];
+    }
+
+    @Nonnull
+    public RegExpSimpleClass.Kind getSimpleClassKind(int node) {
+        return SIMPLE_CLASS_KINDS[myTypes[node]];
+    }
+
+    @Nonnull
+    public RegExpGroup.Type getGroupType(int node) {
+        return GROUP_TYPES[myTypes[node]];
+    }
+
+    @Nonnull
+    public RegExpBoundary.Type getBoundaryType(int node) {
+        return BOUNDARY_TYPES[myTypes[node]];
+    }
+
+    /**
+     * @return the number of a capturing {@link Kind#GROUP} node, or 0 if the group is not capturing
+     */
+    public int getGroupNumber(int node) {
+        return myValues[node];
+    }
+
+    /**
+     * @return the group number of a numeric {@link Kind#BACKREF} node; negative for relative back references
+     */
+    public int getBackrefIndex(int node) {
+        return myValues[node];
+    }
+
+    /**
+     * @return the group node a {@link Kind#BACKREF} or {@link Kind#NAMED_GROUP_REF} node refers to, or -1 if it doesn't resolve
+     */
+    public int getTarget(int node) {
+        return myExtraValues[node];
+    }
+
+    /**
+     * @return the number of {@link Kind#BACKREF} and {@link Kind#NAMED_GROUP_REF} nodes, including the conditions
+     * of conditionals, which refer to a {@link Kind#GROUP} node
+     */
+    public int getReferenceCount(int node) {
+        return myReferenceCounts[node];
+    }
+
+    /**
+     * @return true if a back reference or named group reference in the file doesn't resolve, so any group may be
+     * the one it's meant to refer to
+     */
+    public boolean hasUnresolvedReferences() {
+        return myUnresolvedReferenceCount > 0;
+    }
+
+    /**
+     * @return true if the file contains a possible back reference or comment mode option, so an edit of a class or
+     * group can't be reparsed on its own, see {@link RegExpReparseableElementType}
+     */
+    public boolean hasContextDependentSyntax() {
+        return myContextDependentSyntax;
+    }
+
+    /**
+     * @return the minimum repetition count of a {@link Kind#CLOSURE} node
+     */
+    public int getMin(int node) {
+        return myValues[node];
+    }
+
+    /**
+     * @return the maximum repetition count of a {@link Kind#CLOSURE} node, or {@link #UNBOUNDED}
+     */
+    public int getMax(int node) {
+        return myExtraValues[node];
+    }
+
+    /**
+     * @return true, if the {@link Kind#CLOSURE} node has a counted quantifier like {@code {n,m}}
+     */
+    public boolean isCounted(int node) {
+        return (myFlags[node] & COUNTED) != 0;
+    }
+
+    public boolean isReluctant(int node) {
+        return (myFlags[node] & RELUCTANT) != 0;
+    }
+
+    public boolean isPossessive(int node) {
+        return (myFlags[node] & POSSESSIVE) != 0;
+    }
+
+    /**
+     * @return false, if the minimum of a counted quantifier is not a valid number for the dialect.
+     * The bounds of such a closure are reported as 0 and {@link #UNBOUNDED}.
+     */
+    public boolean hasValidBounds(int node) {
+        return (myFlags[node] & INVALID_BOUNDS) == 0;
+    }
+
+    /**
+     * @return true, if a {@link Kind#CLASS}, {@link Kind#PROPERTY} or {@link Kind#POSIX_BRACKET_EXPRESSION} node is negated
+     */
+    public boolean isNegated(int node) {
+        return (myFlags[node] & NEGATED) != 0;
+    }
+
+    /**
+     * @return true, if the node is a child of an {@link Kind#INTERSECTION} and starts one of its operands.
+     * The children of an intersection up to the next operand start form the union that is intersected.
+     */
+    public boolean isOperandStart(int node) {
+        return (myFlags[node] & OPERAND_START) != 0;
+    }
+
+    /**
+     * @return the name of a named {@link Kind#GROUP} or {@link Kind#NAMED_GROUP_REF}, the category of
+     * a {@link Kind#PROPERTY} (as {@code category=value} if the property has a value, e.g. {@code Script=Latin})
+     * or the class name of a {@link Kind#POSIX_BRACKET_EXPRESSION}, or null
+     */
+    @Nullable
+    public String getName(int node) {
+        return myNames[node];
+    }
+
+    private static class Builder {
+        private int mySize = 0;
+        private byte[] myKinds = new byte[16];
+        private byte[] myTypes = new byte[16];
+        private byte[] myFlags = new byte[16];
+        private int[] myParents = new int[16];
+        private int[] myEnds = new int[16];
+        private int[] myStartOffsets = new int[16];
+        private int[] myEndOffsets = new int[16];
+        private int[] myValues = new int[16];
+        private int[] myExtraValues = new int[16];
+        private String[] myNames = new String[16];
+        private PsiElement[] myElements = new PsiElement[16];
+
+        @RequiredReadAction
+        private int add(PsiElement element, int parent, RegExpGroupIndex groupIndex) {
+            if (mySize == myKinds.length) {
+                grow();
+            }
+            final int node = mySize++;
+            final TextRange range = element.getTextRange();
+            myParents[node] = parent;
+            myEnds[node] = node + 1;
+            myStartOffsets[node] = range.getStartOffset();
+            myEndOffsets[node] = range.getEndOffset();
+            myElements[node] = element;
+            myKinds[node] = (byte) describe(node, element, groupIndex).ordinal();
+            return node;
+        }
+
+        @RequiredReadAction
+        private Kind describe(int node, PsiElement element, RegExpGroupIndex groupIndex) {
+            if (element instanceof RegExpPattern) {
+                return Kind.PATTERN;
+            }
+            else if (element instanceof RegExpBranch) {
+                return Kind.BRANCH;
+            }
+            else if (element instanceof RegExpChar ch) {
+                final RegExpChar.Type type = ch.getType();
+                myTypes[node] = (byte) type.ordinal();
+                myValues[node] = ch.getValue();
+                return Kind.CHAR;
+            }
+            else if (element instanceof RegExpNamedCharacter namedCharacter) {
+                myTypes[node] = (byte) RegExpChar.Type.NAMED.ordinal();
+                myValues[node] = UnicodeCharacterNames.getInstance().getCodePoint(namedCharacter.getName());
+                return Kind.CHAR;
+            }
+            else if (element instanceof RegExpCharRange) {
+                return Kind.CHAR_RANGE;
+            }
+            else if (element instanceof RegExpClass regExpClass) {
+                setFlag(node, NEGATED, regExpClass.isNegated());
+                return Kind.CLASS;
+            }
+            else if (element instanceof RegExpIntersection) {
+                return Kind.INTERSECTION;
+            }
+            else if (element instanceof RegExpSimpleClass simpleClass) {
+                myTypes[node] = (byte) simpleClass.getKind().ordinal();
+                return Kind.SIMPLE_CLASS;
+            }
+            else if (element instanceof RegExpProperty property) {
+                setFlag(node, NEGATED, property.isNegated());
+                final ASTNode category = property.getCategoryNode();
+                final ASTNode value = property.getValueNode();
+                myNames[node] = category == null ? null : value == null ? category.getText() : category.getText() + '=' + value.getText();
+                return Kind.PROPERTY;
+            }
+            else if (element instanceof RegExpPosixBracketExpression expression) {
+                setFlag(node, NEGATED, expression.getNode().findChildByType(RegExpTT.CARET) != null);
+                myNames[node] = expression.getClassName();
+                return Kind.POSIX_BRACKET_EXPRESSION;
+            }
+            else if (element instanceof RegExpGroup group) {
+                myTypes[node] = (byte) group.getType().ordinal();
+                myValues[node] = group.isCapturing() ? groupIndex.getGroupNumber(group) : 0;
+                myNames[node] = group.getGroupName();
+                return Kind.GROUP;
+            }
+            else if (element instanceof RegExpClosure closure) {
+                describeQuantifier(node, closure.getQuantifier());
+                return Kind.CLOSURE;
+            }
+            else if (element instanceof RegExpBackref backref) {
+                myValues[node] = backref.getIndex();
+                return Kind.BACKREF;
+            }
+            else if (element instanceof RegExpNamedGroupRef groupRef) {
+                myNames[node] = groupRef.getGroupName();
+                return Kind.NAMED_GROUP_REF;
+            }
+            else if (element instanceof RegExpBoundary boundary) {
+                myTypes[node] = (byte) boundary.getType().ordinal();
+                return Kind.BOUNDARY;
+            }
+            else if (element instanceof RegExpConditional) {
+                return Kind.CONDITIONAL;
+            }
+            else if (element instanceof RegExpSetOptions) {
+                return Kind.SET_OPTIONS;
+            }
+            return Kind.UNKNOWN;
+        }
+
+        @RequiredReadAction
+        private void describeQuantifier(int node, RegExpQuantifier quantifier) {
+            setFlag(node, RELUCTANT, quantifier.isReluctant());
+            setFlag(node, POSSESSIVE, quantifier.isPossessive());
+            if (!quantifier.isCounted()) {
+                final ASTNode token = quantifier.getToken();
+                final IElementType type = token == null ? null : token.getElementType();
+                myValues[node] = type == RegExpTT.PLUS ? 1 : 0;
+                myExtraValues[node] = type == RegExpTT.QUEST ? 1 : UNBOUNDED;
+                return;
+            }
+            setFlag(node, COUNTED, true);
+            final RegExpNumber min = quantifier.getMin();
+            final RegExpNumber max = quantifier.getMax();
+            final int minValue = min == null ? 0 : toBound(min.getValue());
+            if (minValue == UNBOUNDED) {
+                setFlag(node, INVALID_BOUNDS, true);
+                myValues[node] = 0;
+                myExtraValues[node] = UNBOUNDED;
+                return;
+            }
+            myValues[node] = minValue;
+            myExtraValues[node] = max == null ? UNBOUNDED : max == min ? minValue : toBound(max.getValue());
+        }
+
+        private static int toBound(@Nullable Number value) {
+            if (value == null) {
+                return UNBOUNDED;
+            }
+            final long bound = value.longValue();
+            return bound < 0 ? UNBOUNDED : (int) Math.min(bound, Integer.MAX_VALUE);
+        }
+
+        private void setFlag(int node, byte flag, boolean value) {
+            if (value) {
+                myFlags[node] |= flag;
+            }
+        }
+
+        private void grow() {
+            final int length = myKinds.length << 1;
+            myKinds = Arrays.copyOf(myKinds, length);
+            myTypes = Arrays.copyOf(myTypes, length);
+            myFlags = Arrays.copyOf(myFlags, length);
+            myParents = Arrays.copyOf(myParents, length);
+            myEnds = Arrays.copyOf(myEnds, length);
+            myStartOffsets = Arrays.copyOf(myStartOffsets, length);
+            myEndOffsets = Arrays.copyOf(myEndOffsets, length);
+            myValues = Arrays.copyOf(myValues, length);
+            myExtraValues = Arrays.copyOf(myExtraValues, length);
+            myNames = Arrays.copyOf(myNames, length);
+            myElements = Arrays.copyOf(myElements, length);
+        }
+
+        private RegExpModel build() {
+            // children follow their parent in preorder, so every subtree end is known before its parent is reached
+            for (int node = mySize - 1; node >= 0; node--) {
+                final int parent = myParents[node];
+                if (parent >= 0 && myEnds[node] > myEnds[parent]) {
+                    myEnds[parent] = myEnds[node];
+                }
+            }
+            return new RegExpModel(this);
+        }
+    }
+}
@@ -9,7 +9,6 @@ import consulo.language.ast.TokenSet;
 import consulo.language.psi.PsiElement;
 import consulo.language.psi.PsiFile;
 import consulo.language.psi.PsiReference;
-import consulo.language.psi.SyntaxTraverser;
 import consulo.language.util.IncorrectOperationException;
 import jakarta.annotation.Nonnull;
 import jakarta.annotation.Nullable;
@@ -18,8 +17,6 @@ import org.intellij.lang.regexp.psi.RegExpElementVisitor;
 import org.intellij.lang.regexp.psi.RegExpGroup;
 import org.intellij.lang.regexp.psi.RegExpNamedGroupRef;
 
-import java.util.Objects;
-
 
 public class RegExpNamedGroupRefImpl extends RegExpElementImpl implements RegExpNamedGroupRef {
     private static final TokenSet RUBY_GROUP_REF_TOKENS =
@@ -41,11 +38,9 @@ public class RegExpNamedGroupRefImpl extends RegExpElementImpl implements RegExp
         return groupName == null ? null : resolve(groupName, getContainingFile());
     }
 
+    @RequiredReadAction
     static RegExpGroup resolve(@Nonnull String groupName, PsiFile file) {
-        return SyntaxTraverser.psiTraverser(file)
-            .filter(RegExpGroup.class)
-            .filter(group -> Objects.equals(groupName, group.getGroupName()))
-            .first();
+        return RegExpGroupIndex.getInstance(file).getNamedGroup(groupName);
     }
 
     @Override
@@ -125,8 +120,7 @@ public class RegExpNamedGroupRefImpl extends RegExpElementImpl implements RegExp
             @Override
             @Nonnull
             public Object[] getVariants() {
-                return SyntaxTraverser.psiTraverser(getContainingFile()).filter(RegExpGroup.class)
-                    .filter(RegExpGroup::isAnyNamedGroup).toArray(new RegExpGroup[0]);
+                return RegExpGroupIndex.getInstance(getContainingFile()).getNamedGroups().toArray(new RegExpGroup[0]);
             }
 
             @RequiredReadAction
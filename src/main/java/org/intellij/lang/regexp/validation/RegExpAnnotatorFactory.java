@@ -35,7 +35,7 @@ public class RegExpAnnotatorFactory implements AnnotatorFactory, DumbAware {
     @Nullable
     @Override
     public Annotator createAnnotator() {
-        return new RegExpAnnotator();
+        return RegExpAnnotator.INSTANCE;
     }
 
     @Nonnull
@@ -23,9 +23,8 @@ import consulo.language.inject.InjectedLanguageManagerUtil;
 import consulo.language.psi.PsiElement;
 import org.intellij.lang.regexp.RegExpFile;
 import org.intellij.lang.regexp.psi.RegExpBranch;
-import org.intellij.lang.regexp.psi.RegExpGroup;
 import org.intellij.lang.regexp.psi.RegExpPattern;
-import org.intellij.lang.regexp.psi.RegExpRecursiveElementVisitor;
+import org.intellij.lang.regexp.psi.impl.RegExpGroupIndex;
 
 import jakarta.annotation.Nonnull;
 
@@ -37,7 +36,7 @@ public class ValueRegExpAnnotator implements Annotator {
     @Override
     @RequiredReadAction
     public void annotate(@Nonnull PsiElement psiElement, @Nonnull AnnotationHolder holder) {
-        if (psiElement instanceof RegExpFile
+        if (psiElement instanceof RegExpFile file
             && psiElement.getCopyableUserData(InjectedLanguageManagerUtil.VALUE_PATTERN_KEY_FOR_ADVANCED_INJECT) == Boolean.TRUE
             && psiElement.getFirstChild() instanceof RegExpPattern pattern) {
             final RegExpBranch[] branches = pattern.getBranches();
@@ -45,19 +44,9 @@ public class ValueRegExpAnnotator implements Annotator {
                 return;
             }
 
+            final RegExpGroupIndex groupIndex = RegExpGroupIndex.getInstance(file);
             for (RegExpBranch branch : branches) {
-                final int[] count = new int[1];
-                branch.accept(new RegExpRecursiveElementVisitor() {
-                    @Override
-                    public void visitRegExpGroup(RegExpGroup group) {
-                        if (group.isCapturing()) {
-                            count[0]++;
-                        }
-                        super.visitRegExpGroup(group);
-                    }
-                });
-
-                if (count[0] != 1) {
+                if (groupIndex.countGroupsIn(branch.getTextRange()) != 1) {
                     holder.newAnnotation(HighlightSeverity.WARNING, "The pattern should contain exactly one capturing group")
                         .range(branch)
                         .create();
@@ -20,10 +20,8 @@ import consulo.language.psi.PsiFile;
 import consulo.language.psi.PsiFileFactory;
 import consulo.project.Project;
 import org.intellij.lang.regexp.RegExpFileType;
-import org.intellij.lang.regexp.psi.RegExpAtom;
-import org.intellij.lang.regexp.psi.RegExpBranch;
 import org.intellij.lang.regexp.psi.RegExpChar;
-import org.intellij.lang.regexp.psi.RegExpPattern;
+import org.intellij.lang.regexp.psi.impl.RegExpModel;
 
 import jakarta.annotation.Nonnull;
 import jakarta.annotation.Nullable;
@@ -39,32 +37,33 @@ public class RegExpUtil {
     public static Set<String> getEnumValues(Project project, @Nonnull String regExp) {
         final PsiFileFactory factory = PsiFileFactory.getInstance(project);
         final PsiFile file = factory.createFileFromText("dummy.regexp", RegExpFileType.INSTANCE, regExp);
-        final RegExpPattern pattern = (RegExpPattern)file.getFirstChild();
-        if (pattern == null) {
+        final RegExpModel model = RegExpModel.getInstance(file);
+        if (model.size() == 0 || model.getKind(0) != RegExpModel.Kind.PATTERN) {
             return null;
         }
-        final RegExpBranch[] branches = pattern.getBranches();
         final Set<String> values = new HashSet<>();
-        for (RegExpBranch branch : branches) {
-            if (analyzeBranch(branch)) {
-                values.add(branch.getUnescapedText());
+        for (int branch = model.getFirstChild(0); branch != -1; branch = model.getNextSibling(branch)) {
+            final String value = getBranchValue(model, branch);
+            if (value != null) {
+                values.add(value);
             }
         }
         return values;
     }
 
-    @RequiredReadAction
-    private static boolean analyzeBranch(RegExpBranch branch) {
-        final RegExpAtom[] atoms = branch.getAtoms();
-        for (RegExpAtom atom : atoms) {
-            if (!(atom instanceof RegExpChar) || ((RegExpChar) atom).getValue() == -1) {
-                return false;
+    @Nullable
+    private static String getBranchValue(RegExpModel model, int branch) {
+        final StringBuilder value = new StringBuilder();
+        for (int atom = model.getFirstChild(branch); atom != -1; atom = model.getNextSibling(atom)) {
+            if (model.getKind(atom) != RegExpModel.Kind.CHAR || model.getCodePoint(atom) == -1) {
+                return null;
             }
-            else if (((RegExpChar) atom).getType() != RegExpChar.Type.CHAR) {
+            else if (model.getCharType(atom) != RegExpChar.Type.CHAR) {
                 // this could probably allow more, such as escape sequences
-                return false;
+                return null;
             }
+            value.appendCodePoint(model.getCodePoint(atom));
         }
-        return true;
+        return value.toString();
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,62 @@
+/*
+ * Copyright 2013-2026 consulo.io
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.intellij.lang.regexp;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+public class DefaultRegExpPropertiesProviderTest {
+    private static final String[] PROPERTIES = {
+        "IsAlphabetic", "IsAssigned", "IsControl", "IsDigit", "IsHexDigit", "IsHex_Digit", "IsIdeographic",
+        "IsJoinControl", "IsJoin_Control", "IsLetter", "IsLowercase", "IsNoncharacterCodePoint", "IsTitlecase",
+        "IsPunctuation", "IsUppercase", "IsWhiteSpace", "IsWhite_Space", "IsWord", "IsAlnum", "Isalnum", "IsBlank",
+        "IsGraph", "IsPrint", "IsAlpha", "IsCntrl", "IsLower", "Islower", "IsPunct", "IsSpace", "IsUpper", "IsXDigit",
+        // category and script names, which must still resolve after the binary properties
+        "IsL", "IsLu", "IsNd", "IsLC", "IsL1", "IsASCII", "Isall", "IsLatin", "IsGreek",
+        "Alpha", "Alnum", "Digit", "Blank", "Graph", "Print", "L", "InGreek", "sc=Cyrillic", "gc=Sm",
+    };
+
+    @Test
+    public void testCodePointsMatchPattern() {
+        final DefaultRegExpPropertiesProvider provider = DefaultRegExpPropertiesProvider.getInstance();
+        for (String property : PROPERTIES) {
+            final CodePointSet set = provider.getCodePoints(property);
+            assertNotNull(set, property);
+            final Matcher matcher = Pattern.compile("\\p{" + property + "}").matcher("");
+            for (int codePoint = 0; codePoint <= Character.MAX_CODE_POINT; codePoint++) {
+                final boolean expected = matcher.reset(Character.toString(codePoint)).matches();
+                if (set.contains(codePoint) != expected) {
+                    assertEquals(expected, set.contains(codePoint), property + " at U+" + Integer.toHexString(codePoint));
+                }
+            }
+        }
+    }
+
+    @Test
+    public void testUnknownProperties() {
+        final DefaultRegExpPropertiesProvider provider = DefaultRegExpPropertiesProvider.getInstance();
+        assertNull(provider.getCodePoints("IsFoo"));
+        assertNull(provider.getCodePoints("IsAscii"));
+        assertNull(provider.getCodePoints("Alphabetic"));
+        assertNull(provider.getCodePoints("foo=bar"));
+    }
+}
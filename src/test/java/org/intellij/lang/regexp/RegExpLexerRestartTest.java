@@ -0,0 +1,86 @@
+/*
+ * Copyright 2013-2026 consulo.io
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.intellij.lang.regexp;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.EnumSet;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class RegExpLexerRestartTest {
+    private static final String[] PATTERNS = {
+        "abc|d+e*?f{2,3}",
+        "(a)(b)\\2\\12[\\1]",
+        "[a-z&&[^aeiou]]+\\Q(*)\\E\\x{1F600}\\u0041",
+        "(?x) a b # comment\n c\\ d(?-x) e",
+        "(?<name>x)\\k<name>(?:y)(?=z)(?<!w)",
+        "\\p{IsAlphabetic}\\P{L}\\pL[[:alpha:]]",
+        "[\\Q]\\E-]\\N{LATIN SMALL LETTER A}{,}",
+        "a{1,}b{x}c{2}\\Q\\E",
+    };
+
+    private record Token(int start, int end, String type, int state) {
+    }
+
+    @Test
+    public void testRestartFromEveryRestartableState() {
+        final EnumSet<RegExpCapability> capabilities = RegExpCapability.DEFAULT_CAPABILITIES;
+        for (String pattern : PATTERNS) {
+            final List<Token> tokens = lex(new RegExpLexer(capabilities), pattern, 0, 0);
+            int restarts = 0;
+            for (int i = 0; i < tokens.size(); i++) {
+                final Token token = tokens.get(i);
+                final RegExpLexer lexer = new RegExpLexer(capabilities);
+                if (!lexer.isRestartableState(token.state())) {
+                    continue;
+                }
+                restarts++;
+                assertEquals(tokens.subList(i, tokens.size()), lex(lexer, pattern, token.start(), token.state()),
+                             "restarting /" + pattern + "/ at " + token.start());
+            }
+            assertTrue(restarts > 0, pattern);
+        }
+    }
+
+    @Test
+    public void testLossyStatesAreNotRestartable() {
+        final StringBuilder pattern = new StringBuilder();
+        for (int i = 0; i < 200; i++) {
+            pattern.append("(a)");
+        }
+        pattern.append("\\150");
+        final RegExpLexer lexer = new RegExpLexer(RegExpCapability.DEFAULT_CAPABILITIES);
+        final List<Token> tokens = lex(lexer, pattern.toString(), 0, 0);
+        // the group count saturates, so a back reference to group 150 can't be told from an octal escape
+        assertFalse(lexer.isRestartableState(tokens.get(tokens.size() - 1).state()));
+        assertTrue(lexer.isRestartableState(tokens.get(0).state()));
+    }
+
+    private static List<Token> lex(RegExpLexer lexer, String text, int start, int state) {
+        final List<Token> tokens = new ArrayList<>();
+        lexer.start(text, start, text.length(), state);
+        while (lexer.getTokenType() != null) {
+            tokens.add(new Token(lexer.getTokenStart(), lexer.getTokenEnd(), lexer.getTokenType().toString(), lexer.getState()));
+            lexer.advance();
+        }
+        return tokens;
+    }
+}
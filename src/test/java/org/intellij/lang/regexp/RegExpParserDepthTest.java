@@ -0,0 +1,164 @@
+/*
+ * Copyright 2013-2026 consulo.io
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.intellij.lang.regexp;
+
+import consulo.language.ast.IElementType;
+import consulo.language.parser.PsiBuilder;
+import org.junit.jupiter.api.Test;
+
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Parses deeply nested patterns on a thread with a small stack, which overflows if the parser recurses per nesting level.
+ */
+public class RegExpParserDepthTest {
+    private static final long STACK_SIZE = 512 * 1024;
+
+    @Test
+    public void testNestedGroups() throws Exception {
+        for (int depth : new int[]{10_000, 100_000}) {
+            final Map<IElementType, Integer> done = parse("(".repeat(depth) + "a" + ")*".repeat(depth));
+            assertEquals(depth, done.get(RegExpElementTypes.GROUP));
+            assertEquals(depth, done.get(RegExpElementTypes.CLOSURE));
+        }
+    }
+
+    @Test
+    public void testNestedClasses() throws Exception {
+        for (int depth : new int[]{10_000, 100_000}) {
+            final Map<IElementType, Integer> done = parse("[".repeat(depth) + "a" + "]".repeat(depth));
+            assertEquals(depth, done.get(RegExpElementTypes.CLASS));
+        }
+    }
+
+    @Test
+    public void testNestedLookarounds() throws Exception {
+        for (int depth : new int[]{10_000, 100_000}) {
+            final Map<IElementType, Integer> done = parse("(?=".repeat(depth) + "a" + ")|b".repeat(depth));
+            assertEquals(depth, done.get(RegExpElementTypes.GROUP));
+        }
+    }
+
+    /**
+     * @return how many nodes of each type were completed
+     */
+    private static Map<IElementType, Integer> parse(String text) throws Exception {
+        final AtomicReference<Object> result = new AtomicReference<>();
+        final Thread thread = new Thread(null, () -> {
+            try {
+                result.set(parseOnCurrentThread(text));
+            }
+            catch (Throwable t) {
+                result.set(t);
+            }
+        }, "parser", STACK_SIZE);
+        thread.start();
+        thread.join();
+        if (result.get() instanceof Throwable t) {
+            throw new AssertionError(t);
+        }
+        @SuppressWarnings("unchecked") final Map<IElementType, Integer> done = (Map<IElementType, Integer>) result.get();
+        return done;
+    }
+
+    private static Map<IElementType, Integer> parseOnCurrentThread(String text) {
+        final RegExpLexer lexer = new RegExpLexer(RegExpCapability.DEFAULT_CAPABILITIES);
+        final List<IElementType> types = new ArrayList<>();
+        final List<String> texts = new ArrayList<>();
+        lexer.start(text);
+        while (lexer.getTokenType() != null) {
+            types.add(lexer.getTokenType());
+            texts.add(lexer.getTokenText());
+            lexer.advance();
+        }
+        final MockBuilder builder = new MockBuilder(types, texts);
+        new RegExpParser(RegExpCapability.DEFAULT_CAPABILITIES).parseLight(RegExpParserDefinition.REGEXP_FILE, builder.myProxy);
+        assertTrue(builder.myErrors.isEmpty(), () -> builder.myErrors.toString());
+        assertEquals(0, builder.myOpenMarkers);
+        assertEquals(types.size(), builder.myPosition);
+        return builder.myDone;
+    }
+
+    /**
+     * Implements the part of {@link PsiBuilder} used by the parser over a list of tokens, and only counts the markers.
+     */
+    private static class MockBuilder {
+        private final List<IElementType> myTypes;
+        private final List<String> myTexts;
+        private final List<Object> myErrors = new ArrayList<>();
+        private final Map<IElementType, Integer> myDone = new HashMap<>();
+        private final PsiBuilder myProxy;
+        private int myPosition;
+        private int myOpenMarkers;
+
+        MockBuilder(List<IElementType> types, List<String> texts) {
+            myTypes = types;
+            myTexts = texts;
+            myProxy = (PsiBuilder) Proxy.newProxyInstance(PsiBuilder.class.getClassLoader(), new Class[]{PsiBuilder.class},
+                                                          (proxy, method, args) -> switch (method.getName()) {
+                                                              case "mark" -> mark();
+                                                              case "advanceLexer" -> {
+                                                                  myPosition = Math.min(myPosition + 1, myTypes.size());
+                                                                  yield null;
+                                                              }
+                                                              case "getTokenType" -> lookAhead(0);
+                                                              case "getTokenText" -> myPosition < myTexts.size() ? myTexts.get(myPosition) : null;
+                                                              case "lookAhead" -> lookAhead((Integer) args[0]);
+                                                              case "remapCurrentToken" -> {
+                                                                  myTypes.set(myPosition, (IElementType) args[0]);
+                                                                  yield null;
+                                                              }
+                                                              case "eof" -> myPosition >= myTypes.size();
+                                                              case "error" -> {
+                                                                  myErrors.add(args[0]);
+                                                                  yield null;
+                                                              }
+                                                              case "getTreeBuilt" -> null;
+                                                              default -> throw new UnsupportedOperationException(method.getName());
+                                                          });
+        }
+
+        private IElementType lookAhead(int steps) {
+            return myPosition + steps < myTypes.size() ? myTypes.get(myPosition + steps) : null;
+        }
+
+        private PsiBuilder.Marker mark() {
+            myOpenMarkers++;
+            return (PsiBuilder.Marker) Proxy.newProxyInstance(PsiBuilder.class.getClassLoader(), new Class[]{PsiBuilder.Marker.class},
+                                                              (proxy, method, args) -> switch (method.getName()) {
+                                                                  case "precede" -> mark();
+                                                                  case "done" -> {
+                                                                      myOpenMarkers--;
+                                                                      myDone.merge((IElementType) args[0], 1, Integer::sum);
+                                                                      yield null;
+                                                                  }
+                                                                  case "drop" -> {
+                                                                      myOpenMarkers--;
+                                                                      yield null;
+                                                                  }
+                                                                  default -> throw new UnsupportedOperationException(method.getName());
+                                                              });
+        }
+    }
+}
@@ -0,0 +1,70 @@
+/*
+ * Copyright 2013-2026 consulo.io
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.intellij.lang.regexp;
+
+import consulo.project.Project;
+import consulo.test.junit.impl.extension.ConsuloProjectLoader;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * Edits classes and groups of a file and compares the incrementally reparsed tree with the tree of a file parsed
+ * from the edited text, see {@link RegExpReparseableElementType}.
+ */
+@ExtendWith(ConsuloProjectLoader.class)
+public class RegExpReparseTest {
+    @Test
+    public void testClassAndGroup(Project project) {
+        doTest(project, "(a)[bc]d", "[bc]", "[bxc]", RegExpCapability.DEFAULT_CAPABILITIES);
+        doTest(project, "(a)[bc]d", "(a)", "(?<n>ay)", RegExpCapability.DEFAULT_CAPABILITIES);
+        doTest(project, "x(?:a|b)*y", "(?:a|b)", "(?:a|b|c)", RegExpCapability.DEFAULT_CAPABILITIES);
+    }
+
+    @Test
+    public void testPcreCondition(Project project) {
+        // relexed on its own, the condition would become a capturing group of the characters DEFINE or VERSION
+        doTest(project, "(?(DEFINE)(?<n>a))b", "(DEFINE)", "(VERSION>=10.0)", RegExpTestFiles.PCRE_CONDITIONS);
+        doTest(project, "(?(VERSION>=10.0)a|b)", "(VERSION>=10.0)", "(VERSION>=10.2)", RegExpTestFiles.PCRE_CONDITIONS);
+        doTest(project, "(?(VERSION>=10.0)a|b)", "(VERSION>=10.0)", "(DEFINE)", RegExpTestFiles.PCRE_CONDITIONS);
+    }
+
+    @Test
+    public void testGroupInsideDefine(Project project) {
+        doTest(project, "(?(DEFINE)(?<n>a))b", "(?<n>a)", "(?<n>ab)", RegExpTestFiles.PCRE_CONDITIONS);
+    }
+
+    @Test
+    public void testLookaroundCondition(Project project) {
+        doTest(project, "(?(?=x)a|b)", "(?=x)", "(?=xy)", RegExpCapability.DEFAULT_CAPABILITIES);
+        doTest(project, "(?(?<!x)a|b)c", "(?<!x)", "(?<!x|z)", RegExpCapability.DEFAULT_CAPABILITIES);
+        doTest(project, "(?(?=x)a|b)", "(?=x)", "(?=xy)", RegExpTestFiles.PCRE_CONDITIONS);
+    }
+
+    private static void doTest(Project project, String text, String before, String after, Set<RegExpCapability> capabilities) {
+        final RegExpFile file = RegExpTestFiles.create(project, text, capabilities);
+        final int start = text.indexOf(before);
+        RegExpTestFiles.replace(file, start, start + before.length(), after);
+
+        final String edited = text.substring(0, start) + after + text.substring(start + before.length());
+        assertEquals(edited, file.getText());
+        assertEquals(RegExpTestFiles.toTree(RegExpTestFiles.create(project, edited, capabilities)), RegExpTestFiles.toTree(file),
+            "/" + text + "/ with " + before + " changed to " + after);
+    }
+}
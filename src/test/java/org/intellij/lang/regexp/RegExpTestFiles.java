@@ -0,0 +1,160 @@
+/*
+ * Copyright 2013-2026 consulo.io
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.intellij.lang.regexp;
+
+import consulo.application.Application;
+import consulo.document.Document;
+import consulo.language.ast.ASTNode;
+import consulo.language.psi.PsiDocumentManager;
+import consulo.language.psi.PsiFile;
+import consulo.language.psi.PsiFileFactory;
+import consulo.project.Project;
+import jakarta.annotation.Nonnull;
+import org.w3c.dom.Element;
+import org.w3c.dom.NodeList;
+
+import javax.xml.parsers.DocumentBuilderFactory;
+import java.io.FileNotFoundException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Set;
+import java.util.regex.Pattern;
+
+/**
+ * Creates and edits regexp files for the tests which run in a project, see
+ * {@code consulo.test.junit.impl.extension.ConsuloProjectLoader}, and loads the patterns of {@code RETest.xml}.
+ */
+public final class RegExpTestFiles {
+    /**
+     * the capabilities of the default dialect plus the PCRE conditions {@code (DEFINE)} and {@code (VERSION>=n.m)}
+     */
+    public static final Set<RegExpCapability> PCRE_CONDITIONS;
+
+    static {
+        final EnumSet<RegExpCapability> capabilities = EnumSet.copyOf(RegExpCapability.DEFAULT_CAPABILITIES);
+        capabilities.add(RegExpCapability.PCRE_CONDITIONS);
+        PCRE_CONDITIONS = capabilities;
+    }
+
+    private static final Pattern HIGHLIGHTING = Pattern.compile("</?(?:error|warning|weak_warning|info)(?: [^>]*)?>");
+
+    /**
+     * A test of {@code RETest.xml}.
+     *
+     * @param pattern the pattern, without its highlighting markup
+     * @param valid   whether the pattern is expected to be valid
+     * @param verify  whether {@link Pattern} is expected to agree
+     */
+    public record ReTest(@Nonnull String pattern, boolean valid, boolean verify) {
+    }
+
+    private RegExpTestFiles() {
+    }
+
+    /**
+     * @return the tests of {@code RETest.xml}, in the order of the file
+     */
+    @Nonnull
+    public static List<ReTest> loadReTests() throws Exception {
+        final NodeList elements;
+        try (InputStream stream = RegExpTestFiles.class.getResourceAsStream("/RETest.xml")) {
+            if (stream == null) {
+                throw new FileNotFoundException("RETest.xml");
+            }
+            elements = DocumentBuilderFactory.newInstance().newDocumentBuilder().parse(stream).getElementsByTagName("test");
+        }
+        final List<ReTest> tests = new ArrayList<>();
+        for (int i = 0; i < elements.getLength(); i++) {
+            final Element test = (Element) elements.item(i);
+            final String pattern = test.getElementsByTagName("pattern").item(0).getTextContent();
+            final String expected = test.getElementsByTagName("expected").item(0).getTextContent();
+            tests.add(new ReTest(HIGHLIGHTING.matcher(pattern).replaceAll(""), "OK".equals(expected),
+                !"false".equals(test.getAttribute("verify"))));
+        }
+        return tests;
+    }
+
+    /**
+     * @return a file of the default dialect
+     */
+    @Nonnull
+    public static RegExpFile create(@Nonnull Project project, @Nonnull String text) {
+        return create(project, text, RegExpCapability.DEFAULT_CAPABILITIES);
+    }
+
+    /**
+     * @return a file of a dialect with the capabilities, whose document can be edited with {@link #replace}
+     */
+    @Nonnull
+    public static RegExpFile create(@Nonnull Project project, @Nonnull String text, @Nonnull Set<RegExpCapability> capabilities) {
+        final RegExpLanguageVersion languageVersion = new TestLanguageVersion(capabilities);
+        return (RegExpFile) PsiFileFactory.getInstance(project).createFileFromText("test.regexp", RegExpLanguage.INSTANCE,
+            languageVersion, text);
+    }
+
+    /**
+     * Replaces a range of the file's document and commits it, which reparses only the changed class or group of the
+     * file where it can, like an edit in the editor does.
+     */
+    public static void replace(@Nonnull PsiFile file, int start, int end, @Nonnull String text) {
+        final PsiDocumentManager documentManager = PsiDocumentManager.getInstance(file.getProject());
+        final Document document = documentManager.getDocument(file);
+        final Runnable edit = () -> {
+            document.replaceString(start, end, text);
+            documentManager.commitDocument(document);
+        };
+        Application.get().runWriteAction(edit);
+    }
+
+    /**
+     * @return the element types and leaf texts of the file's tree, one node per line
+     */
+    @Nonnull
+    public static String toTree(@Nonnull PsiFile file) {
+        final StringBuilder tree = new StringBuilder();
+        appendTree(file.getNode(), 0, tree);
+        return tree.toString();
+    }
+
+    private static void appendTree(ASTNode node, int depth, StringBuilder tree) {
+        tree.append("  ".repeat(depth)).append(node.getElementType());
+        final ASTNode firstChild = node.getFirstChildNode();
+        if (firstChild == null) {
+            tree.append(" '").append(node.getText()).append('\'');
+        }
+        tree.append('\n');
+        for (ASTNode child = firstChild; child != null; child = child.getTreeNext()) {
+            appendTree(child, depth + 1, tree);
+        }
+    }
+
+    private static class TestLanguageVersion extends RegExpLanguageVersion {
+        private final EnumSet<RegExpCapability> myCapabilities;
+
+        TestLanguageVersion(Set<RegExpCapability> capabilities) {
+            super("REGEXP_TEST", "RegExp Test", RegExpLanguage.INSTANCE, new String[0]);
+            myCapabilities = EnumSet.copyOf(capabilities);
+        }
+
+        @Nonnull
+        @Override
+        public EnumSet<RegExpCapability> getCapabilities() {
+            return myCapabilities;
+        }
+    }
+}
@@ -0,0 +1,76 @@
+/*
+ * Copyright 2013-2026 consulo.io
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.intellij.lang.regexp;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class UnicodePropertyTablesTest {
+    private static final CodePointSet GREEK = CodePointSet.range(0x370, 0x3FF);
+
+    @Test
+    public void testUnicodeDataVersion() {
+        // Java 17 has the character data of Unicode 13.0
+        assertTrue(UnicodePropertyTables.getUnicodeDataVersion() >>> 16 >= 1300);
+    }
+
+    @Test
+    public void testReadsTablesOfSameUnicodeVersion() throws IOException {
+        final UnicodePropertyTables tables = UnicodePropertyTables.load(new ByteArrayInputStream(write()));
+        assertEquals(GREEK, tables.getTable("gc:Lu"));
+        // only the written tables are there, so they were not computed
+        assertNull(tables.getTable("gc:Ll"));
+    }
+
+    @Test
+    public void testFallsBackForOtherUnicodeVersion() throws IOException {
+        final byte[] bytes = write();
+        ByteBuffer.wrap(bytes).putInt(8, UnicodePropertyTables.getUnicodeDataVersion() + 1);
+        assertComputed(UnicodePropertyTables.load(new ByteArrayInputStream(bytes)));
+    }
+
+    @Test
+    public void testFallsBackForDamagedOrMissingResource() throws IOException {
+        final byte[] bytes = write();
+        assertComputed(UnicodePropertyTables.load(new ByteArrayInputStream(Arrays.copyOf(bytes, bytes.length - 1))));
+        assertComputed(UnicodePropertyTables.load(null));
+    }
+
+    private static byte[] write() throws IOException {
+        final Map<String, CodePointSet> tables = new LinkedHashMap<>();
+        tables.put("gc:Lu", GREEK);
+        final ByteArrayOutputStream stream = new ByteArrayOutputStream();
+        UnicodePropertyTableGenerator.write(tables, stream);
+        return stream.toByteArray();
+    }
+
+    private static void assertComputed(UnicodePropertyTables tables) {
+        assertTrue(tables.getTable("gc:Lu").contains('A'));
+        assertTrue(tables.getTable("prop:ALPHABETIC").contains(0xE9));
+        assertTrue(tables.getTable("sc:GREEK").contains(0x3B1));
+    }
+}
@@ -0,0 +1,72 @@
+/*
+ * Copyright 2013-2026 consulo.io
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.intellij.lang.regexp.automaton;
+
+import consulo.project.Project;
+import consulo.test.junit.impl.extension.ConsuloProjectLoader;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+
+import java.util.Random;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+/**
+ * Compares the generated matchers with the {@link RegExpPikeVm} and {@link Pattern} on random texts.
+ */
+@ExtendWith(ConsuloProjectLoader.class)
+public class RegExpCompiledMatcherTest {
+    @Test
+    public void testMatchesLikePikeVmAndPattern(Project project) {
+        final Random random = new Random(42);
+        int compiled = 0;
+        for (String regexp : RegExpMatcherDifferentialTest.PATTERNS) {
+            final RegExpNfa nfa = RegExpMatcherDifferentialTest.compile(project, regexp);
+            final RegExpCompiledMatcher matcher = RegExpCompiledMatcher.compile(nfa);
+            if (matcher == null) {
+                continue;
+            }
+            compiled++;
+            final RegExpPikeVm pikeVm = new RegExpPikeVm(nfa);
+            final Pattern pattern = Pattern.compile(regexp);
+            for (String text : RegExpMatcherDifferentialTest.randomTexts(regexp, random)) {
+                final String message = "/" + regexp + "/ on '" + text.replace("\n", "\\n") + "'";
+                final boolean matches = pattern.matcher(text).matches();
+                assertEquals(matches, pikeVm.matches(text), message);
+                assertEquals(matches, matcher.matches(text), message);
+                for (int from = 0; from <= text.length(); from++) {
+                    final Matcher found = pattern.matcher(text);
+                    final String bounds = found.find(from) ? "[" + found.start() + ", " + found.end() + "]" : null;
+                    assertEquals(bounds, RegExpMatcherDifferentialTest.toString(pikeVm.find(text, from)), message + " from " + from);
+                    assertEquals(bounds, RegExpMatcherDifferentialTest.toString(matcher.find(text, from)), message + " from " + from);
+                }
+            }
+        }
+        // only the six patterns with assertions are left to the other matchers
+        assertEquals(RegExpMatcherDifferentialTest.PATTERNS.length - 6, compiled);
+    }
+
+    @Test
+    public void testAssertionsAreNotCompiled(Project project) {
+        assertNull(RegExpCompiledMatcher.compile(RegExpMatcherDifferentialTest.compile(project, "^ab")));
+        assertNull(RegExpCompiledMatcher.compile(RegExpMatcherDifferentialTest.compile(project, "a\\b")));
+        assertNotNull(RegExpCompiledMatcher.compile(RegExpMatcherDifferentialTest.compile(project, "ab")));
+    }
+}
@@ -0,0 +1,157 @@
+/*
+ * Copyright 2013-2026 consulo.io
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.intellij.lang.regexp.automaton;
+
+import org.intellij.lang.regexp.CodePointSet;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares the matcher compiled to bytecode with the interpreted engines on 64k texts, run with {@link #main}.
+ * <p>
+ * {@code matches} reads a text which matches to its end, {@code find} scans a text without a match, so neither
+ * lets the {@link RegExpPikeVm} compute bounds on behalf of the automata.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class RegExpMatcherBenchmark {
+    private static final int TEXT_LENGTH = 1 << 16;
+
+    public enum Engine {
+        PIKE_VM,
+        LAZY_DFA,
+        COMPILED
+    }
+
+    /**
+     * LETTERS_DIGITS is {@code [a-z]+[0-9]+x}, a DFA with few states; SEVENTH_FROM_END is {@code (?:a|b)*a(?:a|b){6}},
+     * whose DFA has 2^7 states the lazy DFA builds while matching.
+     */
+    @Param({"LETTERS_DIGITS", "SEVENTH_FROM_END"})
+    public String pattern;
+
+    @Param
+    public Engine engine;
+
+    private RegExpMatcher myMatcher;
+    private String myMatchingText;
+    private String myNonMatchingText;
+
+    @Setup
+    public void setUp() {
+        final Random random = new Random(42);
+        final RegExpNfa nfa;
+        final StringBuilder matching = new StringBuilder();
+        final StringBuilder nonMatching = new StringBuilder();
+        if (pattern.equals("LETTERS_DIGITS")) {
+            nfa = buildLettersDigits();
+            for (int i = 0; i < TEXT_LENGTH / 2; i++) {
+                matching.append((char) ('a' + random.nextInt(26)));
+            }
+            for (int i = 0; i < TEXT_LENGTH / 2; i++) {
+                matching.append((char) ('0' + random.nextInt(10)));
+            }
+            matching.append('x');
+            for (int i = 0; i < TEXT_LENGTH; i++) {
+                nonMatching.append(random.nextInt(8) == 0 ? ' ' : (char) ('a' + random.nextInt(26)));
+            }
+        }
+        else {
+            nfa = buildSeventhFromEnd();
+            for (int i = 0; i < TEXT_LENGTH; i++) {
+                matching.append(i == TEXT_LENGTH - 7 ? 'a' : random.nextBoolean() ? 'a' : 'b');
+                nonMatching.append(random.nextBoolean() ? 'b' : 'c');
+            }
+        }
+        myMatchingText = matching.toString();
+        myNonMatchingText = nonMatching.toString();
+        myMatcher = switch (engine) {
+            case PIKE_VM -> new RegExpPikeVm(nfa);
+            case LAZY_DFA -> new RegExpLazyDfa(nfa);
+            case COMPILED -> RegExpCompiledMatcher.compile(nfa);
+        };
+        if (myMatcher == null || !myMatcher.matches(myMatchingText) || myMatcher.find(myNonMatchingText, 0) != null) {
+            throw new IllegalStateException(engine + " doesn't match " + pattern + " as expected");
+        }
+    }
+
+    @Benchmark
+    public boolean matches() {
+        return myMatcher.matches(myMatchingText);
+    }
+
+    @Benchmark
+    public int[] find() {
+        return myMatcher.find(myNonMatchingText, 0);
+    }
+
+    /**
+     * {@code [a-z]+[0-9]+x}, built from right to left like {@link RegExpNfaCompiler} builds it
+     */
+    private static RegExpNfa buildLettersDigits() {
+        final RegExpNfa.Builder builder = new RegExpNfa.Builder();
+        final int match = builder.add(RegExpNfa.StateKind.MATCH, -1, -1);
+        final int x = builder.addCharacters(CodePointSet.of('x'), builder.addSave(1, match, 0), 0);
+        final int digitLoop = builder.addSplit(-1, -1, 0);
+        final int digit = builder.addCharacters(CodePointSet.range('0', '9'), digitLoop, 0);
+        builder.link(digitLoop, digit, x);
+        final int letterLoop = builder.addSplit(-1, -1, 0);
+        final int letter = builder.addCharacters(CodePointSet.range('a', 'z'), letterLoop, 0);
+        builder.link(letterLoop, letter, digit);
+        return builder.build(builder.addSave(0, letter, 0), 0);
+    }
+
+    /**
+     * {@code (?:a|b)*a(?:a|b){6}}
+     */
+    private static RegExpNfa buildSeventhFromEnd() {
+        final RegExpNfa.Builder builder = new RegExpNfa.Builder();
+        final CodePointSet ab = CodePointSet.range('a', 'b');
+        final int match = builder.add(RegExpNfa.StateKind.MATCH, -1, -1);
+        int state = builder.addSave(1, match, 0);
+        for (int i = 0; i < 6; i++) {
+            state = builder.addCharacters(ab, state, 0);
+        }
+        state = builder.addCharacters(CodePointSet.of('a'), state, 0);
+        final int loop = builder.addSplit(-1, -1, 0);
+        final int body = builder.addCharacters(ab, loop, 0);
+        builder.link(loop, body, state);
+        return builder.build(builder.addSave(0, builder.addSplit(body, state, 0), 0), 0);
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder().include(RegExpMatcherBenchmark.class.getName()).build()).run();
+    }
+}
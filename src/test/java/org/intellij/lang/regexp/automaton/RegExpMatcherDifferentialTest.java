@@ -0,0 +1,365 @@
+/*
+ * Copyright 2013-2026 consulo.io
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.intellij.lang.regexp.automaton;
+
+import consulo.language.psi.util.PsiTreeUtil;
+import consulo.project.Project;
+import consulo.test.junit.impl.extension.ConsuloProjectLoader;
+import org.intellij.lang.regexp.RegExpFile;
+import org.intellij.lang.regexp.RegExpTestFiles;
+import org.intellij.lang.regexp.psi.RegExpPattern;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.regex.PatternSyntaxException;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Compiles regexp files with {@link RegExpNfaCompiler} and compares the automaton matchers with {@link Pattern} on
+ * random texts over the characters of each pattern. The patterns are those of {@code RETest.xml} which
+ * {@link Pattern} accepts, and a few more which exercise capturing groups, nullable patterns and the position limit
+ * of the {@link RegExpShiftAndMatcher}.
+ */
+@ExtendWith(ConsuloProjectLoader.class)
+public class RegExpMatcherDifferentialTest {
+    static final String[] PATTERNS = {
+        "abc", "a|b|c", "ab|cd", "a*", "a+b", "a?b?c", "(a|b)*c", "(ab)+", "a{2}", "a{2,}", "a{1,3}b", "a{0,2}?a",
+        "(a|ab)(c|bcd)(d*)", "(a+)(b+)?", "(a*?)(a*)", "(a|b)*?b", "x(a|bc)*y", "(\\w+)\\s(\\w+)", "[^b]+(b)",
+        "[a-c]+[x-z]?", "[^\\s]+", "\\d+\\.\\d*", ".*ab.*", ".+", "(.)(.)?", "(a)|(b)|(c)", "(?:ab|a)(?:bc|c)",
+        "^ab", "ab$", "^(a|b)*$", "\\bab\\b", "a\\B.", "(a{1,2}){2}", "(a{2,3}?)(a*)", "((a)|b)+c", "a.c|ab.",
+        "(x+x+)+y", "(a|aa)+$", "\\w*\\d", "[ab]{3,5}", "(?:a|b){2,3}?b",
+    };
+    /**
+     * patterns whose capture positions differ by design: {@link Pattern} backtracks into empty iterations of nested
+     * loops, while the automaton never repeats an empty iteration
+     */
+    private static final String[] EMPTY_ITERATION_PATTERNS = {"(a*)*", "(a*)+", "(a|)*", "(a?)*", "^(a?)*$", "x(a|bc|)*y"};
+    /**
+     * patterns which {@link RegExpMatchers#create(consulo.language.psi.PsiFile, int)} leaves to {@link Pattern}
+     */
+    private static final String[] APPROXIMATE_PATTERNS = {"(?i)\\p{Lu}x", "(?iu)k+"};
+    /**
+     * nullable patterns, including counted repetitions whose copies the Glushkov automaton bounds by the positions they add
+     */
+    private static final String[] NULLABLE_PATTERNS = {
+        "a?", "(?:ab)*", "x?y*z?", "(?:a|)(?:b?){2}", "a{0,3}", "(?:a*b?){2,3}", "(?:a?){3}b", "(?:a{0,2}){2,}", "(?:)",
+        "(?:){1000}", "(?:(?:)|a?){3}", "(?:a?b?)+",
+    };
+    /**
+     * patterns with just under, exactly and just over {@link RegExpGlushkovAutomaton#MAX_POSITIONS} positions
+     */
+    private static final Positions[] POSITION_PATTERNS = {
+        new Positions("a{63}", 63), new Positions("a{64}", 64), new Positions("a{65}", 65),
+        new Positions("a{0,64}", 64), new Positions("a{0,65}", 65), new Positions("a{64,}", 64), new Positions("a{65,}", 65),
+        new Positions("(?:ab){32}", 64), new Positions("(?:ab){32}b", 65), new Positions("b(?:ab){31}a?", 64),
+        new Positions("[ab]{63}c", 64), new Positions("[ab]{64}c", 65), new Positions("(?:ab){0,32}", 64),
+        new Positions("(?:ab){0,32}c?", 65), new Positions("(?:a?){1000}", 1000),
+    };
+
+    @Test
+    public void testPikeVmAndLazyDfaMatchLikePattern(Project project) {
+        final Random random = new Random(42);
+        for (String regexp : PATTERNS) {
+            final RegExpNfa nfa = compile(project, regexp);
+            final RegExpPikeVm pikeVm = new RegExpPikeVm(nfa);
+            final RegExpMatcher lazyDfa = RegExpMatchers.create(nfa);
+            // a cache of a few states flushes all the time
+            final RegExpMatcher flushingDfa = new RegExpLazyDfa(nfa, 600);
+            final Pattern pattern = Pattern.compile(regexp);
+            for (String text : randomTexts(regexp, random)) {
+                final Matcher matcher = pattern.matcher(text);
+                final String message = "/" + regexp + "/ on '" + text.replace("\n", "\\n") + "'";
+                final boolean matches = matcher.matches();
+                assertEquals(matches ? groups(matcher) : null, toString(pikeVm.matchGroups(text)), message);
+                assertEquals(matches, lazyDfa.matches(text), message);
+                assertEquals(matches, flushingDfa.matches(text), message);
+
+                final String found = matcher.find(0) ? groups(matcher) : null;
+                assertEquals(found, toString(pikeVm.findGroups(text, 0)), message);
+                final String bounds = found == null ? null : Arrays.toString(new int[]{matcher.start(), matcher.end()});
+                assertEquals(bounds, toString(lazyDfa.find(text, 0)), message);
+                assertEquals(bounds, toString(flushingDfa.find(text, 0)), message);
+            }
+        }
+    }
+
+    @Test
+    public void testEmptyIterationsMatchLikePattern(Project project) {
+        final Random random = new Random(42);
+        for (String regexp : EMPTY_ITERATION_PATTERNS) {
+            final RegExpNfa nfa = compile(project, regexp);
+            final RegExpPikeVm pikeVm = new RegExpPikeVm(nfa);
+            final RegExpMatcher lazyDfa = RegExpMatchers.create(nfa);
+            final Pattern pattern = Pattern.compile(regexp);
+            for (String text : randomTexts(regexp, random)) {
+                final Matcher matcher = pattern.matcher(text);
+                final String message = "/" + regexp + "/ on '" + text.replace("\n", "\\n") + "'";
+                final boolean matches = matcher.matches();
+                assertEquals(matches, pikeVm.matches(text), message);
+                assertEquals(matches, lazyDfa.matches(text), message);
+                final String bounds = matcher.find(0) ? Arrays.toString(new int[]{matcher.start(), matcher.end()}) : null;
+                assertEquals(bounds, toString(pikeVm.find(text, 0)), message);
+                assertEquals(bounds, toString(lazyDfa.find(text, 0)), message);
+            }
+        }
+    }
+
+    /**
+     * {@code (?:a*b){30}c} needs a new DFA state for every b. With runs of a's between them, the DFA makes enough
+     * progress between flushes of a small cache to go on; with a b every other character it thrashes, and gives up
+     * to the {@link RegExpPikeVm} at the first flush.
+     */
+    @Test
+    public void testLazyDfaFlushesAndFallsBackToPikeVm(Project project) {
+        final String regexp = "(?:a*b){30}c";
+        final RegExpNfa nfa = compile(project, regexp);
+        final Pattern pattern = Pattern.compile(regexp);
+        final String sparse = ("a".repeat(100) + "b").repeat(30) + "c";
+        final String dense = "ab".repeat(30) + "c";
+
+        final RegExpLazyDfa flushing = new RegExpLazyDfa(nfa, 1000);
+        assertTrue(flushing.matches(sparse));
+        assertTrue(flushing.getFlushCount() >= 5, "flushed " + flushing.getFlushCount() + " times");
+
+        final RegExpLazyDfa thrashing = new RegExpLazyDfa(nfa, 1000);
+        assertTrue(thrashing.matches(dense));
+        assertEquals(1, thrashing.getFlushCount());
+
+        for (String text : new String[]{sparse, dense, "x" + sparse, "a".repeat(200) + dense + "x", sparse.replace('c', 'b')}) {
+            final RegExpLazyDfa dfa = new RegExpLazyDfa(nfa, 1000);
+            final Matcher expected = pattern.matcher(text);
+            final String message = "/" + regexp + "/ on a text of " + text.length() + " characters";
+            assertEquals(expected.matches(), dfa.matches(text), message);
+            final String bounds = expected.find(0) ? Arrays.toString(new int[]{expected.start(), expected.end()}) : null;
+            assertEquals(bounds, toString(dfa.find(text, 0)), message);
+        }
+    }
+
+    private record Positions(String regexp, int count) {
+    }
+
+    @Test
+    public void testShiftAndMatchesLikePikeVmAndPattern(Project project) {
+        final Random random = new Random(42);
+        final List<String> patterns = new ArrayList<>(Arrays.asList(PATTERNS));
+        patterns.addAll(Arrays.asList(EMPTY_ITERATION_PATTERNS));
+        patterns.addAll(Arrays.asList(NULLABLE_PATTERNS));
+        int built = 0;
+        for (String regexp : patterns) {
+            final RegExpFile file = RegExpTestFiles.create(project, regexp);
+            final RegExpGlushkovAutomaton automaton = buildGlushkov(file);
+            if (automaton == null) {
+                // only patterns with assertions are left to the lazy DFA
+                assertTrue(regexp.contains("^") || regexp.contains("$") || regexp.contains("\\b") || regexp.contains("\\B"), regexp);
+                assertFalse(RegExpMatchers.create(file, 0) instanceof RegExpShiftAndMatcher, regexp);
+                continue;
+            }
+            built++;
+            assertTrue(RegExpMatchers.create(file, 0) instanceof RegExpShiftAndMatcher, regexp);
+            final Pattern pattern = Pattern.compile(regexp);
+            assertEquals(pattern.matcher("").matches(), automaton.isNullable(), regexp);
+            assertMatchesLikePikeVmAndPattern(file, automaton, Arrays.asList(randomTexts(regexp, random)));
+        }
+        assertEquals(patterns.size() - 7, built);
+    }
+
+    @Test
+    public void testShiftAndPositionLimit(Project project) {
+        final List<String> texts = new ArrayList<>();
+        for (int count = 0; count <= 70; count++) {
+            for (String unit : new String[]{"a", "ab", "ba"}) {
+                final String text = unit.repeat(count);
+                texts.add(text);
+                texts.add(text + "b");
+                texts.add(text + "c");
+                texts.add("c" + text);
+            }
+        }
+        for (Positions positions : POSITION_PATTERNS) {
+            final String regexp = positions.regexp();
+            final RegExpFile file = RegExpTestFiles.create(project, regexp);
+            final RegExpGlushkovAutomaton automaton = buildGlushkov(file);
+            if (positions.count() > RegExpGlushkovAutomaton.MAX_POSITIONS) {
+                assertNull(automaton, regexp);
+                final RegExpMatcher matcher = RegExpMatchers.create(file, 0);
+                assertNotNull(matcher, regexp);
+                assertFalse(matcher instanceof RegExpShiftAndMatcher, regexp);
+                final Pattern pattern = Pattern.compile(regexp);
+                for (String text : texts) {
+                    final Matcher expected = pattern.matcher(text);
+                    final String message = "/" + regexp + "/ on '" + text + "'";
+                    assertEquals(expected.matches(), matcher.matches(text), message);
+                    final String bounds = expected.find(0) ? Arrays.toString(new int[]{expected.start(), expected.end()}) : null;
+                    assertEquals(bounds, toString(matcher.find(text, 0)), message);
+                }
+            }
+            else {
+                assertNotNull(automaton, regexp);
+                assertEquals(positions.count(), automaton.getPositionCount(), regexp);
+                assertMatchesLikePikeVmAndPattern(file, automaton, texts);
+            }
+        }
+    }
+
+    private static void assertMatchesLikePikeVmAndPattern(RegExpFile file, RegExpGlushkovAutomaton automaton, List<String> texts) {
+        final String regexp = file.getText();
+        final RegExpNfa nfa = compile(file).nfa();
+        assertNotNull(nfa, regexp);
+        final RegExpShiftAndMatcher shiftAnd = new RegExpShiftAndMatcher(automaton, nfa);
+        final RegExpPikeVm pikeVm = new RegExpPikeVm(nfa);
+        final Pattern pattern = Pattern.compile(regexp);
+        for (String text : texts) {
+            final Matcher expected = pattern.matcher(text);
+            final String message = "/" + regexp + "/ on '" + text.replace("\n", "\\n") + "'";
+            final boolean matches = expected.matches();
+            assertEquals(matches, pikeVm.matches(text), message);
+            assertEquals(matches, shiftAnd.matches(text), message);
+            for (int from = 0; from <= Math.min(text.length(), 2); from++) {
+                final String bounds = expected.find(from) ? Arrays.toString(new int[]{expected.start(), expected.end()}) : null;
+                assertEquals(bounds, toString(pikeVm.find(text, from)), message + " from " + from);
+                assertEquals(bounds, toString(shiftAnd.find(text, from)), message + " from " + from);
+            }
+        }
+    }
+
+    @Test
+    public void testReTestPatternsMatchLikePattern(Project project) throws Exception {
+        final Random random = new Random(42);
+        int compared = 0;
+        for (String regexp : loadReTestPatterns()) {
+            final RegExpFile file = RegExpTestFiles.create(project, regexp);
+            final RegExpNfaCompiler.Result result = compile(file);
+            final RegExpMatcher matcher = RegExpMatchers.create(file, 0);
+            if (result.nfa() == null || result.approximate()) {
+                assertNull(matcher, regexp);
+                continue;
+            }
+            assertNotNull(matcher, regexp);
+            compared++;
+            final RegExpPikeVm pikeVm = new RegExpPikeVm(result.nfa());
+            final RegExpMatcher lazyDfa = RegExpMatchers.create(result.nfa());
+            final Pattern pattern = Pattern.compile(regexp);
+            for (String text : randomTexts(regexp, random)) {
+                final Matcher expected = pattern.matcher(text);
+                final String message = "/" + regexp + "/ on '" + text.replace("\n", "\\n") + "'";
+                final boolean matches = expected.matches();
+                assertEquals(matches, pikeVm.matches(text), message);
+                assertEquals(matches, lazyDfa.matches(text), message);
+                assertEquals(matches, matcher.matches(text), message);
+                // capture positions may differ in empty iterations, see EMPTY_ITERATION_PATTERNS
+                final String bounds = expected.find(0) ? Arrays.toString(new int[]{expected.start(), expected.end()}) : null;
+                assertEquals(bounds, toString(pikeVm.find(text, 0)), message);
+                assertEquals(bounds, toString(lazyDfa.find(text, 0)), message);
+                assertEquals(bounds, toString(matcher.find(text, 0)), message);
+            }
+        }
+        assertTrue(compared > 50, "only " + compared + " patterns compared");
+    }
+
+    @Test
+    public void testApproximatePatternsAreLeftToPattern(Project project) {
+        for (String regexp : APPROXIMATE_PATTERNS) {
+            final RegExpFile file = RegExpTestFiles.create(project, regexp);
+            final RegExpNfaCompiler.Result result = compile(file);
+            assertNotNull(result.nfa(), regexp);
+            assertTrue(result.approximate(), regexp);
+            assertNull(RegExpMatchers.create(file, 0), regexp);
+        }
+    }
+
+    /**
+     * @return the automaton of a regexp of the default dialect, which must be supported
+     */
+    static RegExpNfa compile(Project project, String regexp) {
+        final RegExpNfaCompiler.Result result = compile(RegExpTestFiles.create(project, regexp));
+        assertNotNull(result.nfa(), regexp + " is not supported: " + result.unsupported());
+        return result.nfa();
+    }
+
+    private static RegExpGlushkovAutomaton buildGlushkov(RegExpFile file) {
+        final RegExpPattern pattern = PsiTreeUtil.getChildOfType(file, RegExpPattern.class);
+        assertNotNull(pattern, file.getText());
+        return RegExpGlushkovAutomaton.build(pattern, 0);
+    }
+
+    private static RegExpNfaCompiler.Result compile(RegExpFile file) {
+        final RegExpPattern pattern = PsiTreeUtil.getChildOfType(file, RegExpPattern.class);
+        assertNotNull(pattern, file.getText());
+        return RegExpNfaCompiler.compile(pattern, 0);
+    }
+
+    /**
+     * @return the patterns of the tests in {@code RETest.xml} which are expected to be valid and which {@link Pattern}
+     * compiles
+     */
+    private static List<String> loadReTestPatterns() throws Exception {
+        final List<String> patterns = new ArrayList<>();
+        for (RegExpTestFiles.ReTest test : RegExpTestFiles.loadReTests()) {
+            if (!test.valid() || !test.verify()) {
+                continue;
+            }
+            try {
+                Pattern.compile(test.pattern());
+            }
+            catch (PatternSyntaxException e) {
+                continue;
+            }
+            patterns.add(test.pattern());
+        }
+        return patterns;
+    }
+
+    /**
+     * @return short texts over the literal characters of the regexp, a few others and a line break
+     */
+    static String[] randomTexts(String regexp, Random random) {
+        final String alphabet = regexp.replaceAll("[\\\\()\\[\\]{}*+?|^$.,]", "") + "ab1 \n";
+        final String[] texts = new String[300];
+        for (int i = 0; i < texts.length; i++) {
+            final StringBuilder text = new StringBuilder();
+            final int length = random.nextInt(9);
+            for (int j = 0; j < length; j++) {
+                text.append(alphabet.charAt(random.nextInt(alphabet.length())));
+            }
+            texts[i] = text.toString();
+        }
+        return texts;
+    }
+
+    private static String groups(Matcher matcher) {
+        final int[] groups = new int[(matcher.groupCount() + 1) * 2];
+        for (int i = 0; i <= matcher.groupCount(); i++) {
+            groups[i * 2] = matcher.start(i);
+            groups[i * 2 + 1] = matcher.end(i);
+        }
+        return Arrays.toString(groups);
+    }
+
+    static String toString(int[] bounds) {
+        return bounds == null ? null : Arrays.toString(bounds);
+    }
+}
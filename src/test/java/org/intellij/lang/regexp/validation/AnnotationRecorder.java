@@ -0,0 +1,113 @@
+/*
+ * Copyright 2013-2026 consulo.io
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.intellij.lang.regexp.validation;
+
+import consulo.language.ast.ASTNode;
+import consulo.language.editor.annotation.AnnotationHolder;
+import consulo.language.psi.PsiElement;
+import consulo.language.psi.PsiFile;
+import consulo.language.psi.util.PsiTreeUtil;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Runs the shared {@link RegExpAnnotator#INSTANCE} over files and records the annotations it creates.
+ */
+final class AnnotationRecorder {
+    private AnnotationRecorder() {
+    }
+
+    /**
+     * @return the annotations of all elements of the file, in tree order
+     */
+    static List<String> annotate(PsiFile file) {
+        final List<String> annotations = new ArrayList<>();
+        final Recorder recorder = new Recorder(annotations, null);
+        final AnnotationHolder holder = (AnnotationHolder) Proxy.newProxyInstance(AnnotationHolder.class.getClassLoader(),
+            new Class[]{AnnotationHolder.class}, recorder);
+        PsiTreeUtil.processElements(file, element -> {
+            recorder.myElement = element;
+            RegExpAnnotator.INSTANCE.annotate(element, holder);
+            return true;
+        });
+        return annotations;
+    }
+
+    /**
+     * Records the annotations created through a proxy of {@link AnnotationHolder} and of its annotation builders, one
+     * string per annotation with the builder calls and their arguments.
+     */
+    private static final class Recorder implements InvocationHandler {
+        private final List<String> myAnnotations;
+        private final StringBuilder myAnnotation;
+        private PsiElement myElement;
+
+        private Recorder(List<String> annotations, StringBuilder annotation) {
+            myAnnotations = annotations;
+            myAnnotation = annotation;
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) {
+            final String name = method.getName();
+            if (method.getDeclaringClass() == Object.class) {
+                return switch (name) {
+                    case "equals" -> proxy == args[0];
+                    case "hashCode" -> System.identityHashCode(proxy);
+                    default -> "annotation recorder";
+                };
+            }
+            if (myAnnotation == null) {
+                if (!name.equals("newAnnotation") && !name.equals("newSilentAnnotation")) {
+                    throw new UnsupportedOperationException(name);
+                }
+                final StringBuilder annotation = new StringBuilder(describe(myElement)).append(' ').append(name);
+                appendArguments(annotation, args);
+                final Class<?> builder = method.getReturnType();
+                return Proxy.newProxyInstance(builder.getClassLoader(), new Class[]{builder}, new Recorder(myAnnotations, annotation));
+            }
+            if (name.equals("create")) {
+                myAnnotations.add(myAnnotation.toString());
+                return null;
+            }
+            myAnnotation.append(" .").append(name);
+            appendArguments(myAnnotation, args);
+            return method.getReturnType().isInstance(proxy) ? proxy : null;
+        }
+
+        private static void appendArguments(StringBuilder annotation, Object[] args) {
+            annotation.append('(');
+            for (int i = 0; args != null && i < args.length; i++) {
+                annotation.append(i == 0 ? "" : ", ").append(describe(args[i]));
+            }
+            annotation.append(')');
+        }
+
+        private static String describe(Object argument) {
+            if (argument instanceof PsiElement element) {
+                return element.getNode().getElementType() + element.getTextRange().toString();
+            }
+            if (argument instanceof ASTNode node) {
+                return node.getElementType() + node.getTextRange().toString();
+            }
+            return String.valueOf(argument);
+        }
+    }
+}
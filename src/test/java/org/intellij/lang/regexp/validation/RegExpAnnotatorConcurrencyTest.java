@@ -0,0 +1,94 @@
+/*
+ * Copyright 2013-2026 consulo.io
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.intellij.lang.regexp.validation;
+
+import consulo.application.Application;
+import consulo.language.psi.PsiFile;
+import consulo.project.Project;
+import consulo.test.junit.impl.extension.ConsuloProjectLoader;
+import org.intellij.lang.regexp.RegExpTestFiles;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * Annotates many fragments with the shared {@link RegExpAnnotator#INSTANCE} from several threads at once, and compares
+ * the annotations with those of a single-threaded run.
+ */
+@ExtendWith(ConsuloProjectLoader.class)
+public class RegExpAnnotatorConcurrencyTest {
+    private static final int THREADS = 8;
+    private static final int COPIES = 4;
+
+    @Test
+    public void testConcurrentAnnotationsMatchSingleThreaded(Project project) throws Exception {
+        final List<String> fragments = new ArrayList<>();
+        for (RegExpTestFiles.ReTest test : RegExpTestFiles.loadReTests()) {
+            fragments.add(test.pattern());
+        }
+        final List<List<String>> expected = new ArrayList<>();
+        for (String fragment : fragments) {
+            expected.add(AnnotationRecorder.annotate(RegExpTestFiles.create(project, fragment)));
+        }
+
+        // every copy is a file of its own, so the per-file caches are computed concurrently too
+        final List<Integer> order = new ArrayList<>();
+        final List<PsiFile> files = new ArrayList<>();
+        for (int copy = 0; copy < COPIES; copy++) {
+            for (int i = 0; i < fragments.size(); i++) {
+                order.add(i);
+                files.add(RegExpTestFiles.create(project, fragments.get(i)));
+            }
+        }
+        final List<Integer> shuffled = new ArrayList<>();
+        for (int i = 0; i < files.size(); i++) {
+            shuffled.add(i);
+        }
+        Collections.shuffle(shuffled, new Random(42));
+
+        final List<Callable<List<String>>> tasks = new ArrayList<>();
+        for (int index : shuffled) {
+            final PsiFile file = files.get(index);
+            tasks.add(() -> {
+                final List<List<String>> result = new ArrayList<>();
+                final Runnable annotate = () -> result.add(AnnotationRecorder.annotate(file));
+                Application.get().runReadAction(annotate);
+                return result.get(0);
+            });
+        }
+        final ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+        try {
+            final List<Future<List<String>>> results = executor.invokeAll(tasks);
+            for (int i = 0; i < results.size(); i++) {
+                final int fragment = order.get(shuffled.get(i));
+                assertEquals(expected.get(fragment), results.get(i).get(), fragments.get(fragment));
+            }
+        }
+        finally {
+            executor.shutdownNow();
+        }
+    }
+}
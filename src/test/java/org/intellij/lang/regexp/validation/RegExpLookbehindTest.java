@@ -0,0 +1,85 @@
+/*
+ * Copyright 2013-2026 consulo.io
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.intellij.lang.regexp.validation;
+
+import consulo.language.psi.PsiFile;
+import consulo.language.psi.util.PsiTreeUtil;
+import consulo.project.Project;
+import consulo.test.junit.impl.extension.ConsuloProjectLoader;
+import org.intellij.lang.regexp.RegExpLanguageHost;
+import org.intellij.lang.regexp.RegExpTestFiles;
+import org.intellij.lang.regexp.psi.RegExpGroup;
+import org.intellij.lang.regexp.psi.impl.RegExpLengthSummary;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+
+/**
+ * Checks that {@code \R} and {@code \X} count as one atom in lookbehind, as the lookbehind checks always counted them.
+ */
+@ExtendWith(ConsuloProjectLoader.class)
+public class RegExpLookbehindTest {
+    private static final RegExpLanguageHost.Lookbehind[] CHECKED_MODES = {
+        RegExpLanguageHost.Lookbehind.FIXED_LENGTH_ALTERNATION,
+        RegExpLanguageHost.Lookbehind.VARIABLE_LENGTH_ALTERNATION,
+        RegExpLanguageHost.Lookbehind.FINITE_REPETITION
+    };
+
+    @Test
+    public void testLineBreakAndGraphemeInLookbehind(Project project) {
+        doTest(project, "(?<=\\R)x", null, null, null);
+        doTest(project, "(?<=\\X)x", null, null, null);
+        doTest(project, "(?<!\\R|a)x", null, null, null);
+        doTest(project, "(?<=\\X|b)x", null, null, null);
+        doTest(project, "(?<=\\R{2})x", null, null, null);
+    }
+
+    @Test
+    public void testAlternativesOfOtherLengths(Project project) {
+        doTest(project, "(?<=ab|\\R)x", RegExpLengthSummary.LookbehindProblem.ALTERNATION_LENGTH, null, null);
+        doTest(project, "(?<=\\X+)x", RegExpLengthSummary.LookbehindProblem.REPETITION,
+            RegExpLengthSummary.LookbehindProblem.REPETITION, RegExpLengthSummary.LookbehindProblem.REPETITION);
+        doTest(project, "(?<=\\R{1,2})x", RegExpLengthSummary.LookbehindProblem.UNEQUAL_COUNTED_QUANTIFIER,
+            RegExpLengthSummary.LookbehindProblem.UNEQUAL_COUNTED_QUANTIFIER, null);
+    }
+
+    /**
+     * Compares the problems of the lookbehind group for each checked mode, and checks that the annotator reports no
+     * error on a file without a host, which supports lookbehind fully.
+     */
+    private static void doTest(Project project,
+                               String text,
+                               RegExpLengthSummary.LookbehindProblem fixedLengthAlternation,
+                               RegExpLengthSummary.LookbehindProblem variableLengthAlternation,
+                               RegExpLengthSummary.LookbehindProblem finiteRepetition) {
+        final PsiFile file = RegExpTestFiles.create(project, text);
+        final RegExpGroup group = PsiTreeUtil.findChildOfType(file, RegExpGroup.class);
+        assertNotNull(group, text);
+        final RegExpLengthSummary summary = RegExpLengthSummary.getInstance(file);
+        assertNotNull(summary, text);
+        final int node = summary.getModel().getNode(group);
+        final RegExpLengthSummary.LookbehindProblem[] expected = {fixedLengthAlternation, variableLengthAlternation, finiteRepetition};
+        for (int mode = 0; mode < CHECKED_MODES.length; mode++) {
+            assertEquals(expected[mode], summary.getLookbehindProblem(node, CHECKED_MODES[mode]), text + " with " + CHECKED_MODES[mode]);
+        }
+        for (String annotation : AnnotationRecorder.annotate(file)) {
+            assertFalse(annotation.contains("newAnnotation(ERROR"), text + ": " + annotation);
+        }
+    }
+}